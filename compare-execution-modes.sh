@@ -0,0 +1,52 @@
+#!/bin/bash
+
+## Script for comparing the PLATFORM and VIRTUAL execution modes under the same load
+##
+## Starts the node in memory in each mode in turn, warms it up with a few connections, runs the load generator against
+## it with the given arguments and prints the summary of both runs. Run it with a JDK 21 or newer, or the VIRTUAL run
+## falls back to platform threads:
+##
+##   ./compare-execution-modes.sh --connections=5000 --ramp-rate=50 --rates=1,4,16
+
+export STUB_AUTH_PORT=${STUB_AUTH_PORT:-9099}
+export NODE_JAR="target/social-chat-service.jar"
+export LOAD_JAR="load-generator/target/social-chat-load-generator.jar"
+
+# Package the jars
+
+mvn -q package -DskipTests || { echo 'Failed to build the node. Exiting.' ; exit 1; }
+mvn -q -f load-generator/pom.xml package || { echo 'Failed to build the load generator. Exiting.' ; exit 1; }
+
+for MODE in PLATFORM VIRTUAL; do
+
+  echo "Loading the node in ${MODE} mode"
+
+  java -jar $NODE_JAR --spring.profiles.active=dev,inmemory --chat.execution.mode=$MODE \
+    --social.chat.auth.service.url=http://localhost:$STUB_AUTH_PORT > target/node-$MODE.log 2>&1 &
+  NODE_PID=$!
+
+  until grep -q "Started App" target/node-$MODE.log; do
+    kill -0 $NODE_PID 2>/dev/null || { echo "The node failed to start, see target/node-${MODE}.log. Exiting." ; exit 1; }
+    sleep 1
+  done
+
+  # Load the classes of the handshake and message paths before measuring, then wait for the overload recovery
+
+  java -jar $LOAD_JAR --stub-auth-port=$STUB_AUTH_PORT --connections=20 --ramp-rate=10 --rates=1 \
+    --stage-duration=5 --warmup=1 > target/warmup-$MODE.log 2>&1
+  sleep 10
+
+  java -jar $LOAD_JAR --stub-auth-port=$STUB_AUTH_PORT "$@" > target/load-$MODE.log 2>&1
+
+  kill $NODE_PID
+  wait $NODE_PID
+
+done
+
+for MODE in PLATFORM VIRTUAL; do
+  echo
+  echo "${MODE}:"
+  grep -E "connections [0-9]+ open" target/load-$MODE.log | tail -1 | sed 's/^.*\] //'
+  sed -n '/ - Stage at /,$p' target/load-$MODE.log | grep -E "LoadReport|LoadGenerator - Node heap" | sed 's/^.* - //'
+  grep -c "Overload level" target/node-$MODE.log | sed 's/$/ overload level changes/'
+done
@@ -0,0 +1,265 @@
+package live.socialchat.load;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.client.WebsocketClientSpec;
+
+/**
+ * One WebSocket connection to the chat endpoint, logged in as a user through its access token cookie. Requests are
+ * sent at the rate of the current stage and stamped with the time they were due rather than the time they were
+ * written, so that requests queued behind a saturated node count their wait in their latency.
+ */
+public class LoadConnection {
+    
+    private static final String TYPE_PREFIX = "{\"type\":\"";
+    private static final String CONTENT_FIELD = "\"content\":\"";
+    private static final String REQUEST_TYPE_FIELD = "\"requestType\":\"";
+    private static final int TYPE_PREFIX_LENGTH = 32;
+    private static final int MAX_FRAME_PAYLOAD_LENGTH = 16 * 1024 * 1024;
+    
+    private final String token;
+    private final String url;
+    private final LoadStats stats;
+    private final boolean timedChatMessages;
+    private final Sinks.Many<String> outbound = Sinks.many().unicast().onBackpressureBuffer();
+    private final Map<Traffic, Queue<Long>> pendingRequests = new EnumMap<>(Traffic.class);
+    
+    private volatile Disposable traffic;
+    private volatile boolean open;
+    
+    /**
+     * The token is the access token cookie, {@code <userId>-<connection>} for the stubbed auth service. Chat messages
+     * received are timed from the time stamped in their content when timed, and only counted otherwise.
+     */
+    public LoadConnection(final String token,
+                          final String url,
+                          final LoadStats stats,
+                          final boolean timedChatMessages) {
+        this.token = token;
+        this.url = url;
+        this.stats = stats;
+        this.timedChatMessages = timedChatMessages;
+        
+        for (Traffic requestTraffic : Traffic.values()) {
+            if (!requestTraffic.isChatMessage()) {
+                pendingRequests.put(requestTraffic, new ConcurrentLinkedQueue<>());
+            }
+        }
+    }
+    
+    /**
+     * Completes once the handshake is accepted, or with an error if it isn't.
+     */
+    public Mono<LoadConnection> connect(final HttpClient httpClient) {
+        
+        final Sinks.Empty<Void> handshake = Sinks.empty();
+        
+        httpClient
+            .headers(headers -> headers.add(HttpHeaderNames.COOKIE, "b=" + token))
+            .websocket(WebsocketClientSpec.builder().maxFramePayloadLength(MAX_FRAME_PAYLOAD_LENGTH).build())
+            .uri(url)
+            .handle((in, out) -> {
+                open = true;
+                stats.recordConnected();
+                handshake.tryEmitEmpty();
+                return Mono.when(
+                    out.sendString(outbound.asFlux()).then(),
+                    in.aggregateFrames(MAX_FRAME_PAYLOAD_LENGTH)
+                        .receiveFrames()
+                        .doOnNext(this::onFrame)
+                        .then()
+                );
+            })
+            .subscribe(
+                null,
+                error -> {
+                    if (open) {
+                        onClosed();
+                    } else {
+                        stats.recordFailed();
+                        handshake.tryEmitError(error);
+                    }
+                },
+                this::onClosed);
+        
+        return handshake.asMono().thenReturn(this);
+    }
+    
+    /**
+     * Sends the given number of requests per second, starting at a random offset within the first period so that
+     * the connections don't all send at once.
+     */
+    public void startTraffic(final double rate, final TrafficGenerator generator, final Scheduler scheduler) {
+        
+        stopTraffic();
+        
+        final long periodNanos = (long) (1_000_000_000L / rate);
+        final long initialDelayNanos = ThreadLocalRandom.current().nextLong(periodNanos);
+        final long startNanos = System.nanoTime() + initialDelayNanos;
+        
+        traffic = Flux.interval(Duration.ofNanos(initialDelayNanos), Duration.ofNanos(periodNanos), scheduler)
+            .subscribe(tick -> {
+                final long dueNanos = startNanos + tick * periodNanos;
+                final Traffic requestTraffic = generator.pick();
+                send(requestTraffic, generator.frame(requestTraffic, dueNanos), dueNanos);
+            });
+    }
+    
+    public void stopTraffic() {
+        
+        final Disposable current = traffic;
+        
+        if (current != null) {
+            current.dispose();
+        }
+        
+    }
+    
+    public void close() {
+        stopTraffic();
+        synchronized (outbound) {
+            outbound.tryEmitComplete();
+        }
+    }
+    
+    private void onClosed() {
+        open = false;
+        stats.recordClosed();
+        stopTraffic();
+    }
+    
+    /**
+     * Sends the frame of a request, whose response is timed from the given time. Requests of no known traffic are
+     * sent as they are, without being measured.
+     */
+    public void send(final Traffic requestTraffic, final String frame, final long sentNanos) {
+        
+        if (requestTraffic != null && !requestTraffic.isChatMessage()) {
+            pendingRequests.get(requestTraffic).add(sentNanos);
+        }
+        
+        synchronized (outbound) {
+            outbound.tryEmitNext(frame);
+        }
+        
+        if (requestTraffic != null) {
+            stats.recordSent(requestTraffic);
+        }
+        
+    }
+    
+    /**
+     * Reads the type from the start of the frame, only decoding the whole frame for chat messages, which carry the
+     * time they were sent.
+     */
+    private void onFrame(final WebSocketFrame frame) {
+        
+        if (!(frame instanceof TextWebSocketFrame)) {
+            return;
+        }
+        
+        final long now = System.nanoTime();
+        final ByteBuf content = frame.content();
+        final String prefix = content.toString(content.readerIndex(), Math.min(TYPE_PREFIX_LENGTH, content.readableBytes()), StandardCharsets.UTF_8);
+        
+        if (!prefix.startsWith(TYPE_PREFIX)) {
+            return;
+        }
+        
+        final String type = prefix.substring(TYPE_PREFIX.length(), Math.max(prefix.indexOf('"', TYPE_PREFIX.length()), TYPE_PREFIX.length()));
+        
+        switch (type) {
+            case "USER_MESSAGE":
+                onChatMessage(content.toString(StandardCharsets.UTF_8), now);
+                break;
+            case "PONG":
+                onResponse(Traffic.PING, now);
+                break;
+            case "CHAT_HISTORY":
+                onResponse(Traffic.CHAT_HISTORY, now);
+                break;
+            case "CONTACTS_LIST":
+                onResponse(Traffic.CONTACTS_LIST, now);
+                break;
+            case "INVALID_REQUEST":
+                stats.recordInvalidRequest();
+                break;
+            case "RECONNECT":
+                stats.recordReconnect();
+                break;
+            case "RATE_LIMITED":
+                onRateLimited(content.toString(StandardCharsets.UTF_8));
+                break;
+            default:
+                break;
+        }
+        
+    }
+    
+    private void onChatMessage(final String message, final long now) {
+        
+        final int contentStart = message.indexOf(CONTENT_FIELD) + CONTENT_FIELD.length();
+        
+        final int stampEnd = (timedChatMessages && contentStart >= CONTENT_FIELD.length() && message.charAt(contentStart + 1) == ':')
+            ? message.indexOf(':', contentStart + 2)
+            : -1;
+        
+        if (stampEnd > 0) {
+            final long sentNanos = Long.parseLong(message.substring(contentStart + 2, stampEnd));
+            stats.recordReceived(Traffic.ofContentTag(message.charAt(contentStart)), now - sentNanos);
+        } else {
+            stats.recordDelivered(Traffic.USER_MESSAGE);
+        }
+        
+    }
+    
+    /**
+     * Rejected requests won't be answered, so their pending send time is dropped for the next response to be timed
+     * against the right request.
+     */
+    private void onRateLimited(final String message) {
+        
+        stats.recordRateLimited();
+        
+        final int typeStart = message.indexOf(REQUEST_TYPE_FIELD) + REQUEST_TYPE_FIELD.length();
+        
+        if (typeStart < REQUEST_TYPE_FIELD.length()) {
+            return;
+        }
+        
+        final String requestType = message.substring(typeStart, message.indexOf('"', typeStart));
+        
+        for (Traffic requestTraffic : Traffic.values()) {
+            if (!requestTraffic.isChatMessage() && requestTraffic.name().equals(requestType)) {
+                pendingRequests.get(requestTraffic).poll();
+            }
+        }
+        
+    }
+    
+    private void onResponse(final Traffic requestTraffic, final long now) {
+        
+        final Long sentNanos = pendingRequests.get(requestTraffic).poll();
+        
+        if (sentNanos != null) {
+            stats.recordReceived(requestTraffic, now - sentNanos);
+        }
+        
+    }
+    
+}
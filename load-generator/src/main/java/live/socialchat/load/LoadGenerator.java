@@ -0,0 +1,200 @@
+package live.socialchat.load;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import live.socialchat.load.LoadReport.StageResult;
+import live.socialchat.load.ServerProbe.HeapSample;
+import live.socialchat.load.replay.TrafficReplay;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * Loads a chat node to find its saturation point:
+ * <ol>
+ *     <li>the heap of the node is sampled before connecting</li>
+ *     <li>connections are opened at the ramp rate, through the stubbed auth service</li>
+ *     <li>the heap is sampled again, giving the memory held per connection</li>
+ *     <li>each stage sends the traffic mix at its rate per connection, reporting throughput and latency percentiles
+ *     as it goes, after a warmup</li>
+ *     <li>the stages are summarized, with the first one past the saturation thresholds</li>
+ * </ol>
+ * Run it with {@code java -jar social-chat-load-generator.jar --connections=20000 --rates=0.5,1,2,4}, or with
+ * {@code replay} first to replay a capture with {@link TrafficReplay}.
+ */
+public class LoadGenerator {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadGenerator.class);
+    private static final int MAX_PENDING_HANDSHAKES = 256;
+    private static final int LOGGED_FAILURES = 10;
+    private static final String REPLAY = "replay";
+    
+    private final LoadSettings settings;
+    private final LoadStats stats = new LoadStats();
+    private final LoadReport report;
+    private final ServerProbe serverProbe;
+    private final List<HttpClient> httpClients;
+    private final List<LoadConnection> connections = Collections.synchronizedList(new ArrayList<>());
+    private final Scheduler trafficScheduler = Schedulers.newParallel("load-traffic");
+    private final AtomicInteger loggedFailures = new AtomicInteger();
+    private final TrafficGenerator trafficGenerator;
+    
+    public LoadGenerator(final LoadSettings settings) {
+        this.settings = settings;
+        this.report = new LoadReport(settings, stats);
+        this.serverProbe = new ServerProbe(settings.getAdminUrl());
+        this.httpClients = httpClients(settings.getLocalAddresses());
+        this.trafficGenerator = new TrafficGenerator(settings);
+    }
+    
+    public static void main(final String[] args) throws Exception {
+        
+        if (args.length > 0 && REPLAY.equals(args[0])) {
+            TrafficReplay.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        
+        final LoadSettings settings = LoadSettings.fromArgs(args);
+        
+        LOGGER.info("Loading with {}", settings);
+        
+        new LoadGenerator(settings).run();
+        
+        System.exit(0);
+    }
+    
+    public void run() throws InterruptedException {
+        
+        final StubAuthServer stubAuthServer = (settings.getStubAuthPort() > 0)
+            ? StubAuthServer.start(settings.getStubAuthPort())
+            : null;
+        
+        try {
+            
+            final Optional<HeapSample> baseline = serverProbe.sample();
+            
+            connect();
+            
+            final Optional<HeapSample> connected = serverProbe.sample();
+            
+            reportMemory(baseline, connected);
+            
+            final List<StageResult> results = new ArrayList<>();
+            
+            for (int stage = 0; stage < settings.getRates().size(); stage++) {
+                results.add(runStage(stage, settings.getRates().get(stage)));
+            }
+            
+            report.summarize(results);
+            reportMemory(baseline, serverProbe.sample());
+            
+        } finally {
+            connections.forEach(LoadConnection::close);
+            trafficScheduler.dispose();
+            if (stubAuthServer != null) {
+                stubAuthServer.stop();
+            }
+        }
+        
+    }
+    
+    /**
+     * Opens the connections at the ramp rate, limiting the handshakes in flight so that a slow node isn't flooded.
+     */
+    private void connect() throws InterruptedException {
+        
+        LOGGER.info("Opening {} connections at {}/s as {} users", settings.getConnections(), settings.getRampRate(), settings.getUsers());
+        
+        final Disposable ramp = Flux.range(0, settings.getConnections())
+            .delayElements(Duration.ofNanos(1_000_000_000L / settings.getRampRate()))
+            .flatMap(index -> new LoadConnection("user" + (index % settings.getUsers()) + "-" + index, settings.getUrl(), stats, true)
+                .connect(httpClients.get(index % httpClients.size()))
+                .doOnNext(connections::add)
+                .onErrorResume(this::logFailure), MAX_PENDING_HANDSHAKES)
+            .subscribe();
+        
+        while (stats.connected() + stats.failed() < settings.getConnections()) {
+            Thread.sleep(Duration.ofSeconds(settings.getReportInterval()).toMillis());
+            LOGGER.info("Connected {}/{}, {} failed", stats.connected(), settings.getConnections(), stats.failed());
+        }
+        
+        ramp.dispose();
+    }
+    
+    private StageResult runStage(final int stage, final double rate) throws InterruptedException {
+        
+        LOGGER.info("Stage {}/{}: {} requests/s per connection, {} requests/s", stage + 1, settings.getRates().size(),
+            rate, Math.round(rate * connections.size()));
+        
+        synchronized (connections) {
+            connections.forEach(connection -> connection.startTraffic(rate, trafficGenerator, trafficScheduler));
+        }
+        
+        Thread.sleep(Duration.ofSeconds(settings.getWarmup()).toMillis());
+        
+        report.startStage();
+        
+        for (int elapsed = 0; elapsed < settings.getStageDuration(); elapsed += settings.getReportInterval()) {
+            Thread.sleep(Duration.ofSeconds(Math.min(settings.getReportInterval(), settings.getStageDuration() - elapsed)).toMillis());
+            report.reportInterval(String.format("[stage %d, %ds]", stage + 1,
+                Math.min(elapsed + settings.getReportInterval(), settings.getStageDuration())));
+        }
+        
+        return report.endStage(rate);
+    }
+    
+    private void reportMemory(final Optional<HeapSample> baseline, final Optional<HeapSample> sample) {
+        
+        if (!baseline.isPresent() || !sample.isPresent()) {
+            return;
+        }
+        
+        final long sessions = sample.get().getLocalSessions() - baseline.get().getLocalSessions();
+        final long heap = sample.get().getHeapUsed() - baseline.get().getHeapUsed();
+        final long liveData = sample.get().getLiveData() - baseline.get().getLiveData();
+        
+        LOGGER.info("Node heap {} MB used and {} MB live with {} sessions, {} MB used and {} MB live above the baseline, "
+                + "{} bytes used and {} bytes live per session",
+            sample.get().getHeapUsed() / (1024 * 1024), sample.get().getLiveData() / (1024 * 1024),
+            sample.get().getLocalSessions(), heap / (1024 * 1024), liveData / (1024 * 1024),
+            (sessions > 0) ? heap / sessions : "n/a", (sessions > 0) ? liveData / sessions : "n/a");
+    }
+    
+    private Mono<LoadConnection> logFailure(final Throwable error) {
+        if (loggedFailures.getAndIncrement() < LOGGED_FAILURES) {
+            LOGGER.warn("Connection failed. Reason {}", error.getMessage());
+        }
+        return Mono.empty();
+    }
+    
+    /**
+     * Connections aren't pooled, as each is held by its WebSocket for the whole run, and are spread over the local
+     * addresses, each having its own range of ephemeral ports.
+     */
+    private static List<HttpClient> httpClients(final List<String> localAddresses) {
+        
+        final HttpClient httpClient = HttpClient.create(ConnectionProvider.newConnection());
+        
+        if (localAddresses.isEmpty()) {
+            return Collections.singletonList(httpClient);
+        }
+        
+        return localAddresses.stream()
+            .map(localAddress -> httpClient.bindAddress(() -> new InetSocketAddress(localAddress, 0)))
+            .collect(Collectors.toList());
+    }
+    
+}
@@ -0,0 +1,204 @@
+package live.socialchat.load;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reports each interval of a stage as it completes and summarizes the stages, flagging the first one past the
+ * saturation thresholds: its p99 latency exceeds {@code saturation-p99} or fewer than {@code saturation-delivery} of
+ * the expected responses were received.
+ */
+public class LoadReport {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadReport.class);
+    private static final String HEADER = String.format("%-16s %10s %10s %8s %8s %8s %8s %8s %9s",
+        "traffic", "sent/s", "recv/s", "p50", "p90", "p99", "p99.9", "max", "delivery");
+    
+    private final LoadSettings settings;
+    private final LoadStats stats;
+    private final Map<Traffic, Long> lastSent = new EnumMap<>(Traffic.class);
+    private final Map<Traffic, Long> lastReceived = new EnumMap<>(Traffic.class);
+    
+    private Map<Traffic, Histogram> stageLatencies;
+    private Map<Traffic, Long> stageSent;
+    private Map<Traffic, Long> stageReceived;
+    private long stageStartNanos;
+    private long intervalStartNanos;
+    
+    public LoadReport(final LoadSettings settings, final LoadStats stats) {
+        this.settings = settings;
+        this.stats = stats;
+    }
+    
+    /**
+     * Discards what was recorded until now, such as during the warmup, and starts measuring a stage.
+     */
+    public void startStage() {
+        
+        stageLatencies = new EnumMap<>(Traffic.class);
+        stageSent = new EnumMap<>(Traffic.class);
+        stageReceived = new EnumMap<>(Traffic.class);
+        
+        for (Traffic traffic : Traffic.values()) {
+            stats.intervalLatencies(traffic);
+            stageLatencies.put(traffic, new Histogram(3));
+            stageSent.put(traffic, stats.sent(traffic));
+            stageReceived.put(traffic, stats.received(traffic));
+            lastSent.put(traffic, stats.sent(traffic));
+            lastReceived.put(traffic, stats.received(traffic));
+        }
+        
+        stageStartNanos = System.nanoTime();
+        intervalStartNanos = stageStartNanos;
+    }
+    
+    public void reportInterval(final String label) {
+        
+        final long now = System.nanoTime();
+        final double seconds = (now - intervalStartNanos) / 1e9;
+        
+        LOGGER.info("{} connections {} open, {} failed, {} closed, {} invalid requests, {} rate limited", label,
+            stats.connected() - stats.closed(), stats.failed(), stats.closed(), stats.invalidRequests(), stats.rateLimited());
+        LOGGER.info(HEADER);
+        
+        for (Traffic traffic : Traffic.values()) {
+            
+            final Histogram latencies = stats.intervalLatencies(traffic);
+            final long sent = stats.sent(traffic);
+            final long received = stats.received(traffic);
+            
+            stageLatencies.get(traffic).add(latencies);
+            
+            if (sent > lastSent.get(traffic) || received > lastReceived.get(traffic)) {
+                LOGGER.info(line(traffic, sent - lastSent.get(traffic), received - lastReceived.get(traffic), seconds, latencies));
+            }
+            
+            lastSent.put(traffic, sent);
+            lastReceived.put(traffic, received);
+        }
+        
+        intervalStartNanos = now;
+    }
+    
+    public StageResult endStage(final double rate) {
+        
+        final double seconds = (System.nanoTime() - stageStartNanos) / 1e9;
+        final Map<Traffic, String> lines = new EnumMap<>(Traffic.class);
+        boolean saturated = false;
+        double sentPerSecond = 0;
+        
+        for (Traffic traffic : Traffic.values()) {
+            
+            final long sent = stats.sent(traffic) - stageSent.get(traffic);
+            final long received = stats.received(traffic) - stageReceived.get(traffic);
+            final Histogram latencies = stageLatencies.get(traffic);
+            
+            if (sent == 0) {
+                continue;
+            }
+            
+            sentPerSecond += sent / seconds;
+            lines.put(traffic, line(traffic, sent, received, seconds, latencies));
+            
+            saturated |= millis(latencies.getValueAtPercentile(99)) > settings.getSaturationP99()
+                || delivery(traffic, sent, received) < settings.getSaturationDelivery();
+        }
+        
+        return new StageResult(rate, sentPerSecond, saturated, lines);
+    }
+    
+    public void summarize(final List<StageResult> results) {
+        
+        StageResult saturation = null;
+        
+        for (StageResult result : results) {
+            
+            LOGGER.info("Stage at {}/s per connection, {} requests/s{}", result.rate, Math.round(result.sentPerSecond),
+                result.saturated ? ", SATURATED" : "");
+            LOGGER.info(HEADER);
+            result.lines.values().forEach(LOGGER::info);
+            
+            if (result.saturated && saturation == null) {
+                saturation = result;
+            }
+        }
+        
+        if (saturation != null) {
+            LOGGER.info("Saturated at {}/s per connection, {} requests/s", saturation.rate, Math.round(saturation.sentPerSecond));
+        } else {
+            LOGGER.info("Not saturated up to {}/s per connection", results.get(results.size() - 1).rate);
+        }
+        
+    }
+    
+    private String line(final Traffic traffic,
+                        final long sent,
+                        final long received,
+                        final double seconds,
+                        final Histogram latencies) {
+        return String.format("%-16s %10.1f %10.1f %8.2f %8.2f %8.2f %8.2f %8.2f %9.3f",
+            traffic, sent / seconds, received / seconds,
+            millis(latencies.getValueAtPercentile(50)),
+            millis(latencies.getValueAtPercentile(90)),
+            millis(latencies.getValueAtPercentile(99)),
+            millis(latencies.getValueAtPercentile(99.9)),
+            millis(latencies.getMaxValue()),
+            delivery(traffic, sent, received));
+    }
+    
+    /**
+     * Ratio of the responses received to those expected: a direct message reaches every connection of its user, a
+     * message to all users every other connection, and every other request is answered once.
+     */
+    private double delivery(final Traffic traffic, final long sent, final long received) {
+        
+        if (sent == 0) {
+            return 1;
+        }
+        
+        final long open = stats.connected() - stats.closed();
+        final double fanout;
+        
+        switch (traffic) {
+            case USER_MESSAGE:
+                fanout = Math.max(open, 1) / (double) settings.getUsers();
+                break;
+            case ALL_USERS_GROUP:
+                fanout = Math.max(open - 1, 1);
+                break;
+            default:
+                fanout = 1;
+        }
+        
+        return received / (sent * fanout);
+    }
+    
+    private static double millis(final long micros) {
+        return micros / (double) TimeUnit.MILLISECONDS.toMicros(1);
+    }
+    
+    public static class StageResult {
+        
+        private final double rate;
+        private final double sentPerSecond;
+        private final boolean saturated;
+        private final Map<Traffic, String> lines;
+        
+        StageResult(final double rate,
+                    final double sentPerSecond,
+                    final boolean saturated,
+                    final Map<Traffic, String> lines) {
+            this.rate = rate;
+            this.sentPerSecond = sentPerSecond;
+            this.saturated = saturated;
+            this.lines = lines;
+        }
+        
+    }
+    
+}
@@ -0,0 +1,100 @@
+package live.socialchat.load;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Settings of a load run, given as {@code --name=value} arguments:
+ * <ul>
+ *     <li>{@code url}: chat endpoint, {@code ws://localhost:8080/chat} by default</li>
+ *     <li>{@code connections}: connections opened, connecting {@code ramp-rate} per second</li>
+ *     <li>{@code users}: distinct users the connections log in as, one per connection by default</li>
+ *     <li>{@code rates}: requests per second sent by each connection, one stage per rate</li>
+ *     <li>{@code stage-duration} and {@code warmup}: seconds each stage is measured for, after the warmup seconds</li>
+ *     <li>{@code mix}: weights of the traffic sent, such as {@code USER_MESSAGE=80,PING=10}</li>
+ *     <li>{@code message-size}: characters of content of each chat message</li>
+ *     <li>{@code stub-auth-port}: port of the stubbed auth service, {@code 0} to use a real one</li>
+ *     <li>{@code admin-url}: admin server of the node, to read its heap gauges from {@code /metrics}, empty to skip
+ *     it</li>
+ *     <li>{@code local-addresses}: local addresses connections are spread over, past the ephemeral ports of one</li>
+ *     <li>{@code saturation-p99} and {@code saturation-delivery}: p99 latency in milliseconds and ratio of responses
+ *     received past which a stage is considered saturated</li>
+ * </ul>
+ */
+@Getter
+@Builder
+@ToString
+public class LoadSettings {
+    
+    private static final Set<String> NAMES = new HashSet<>(Arrays.asList(
+        "url", "connections", "users", "ramp-rate", "rates", "stage-duration", "warmup", "report-interval", "mix",
+        "message-size", "stub-auth-port", "admin-url", "local-addresses", "saturation-p99", "saturation-delivery"
+    ));
+    
+    private final String url;
+    private final int connections;
+    private final int users;
+    private final int rampRate;
+    private final List<Double> rates;
+    private final int stageDuration;
+    private final int warmup;
+    private final int reportInterval;
+    private final TrafficMix mix;
+    private final int messageSize;
+    private final int stubAuthPort;
+    private final String adminUrl;
+    private final List<String> localAddresses;
+    private final double saturationP99;
+    private final double saturationDelivery;
+    
+    public static LoadSettings fromArgs(final String[] args) {
+        
+        final Map<String, String> values = new HashMap<>();
+        
+        for (String arg : args) {
+            
+            final int separator = arg.indexOf('=');
+            
+            if (!arg.startsWith("--") || separator < 0 || !NAMES.contains(arg.substring(2, separator))) {
+                throw new IllegalArgumentException("Unknown argument " + arg + ", expected --name=value with name one of " + NAMES);
+            }
+            
+            values.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        
+        final int connections = Integer.parseInt(values.getOrDefault("connections", "1000"));
+        final String localAddresses = values.getOrDefault("local-addresses", "");
+        
+        return LoadSettings.builder()
+            .url(values.getOrDefault("url", "ws://localhost:8080/chat"))
+            .connections(connections)
+            .users(Integer.parseInt(values.getOrDefault("users", String.valueOf(connections))))
+            .rampRate(Integer.parseInt(values.getOrDefault("ramp-rate", "500")))
+            .rates(Arrays.stream(values.getOrDefault("rates", "1").split(","))
+                .map(rate -> Double.parseDouble(rate.trim()))
+                .collect(Collectors.toList()))
+            .stageDuration(Integer.parseInt(values.getOrDefault("stage-duration", "60")))
+            .warmup(Integer.parseInt(values.getOrDefault("warmup", "10")))
+            .reportInterval(Integer.parseInt(values.getOrDefault("report-interval", "5")))
+            .mix(TrafficMix.parse(values.getOrDefault("mix", "USER_MESSAGE=80,PING=10,CHAT_HISTORY=5,CONTACTS_LIST=4,ALL_USERS_GROUP=1")))
+            .messageSize(Integer.parseInt(values.getOrDefault("message-size", "64")))
+            .stubAuthPort(Integer.parseInt(values.getOrDefault("stub-auth-port", "9099")))
+            .adminUrl(values.getOrDefault("admin-url", "http://localhost:9091"))
+            .localAddresses(localAddresses.isEmpty()
+                ? Collections.emptyList()
+                : Arrays.stream(localAddresses.split(",")).map(String::trim).collect(Collectors.toList()))
+            .saturationP99(Double.parseDouble(values.getOrDefault("saturation-p99", "100")))
+            .saturationDelivery(Double.parseDouble(values.getOrDefault("saturation-delivery", "0.95")))
+            .build();
+    }
+    
+}
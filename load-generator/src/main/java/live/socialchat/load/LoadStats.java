@@ -0,0 +1,115 @@
+package live.socialchat.load;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Requests sent, responses received and their latency, by traffic, recorded concurrently by the connections and read
+ * by the reporter in intervals. Latencies are recorded in microseconds, up to a minute.
+ */
+public class LoadStats {
+    
+    private static final long HIGHEST_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+    
+    private final Map<Traffic, Recorder> latencies = new EnumMap<>(Traffic.class);
+    private final Map<Traffic, LongAdder> sent = new EnumMap<>(Traffic.class);
+    private final Map<Traffic, LongAdder> received = new EnumMap<>(Traffic.class);
+    private final LongAdder connected = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder closed = new LongAdder();
+    private final LongAdder invalidRequests = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    
+    public LoadStats() {
+        for (Traffic traffic : Traffic.values()) {
+            latencies.put(traffic, new Recorder(HIGHEST_LATENCY_MICROS, 3));
+            sent.put(traffic, new LongAdder());
+            received.put(traffic, new LongAdder());
+        }
+    }
+    
+    public void recordSent(final Traffic traffic) {
+        sent.get(traffic).increment();
+    }
+    
+    public void recordReceived(final Traffic traffic, final long latencyNanos) {
+        received.get(traffic).increment();
+        latencies.get(traffic).recordValue(Math.min(Math.max(TimeUnit.NANOSECONDS.toMicros(latencyNanos), 0), HIGHEST_LATENCY_MICROS));
+    }
+    
+    /**
+     * Counts a response whose latency can't be measured.
+     */
+    public void recordDelivered(final Traffic traffic) {
+        received.get(traffic).increment();
+    }
+    
+    public void recordConnected() {
+        connected.increment();
+    }
+    
+    public void recordFailed() {
+        failed.increment();
+    }
+    
+    public void recordClosed() {
+        closed.increment();
+    }
+    
+    public void recordInvalidRequest() {
+        invalidRequests.increment();
+    }
+    
+    public void recordReconnect() {
+        reconnects.increment();
+    }
+    
+    public void recordRateLimited() {
+        rateLimited.increment();
+    }
+    
+    /**
+     * Latencies recorded since the previous call, for the given traffic.
+     */
+    public Histogram intervalLatencies(final Traffic traffic) {
+        return latencies.get(traffic).getIntervalHistogram();
+    }
+    
+    public long sent(final Traffic traffic) {
+        return sent.get(traffic).sum();
+    }
+    
+    public long received(final Traffic traffic) {
+        return received.get(traffic).sum();
+    }
+    
+    public long connected() {
+        return connected.sum();
+    }
+    
+    public long failed() {
+        return failed.sum();
+    }
+    
+    public long closed() {
+        return closed.sum();
+    }
+    
+    public long invalidRequests() {
+        return invalidRequests.sum();
+    }
+    
+    public long reconnects() {
+        return reconnects.sum();
+    }
+    
+    public long rateLimited() {
+        return rateLimited.sum();
+    }
+    
+}
@@ -0,0 +1,89 @@
+package live.socialchat.load;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.netty.http.client.HttpClient;
+
+/**
+ * Measures the heap of the node under load from the JVM gauges of the Prometheus scrape on its admin server, which is
+ * served to remote hosts too: the heap used, summed over the heap pools, and the live data size, the old generation
+ * left by the last major collection. No collection is forced, so the heap used includes garbage not collected yet, and
+ * the live data size only moves once the node runs a major collection.
+ */
+public class ServerProbe {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(ServerProbe.class);
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+    private static final Pattern HEAP_USED = Pattern.compile("^jvm_memory_used_bytes\\{area=\"heap\",.*} (\\S+)$", Pattern.MULTILINE);
+    private static final Pattern LIVE_DATA = Pattern.compile("^jvm_gc_live_data_size_bytes (\\S+)$", Pattern.MULTILINE);
+    private static final Pattern LOCAL_SESSIONS = Pattern.compile("^chat_sessions_local (\\S+)$", Pattern.MULTILINE);
+    
+    private final String adminUrl;
+    
+    public ServerProbe(final String adminUrl) {
+        this.adminUrl = adminUrl;
+    }
+    
+    public Optional<HeapSample> sample() {
+        
+        if (adminUrl.isEmpty()) {
+            return Optional.empty();
+        }
+        
+        try {
+            return HttpClient.create()
+                .get()
+                .uri(adminUrl + "/metrics")
+                .responseSingle((response, body) -> body.asString())
+                .map(this::parse)
+                .blockOptional(TIMEOUT)
+                .flatMap(sample -> sample);
+        } catch (Exception e) {
+            LOGGER.warn("Couldn't sample the heap of the node from {}. Reason {}", adminUrl, e.getMessage());
+            return Optional.empty();
+        }
+        
+    }
+    
+    private Optional<HeapSample> parse(final String body) {
+        
+        final Matcher heapUsed = HEAP_USED.matcher(body);
+        final Matcher liveData = LIVE_DATA.matcher(body);
+        final Matcher localSessions = LOCAL_SESSIONS.matcher(body);
+        
+        long heapUsedBytes = 0;
+        boolean heapPools = false;
+        
+        while (heapUsed.find()) {
+            heapUsedBytes += (long) Double.parseDouble(heapUsed.group(1));
+            heapPools = true;
+        }
+        
+        if (!heapPools || !liveData.find() || !localSessions.find()) {
+            LOGGER.warn("Couldn't sample the heap of the node from {}. Missing JVM or session gauges", adminUrl);
+            return Optional.empty();
+        }
+        
+        return Optional.of(new HeapSample(heapUsedBytes, (long) Double.parseDouble(liveData.group(1)),
+            (long) Double.parseDouble(localSessions.group(1))));
+    }
+    
+    @Getter
+    @ToString
+    @AllArgsConstructor
+    public static class HeapSample {
+        
+        private final long heapUsed;
+        private final long liveData;
+        private final long localSessions;
+        
+    }
+    
+}
@@ -0,0 +1,63 @@
+package live.socialchat.load;
+
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+/**
+ * Stands in for the auth service validating the access token of each handshake, so that the node can be loaded
+ * without real accounts. Tokens are {@code <userId>-<connection>}: every token is valid, the user is the part before
+ * the last dash and the token itself is the session id. Tokens starting with {@code invalid} are rejected.
+ */
+public class StubAuthServer {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(StubAuthServer.class);
+    private static final String VALIDATE_TOKEN_PATH = "/v1/auth/token/valid";
+    
+    private final DisposableServer server;
+    
+    private StubAuthServer(final DisposableServer server) {
+        this.server = server;
+    }
+    
+    public static StubAuthServer start(final int port) {
+        
+        final DisposableServer server = HttpServer.create()
+            .port(port)
+            .route(routes -> routes.post(VALIDATE_TOKEN_PATH, StubAuthServer::validateToken))
+            .bindNow();
+        
+        LOGGER.info("Stub auth service listening on port {}", server.port());
+        
+        return new StubAuthServer(server);
+    }
+    
+    public void stop() {
+        server.disposeNow();
+    }
+    
+    private static Publisher<Void> validateToken(final HttpServerRequest request, final HttpServerResponse response) {
+        
+        final String token = request.requestHeaders().get(HttpHeaderNames.AUTHORIZATION);
+        
+        if (token == null || token.startsWith("invalid")) {
+            return response.status(HttpResponseStatus.UNAUTHORIZED).send();
+        }
+        
+        final int separator = token.lastIndexOf('-');
+        final String userId = (separator > 0) ? token.substring(0, separator) : token;
+        
+        return response
+            .header(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON)
+            .sendString(Mono.just("{\"status\":\"SUCCESS\",\"userId\":\"" + userId + "\",\"sessionId\":\"" + token + "\"}"));
+    }
+    
+}
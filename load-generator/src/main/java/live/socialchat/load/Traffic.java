@@ -0,0 +1,42 @@
+package live.socialchat.load;
+
+/**
+ * Kinds of requests sent by the load generator. Chat messages carry the time they were sent in their content, so that
+ * their latency is measured on whichever connection receives them, while the other requests are answered on the
+ * connection which sent them.
+ */
+public enum Traffic {
+    
+    USER_MESSAGE('u', "USER_MESSAGE"),
+    ALL_USERS_GROUP('a', "USER_MESSAGE"),
+    CHAT_HISTORY(' ', "CHAT_HISTORY"),
+    CONTACTS_LIST(' ', "CONTACTS_LIST"),
+    PING(' ', "PONG");
+    
+    private final char contentTag;
+    private final String responseType;
+    
+    Traffic(final char contentTag, final String responseType) {
+        this.contentTag = contentTag;
+        this.responseType = responseType;
+    }
+    
+    public boolean isChatMessage() {
+        return contentTag != ' ';
+    }
+    
+    public char getContentTag() {
+        return contentTag;
+    }
+    
+    public String getResponseType() {
+        return responseType;
+    }
+    
+    public static Traffic ofContentTag(final char contentTag) {
+        return (contentTag == ALL_USERS_GROUP.contentTag)
+            ? ALL_USERS_GROUP
+            : USER_MESSAGE;
+    }
+    
+}
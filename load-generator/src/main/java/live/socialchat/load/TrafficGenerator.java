@@ -0,0 +1,54 @@
+package live.socialchat.load;
+
+import java.util.Collections;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Builds the requests of the traffic mix. Chat messages go to random users and carry the time they were due in their
+ * content, {@code <tag>:<nanos>:<padding>}, for their latency to be measured by whichever connection receives them.
+ */
+public class TrafficGenerator {
+    
+    private final TrafficMix mix;
+    private final int users;
+    private final String padding;
+    
+    public TrafficGenerator(final LoadSettings settings) {
+        this.mix = settings.getMix();
+        this.users = settings.getUsers();
+        this.padding = String.join("", Collections.nCopies(settings.getMessageSize(), "x"));
+    }
+    
+    public Traffic pick() {
+        return mix.pick();
+    }
+    
+    public String frame(final Traffic traffic, final long dueNanos) {
+        switch (traffic) {
+            case USER_MESSAGE:
+                return chatMessage("USER", randomUser(), traffic, dueNanos);
+            case ALL_USERS_GROUP:
+                return chatMessage("ALL_USERS_GROUP", "ALL_USERS_GROUP", traffic, dueNanos);
+            case CHAT_HISTORY:
+                return "{\"type\":\"CHAT_HISTORY\",\"payload\":{\"destinationId\":\"" + randomUser() + "\"}}";
+            case CONTACTS_LIST:
+                return "{\"type\":\"CONTACTS_LIST\"}";
+            default:
+                return "{\"type\":\"PING\"}";
+        }
+    }
+    
+    private String chatMessage(final String destinationType,
+                               final String destinationId,
+                               final Traffic traffic,
+                               final long dueNanos) {
+        return "{\"type\":\"USER_MESSAGE\",\"payload\":{\"destinationType\":\"" + destinationType
+            + "\",\"destinationId\":\"" + destinationId
+            + "\",\"mimeType\":\"TEXT\",\"content\":\"" + traffic.getContentTag() + ":" + dueNanos + ":" + padding + "\"}}";
+    }
+    
+    private String randomUser() {
+        return "user" + ThreadLocalRandom.current().nextInt(users);
+    }
+    
+}
@@ -0,0 +1,78 @@
+package live.socialchat.load;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Weighted mix of the traffic sent by each connection, parsed from {@code USER_MESSAGE=80,PING=10,...}. Traffic not
+ * listed isn't sent.
+ */
+public class TrafficMix {
+    
+    private final Map<Traffic, Integer> weights;
+    private final Traffic[] traffic;
+    private final int[] cumulativeWeights;
+    private final int totalWeight;
+    
+    private TrafficMix(final Map<Traffic, Integer> weights) {
+        
+        this.weights = weights;
+        this.traffic = weights.keySet().toArray(new Traffic[0]);
+        this.cumulativeWeights = new int[traffic.length];
+        
+        int totalWeight = 0;
+        
+        for (int i = 0; i < traffic.length; i++) {
+            totalWeight += weights.get(traffic[i]);
+            cumulativeWeights[i] = totalWeight;
+        }
+        
+        this.totalWeight = totalWeight;
+    }
+    
+    public static TrafficMix parse(final String mix) {
+        
+        final Map<Traffic, Integer> weights = new EnumMap<>(Traffic.class);
+        
+        for (String entry : mix.split(",")) {
+            
+            final String[] weight = entry.trim().split("=");
+            
+            if (weight.length != 2) {
+                throw new IllegalArgumentException("Invalid traffic mix entry " + entry + ", expected TYPE=weight");
+            }
+            
+            final int value = Integer.parseInt(weight[1].trim());
+            
+            if (value > 0) {
+                weights.put(Traffic.valueOf(weight[0].trim()), value);
+            }
+        }
+        
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("Traffic mix " + mix + " has no traffic");
+        }
+        
+        return new TrafficMix(weights);
+    }
+    
+    public Traffic pick() {
+        
+        final int value = ThreadLocalRandom.current().nextInt(totalWeight);
+        
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (value < cumulativeWeights[i]) {
+                return traffic[i];
+            }
+        }
+        
+        return traffic[traffic.length - 1];
+    }
+    
+    @Override
+    public String toString() {
+        return weights.toString();
+    }
+    
+}
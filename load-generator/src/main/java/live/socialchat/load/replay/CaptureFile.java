@@ -0,0 +1,126 @@
+package live.socialchat.load.replay;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Reads a traffic capture written by the chat service's {@code TrafficCapture}, laid out as described by its
+ * {@code CaptureFormat}: a header, then one record per event with its kind, the microseconds since the previous
+ * event, the connection, and the session and user ids or the request envelope.
+ */
+public class CaptureFile implements Closeable {
+    
+    public static final int CONNECTED = 0;
+    public static final int REQUEST = 1;
+    public static final int DISCONNECTED = 2;
+    
+    private static final byte[] MAGIC = "SCCAP".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    private final DataInputStream input;
+    
+    private long offsetNanos;
+    
+    public CaptureFile(final Path path) throws IOException {
+        
+        this.input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE));
+        
+        final byte[] magic = new byte[MAGIC.length];
+        input.readFully(magic);
+        
+        if (!Arrays.equals(magic, MAGIC) || input.readUnsignedByte() != VERSION) {
+            input.close();
+            throw new IOException(path + " isn't a version " + VERSION + " capture");
+        }
+        
+        input.readLong();
+    }
+    
+    /**
+     * Next event, or null at the end of the capture or of its last complete record.
+     */
+    public Event next() throws IOException {
+        
+        final int kind = input.read();
+        
+        if (kind < 0) {
+            return null;
+        }
+        
+        try {
+            
+            offsetNanos += TimeUnit.MICROSECONDS.toNanos(readVarLong());
+            
+            final int connection = (int) readVarLong();
+            
+            switch (kind) {
+                case CONNECTED:
+                    return new Event(kind, offsetNanos, connection, readString(), readString(), null);
+                case REQUEST:
+                    return new Event(kind, offsetNanos, connection, null, null, readString());
+                default:
+                    return new Event(kind, offsetNanos, connection, null, null, null);
+            }
+            
+        } catch (EOFException e) {
+            return null;
+        }
+        
+    }
+    
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+    
+    private long readVarLong() throws IOException {
+        
+        long value = 0;
+        
+        for (int shift = 0; shift < 64; shift += 7) {
+            final byte b = input.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        
+        throw new IOException("Malformed varint");
+    }
+    
+    private String readString() throws IOException {
+        final byte[] bytes = new byte[(int) readVarLong()];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Connected events carry the session and user ids, request events the request envelope in JSON.
+     */
+    @Getter
+    @ToString
+    @AllArgsConstructor
+    public static class Event {
+        
+        private final int kind;
+        private final long offsetNanos;
+        private final int connection;
+        private final String sessionId;
+        private final String userId;
+        private final String request;
+        
+    }
+    
+}
@@ -0,0 +1,66 @@
+package live.socialchat.load.replay;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Settings of a replay over sockets, given as {@code --name=value} arguments after {@code replay}:
+ * <ul>
+ *     <li>{@code file}: capture replayed</li>
+ *     <li>{@code url}: chat endpoint, {@code ws://localhost:8080/chat} by default</li>
+ *     <li>{@code speed}: how many times faster than captured the events are replayed, {@code 0} for as fast as
+ *     possible</li>
+ *     <li>{@code stub-auth-port}: port of the stubbed auth service, {@code 0} to use one already running</li>
+ *     <li>{@code report-interval}: seconds between progress reports</li>
+ * </ul>
+ */
+@Getter
+@Builder
+@ToString
+public class ReplaySettings {
+    
+    private static final Set<String> NAMES = new HashSet<>(Arrays.asList(
+        "file", "url", "speed", "stub-auth-port", "report-interval"
+    ));
+    
+    private final String file;
+    private final String url;
+    private final double speed;
+    private final int stubAuthPort;
+    private final int reportInterval;
+    
+    public static ReplaySettings fromArgs(final String[] args) {
+        
+        final Map<String, String> values = new HashMap<>();
+        
+        for (String arg : args) {
+            
+            final int separator = arg.indexOf('=');
+            
+            if (!arg.startsWith("--") || separator < 0 || !NAMES.contains(arg.substring(2, separator))) {
+                throw new IllegalArgumentException("Unknown argument " + arg + ", expected --name=value with name one of " + NAMES);
+            }
+            
+            values.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        
+        if (!values.containsKey("file")) {
+            throw new IllegalArgumentException("The capture to replay must be given with --file");
+        }
+        
+        return ReplaySettings.builder()
+            .file(values.get("file"))
+            .url(values.getOrDefault("url", "ws://localhost:8080/chat"))
+            .speed(Double.parseDouble(values.getOrDefault("speed", "1")))
+            .stubAuthPort(Integer.parseInt(values.getOrDefault("stub-auth-port", "9099")))
+            .reportInterval(Integer.parseInt(values.getOrDefault("report-interval", "5")))
+            .build();
+    }
+    
+}
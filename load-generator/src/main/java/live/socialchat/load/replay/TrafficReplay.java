@@ -0,0 +1,197 @@
+package live.socialchat.load.replay;
+
+import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import live.socialchat.load.LoadConnection;
+import live.socialchat.load.LoadStats;
+import live.socialchat.load.StubAuthServer;
+import live.socialchat.load.Traffic;
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * Replays a capture over real sockets: each captured connection is opened as its user, through the stubbed auth
+ * service, and sends the captured requests as they were received, at the captured pace sped up by {@code speed}.
+ * Replaying the same capture against two versions of the node compares them on the same traffic. Responses are timed
+ * as by the load generator, except chat messages, which are only counted as their content isn't stamped.
+ * Run it with {@code java -jar social-chat-load-generator.jar replay --file=chat-traffic.cap --speed=2}.
+ */
+public class TrafficReplay {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(TrafficReplay.class);
+    private static final String HEADER = String.format("%-16s %10s %10s %8s %8s %8s %8s %8s",
+        "traffic", "sent", "received", "p50", "p90", "p99", "p99.9", "max");
+    private static final long DRAIN_MILLIS = 2000;
+    
+    private final ReplaySettings settings;
+    private final LoadStats stats = new LoadStats();
+    private final HttpClient httpClient = HttpClient.create(ConnectionProvider.newConnection());
+    private final Map<Integer, LoadConnection> connections = new HashMap<>();
+    private final Map<Traffic, Histogram> latencies = new EnumMap<>(Traffic.class);
+    private final Histogram lagMicros = new Histogram(3);
+    
+    public TrafficReplay(final ReplaySettings settings) {
+        this.settings = settings;
+        for (Traffic traffic : Traffic.values()) {
+            latencies.put(traffic, new Histogram(3));
+        }
+    }
+    
+    public static void main(final String[] args) throws Exception {
+        
+        final ReplaySettings settings = ReplaySettings.fromArgs(args);
+        
+        LOGGER.info("Replaying with {}", settings);
+        
+        new TrafficReplay(settings).run();
+        
+        System.exit(0);
+    }
+    
+    public void run() throws Exception {
+        
+        final StubAuthServer stubAuthServer = (settings.getStubAuthPort() > 0)
+            ? StubAuthServer.start(settings.getStubAuthPort())
+            : null;
+        
+        try (CaptureFile captureFile = new CaptureFile(Paths.get(settings.getFile()))) {
+            
+            final long start = System.nanoTime();
+            long nextReport = start + TimeUnit.SECONDS.toNanos(settings.getReportInterval());
+            long events = 0;
+            CaptureFile.Event event;
+            
+            while ((event = captureFile.next()) != null) {
+                
+                lagMicros.recordValue(TimeUnit.NANOSECONDS.toMicros(awaitDue(start, event.getOffsetNanos())));
+                dispatch(event);
+                events++;
+                
+                if (System.nanoTime() >= nextReport) {
+                    LOGGER.info("Replayed {} events, {} connections open, {} failed", events,
+                        stats.connected() - stats.closed(), stats.failed());
+                    nextReport += TimeUnit.SECONDS.toNanos(settings.getReportInterval());
+                }
+            }
+            
+            Thread.sleep(DRAIN_MILLIS);
+            
+            LOGGER.info("Replayed {} events in {}ms, late by p50 {}us, p99 {}us and max {}us", events,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), lagMicros.getValueAtPercentile(50),
+                lagMicros.getValueAtPercentile(99), lagMicros.getMaxValue());
+            report();
+            
+        } finally {
+            connections.values().forEach(LoadConnection::close);
+            if (stubAuthServer != null) {
+                stubAuthServer.stop();
+            }
+        }
+        
+    }
+    
+    /**
+     * Waits until the event is due at the replay speed, returning how late it is.
+     */
+    private long awaitDue(final long start, final long offsetNanos) throws InterruptedException {
+        
+        if (settings.getSpeed() <= 0) {
+            return 0;
+        }
+        
+        final long due = start + (long) (offsetNanos / settings.getSpeed());
+        long now = System.nanoTime();
+        
+        if (due > now) {
+            TimeUnit.NANOSECONDS.sleep(due - now);
+            now = System.nanoTime();
+        }
+        
+        return Math.max(now - due, 0);
+    }
+    
+    /**
+     * Requests of a connection sent before its handshake completes are queued until it does.
+     */
+    private void dispatch(final CaptureFile.Event event) {
+        
+        switch (event.getKind()) {
+            case CaptureFile.CONNECTED:
+                final LoadConnection connection = new LoadConnection(
+                    event.getUserId() + "-r" + event.getConnection(), settings.getUrl(), stats, false);
+                connections.put(event.getConnection(), connection);
+                connection.connect(httpClient)
+                    .subscribe(null, error -> LOGGER.warn("Connection {} failed. Reason {}", event.getConnection(), error.getMessage()));
+                break;
+            case CaptureFile.REQUEST:
+                final LoadConnection requestConnection = connections.get(event.getConnection());
+                if (requestConnection != null) {
+                    requestConnection.send(traffic(event.getRequest()), event.getRequest(), System.nanoTime());
+                }
+                break;
+            case CaptureFile.DISCONNECTED:
+                final LoadConnection closedConnection = connections.remove(event.getConnection());
+                if (closedConnection != null) {
+                    closedConnection.close();
+                }
+                break;
+            default:
+                break;
+        }
+        
+    }
+    
+    private static Traffic traffic(final String request) {
+        
+        if (request.contains("\"type\":\"USER_MESSAGE\"")) {
+            return request.contains("\"destinationType\":\"ALL_USERS_GROUP\"")
+                ? Traffic.ALL_USERS_GROUP
+                : Traffic.USER_MESSAGE;
+        } else if (request.contains("\"type\":\"PING\"")) {
+            return Traffic.PING;
+        } else if (request.contains("\"type\":\"CHAT_HISTORY\"")) {
+            return Traffic.CHAT_HISTORY;
+        } else if (request.contains("\"type\":\"CONTACTS_LIST\"")) {
+            return Traffic.CONTACTS_LIST;
+        }
+        
+        return null;
+    }
+    
+    private void report() {
+        
+        LOGGER.info(HEADER);
+        
+        for (Traffic traffic : Traffic.values()) {
+            
+            final Histogram histogram = latencies.get(traffic);
+            histogram.add(stats.intervalLatencies(traffic));
+            
+            if (histogram.getTotalCount() == 0 && (stats.sent(traffic) > 0 || stats.received(traffic) > 0)) {
+                LOGGER.info(String.format("%-16s %10d %10d", traffic, stats.sent(traffic), stats.received(traffic)));
+            } else if (histogram.getTotalCount() > 0) {
+                LOGGER.info(String.format("%-16s %10d %10d %8.2f %8.2f %8.2f %8.2f %8.2f",
+                    traffic, stats.sent(traffic), stats.received(traffic),
+                    millis(histogram.getValueAtPercentile(50)),
+                    millis(histogram.getValueAtPercentile(90)),
+                    millis(histogram.getValueAtPercentile(99)),
+                    millis(histogram.getValueAtPercentile(99.9)),
+                    millis(histogram.getMaxValue())));
+            }
+        }
+        
+        LOGGER.info("Connections {} opened, {} failed, {} invalid requests, {} reconnects", stats.connected(),
+            stats.failed(), stats.invalidRequests(), stats.reconnects());
+    }
+    
+    private static double millis(final long micros) {
+        return micros / 1000.0;
+    }
+    
+}
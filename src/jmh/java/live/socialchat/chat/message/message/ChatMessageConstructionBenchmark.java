@@ -0,0 +1,82 @@
+package live.socialchat.chat.message.message;
+
+import java.time.OffsetDateTime;
+import java.util.concurrent.TimeUnit;
+import live.socialchat.chat.message.message.ChatMessage.DestinationType;
+import live.socialchat.chat.message.message.ChatMessage.MimeType;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Builds the {@link ChatMessage} stored and broadcast for every received chat message, as the chat message service
+ * does, and its parts on their own: the id, the date and the builder with both precomputed. Run with the GC profiler
+ * to get the bytes allocated per message:
+ * {@code mvn -Pjmh test-compile exec:exec -Djmh.args="-prof gc ChatMessageConstructionBenchmark"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChatMessageConstructionBenchmark {
+
+    private static final String CONTENT = "Hey, are we still on for the review at 3pm? I pushed the changes we discussed";
+
+    private ChatMessage receivedMessage;
+    private ObjectId objectId;
+    private String date;
+
+    @Setup
+    public void setUp() {
+        receivedMessage = new ChatMessage((String) null, null, DestinationType.USER, "5fa0f6e8e0b5a4321c2a10ff", CONTENT, MimeType.TEXT, null);
+        objectId = new ObjectId();
+        date = OffsetDateTime.now().toString();
+    }
+
+    @Benchmark
+    public ChatMessage chatMessage() {
+        return ChatMessage.builder()
+            .objectId(new ObjectId())
+            .from("5fa0f6e8e0b5a4321c2a10b0")
+            .date(OffsetDateTime.now().toString())
+            .destinationId(receivedMessage.getDestinationId())
+            .destinationType(receivedMessage.getDestinationType())
+            .content(receivedMessage.getContent())
+            .mimeType(receivedMessage.getMimeType())
+            .build();
+    }
+
+    @Benchmark
+    public ChatMessage builder() {
+        return ChatMessage.builder()
+            .objectId(objectId)
+            .from("5fa0f6e8e0b5a4321c2a10b0")
+            .date(date)
+            .destinationId(receivedMessage.getDestinationId())
+            .destinationType(receivedMessage.getDestinationType())
+            .content(receivedMessage.getContent())
+            .mimeType(receivedMessage.getMimeType())
+            .build();
+    }
+
+    @Benchmark
+    public ObjectId objectId() {
+        return new ObjectId();
+    }
+
+    @Benchmark
+    public String date() {
+        return OffsetDateTime.now().toString();
+    }
+
+}
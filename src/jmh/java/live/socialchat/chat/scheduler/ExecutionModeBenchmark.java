@@ -0,0 +1,90 @@
+package live.socialchat.chat.scheduler;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Fans a message out to {@code connections} sessions whose blocking send takes {@code sendMicros}, through the
+ * delivery executor of each {@link ExecutionMode}. Sample time mode reports the p99 of the whole fanout, which is
+ * the delivery latency of the last recipient. VIRTUAL needs JDK 21, e.g.:
+ * {@code mvn -Pjmh test-compile exec:exec -Djmh.args="-jvm /opt/jdk-21/bin/java ExecutionModeBenchmark"}
+ * <p>
+ * Connection density and end-to-end p99 over real sockets are compared between the modes by
+ * {@code compare-execution-modes.sh}, with the load generator.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExecutionModeBenchmark {
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    private ExecutionMode executionMode;
+
+    @Param({"100", "1000"})
+    private int connections;
+
+    @Param({"200"})
+    private long sendMicros;
+
+    private ChatSchedulers chatSchedulers;
+    private ExecutorService deliveryExecutor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        if (executionMode == ExecutionMode.VIRTUAL && !VirtualThreads.isSupported()) {
+            throw new IllegalStateException("VIRTUAL mode needs a JDK with virtual threads, run with -jvm <jdk-21>");
+        }
+
+        final SchedulerSettings settings = SchedulerSettings.builder()
+            .name("benchmark")
+            .threads(Runtime.getRuntime().availableProcessors())
+            .queueCapacity(100_000)
+            .rejectionPolicy(RejectionPolicy.CALLER_RUNS)
+            .build();
+
+        chatSchedulers = new ChatSchedulers(executionMode, settings, settings, settings, new SimpleMeterRegistry());
+        deliveryExecutor = chatSchedulers.deliveryExecutor();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        chatSchedulers.dispose();
+    }
+
+    @Benchmark
+    public void fanout() throws InterruptedException {
+
+        final CountDownLatch delivered = new CountDownLatch(connections);
+        final long sendNanos = TimeUnit.MICROSECONDS.toNanos(sendMicros);
+
+        for (int i = 0; i < connections; i++) {
+            deliveryExecutor.execute(() -> {
+                LockSupport.parkNanos(sendNanos);
+                delivered.countDown();
+            });
+        }
+
+        delivered.await();
+    }
+
+}
@@ -0,0 +1,286 @@
+package live.socialchat.chat.websocket;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.lang.reflect.Proxy;
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.websocket.Session;
+import live.socialchat.chat.broadcast.BroadcasterService;
+import live.socialchat.chat.conversation.ConversationSettings;
+import live.socialchat.chat.conversation.ConversationSummaries;
+import live.socialchat.chat.conversation.InMemoryConversationRepository;
+import live.socialchat.chat.message.ChatMessageServiceImpl;
+import live.socialchat.chat.message.MessageDates;
+import live.socialchat.chat.message.MessageRepository;
+import live.socialchat.chat.message.message.ChatHistoryRequest;
+import live.socialchat.chat.message.message.ChatMessage;
+import live.socialchat.chat.message.message.ChatMessage.DestinationType;
+import live.socialchat.chat.message.message.ChatMessage.MimeType;
+import live.socialchat.chat.message.message.Message;
+import live.socialchat.chat.message.message.ResponseMessage;
+import live.socialchat.chat.scheduler.BackgroundTasks;
+import live.socialchat.chat.scheduler.ChatSchedulers;
+import live.socialchat.chat.scheduler.ExecutionMode;
+import live.socialchat.chat.scheduler.RejectionPolicy;
+import live.socialchat.chat.scheduler.SchedulerSettings;
+import live.socialchat.chat.session.session.ChatSession;
+import live.socialchat.chat.session.session.UserAuthenticationDetails;
+import live.socialchat.chat.trace.MessageTrace;
+import live.socialchat.chat.websocket.filter.AccessTokenFilter.LoggedInUser;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import reactor.core.publisher.Flux;
+
+/**
+ * Allocations of the inbound path of a chat message on the JSR-356 transport, through the real
+ * {@link ChatEndpointController}, {@link ChatMessageServiceImpl} and {@link MessageDates}, from the session of the
+ * endpoint up to the message handed to the repository and the broadcaster, which are stubs. {@code chatMessage} is
+ * the path with the chat session cached on the connection, and {@code chatMessagePerMessageSession} the same path with
+ * the chat session built per message, as it was. The ingest executor runs tasks on the calling thread, so that its
+ * queueing doesn't blur the comparison, and the conversation summaries are never flushed, as their background task
+ * isn't started. Compare {@code gc.alloc.rate.norm}, the bytes per message:
+ * {@code mvn -Pjmh test-compile exec:exec -Djmh.args="-prof gc InboundPathAllocationBenchmark"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InboundPathAllocationBenchmark {
+
+    private static final String CONTENT = "Hey, are we still on for the review at 3pm? I pushed the changes we discussed";
+
+    private ChatSchedulers chatSchedulers;
+    private ChatEndpointController chatEndpointController;
+    private ChatMessageServiceImpl chatMessageService;
+    private Session session;
+    private LoggedInUser loggedInUser;
+    private ChatMessage receivedMessage;
+    private Blackhole blackhole;
+
+    @Setup
+    public void setUp(final Blackhole blackhole) {
+
+        final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        final SchedulerSettings settings = SchedulerSettings.builder()
+            .name("benchmark")
+            .threads(1)
+            .queueCapacity(1000)
+            .rejectionPolicy(RejectionPolicy.CALLER_RUNS)
+            .build();
+
+        this.blackhole = blackhole;
+        this.chatSchedulers = new CallerRunsChatSchedulers(settings, meterRegistry);
+        this.chatEndpointController = new ChatEndpointController(null, new WebSocketMessageSender(chatSchedulers, meterRegistry, 1000));
+        this.chatMessageService = new ChatMessageServiceImpl(
+            chatSchedulers,
+            null,
+            null,
+            new BlackholeMessageRepository(),
+            new BlackholeBroadcasterService(),
+            new ConversationSummaries(new InMemoryConversationRepository(),
+                ConversationSettings.builder().flushInterval(TimeUnit.HOURS.toMillis(1)).batchSize(500).build(),
+                new BackgroundTasks(),
+                meterRegistry),
+            null,
+            100,
+            1000
+        );
+
+        this.loggedInUser = LoggedInUser.builder()
+            .sessionId("5fa0f6e8e0b5a4321c2a10c1")
+            .userAuthenticationDetails(new UserAuthenticationDetails("5fa0f6e8e0b5a4321c2a10b0", "token"))
+            .build();
+        this.session = session(loggedInUser, new HashMap<>());
+        this.receivedMessage = new ChatMessage((String) null, null, DestinationType.USER, "5fa0f6e8e0b5a4321c2a10ff", CONTENT, MimeType.TEXT, null);
+
+        chatEndpointController.chatSession(session);
+    }
+
+    @TearDown
+    public void tearDown() {
+        chatSchedulers.dispose();
+    }
+
+    @Benchmark
+    public void chatMessage() {
+        chatMessageService.handleChatMessage(chatEndpointController.chatSession(session), receivedMessage, MessageTrace.NONE);
+    }
+
+    @Benchmark
+    public void chatMessagePerMessageSession() {
+
+        final ChatSession chatSession = ChatSession.builder()
+            .id(loggedInUser.getSessionId())
+            .userAuthenticationDetails(loggedInUser.getUserAuthenticationDetails())
+            .connection(chatEndpointController.chatSession(session).getConnection())
+            .connectionId(session.getId())
+            .build();
+
+        chatMessageService.handleChatMessage(chatSession, receivedMessage, MessageTrace.NONE);
+    }
+
+    @Benchmark
+    public ChatSession chatSession() {
+        return chatEndpointController.chatSession(session);
+    }
+
+    @Benchmark
+    public String date() {
+        return OffsetDateTime.now().toString();
+    }
+
+    @Benchmark
+    public String cachedDate() {
+        return MessageDates.now();
+    }
+
+    /**
+     * JSR-356 session of an authenticated user, supporting only what the endpoint reads from it.
+     */
+    private static Session session(final LoggedInUser loggedInUser, final Map<String, Object> userProperties) {
+        return (Session) Proxy.newProxyInstance(Session.class.getClassLoader(), new Class<?>[] {Session.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getUserProperties":
+                    return userProperties;
+                case "getUserPrincipal":
+                    return loggedInUser;
+                case "getId":
+                    return "1";
+                case "getNegotiatedSubprotocol":
+                    return null;
+                case "isOpen":
+                    return true;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    private static final class CallerRunsChatSchedulers extends ChatSchedulers {
+
+        private final ExecutorService callerRunsExecutor = new CallerRunsExecutorService();
+
+        private CallerRunsChatSchedulers(final SchedulerSettings settings, final SimpleMeterRegistry meterRegistry) {
+            super(ExecutionMode.PLATFORM, settings, settings, settings, meterRegistry);
+        }
+
+        @Override
+        public ExecutorService ingestExecutor() {
+            return callerRunsExecutor;
+        }
+
+    }
+
+    private final class BlackholeMessageRepository implements MessageRepository {
+
+        @Override
+        public void insert(final ChatMessage chatMessage, final MessageTrace messageTrace) {
+            blackhole.consume(chatMessage);
+        }
+
+        @Override
+        public Flux<ChatMessage> findMessages(final String senderId,
+                                              final DestinationType destinationType,
+                                              final ChatHistoryRequest chatHistoryRequest) {
+            return Flux.empty();
+        }
+
+        @Override
+        public Flux<ChatMessage> findMessagesSince(final Collection<String> destinationIds, final ObjectId lastMessageId, final int limit) {
+            return Flux.empty();
+        }
+
+        @Override
+        public boolean flush(final long timeoutMillis) {
+            return true;
+        }
+
+    }
+
+    private final class BlackholeBroadcasterService implements BroadcasterService {
+
+        @Override
+        public void broadcastChatMessage(final ChatSession chatSession, final ResponseMessage<ChatMessage> message) {
+            blackhole.consume(message);
+        }
+
+        @Override
+        public void broadcastToAllExceptSession(final ChatSession chatSession, final Message message) {
+            blackhole.consume(message);
+        }
+
+        @Override
+        public void broadcastToAllUsers(final Message message) {
+            blackhole.consume(message);
+        }
+
+        @Override
+        public void broadcastToUser(final String userId, final Message message) {
+            blackhole.consume(message);
+        }
+
+        @Override
+        public void broadcastToSession(final ChatSession chatSession, final Message message) {
+            blackhole.consume(message);
+        }
+
+    }
+
+    private static final class CallerRunsExecutorService extends AbstractExecutorService {
+
+        @Override
+        public void execute(final Runnable command) {
+            command.run();
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(final long timeout, final TimeUnit unit) {
+            return false;
+        }
+
+    }
+
+}
@@ -0,0 +1,132 @@
+package live.socialchat.chat.websocket.codec;
+
+import com.google.gson.Gson;
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.websocket.EncodeException;
+import live.socialchat.chat.contact.Contact;
+import live.socialchat.chat.contact.Contact.ContactType;
+import live.socialchat.chat.group.model.Group;
+import live.socialchat.chat.message.message.ChatHistoryResponse;
+import live.socialchat.chat.message.message.ChatMessage;
+import live.socialchat.chat.message.message.ChatMessage.DestinationType;
+import live.socialchat.chat.message.message.ChatMessage.MimeType;
+import live.socialchat.chat.message.message.MessageType;
+import live.socialchat.chat.message.message.ResponseMessage;
+import live.socialchat.chat.user.model.User;
+import live.socialchat.chat.websocket.encoder.ResponseMessageEncoder;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the Gson reflection encoding previously used by the WebSocket encoders with {@link JsonCodec}, directly
+ * and through the {@link ResponseMessageEncoder} the JSR-356 endpoint encodes text frames with. Run with
+ * the GC profiler to get the bytes allocated per message:
+ * {@code mvn -Pjmh test-compile exec:exec -Djmh.args="-prof gc ResponseMessageEncodingBenchmark"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseMessageEncodingBenchmark {
+
+    private static final Gson GSON = new Gson();
+
+    @Param({"USER_MESSAGE", "CONTACTS_LIST", "CHAT_HISTORY"})
+    private MessageType messageType;
+
+    private final ResponseMessageEncoder encoder = new ResponseMessageEncoder();
+
+    private ResponseMessage<?> responseMessage;
+
+    @Setup
+    public void setUp() {
+        switch (messageType) {
+            case USER_MESSAGE:
+                responseMessage = new ResponseMessage<>(MessageType.USER_MESSAGE, chatMessage(0));
+                break;
+            case CONTACTS_LIST:
+                responseMessage = new ResponseMessage<>(MessageType.CONTACTS_LIST, contacts(50, 5));
+                break;
+            case CHAT_HISTORY:
+                responseMessage = new ResponseMessage<>(MessageType.CHAT_HISTORY, chatHistory(10));
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported message type " + messageType);
+        }
+    }
+
+    @Benchmark
+    public String gson() {
+        return GSON.toJson(responseMessage);
+    }
+
+    @Benchmark
+    public String codec() throws IOException {
+        return JsonCodec.encode(responseMessage);
+    }
+
+    @Benchmark
+    public String encoder() throws EncodeException {
+        return encoder.encode(responseMessage);
+    }
+
+    private static ChatMessage chatMessage(final int index) {
+        return ChatMessage.builder()
+            .objectId(new ObjectId())
+            .from("5fa0f6e8e0b5a4321c2a10b" + (index % 10))
+            .destinationId("5fa0f6e8e0b5a4321c2a10ff")
+            .destinationType(DestinationType.USER)
+            .content("Hey, are we still on for the review at 3pm? I pushed the changes we discussed " + index)
+            .mimeType(MimeType.TEXT)
+            .date(OffsetDateTime.now().toString())
+            .build();
+    }
+
+    private static ChatHistoryResponse chatHistory(final int size) {
+        final List<ChatMessage> chatHistory = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            chatHistory.add(chatMessage(i));
+        }
+        return new ChatHistoryResponse("5fa0f6e8e0b5a4321c2a10ff", chatHistory);
+    }
+
+    private static List<Contact> contacts(final int users, final int groups) {
+        final List<Contact> contacts = new ArrayList<>(users + groups);
+        for (int i = 0; i < users; i++) {
+            contacts.add(User.builder()
+                .id("5fa0f6e8e0b5a4321c2a1" + String.format("%03d", i))
+                .name("User Number " + i)
+                .avatar("https://www.socialchat.live/avatars/" + i + ".png")
+                .description("Available")
+                .contactType(ContactType.USER)
+                .build());
+        }
+        for (int i = 0; i < groups; i++) {
+            contacts.add(Group.builder()
+                .id("group-" + i)
+                .name("Group " + i)
+                .avatar("https://www.socialchat.live/groups/" + i + ".png")
+                .description("Group description " + i)
+                .contactType(ContactType.GROUP)
+                .build());
+        }
+        return contacts;
+    }
+
+}
@@ -0,0 +1,104 @@
+package live.socialchat.chat.websocket.decoder;
+
+import java.util.concurrent.TimeUnit;
+import javax.websocket.DecodeException;
+import live.socialchat.chat.message.message.ChatHistoryRequest;
+import live.socialchat.chat.message.message.ChatMessage;
+import live.socialchat.chat.message.message.RequestMessage;
+import live.socialchat.chat.websocket.encoder.PayloadEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Decodes the inbound requests of the protocol: the envelope through {@link RequestMessageDecoder}, the payload through
+ * {@link PayloadEncoder#decodePayload(Object, Class)}, and both, as every text frame goes through. Chat messages are
+ * decoded with short, typical and long contents. Run with the GC profiler to get the bytes allocated per request:
+ * {@code mvn -Pjmh test-compile exec:exec -Djmh.args="-prof gc RequestMessageDecodingBenchmark"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestMessageDecodingBenchmark {
+
+    @Param({"PING", "CHAT_HISTORY", "SHORT_MESSAGE", "MESSAGE", "LONG_MESSAGE"})
+    private Request request;
+
+    private final RequestMessageDecoder decoder = new RequestMessageDecoder();
+
+    private String json;
+    private RequestMessage<?> requestMessage;
+
+    @Setup
+    public void setUp() throws DecodeException {
+        json = request.json();
+        requestMessage = decoder.decode(json);
+    }
+
+    @Benchmark
+    public RequestMessage<?> decode() throws DecodeException {
+        return decoder.decode(json);
+    }
+
+    @Benchmark
+    public Object decodePayload() {
+        return PayloadEncoder.decodePayload(requestMessage.getPayload(), request.payloadType);
+    }
+
+    @Benchmark
+    public Object decodeRequestAndPayload() throws DecodeException {
+        return PayloadEncoder.decodePayload(decoder.decode(json).getPayload(), request.payloadType);
+    }
+
+    public enum Request {
+
+        PING(Object.class, 0),
+        CHAT_HISTORY(ChatHistoryRequest.class, 0),
+        SHORT_MESSAGE(ChatMessage.class, 16),
+        MESSAGE(ChatMessage.class, 256),
+        LONG_MESSAGE(ChatMessage.class, 4096);
+
+        private final Class<?> payloadType;
+        private final int contentLength;
+
+        Request(final Class<?> payloadType, final int contentLength) {
+            this.payloadType = payloadType;
+            this.contentLength = contentLength;
+        }
+
+        String json() {
+            switch (this) {
+                case PING:
+                    return "{\"type\":\"PING\"}";
+                case CHAT_HISTORY:
+                    return "{\"seqId\":7,\"type\":\"CHAT_HISTORY\",\"payload\":{\"destinationId\":\"5fa0f6e8e0b5a4321c2a10ff\","
+                        + "\"lastMessageId\":\"5fa0f6e8e0b5a4321c2a10b0\"}}";
+                default:
+                    return "{\"seqId\":42,\"type\":\"USER_MESSAGE\",\"payload\":{\"destinationId\":\"5fa0f6e8e0b5a4321c2a10ff\","
+                        + "\"destinationType\":\"USER\",\"content\":\"" + content(contentLength) + "\",\"mimeType\":\"TEXT\"}}";
+            }
+        }
+
+        private static String content(final int length) {
+            final String sentence = "Hey, are we still on for the review at 3pm? I pushed the changes we discussed. ";
+            final StringBuilder content = new StringBuilder(length);
+            while (content.length() < length) {
+                content.append(sentence);
+            }
+            return content.substring(0, length);
+        }
+
+    }
+
+}
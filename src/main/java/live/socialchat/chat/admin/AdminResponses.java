@@ -0,0 +1,79 @@
+package live.socialchat.chat.admin;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import java.net.InetSocketAddress;
+import java.util.List;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+/**
+ * Helpers shared by the {@link AdminRoutes}.
+ */
+public final class AdminResponses {
+    
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    
+    private AdminResponses() {
+    
+    }
+    
+    /**
+     * Sends the body serialized as JSON.
+     */
+    public static Publisher<Void> json(final HttpServerResponse response, final Mono<?> body) {
+        return response
+            .header(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON)
+            .sendString(body.map(value -> {
+                try {
+                    return OBJECT_MAPPER.writeValueAsString(value);
+                } catch (Exception e) {
+                    throw new IllegalStateException("Failed to serialize admin response", e);
+                }
+            }));
+    }
+    
+    public static Publisher<Void> status(final HttpServerResponse response, final HttpResponseStatus status) {
+        return response.status(status).send();
+    }
+    
+    /**
+     * Whether the request comes from the loopback interface. Only the metrics are served to other hosts, as the admin
+     * server may listen on every interface for them to be scraped, and actions changing the state of the node check it
+     * again.
+     */
+    public static boolean isLocal(final HttpServerRequest request) {
+        final InetSocketAddress remoteAddress = request.remoteAddress();
+        return remoteAddress != null && remoteAddress.getAddress() != null && remoteAddress.getAddress().isLoopbackAddress();
+    }
+    
+    public static String param(final HttpServerRequest request, final String name, final String defaultValue) {
+        
+        final List<String> values = new QueryStringDecoder(request.uri()).parameters().get(name);
+        
+        return (values == null || values.isEmpty())
+            ? defaultValue
+            : values.get(0);
+    }
+    
+    public static int intParam(final HttpServerRequest request, final String name, final int defaultValue) {
+        
+        final String value = param(request, name, null);
+        
+        if (value == null) {
+            return defaultValue;
+        }
+        
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+    
+}
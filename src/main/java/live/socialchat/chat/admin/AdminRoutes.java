@@ -0,0 +1,13 @@
+package live.socialchat.chat.admin;
+
+import reactor.netty.http.server.HttpServerRoutes;
+
+/**
+ * Routes served by the {@link AdminServer}. Components implementing it have their routes registered when the server
+ * starts.
+ */
+public interface AdminRoutes {
+    
+    void register(HttpServerRoutes routes);
+    
+}
@@ -0,0 +1,93 @@
+package live.socialchat.chat.admin;
+
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.prometheus.client.exporter.common.TextFormat;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerRoutes;
+
+/**
+ * HTTP server for operators, separate from the chat transports, serving the Prometheus scrape endpoint on
+ * {@code /metrics} and the routes of the {@link AdminRoutes} components. It starts before the chat server and stops after it, so the drain can be observed.
+ * Only {@code /metrics} is served to remote hosts when it listens on other interfaces than the loopback: the other
+ * routes expose user and session ids or act on the node, and get a 403.
+ */
+@Component
+public class AdminServer implements SmartLifecycle {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(AdminServer.class);
+    private static final String METRICS_PATH = "/metrics";
+    
+    private final PrometheusMeterRegistry meterRegistry;
+    private final List<AdminRoutes> adminRoutes;
+    private final AdminServerSettings settings;
+    
+    private volatile DisposableServer server;
+    
+    public AdminServer(final PrometheusMeterRegistry meterRegistry,
+                       final List<AdminRoutes> adminRoutes,
+                       final AdminServerSettings settings) {
+        this.meterRegistry = meterRegistry;
+        this.adminRoutes = adminRoutes;
+        this.settings = settings;
+    }
+    
+    @Override
+    public void start() {
+        
+        if (!settings.isEnabled()) {
+            LOGGER.info("Admin server disabled");
+            return;
+        }
+        
+        final HttpServerRoutes routes = HttpServerRoutes.newRoutes();
+        
+        routes.get(METRICS_PATH, (request, response) -> response
+            .header(HttpHeaderNames.CONTENT_TYPE, TextFormat.CONTENT_TYPE_004)
+            .sendString(Mono.fromCallable(meterRegistry::scrape)));
+        adminRoutes.forEach(adminRoute -> adminRoute.register(routes));
+        
+        server = HttpServer.create()
+            .host(settings.getAddress())
+            .port(settings.getPort())
+            .handle((request, response) -> (isMetrics(request) || AdminResponses.isLocal(request))
+                ? routes.apply(request, response)
+                : AdminResponses.status(response, HttpResponseStatus.FORBIDDEN))
+            .bindNow();
+        
+        LOGGER.info("Admin server listening on {}:{}", settings.getAddress(), server.port());
+    }
+    
+    @Override
+    public void stop() {
+        if (server != null) {
+            server.disposeNow();
+            server = null;
+        }
+    }
+    
+    @Override
+    public boolean isRunning() {
+        return server != null;
+    }
+    
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+    
+    private static boolean isMetrics(final HttpServerRequest request) {
+        return METRICS_PATH.equals(new QueryStringDecoder(request.uri()).path());
+    }
+    
+}
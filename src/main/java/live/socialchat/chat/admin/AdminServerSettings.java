@@ -0,0 +1,21 @@
+package live.socialchat.chat.admin;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Settings of the admin HTTP server, read from the {@code admin.server.*} properties. It listens on its own port so
+ * that it can be reached while the chat server is saturated or draining. It listens on the loopback interface by
+ * default; on other addresses, only the metrics are served to remote hosts.
+ */
+@Getter
+@Builder
+@ToString
+public class AdminServerSettings {
+    
+    private final boolean enabled;
+    private final String address;
+    private final int port;
+    
+}
@@ -0,0 +1,240 @@
+package live.socialchat.chat.admin;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import live.socialchat.chat.broadcast.FanoutTracker;
+import live.socialchat.chat.message.MessageRepository;
+import live.socialchat.chat.session.SessionRepository;
+import live.socialchat.chat.session.session.ChatSession;
+import live.socialchat.chat.websocket.DrainSettings;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+import reactor.netty.http.server.HttpServerRoutes;
+
+/**
+ * Live state of the node, to debug a hot node without a heap dump:
+ * <ul>
+ *     <li>{@code GET /sessions/users}: local sessions by user, most connected users first</li>
+ *     <li>{@code GET /sessions/queues}: outbound queue depth of the local sessions, slowest consumers first</li>
+ *     <li>{@code GET /fanout}: destinations which messages were queued on the most connections</li>
+ *     <li>{@code GET /executors}: backlog, activity and rejections of the schedulers</li>
+ *     <li>{@code GET /mongo}: connection pool of each MongoDB server</li>
+ *     <li>{@code POST /sessions/{sessionId}/disconnect}: closes a session as going away</li>
+ *     <li>{@code POST /flush}: evicts the closed sessions from the local sessions, waits for the pending message
+ *     inserts and resets the fanout counts</li>
+ * </ul>
+ * Listings take an optional {@code limit}. Like every admin route but the metrics, they're only served to the loopback
+ * interface.
+ */
+@Component
+public class DiagnosticsAdminRoutes implements AdminRoutes {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(DiagnosticsAdminRoutes.class);
+    private static final int DEFAULT_LIMIT = 100;
+    private static final String SCHEDULER_PREFIX = "chat.scheduler.";
+    
+    private final SessionRepository sessionRepository;
+    private final MessageRepository messageRepository;
+    private final FanoutTracker fanoutTracker;
+    private final MeterRegistry meterRegistry;
+    private final DrainSettings drainSettings;
+    
+    public DiagnosticsAdminRoutes(final SessionRepository sessionRepository,
+                                  final MessageRepository messageRepository,
+                                  final FanoutTracker fanoutTracker,
+                                  final MeterRegistry meterRegistry,
+                                  final DrainSettings drainSettings) {
+        this.sessionRepository = sessionRepository;
+        this.messageRepository = messageRepository;
+        this.fanoutTracker = fanoutTracker;
+        this.meterRegistry = meterRegistry;
+        this.drainSettings = drainSettings;
+    }
+    
+    @Override
+    public void register(final HttpServerRoutes routes) {
+        routes
+            .get("/sessions/users", this::sessionsByUser)
+            .get("/sessions/queues", this::sessionQueues)
+            .get("/fanout", this::fanout)
+            .get("/executors", (request, response) -> AdminResponses.json(response,
+                Mono.fromCallable(() -> meterValues(this::isSchedulerMeter, this::schedulerName))))
+            .get("/mongo", (request, response) -> AdminResponses.json(response,
+                Mono.fromCallable(() -> meterValues(meter -> meter.getId().getName().startsWith("mongodb.driver.pool."),
+                    meter -> meter.getId().getTag("server.address")))))
+            .post("/sessions/{sessionId}/disconnect", this::disconnect)
+            .post("/flush", this::flush);
+    }
+    
+    private Publisher<Void> sessionsByUser(final HttpServerRequest request, final HttpServerResponse response) {
+        
+        final int limit = AdminResponses.intParam(request, "limit", DEFAULT_LIMIT);
+        
+        return AdminResponses.json(response, sessionRepository.findAllLocalSessions()
+            .collectList()
+            .map(sessions -> {
+                
+                final Map<String, Long> sessionsByUser = sessions.stream()
+                    .collect(Collectors.groupingBy(this::userId, Collectors.counting()));
+                
+                final Map<String, Object> body = new LinkedHashMap<>();
+                body.put("sessions", sessions.size());
+                body.put("users", sessionsByUser.size());
+                body.put("byUser", sessionsByUser.entrySet()
+                    .stream()
+                    .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                    .limit(limit)
+                    .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, Long::sum, LinkedHashMap::new)));
+                
+                return body;
+            }));
+    }
+    
+    private Publisher<Void> sessionQueues(final HttpServerRequest request, final HttpServerResponse response) {
+        
+        final int limit = AdminResponses.intParam(request, "limit", DEFAULT_LIMIT);
+        
+        return AdminResponses.json(response, sessionRepository.findAllLocalSessions()
+            .collectList()
+            .map(sessions -> {
+                
+                final Map<String, Object> body = new LinkedHashMap<>();
+                body.put("pending", sessions.stream().mapToLong(session -> session.getConnection().pending()).sum());
+                body.put("slowest", sessions.stream()
+                    .sorted(Comparator.comparingInt((ChatSession session) -> session.getConnection().pending()).reversed())
+                    .limit(limit)
+                    .map(this::sessionQueue)
+                    .collect(Collectors.toList()));
+                
+                return body;
+            }));
+    }
+    
+    private Map<String, Object> sessionQueue(final ChatSession chatSession) {
+        
+        final Map<String, Object> sessionQueue = new LinkedHashMap<>();
+        
+        sessionQueue.put("sessionId", chatSession.getSessionId());
+        sessionQueue.put("userId", userId(chatSession));
+        sessionQueue.put("wireFormat", chatSession.getConnection().getWireFormat());
+        sessionQueue.put("open", chatSession.isOpen());
+        sessionQueue.put("pending", chatSession.getConnection().pending());
+        
+        return sessionQueue;
+    }
+    
+    private Publisher<Void> fanout(final HttpServerRequest request, final HttpServerResponse response) {
+        
+        final int limit = AdminResponses.intParam(request, "limit", DEFAULT_LIMIT);
+        
+        return AdminResponses.json(response, Mono.fromCallable(() -> {
+            
+            final Map<String, Object> body = new LinkedHashMap<>();
+            body.put("untracked", fanoutTracker.untracked());
+            body.put("top", fanoutTracker.top(limit));
+            
+            return body;
+        }));
+    }
+    
+    private Publisher<Void> disconnect(final HttpServerRequest request, final HttpServerResponse response) {
+        
+        if (!AdminResponses.isLocal(request)) {
+            return AdminResponses.status(response, HttpResponseStatus.FORBIDDEN);
+        }
+        
+        final String sessionId = request.param("sessionId");
+        
+        return sessionRepository.findAllLocalSessions()
+            .filter(chatSession -> chatSession.getSessionId().equals(sessionId))
+            .next()
+            .flatMap(chatSession -> {
+                LOGGER.info("Disconnecting session {} on admin request", sessionId);
+                chatSession.getConnection().close();
+                return Mono.from(AdminResponses.status(response, HttpResponseStatus.NO_CONTENT));
+            })
+            .switchIfEmpty(Mono.defer(() -> Mono.from(AdminResponses.status(response, HttpResponseStatus.NOT_FOUND))));
+    }
+    
+    /**
+     * Waits for the inserts on a bounded elastic thread, as it blocks for up to the flush timeout.
+     */
+    private Publisher<Void> flush(final HttpServerRequest request, final HttpServerResponse response) {
+        
+        if (!AdminResponses.isLocal(request)) {
+            return AdminResponses.status(response, HttpResponseStatus.FORBIDDEN);
+        }
+        
+        return AdminResponses.json(response, sessionRepository.findAllLocalSessions()
+            .filter(chatSession -> !chatSession.isOpen())
+            .concatMap(chatSession -> sessionRepository.deleteSession(chatSession).thenReturn(chatSession))
+            .count()
+            .flatMap(evictedSessions -> Mono.fromCallable(() -> {
+                
+                final Map<String, Object> body = new LinkedHashMap<>();
+                body.put("evictedSessions", evictedSessions);
+                body.put("insertsFlushed", messageRepository.flush(drainSettings.getFlushTimeout()));
+                body.put("fanoutDestinationsReset", fanoutTracker.reset());
+                
+                LOGGER.info("Flushed on admin request: {}", body);
+                
+                return body;
+            }).subscribeOn(Schedulers.boundedElastic())));
+    }
+    
+    /**
+     * Current value of the gauges and counters matching the filter, grouped by the given key.
+     */
+    private Map<String, Map<String, Double>> meterValues(final Predicate<Meter> filter,
+                                                         final Function<Meter, String> groupBy) {
+        
+        final Map<String, Map<String, Double>> values = new TreeMap<>();
+        
+        meterRegistry.getMeters()
+            .stream()
+            .filter(filter)
+            .filter(meter -> meter.getId().getType() == Meter.Type.GAUGE || meter.getId().getType() == Meter.Type.COUNTER)
+            .forEach(meter -> values
+                .computeIfAbsent(String.valueOf(groupBy.apply(meter)), group -> new TreeMap<>())
+                .put(meter.getId().getName(), meter.measure().iterator().next().getValue()));
+        
+        return values;
+    }
+    
+    private String userId(final ChatSession chatSession) {
+        return chatSession.getUserAuthenticationDetails().getUserId();
+    }
+    
+    private boolean isSchedulerMeter(final Meter meter) {
+        
+        final String name = meter.getId().getName();
+        final String schedulerName = meter.getId().getTag("name");
+        
+        return schedulerName != null && (name.startsWith("executor") || name.startsWith(SCHEDULER_PREFIX));
+    }
+    
+    private String schedulerName(final Meter meter) {
+        
+        final String schedulerName = meter.getId().getTag("name");
+        
+        return schedulerName.startsWith(SCHEDULER_PREFIX)
+            ? schedulerName.substring(SCHEDULER_PREFIX.length())
+            : schedulerName;
+    }
+    
+}
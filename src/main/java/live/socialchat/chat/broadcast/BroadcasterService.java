@@ -9,6 +9,7 @@ public interface BroadcasterService {
     
     void broadcastChatMessage(ChatSession chatSession, ResponseMessage<ChatMessage> message);
     void broadcastToAllExceptSession(ChatSession chatSession, Message message);
+    void broadcastToAllUsers(Message message);
     void broadcastToUser(String userId, Message message);
     void broadcastToSession(ChatSession chatSession, Message message);
     
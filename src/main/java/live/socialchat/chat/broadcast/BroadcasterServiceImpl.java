@@ -1,18 +1,27 @@
 package live.socialchat.chat.broadcast;
 
-import java.util.concurrent.ExecutorService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import live.socialchat.chat.logging.LogMarkers;
 import live.socialchat.chat.message.message.ChatMessage;
 import live.socialchat.chat.message.message.ChatMessage.DestinationType;
 import live.socialchat.chat.message.message.Message;
+import live.socialchat.chat.message.message.MessageType;
 import live.socialchat.chat.message.message.ResponseMessage;
+import live.socialchat.chat.metrics.MessageTypeMeters;
+import live.socialchat.chat.resume.SessionResumption;
 import live.socialchat.chat.session.SessionRepository;
 import live.socialchat.chat.session.session.ChatSession;
+import live.socialchat.chat.trace.TraceStage;
+import live.socialchat.chat.websocket.WebSocketMessageSender;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
-import reactor.core.scheduler.Schedulers;
 
 /**
  * Broadcaster of messages to online users. Users not online should receive messages via push notification triggered by
@@ -22,16 +31,30 @@ import reactor.core.scheduler.Schedulers;
 public class BroadcasterServiceImpl implements BroadcasterService {
     
     private static final Logger LOGGER = LoggerFactory.getLogger(BroadcasterServiceImpl.class);
+    private static final double[] FANOUT_BUCKETS = {1, 2, 5, 10, 50, 100, 500, 1_000, 5_000, 10_000};
     
-    private final ExecutorService executorService;
     private final SessionRepository sessionRepository;
+    private final WebSocketMessageSender webSocketMessageSender;
+    private final FanoutTracker fanoutTracker;
+    private final SessionResumption sessionResumption;
+    private final Map<MessageType, Timer> broadcastTimers;
+    private final Map<MessageType, DistributionSummary> fanoutSummaries;
     
     @Autowired
-    public BroadcasterServiceImpl(final ExecutorService executorService,
-                                  final SessionRepository sessionRepository) {
+    public BroadcasterServiceImpl(final SessionRepository sessionRepository,
+                                  final WebSocketMessageSender webSocketMessageSender,
+                                  final FanoutTracker fanoutTracker,
+                                  final SessionResumption sessionResumption,
+                                  final MeterRegistry meterRegistry) {
         
-        this.executorService = executorService;
         this.sessionRepository = sessionRepository;
+        this.webSocketMessageSender = webSocketMessageSender;
+        this.fanoutTracker = fanoutTracker;
+        this.sessionResumption = sessionResumption;
+        this.broadcastTimers = MessageTypeMeters.timers(meterRegistry, "chat.broadcast",
+            "Time taken to find the destination sessions of a message and queue it on their connections");
+        this.fanoutSummaries = MessageTypeMeters.summaries(meterRegistry, "chat.broadcast.fanout",
+            "Local connections a message was queued on", FANOUT_BUCKETS);
     }
     
     @Override
@@ -44,12 +67,14 @@ public class BroadcasterServiceImpl implements BroadcasterService {
     
         switch (destinationType) {
             case USER:
+                sessionResumption.record(destinationId, message);
                 broadcastToUser(destinationId, message);
-                LOGGER.info("Messaged sent from user {} to user {}", senderUserId, destinationId);
+                LOGGER.info(LogMarkers.HOT_PATH, "Messaged sent from user {} to user {}", senderUserId, destinationId);
                 break;
             case ALL_USERS_GROUP:
+                sessionResumption.recordForAll(message);
                 broadcastToAllExceptSession(chatSession, message);
-                LOGGER.info("Messaged sent from user {} to all users", senderUserId);
+                LOGGER.info(LogMarkers.HOT_PATH, "Messaged sent from user {} to all users", senderUserId);
                 break;
             default:
                 LOGGER.error("Failed to deliver message to destination type " + destinationType);
@@ -60,49 +85,65 @@ public class BroadcasterServiceImpl implements BroadcasterService {
     @Override
     public void broadcastToAllExceptSession(final ChatSession chatSession,
                                             final Message message) {
-
+    
         final Flux<ChatSession> sessions = sessionRepository.findAllActiveSessions()
             .filter(session -> !session.getConnectionId().equals(chatSession.getConnectionId()));
     
-        broadcast(sessions, message);
+        broadcast(sessions, message, DestinationType.ALL_USERS_GROUP.name());
         
     }
     
+    @Override
+    public void broadcastToAllUsers(final Message message) {
+        broadcast(sessionRepository.findAllActiveSessions(), message, DestinationType.ALL_USERS_GROUP.name());
+    }
+    
     @Override
     public void broadcastToUser(final String userId, final Message chatMessage) {
-        broadcast(sessionRepository.findAllActiveSessionsByUser(userId), chatMessage);
+        broadcast(sessionRepository.findAllActiveSessionsByUser(userId), chatMessage, userId);
     }
     
     @Override
     public void broadcastToSession(final ChatSession chatSession, final Message message) {
-        broadcast(Flux.just(chatSession), message);
+        broadcast(Flux.just(chatSession), message, null);
     }
     
-    private void broadcast(final Flux<ChatSession> sessions, final Message message) {
+    /**
+     * Queues the message on each session's outbound queue. Queuing doesn't block, so the sessions are consumed on
+     * whichever thread emits them and the blocking sends happen on the delivery executor. The fanout and the time
+     * taken are recorded once every session is served, along with the fanout of the destination, unless the message is
+     * a reply to a single session.
+     */
+    private void broadcast(final Flux<ChatSession> sessions, final Message message, final String destination) {
+    
+        final long start = System.nanoTime();
+        final int[] fanout = new int[1];
+    
+        message.getTrace().mark(TraceStage.FANOUT_STARTED);
     
         sessions
-            .publishOn(Schedulers.fromExecutorService(executorService))
             .subscribe(chatSession -> {
-                try {
-                    if (chatSession.isOpen()) {
-                        
-                        if (chatSession.isLocal()) {
-                            chatSession
-                                .getWebSocketSession()
-                                .getBasicRemote()
-                                .sendObject(message);
-                        } else {
-                            LOGGER.info("Can't handle remote session. Operation not supported");
-                        }
-                        
+                if (chatSession.isOpen()) {
+                    
+                    if (chatSession.isLocal()) {
+                        webSocketMessageSender.send(chatSession.getConnection(), message);
+                        fanout[0]++;
                     } else {
-                        sessionRepository.deleteSession(chatSession);
-                        LOGGER.error("Can't send message to session {} because session is not opened", chatSession.getId());
+                        LOGGER.info(LogMarkers.HOT_PATH, "Can't handle remote session. Operation not supported");
                     }
-                } catch (Exception e) {
-                    LOGGER.error("Error occurred while sending message to session {}. Reason: {}", chatSession.getId(), e.getMessage());
+                    
+                } else {
+                    sessionRepository.deleteSession(chatSession);
+                    LOGGER.error("Can't send message to session {} because session is not opened", chatSession.getId());
                 }
-            });
+            }, error -> LOGGER.error("Failed to broadcast message of type {}. Reason: {}", message.getType(), error.getMessage()),
+                () -> {
+                    broadcastTimers.get(message.getType()).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    fanoutSummaries.get(message.getType()).record(fanout[0]);
+                    if (destination != null) {
+                        fanoutTracker.record(destination, fanout[0]);
+                    }
+                });
      
     }
     
@@ -0,0 +1,95 @@
+package live.socialchat.chat.broadcast;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts the messages broadcast to each destination and the connections they were queued on, to find the hottest
+ * destinations of a node. At most {@code maxDestinations} are tracked, so that the counts can't grow with the number
+ * of users. Broadcasts to destinations beyond those are only counted as untracked, until the counts are reset by the
+ * admin server's {@code POST /flush} to track the destinations hot from then on.
+ */
+@Component
+public class FanoutTracker {
+    
+    private final Map<String, DestinationFanout> destinations = new ConcurrentHashMap<>();
+    private final LongAdder untracked = new LongAdder();
+    private final int maxDestinations;
+    
+    public FanoutTracker(@Value("${admin.fanout.max-destinations:10000}") final int maxDestinations) {
+        this.maxDestinations = maxDestinations;
+    }
+    
+    void record(final String destination, final int fanout) {
+        
+        DestinationFanout destinationFanout = destinations.get(destination);
+        
+        if (destinationFanout == null) {
+            if (destinations.size() >= maxDestinations) {
+                untracked.increment();
+                return;
+            }
+            destinationFanout = destinations.computeIfAbsent(destination, DestinationFanout::new);
+        }
+        
+        destinationFanout.messages.increment();
+        destinationFanout.recipients.add(fanout);
+    }
+    
+    /**
+     * Destinations which messages were queued on the most connections.
+     */
+    public List<DestinationFanout> top(final int limit) {
+        return destinations.values()
+            .stream()
+            .sorted(Comparator.comparingLong(DestinationFanout::getRecipients).reversed())
+            .limit(limit)
+            .collect(Collectors.toList());
+    }
+    
+    public long untracked() {
+        return untracked.sum();
+    }
+    
+    /**
+     * Drops the counts, returning the number of destinations tracked.
+     */
+    public int reset() {
+        
+        final int tracked = destinations.size();
+        
+        destinations.clear();
+        untracked.reset();
+        
+        return tracked;
+    }
+    
+    public static class DestinationFanout {
+        
+        @Getter
+        private final String destination;
+        private final LongAdder messages = new LongAdder();
+        private final LongAdder recipients = new LongAdder();
+        
+        DestinationFanout(final String destination) {
+            this.destination = destination;
+        }
+        
+        public long getMessages() {
+            return messages.sum();
+        }
+        
+        public long getRecipients() {
+            return recipients.sum();
+        }
+        
+    }
+    
+}
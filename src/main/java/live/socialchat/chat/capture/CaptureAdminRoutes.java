@@ -0,0 +1,92 @@
+package live.socialchat.chat.capture;
+
+import io.netty.handler.codec.http.HttpResponseStatus;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import live.socialchat.chat.admin.AdminResponses;
+import live.socialchat.chat.admin.AdminRoutes;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+import reactor.netty.http.server.HttpServerRoutes;
+
+/**
+ * Controls the traffic capture of a running node:
+ * <ul>
+ *     <li>{@code GET /capture}: whether it's capturing and to which file</li>
+ *     <li>{@code POST /capture/start}: starts capturing to the optional {@code file}, {@code chat.capture.file} by
+ *     default</li>
+ *     <li>{@code POST /capture/stop}: stops capturing once the queued events are written</li>
+ * </ul>
+ * Actions are only accepted from the loopback interface.
+ */
+@Component
+public class CaptureAdminRoutes implements AdminRoutes {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(CaptureAdminRoutes.class);
+    
+    private final TrafficCapture trafficCapture;
+    private final CaptureSettings settings;
+    
+    public CaptureAdminRoutes(final TrafficCapture trafficCapture, final CaptureSettings settings) {
+        this.trafficCapture = trafficCapture;
+        this.settings = settings;
+    }
+    
+    @Override
+    public void register(final HttpServerRoutes routes) {
+        routes
+            .get("/capture", (request, response) -> AdminResponses.json(response, Mono.fromCallable(this::status)))
+            .post("/capture/start", this::start)
+            .post("/capture/stop", this::stop);
+    }
+    
+    private Publisher<Void> start(final HttpServerRequest request, final HttpServerResponse response) {
+        
+        if (!AdminResponses.isLocal(request)) {
+            return AdminResponses.status(response, HttpResponseStatus.FORBIDDEN);
+        }
+        
+        if (trafficCapture.isCapturing()) {
+            return AdminResponses.status(response, HttpResponseStatus.CONFLICT);
+        }
+        
+        return AdminResponses.json(response, Mono.fromCallable(() -> {
+            trafficCapture.start(Paths.get(AdminResponses.param(request, "file", settings.getFile())));
+            return status();
+        }).doOnError(error -> LOGGER.error("Failed to start capturing traffic. Reason {}", error.getMessage()))
+            .subscribeOn(Schedulers.boundedElastic()));
+    }
+    
+    /**
+     * Waits for the writer on a bounded elastic thread, as it blocks until the queued events are written.
+     */
+    private Publisher<Void> stop(final HttpServerRequest request, final HttpServerResponse response) {
+        
+        if (!AdminResponses.isLocal(request)) {
+            return AdminResponses.status(response, HttpResponseStatus.FORBIDDEN);
+        }
+        
+        return AdminResponses.json(response, Mono.fromCallable(() -> {
+            trafficCapture.stop();
+            return status();
+        }).subscribeOn(Schedulers.boundedElastic()));
+    }
+    
+    private Map<String, Object> status() {
+        
+        final Map<String, Object> status = new LinkedHashMap<>();
+        
+        status.put("capturing", trafficCapture.isCapturing());
+        status.put("file", (trafficCapture.getPath() != null) ? trafficCapture.getPath().toString() : null);
+        
+        return status;
+    }
+    
+}
@@ -0,0 +1,29 @@
+package live.socialchat.chat.capture;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Event read from a capture. Connections are numbered in the order they connected, their session and user are only
+ * given when they connect and requests are their envelope as received, in JSON.
+ */
+@Getter
+@Builder
+@ToString
+public class CaptureEvent {
+    
+    public enum Kind {
+        CONNECTED,
+        REQUEST,
+        DISCONNECTED
+    }
+    
+    private final Kind kind;
+    private final long offsetNanos;
+    private final int connection;
+    private final String sessionId;
+    private final String userId;
+    private final String request;
+    
+}
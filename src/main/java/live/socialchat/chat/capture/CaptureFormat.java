@@ -0,0 +1,64 @@
+package live.socialchat.chat.capture;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary layout of a capture. It starts with a header:
+ * <pre>
+ *     magic "SCCAP", version (1 byte), capture start in epoch milliseconds (8 bytes)
+ * </pre>
+ * followed by one record per event:
+ * <pre>
+ *     kind (1 byte), microseconds since the previous event (varint), connection (varint)
+ *     CONNECTED: session id (string), user id (string)
+ *     REQUEST: request envelope in JSON (string)
+ *     DISCONNECTED: nothing more
+ * </pre>
+ * where varints are unsigned LEB128 and strings are their UTF-8 length as a varint followed by their bytes.
+ */
+public final class CaptureFormat {
+    
+    static final byte[] MAGIC = "SCCAP".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 1;
+    
+    private CaptureFormat() {}
+    
+    static void writeVarLong(final DataOutput output, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            output.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        output.writeByte((int) value);
+    }
+    
+    static long readVarLong(final DataInput input) throws IOException {
+        
+        long value = 0;
+        
+        for (int shift = 0; shift < 64; shift += 7) {
+            final byte b = input.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        
+        throw new IOException("Malformed varint");
+    }
+    
+    static void writeString(final DataOutput output, final String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(output, bytes.length);
+        output.write(bytes);
+    }
+    
+    static String readString(final DataInput input) throws IOException {
+        final byte[] bytes = new byte[(int) readVarLong(input)];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+}
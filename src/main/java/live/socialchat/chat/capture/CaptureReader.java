@@ -0,0 +1,91 @@
+package live.socialchat.chat.capture;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import live.socialchat.chat.capture.CaptureEvent.Kind;
+
+/**
+ * Reads the events of a capture in order, as laid out by {@link CaptureFormat}.
+ */
+public class CaptureReader implements Closeable {
+    
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    private final DataInputStream input;
+    private final long startEpochMillis;
+    
+    private long offsetNanos;
+    
+    public CaptureReader(final Path path) throws IOException {
+        
+        this.input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE));
+        
+        final byte[] magic = new byte[CaptureFormat.MAGIC.length];
+        input.readFully(magic);
+        
+        if (!Arrays.equals(magic, CaptureFormat.MAGIC) || input.readUnsignedByte() != CaptureFormat.VERSION) {
+            input.close();
+            throw new IOException(path + " isn't a version " + CaptureFormat.VERSION + " capture");
+        }
+        
+        this.startEpochMillis = input.readLong();
+    }
+    
+    public long getStartEpochMillis() {
+        return startEpochMillis;
+    }
+    
+    /**
+     * Next event of the capture, or null once it's all read. A record cut short, as when the server stopped while
+     * capturing, ends the capture.
+     */
+    public CaptureEvent next() throws IOException {
+        
+        final int kind = input.read();
+        
+        if (kind < 0) {
+            return null;
+        }
+        
+        try {
+            
+            offsetNanos += TimeUnit.MICROSECONDS.toNanos(CaptureFormat.readVarLong(input));
+            
+            final CaptureEvent.CaptureEventBuilder event = CaptureEvent.builder()
+                .kind(Kind.values()[kind])
+                .offsetNanos(offsetNanos)
+                .connection((int) CaptureFormat.readVarLong(input));
+            
+            switch (Kind.values()[kind]) {
+                case CONNECTED:
+                    event.sessionId(CaptureFormat.readString(input))
+                        .userId(CaptureFormat.readString(input));
+                    break;
+                case REQUEST:
+                    event.request(CaptureFormat.readString(input));
+                    break;
+                default:
+                    break;
+            }
+            
+            return event.build();
+            
+        } catch (EOFException e) {
+            return null;
+        }
+        
+    }
+    
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+    
+}
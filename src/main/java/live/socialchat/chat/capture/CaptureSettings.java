@@ -0,0 +1,26 @@
+package live.socialchat.chat.capture;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Settings of the traffic capture, read from the {@code chat.capture.*} properties:
+ * <ul>
+ *     <li>enabled: whether the capture starts with the server, otherwise it's started through the admin server</li>
+ *     <li>file: file the capture is written to when none is given</li>
+ *     <li>queueCapacity: events waiting to be written, past which they're dropped</li>
+ *     <li>maxBytes: size at which the capture stops</li>
+ * </ul>
+ */
+@Getter
+@Builder
+@ToString
+public class CaptureSettings {
+    
+    private final boolean enabled;
+    private final String file;
+    private final int queueCapacity;
+    private final long maxBytes;
+    
+}
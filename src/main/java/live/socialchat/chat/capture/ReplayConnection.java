@@ -0,0 +1,76 @@
+package live.socialchat.chat.capture;
+
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import live.socialchat.chat.message.message.Message;
+import live.socialchat.chat.message.message.MessageType;
+import live.socialchat.chat.trace.TraceStage;
+import live.socialchat.chat.websocket.ChatConnection;
+import live.socialchat.chat.websocket.codec.WireFormat;
+
+/**
+ * Connection of a replayed session, counting the messages sent to it by type instead of writing them anywhere.
+ */
+class ReplayConnection implements ChatConnection {
+    
+    private final String id;
+    private final Map<MessageType, LongAdder> sentMessages;
+    
+    private volatile boolean open = true;
+    
+    ReplayConnection(final String id, final Map<MessageType, LongAdder> sentMessages) {
+        this.id = id;
+        this.sentMessages = sentMessages;
+    }
+    
+    @Override
+    public String getId() {
+        return id;
+    }
+    
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+    
+    @Override
+    public WireFormat getWireFormat() {
+        return WireFormat.JSON;
+    }
+    
+    @Override
+    public boolean send(final Message message) {
+        message.getTrace().mark(TraceStage.SENT);
+        sentMessages.get(message.getType()).increment();
+        return true;
+    }
+    
+    @Override
+    public int pending() {
+        return 0;
+    }
+    
+    /**
+     * Replayed sessions are driven by the capture, so they never go quiet.
+     */
+    @Override
+    public void ping() {
+    
+    }
+    
+    @Override
+    public long lastReceivedAt() {
+        return System.nanoTime();
+    }
+    
+    @Override
+    public void close() {
+        open = false;
+    }
+    
+    @Override
+    public void abort() {
+        close();
+    }
+    
+}
@@ -0,0 +1,24 @@
+package live.socialchat.chat.capture;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Settings of the in-process replay, read from the {@code chat.replay.*} properties:
+ * <ul>
+ *     <li>file: capture replayed once the server has started</li>
+ *     <li>speed: how many times faster than captured the events are replayed, {@code 0} for as fast as possible</li>
+ *     <li>exit: whether the server stops once the capture is replayed</li>
+ * </ul>
+ */
+@Getter
+@Builder
+@ToString
+public class ReplaySettings {
+    
+    private final String file;
+    private final double speed;
+    private final boolean exit;
+    
+}
@@ -0,0 +1,224 @@
+package live.socialchat.chat.capture;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import live.socialchat.chat.capture.CaptureEvent.Kind;
+import live.socialchat.chat.message.message.RequestMessage;
+import live.socialchat.chat.session.session.ChatSession;
+import live.socialchat.chat.websocket.codec.JsonCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Captures the decoded requests of every connection, with their timing and the connection they came from, so that
+ * the traffic can be replayed later by {@link TrafficReplayer} or the load generator. Receiving threads only queue
+ * the events; they're encoded and written by a single writer thread, and dropped when the queue is full rather than
+ * slowing down the connections. The capture stops on its own once it reaches {@code chat.capture.max-bytes}.
+ */
+@Component
+public class TrafficCapture {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(TrafficCapture.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long POLL_MILLIS = 100;
+    
+    private final CaptureSettings settings;
+    private final BlockingQueue<Event> events;
+    private final Counter capturedEvents;
+    private final Counter droppedEvents;
+    
+    private volatile boolean capturing;
+    private volatile Path path;
+    private Thread writer;
+    
+    public TrafficCapture(final CaptureSettings settings, final MeterRegistry meterRegistry) throws IOException {
+        
+        this.settings = settings;
+        this.events = new ArrayBlockingQueue<>(settings.getQueueCapacity());
+        this.capturedEvents = meterRegistry.counter("chat.capture.events", "outcome", "captured");
+        this.droppedEvents = meterRegistry.counter("chat.capture.events", "outcome", "dropped");
+        
+        if (settings.isEnabled()) {
+            start(Paths.get(settings.getFile()));
+        }
+        
+    }
+    
+    public boolean isCapturing() {
+        return capturing;
+    }
+    
+    public Path getPath() {
+        return path;
+    }
+    
+    public synchronized void start(final Path path) throws IOException {
+        
+        if (capturing) {
+            throw new IllegalStateException("Already capturing to " + this.path);
+        }
+        
+        final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), BUFFER_SIZE));
+        
+        output.write(CaptureFormat.MAGIC);
+        output.writeByte(CaptureFormat.VERSION);
+        output.writeLong(System.currentTimeMillis());
+        
+        events.clear();
+        
+        this.path = path;
+        this.capturing = true;
+        this.writer = new Thread(() -> write(output), "traffic-capture");
+        
+        writer.setDaemon(true);
+        writer.start();
+        
+        LOGGER.info("Capturing traffic to {}", path);
+    }
+    
+    /**
+     * Stops capturing, waiting for the events already queued to be written.
+     */
+    public synchronized void stop() throws InterruptedException {
+        
+        if (!capturing) {
+            return;
+        }
+        
+        capturing = false;
+        writer.join();
+        
+        LOGGER.info("Stopped capturing traffic to {}", path);
+    }
+    
+    public void connected(final ChatSession chatSession) {
+        if (capturing) {
+            offer(new Event(Kind.CONNECTED, chatSession, null));
+        }
+    }
+    
+    public void request(final ChatSession chatSession, final RequestMessage<?> requestMessage) {
+        if (capturing) {
+            offer(new Event(Kind.REQUEST, chatSession, requestMessage));
+        }
+    }
+    
+    public void disconnected(final ChatSession chatSession) {
+        if (capturing) {
+            offer(new Event(Kind.DISCONNECTED, chatSession, null));
+        }
+    }
+    
+    private void offer(final Event event) {
+        if (!events.offer(event)) {
+            droppedEvents.increment();
+        }
+    }
+    
+    /**
+     * Writes the queued events until the capture is stopped or full. Connections are numbered as they're first seen,
+     * so events of connections which were open before the capture started are written after a connected event too.
+     * Numbers are never reused, as a replay keys its connections by number while they're open.
+     */
+    private void write(final DataOutputStream output) {
+        
+        final Map<String, Integer> connections = new HashMap<>();
+        int nextConnection = 0;
+        long previousNanos = System.nanoTime();
+        
+        try (DataOutputStream out = output) {
+            
+            while (capturing || !events.isEmpty()) {
+                
+                final Event event = events.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                
+                if (event == null) {
+                    out.flush();
+                    continue;
+                }
+                
+                final String connectionId = event.chatSession.getConnectionId();
+                Integer connection = connections.get(connectionId);
+                
+                if (connection == null) {
+                    connection = nextConnection++;
+                    connections.put(connectionId, connection);
+                    previousNanos = writeRecord(out, Kind.CONNECTED, event.nanos, previousNanos, connection);
+                    CaptureFormat.writeString(out, event.chatSession.getId());
+                    CaptureFormat.writeString(out, event.chatSession.getUserAuthenticationDetails().getUserId());
+                }
+                
+                if (event.kind == Kind.REQUEST) {
+                    previousNanos = writeRecord(out, Kind.REQUEST, event.nanos, previousNanos, connection);
+                    CaptureFormat.writeString(out, JsonCodec.encode(event.requestMessage));
+                } else if (event.kind == Kind.DISCONNECTED) {
+                    previousNanos = writeRecord(out, Kind.DISCONNECTED, event.nanos, previousNanos, connection);
+                    connections.remove(connectionId);
+                }
+                
+                capturedEvents.increment();
+                
+                if (out.size() >= settings.getMaxBytes()) {
+                    LOGGER.warn("Traffic capture reached {} bytes, stopping", out.size());
+                    capturing = false;
+                }
+            }
+            
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            capturing = false;
+            LOGGER.error("Failed to capture traffic to {}. Reason {}", path, e.getMessage());
+        }
+        
+    }
+    
+    private static long writeRecord(final DataOutputStream out,
+                                    final Kind kind,
+                                    final long nanos,
+                                    final long previousNanos,
+                                    final int connection) throws IOException {
+        
+        final long eventNanos = Math.max(nanos, previousNanos);
+        
+        out.writeByte(kind.ordinal());
+        CaptureFormat.writeVarLong(out, TimeUnit.NANOSECONDS.toMicros(eventNanos - previousNanos));
+        CaptureFormat.writeVarLong(out, connection);
+        
+        return previousNanos + TimeUnit.MICROSECONDS.toNanos(TimeUnit.NANOSECONDS.toMicros(eventNanos - previousNanos));
+    }
+    
+    /**
+     * Requests are timed from when they were received by the transport, when the decoder recorded it.
+     */
+    private static class Event {
+        
+        private final Kind kind;
+        private final ChatSession chatSession;
+        private final RequestMessage<?> requestMessage;
+        private final long nanos;
+        
+        Event(final Kind kind, final ChatSession chatSession, final RequestMessage<?> requestMessage) {
+            this.kind = kind;
+            this.chatSession = chatSession;
+            this.requestMessage = requestMessage;
+            this.nanos = (requestMessage != null && requestMessage.getReceivedAt() != 0)
+                ? requestMessage.getReceivedAt()
+                : System.nanoTime();
+        }
+        
+    }
+    
+}
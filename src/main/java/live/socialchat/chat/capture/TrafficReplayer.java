@@ -0,0 +1,166 @@
+package live.socialchat.chat.capture;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import live.socialchat.chat.capture.CaptureEvent.Kind;
+import live.socialchat.chat.message.message.MessageType;
+import live.socialchat.chat.message.message.RequestMessage;
+import live.socialchat.chat.session.session.ChatSession;
+import live.socialchat.chat.session.session.UserAuthenticationDetails;
+import live.socialchat.chat.websocket.ChatProtocolHandler;
+import live.socialchat.chat.websocket.codec.JsonCodec;
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * Replays a capture in-process once the server has started, set with {@code chat.replay.file}. Each captured
+ * connection becomes a session whose requests are handed to the {@link ChatProtocolHandler} as a transport would,
+ * at the captured pace sped up by {@code chat.replay.speed}, and whose responses are counted rather than sent. Run
+ * with the {@code inmemory} profile, the same capture replays the same way against any version of the server, whose
+ * metrics and traces can then be compared on the admin server.
+ */
+@Component
+@ConditionalOnProperty(name = "chat.replay.file")
+public class TrafficReplayer implements ApplicationRunner {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(TrafficReplayer.class);
+    private static final String REPLAY_TOKEN = "replay";
+    
+    private final ChatProtocolHandler chatProtocolHandler;
+    private final ReplaySettings settings;
+    private final ConfigurableApplicationContext applicationContext;
+    
+    public TrafficReplayer(final ChatProtocolHandler chatProtocolHandler,
+                           final ReplaySettings settings,
+                           final ConfigurableApplicationContext applicationContext) {
+        this.chatProtocolHandler = chatProtocolHandler;
+        this.settings = settings;
+        this.applicationContext = applicationContext;
+    }
+    
+    @Override
+    public void run(final ApplicationArguments args) throws Exception {
+        
+        replay();
+        
+        if (settings.isExit()) {
+            System.exit(SpringApplication.exit(applicationContext));
+        }
+        
+    }
+    
+    private void replay() throws IOException, InterruptedException {
+        
+        final Map<Integer, ChatSession> sessions = new HashMap<>();
+        final Map<MessageType, LongAdder> sentMessages = new EnumMap<>(MessageType.class);
+        final Map<Kind, Long> replayedEvents = new EnumMap<>(Kind.class);
+        final Histogram lagMicros = new Histogram(3);
+        
+        for (MessageType messageType : MessageType.values()) {
+            sentMessages.put(messageType, new LongAdder());
+        }
+        
+        LOGGER.info("Replaying {}", settings);
+        
+        final long start = System.nanoTime();
+        
+        try (CaptureReader reader = new CaptureReader(Paths.get(settings.getFile()))) {
+            
+            CaptureEvent event;
+            
+            while ((event = reader.next()) != null) {
+                
+                final long lagNanos = awaitDue(start, event.getOffsetNanos());
+                lagMicros.recordValue(TimeUnit.NANOSECONDS.toMicros(lagNanos));
+                
+                dispatch(event, sessions, sentMessages);
+                replayedEvents.merge(event.getKind(), 1L, Long::sum);
+            }
+            
+        }
+        
+        sessions.values().forEach(this::disconnect);
+        
+        LOGGER.info("Replayed {} of {} in {}ms, late by p50 {}us, p99 {}us and max {}us. Messages sent {}", replayedEvents,
+            settings.getFile(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+            lagMicros.getValueAtPercentile(50), lagMicros.getValueAtPercentile(99), lagMicros.getMaxValue(),
+            sentMessages);
+    }
+    
+    /**
+     * Waits until the event is due at the replay speed, returning how late it is.
+     */
+    private long awaitDue(final long start, final long offsetNanos) throws InterruptedException {
+        
+        if (settings.getSpeed() <= 0) {
+            return 0;
+        }
+        
+        final long due = start + (long) (offsetNanos / settings.getSpeed());
+        long now = System.nanoTime();
+        
+        if (due > now) {
+            TimeUnit.NANOSECONDS.sleep(due - now);
+            now = System.nanoTime();
+        }
+        
+        return Math.max(now - due, 0);
+    }
+    
+    private void dispatch(final CaptureEvent event,
+                          final Map<Integer, ChatSession> sessions,
+                          final Map<MessageType, LongAdder> sentMessages) throws IOException {
+        
+        switch (event.getKind()) {
+            case CONNECTED:
+                final ChatSession chatSession = ChatSession.builder()
+                    .id(event.getSessionId())
+                    .userAuthenticationDetails(UserAuthenticationDetails.builder()
+                        .userId(event.getUserId())
+                        .token(REPLAY_TOKEN)
+                        .build())
+                    .connection(new ReplayConnection("replay-" + event.getConnection(), sentMessages))
+                    .connectionId("replay-" + event.getConnection())
+                    .build();
+                sessions.put(event.getConnection(), chatSession);
+                chatProtocolHandler.handleConnected(chatSession);
+                break;
+            case REQUEST:
+                final ChatSession requestSession = sessions.get(event.getConnection());
+                if (requestSession != null) {
+                    final long receivedAt = System.nanoTime();
+                    final RequestMessage<?> requestMessage = JsonCodec.decodeRequest(event.getRequest());
+                    requestMessage.decoded(receivedAt, System.nanoTime());
+                    chatProtocolHandler.handleRequest(requestSession, requestMessage);
+                }
+                break;
+            case DISCONNECTED:
+                final ChatSession closedSession = sessions.remove(event.getConnection());
+                if (closedSession != null) {
+                    disconnect(closedSession);
+                }
+                break;
+            default:
+                break;
+        }
+        
+    }
+    
+    private void disconnect(final ChatSession chatSession) {
+        chatSession.getConnection().close();
+        chatProtocolHandler.handleDisconnected(chatSession);
+    }
+    
+}
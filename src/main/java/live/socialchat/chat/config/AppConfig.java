@@ -1,17 +1,197 @@
 package live.socialchat.chat.config;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Arrays;
+import java.util.EnumSet;
+import live.socialchat.chat.capture.CaptureSettings;
+import live.socialchat.chat.capture.ReplaySettings;
+import live.socialchat.chat.conversation.ConversationSettings;
+import live.socialchat.chat.message.message.MessageType;
+import live.socialchat.chat.message.storage.MessageFormat;
+import live.socialchat.chat.message.storage.MessageStorageSettings;
+import live.socialchat.chat.overload.OverloadSettings;
+import live.socialchat.chat.ratelimit.RateLimit;
+import live.socialchat.chat.ratelimit.RateLimitSettings;
+import live.socialchat.chat.receipt.ReceiptSettings;
+import live.socialchat.chat.resume.ResumeSettings;
+import live.socialchat.chat.scheduler.ChatSchedulers;
+import live.socialchat.chat.scheduler.ExecutionMode;
+import live.socialchat.chat.scheduler.RejectionPolicy;
+import live.socialchat.chat.scheduler.SchedulerSettings;
+import live.socialchat.chat.websocket.DrainSettings;
+import live.socialchat.chat.websocket.KeepAliveSettings;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 
 @Configuration
 public class AppConfig {
     
+    private static final String INGEST = "ingest";
+    private static final String PERSISTENCE = "persistence";
+    private static final String DELIVERY = "delivery";
+    
+    @Bean(destroyMethod = "dispose")
+    public ChatSchedulers chatSchedulers(final Environment environment, final MeterRegistry meterRegistry) {
+        return new ChatSchedulers(
+            environment.getProperty("chat.execution.mode", ExecutionMode.class, ExecutionMode.PLATFORM),
+            schedulerSettings(environment, INGEST, RejectionPolicy.CALLER_RUNS),
+            schedulerSettings(environment, PERSISTENCE, RejectionPolicy.CALLER_RUNS),
+            schedulerSettings(environment, DELIVERY, RejectionPolicy.ABORT),
+            meterRegistry
+        );
+    }
+    
+    @Bean
+    public DrainSettings drainSettings(final Environment environment) {
+        return DrainSettings.builder()
+            .drainTimeout(environment.getProperty("chat.shutdown.drain-timeout", Long.class, 20_000L))
+            .reconnectJitter(environment.getProperty("chat.shutdown.reconnect-jitter", Long.class, 10_000L))
+            .flushTimeout(environment.getProperty("chat.shutdown.flush-timeout", Long.class, 5_000L))
+            .build();
+    }
+    
+    @Bean
+    public KeepAliveSettings keepAliveSettings(final Environment environment) {
+        return KeepAliveSettings.builder()
+            .enabled(environment.getProperty("chat.websocket.keep-alive.enabled", Boolean.class, true))
+            .pingInterval(environment.getProperty("chat.websocket.keep-alive.ping-interval", Long.class, 30_000L))
+            .idleTimeout(environment.getProperty("chat.websocket.keep-alive.idle-timeout", Long.class, 90_000L))
+            .build();
+    }
+    
+    @Bean
+    public MessageStorageSettings messageStorageSettings(final Environment environment) {
+        return MessageStorageSettings.builder()
+            .format(environment.getProperty("chat.message.storage.format", MessageFormat.class, MessageFormat.V2))
+            .migrationEnabled(environment.getProperty("chat.message.storage.migration.enabled", Boolean.class, true))
+            .migrationBatchSize(environment.getProperty("chat.message.storage.migration.batch-size", Integer.class, 500))
+            .migrationInterval(environment.getProperty("chat.message.storage.migration.interval", Long.class, 1_000L))
+            .migrationIdleInterval(environment.getProperty("chat.message.storage.migration.idle-interval", Long.class, 60_000L))
+            .v1WritersRetired(environment.getProperty("chat.message.storage.v1-writers-retired", Boolean.class, false))
+            .build();
+    }
+    
+    @Bean
+    public ConversationSettings conversationSettings(final Environment environment) {
+        return ConversationSettings.builder()
+            .flushInterval(environment.getProperty("chat.conversation.flush-interval", Long.class, 500L))
+            .batchSize(environment.getProperty("chat.conversation.batch-size", Integer.class, 500))
+            .build();
+    }
+    
+    @Bean
+    public ReceiptSettings receiptSettings(final Environment environment) {
+        return ReceiptSettings.builder()
+            .flushInterval(environment.getProperty("chat.receipt.flush-interval", Long.class, 1_000L))
+            .batchSize(environment.getProperty("chat.receipt.batch-size", Integer.class, 500))
+            .frameSize(environment.getProperty("chat.receipt.frame-size", Integer.class, 500))
+            .build();
+    }
+    
     @Bean
-    public ExecutorService executorService() {
+    public ResumeSettings resumeSettings(final Environment environment) {
+        return ResumeSettings.builder()
+            .enabled(environment.getProperty("chat.resume.enabled", Boolean.class, true))
+            .maxAge(environment.getProperty("chat.resume.max-age", Long.class, 60_000L))
+            .maxMessagesPerUser(environment.getProperty("chat.resume.max-messages-per-user", Integer.class, 256))
+            .maxBytes(environment.getProperty("chat.resume.max-bytes", Long.class, 64L * 1024 * 1024))
+            .sweepInterval(environment.getProperty("chat.resume.sweep-interval", Long.class, 1_000L))
+            .build();
+    }
+    
+    @Bean
+    public CaptureSettings captureSettings(final Environment environment) {
+        return CaptureSettings.builder()
+            .enabled(environment.getProperty("chat.capture.enabled", Boolean.class, false))
+            .file(environment.getProperty("chat.capture.file", "chat-traffic.cap"))
+            .queueCapacity(environment.getProperty("chat.capture.queue-capacity", Integer.class, 65_536))
+            .maxBytes(environment.getProperty("chat.capture.max-bytes", Long.class, 1024L * 1024 * 1024))
+            .build();
+    }
+    
+    @Bean
+    public ReplaySettings replaySettings(final Environment environment) {
+        return ReplaySettings.builder()
+            .file(environment.getProperty("chat.replay.file"))
+            .speed(environment.getProperty("chat.replay.speed", Double.class, 1.0))
+            .exit(environment.getProperty("chat.replay.exit", Boolean.class, false))
+            .build();
+    }
+    
+    @Bean
+    public RateLimitSettings rateLimitSettings(final Environment environment) {
+        return RateLimitSettings.builder()
+            .enabled(environment.getProperty("chat.rate-limit.enabled", Boolean.class, true))
+            .connectionLimit(MessageType.USER_MESSAGE, rateLimit(environment, "user-message.connection", 10, 20))
+            .userLimit(MessageType.USER_MESSAGE, rateLimit(environment, "user-message.user", 20, 40))
+            .connectionLimit(MessageType.CHAT_HISTORY, rateLimit(environment, "chat-history.connection", 5, 10))
+            .userLimit(MessageType.CHAT_HISTORY, rateLimit(environment, "chat-history.user", 10, 20))
+            .connectionLimit(MessageType.CONTACTS_LIST, rateLimit(environment, "contacts-list.connection", 1, 5))
+            .userLimit(MessageType.CONTACTS_LIST, rateLimit(environment, "contacts-list.user", 2, 10))
+            .connectionLimit(MessageType.SYNC, rateLimit(environment, "sync.connection", 1, 5))
+            .userLimit(MessageType.SYNC, rateLimit(environment, "sync.user", 2, 10))
+            .connectionLimit(MessageType.RECEIPT, rateLimit(environment, "receipt.connection", 5, 20))
+            .userLimit(MessageType.RECEIPT, rateLimit(environment, "receipt.user", 10, 40))
+            .connectionLimit(MessageType.RESUME, rateLimit(environment, "resume.connection", 1, 5))
+            .userLimit(MessageType.RESUME, rateLimit(environment, "resume.user", 2, 10))
+            .connectionLimit(MessageType.PING, rateLimit(environment, "ping.connection", 1, 5))
+            .userLimit(MessageType.PING, rateLimit(environment, "ping.user", 5, 20))
+            .allUsersGroupConnectionLimit(rateLimit(environment, "all-users-group.connection", 1, 5))
+            .allUsersGroupUserLimit(rateLimit(environment, "all-users-group.user", 1, 5))
+            .build();
+    }
+    
+    @Bean
+    public OverloadSettings overloadSettings(final Environment environment) {
+        
+        final MessageType[] deferredTypes = environment.getProperty("chat.overload.deferred.types", MessageType[].class,
+            new MessageType[]{MessageType.CONTACTS_LIST, MessageType.CHAT_HISTORY, MessageType.SYNC});
+        
+        return OverloadSettings.builder()
+            .enabled(environment.getProperty("chat.overload.enabled", Boolean.class, true))
+            .interval(environment.getProperty("chat.overload.interval", Long.class, 250L))
+            .queueDepthDefer(environment.getProperty("chat.overload.queue-depth.defer", Integer.class, 1_000))
+            .queueDepthReject(environment.getProperty("chat.overload.queue-depth.reject", Integer.class, 5_000))
+            .lagDefer(environment.getProperty("chat.overload.lag.defer", Long.class, 100L))
+            .lagReject(environment.getProperty("chat.overload.lag.reject", Long.class, 500L))
+            .persistenceLatencyDefer(environment.getProperty("chat.overload.persistence-latency.defer", Long.class, 250L))
+            .persistenceLatencyReject(environment.getProperty("chat.overload.persistence-latency.reject", Long.class, 1_000L))
+            .recovery(environment.getProperty("chat.overload.recovery", Long.class, 5_000L))
+            .retryAfter(environment.getProperty("chat.overload.retry-after", Long.class, 10L))
+            .deferredTypes(deferredTypes.length > 0 ? EnumSet.copyOf(Arrays.asList(deferredTypes)) : EnumSet.noneOf(MessageType.class))
+            .deferredCapacity(environment.getProperty("chat.overload.deferred.capacity", Integer.class, 10_000))
+            .deferredTimeout(environment.getProperty("chat.overload.deferred.timeout", Long.class, 10_000L))
+            .drainBatch(environment.getProperty("chat.overload.deferred.drain-batch", Integer.class, 500))
+            .build();
+    }
+    
+    private RateLimit rateLimit(final Environment environment,
+                                final String name,
+                                final double defaultRate,
+                                final int defaultBurst) {
+        
+        final String prefix = "chat.rate-limit." + name + ".";
+        
+        return new RateLimit(
+            environment.getProperty(prefix + "rate", Double.class, defaultRate),
+            environment.getProperty(prefix + "burst", Integer.class, defaultBurst)
+        );
+    }
+    
+    private SchedulerSettings schedulerSettings(final Environment environment,
+                                                final String name,
+                                                final RejectionPolicy defaultRejectionPolicy) {
+        
+        final String prefix = "chat.scheduler." + name + ".";
         final int cores = Runtime.getRuntime().availableProcessors();
-        return Executors.newFixedThreadPool(cores);
+        
+        return SchedulerSettings.builder()
+            .name(name)
+            .threads(environment.getProperty(prefix + "threads", Integer.class, cores))
+            .queueCapacity(environment.getProperty(prefix + "queue-capacity", Integer.class, 10_000))
+            .rejectionPolicy(environment.getProperty(prefix + "rejection-policy", RejectionPolicy.class, defaultRejectionPolicy))
+            .build();
     }
     
 }
@@ -2,14 +2,22 @@ package live.socialchat.chat.config;
 
 import live.socialchat.chat.session.session.ServerDetails;
 import live.socialchat.chat.websocket.ChatEndpointController;
+import live.socialchat.chat.websocket.jetty.CompressionSettings;
+import live.socialchat.chat.websocket.jetty.JettyServerSettings;
+import live.socialchat.chat.websocket.netty.NettyServerSettings;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 
 @Configuration
 public class JettyServerConfig {
+    
+    private static final String PORT_ENV = "PORT";
+    private static final int DEFAULT_SERVER_PORT = 8080;
 
     @Bean
     public ServerDetails serverDetails() {
@@ -24,5 +32,51 @@ public class JettyServerConfig {
             put(chatEndpointController.getClass(), chatEndpointController);
         }};
     }
+    
+    @Bean
+    public JettyServerSettings jettyServerSettings(final Environment environment) {
+        return JettyServerSettings.builder()
+            .port(environment.getProperty(PORT_ENV, Integer.class, DEFAULT_SERVER_PORT))
+            .sslEnabled(environment.getProperty("jetty.server.ssl.enabled", Boolean.class, false))
+            .sslCertificate(environment.getProperty("jetty.server.ssl.certificate"))
+            .sslPassword(environment.getProperty("jetty.server.ssl.password"))
+            .acceptors(environment.getProperty("jetty.server.acceptors", Integer.class, -1))
+            .selectors(environment.getProperty("jetty.server.selectors", Integer.class, -1))
+            .acceptQueueSize(environment.getProperty("jetty.server.accept-queue-size", Integer.class, 1024))
+            .idleTimeout(environment.getProperty("jetty.server.idle-timeout", Long.class, 30_000L))
+            .minThreads(environment.getProperty("jetty.server.threads.min", Integer.class, 8))
+            .maxThreads(environment.getProperty("jetty.server.threads.max", Integer.class, 200))
+            .threadIdleTimeout(environment.getProperty("jetty.server.threads.idle-timeout", Integer.class, 60_000))
+            .reservedThreads(environment.getProperty("jetty.server.threads.reserved", Integer.class, -1))
+            .maxTextMessageBufferSize(environment.getProperty("jetty.server.websocket.max-text-message-buffer-size", Integer.class, 65535))
+            .maxBinaryMessageBufferSize(environment.getProperty("jetty.server.websocket.max-binary-message-buffer-size", Integer.class, 65535))
+            .sessionIdleTimeout(environment.getProperty("jetty.server.websocket.session-idle-timeout", Long.class, 300_000L))
+            .asyncSendTimeout(environment.getProperty("jetty.server.websocket.async-send-timeout", Long.class, 60_000L))
+            .build();
+    }
+    
+    @Bean
+    @ConditionalOnProperty(name = "chat.transport", havingValue = "netty")
+    public NettyServerSettings nettyServerSettings(final Environment environment) {
+        return NettyServerSettings.builder()
+            .port(environment.getProperty(PORT_ENV, Integer.class, DEFAULT_SERVER_PORT))
+            .sslEnabled(environment.getProperty("jetty.server.ssl.enabled", Boolean.class, false))
+            .sslCertificate(environment.getProperty("jetty.server.ssl.certificate"))
+            .sslPassword(environment.getProperty("jetty.server.ssl.password"))
+            .maxFramePayloadLength(environment.getProperty("netty.server.websocket.max-frame-payload-length", Integer.class, 65535))
+            .compressionEnabled(environment.getProperty("netty.server.websocket.compression.enabled", Boolean.class, true))
+            .outboundBufferSize(environment.getProperty("chat.websocket.outbound.queue-capacity", Integer.class, 1000))
+            .build();
+    }
+    
+    @Bean
+    public CompressionSettings compressionSettings(final Environment environment) {
+        return CompressionSettings.builder()
+            .enabled(environment.getProperty("jetty.server.websocket.compression.enabled", Boolean.class, true))
+            .minSize(environment.getProperty("jetty.server.websocket.compression.min-size", Integer.class, 1024))
+            .serverContextTakeover(environment.getProperty("jetty.server.websocket.compression.server-context-takeover", Boolean.class, true))
+            .clientContextTakeover(environment.getProperty("jetty.server.websocket.compression.client-context-takeover", Boolean.class, true))
+            .build();
+    }
 
-}
\ No newline at end of file
+}
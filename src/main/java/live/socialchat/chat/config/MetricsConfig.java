@@ -0,0 +1,56 @@
+package live.socialchat.chat.config;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.jvm.JvmGcMetrics;
+import io.micrometer.core.instrument.binder.jvm.JvmMemoryMetrics;
+import io.micrometer.core.instrument.binder.jvm.JvmThreadMetrics;
+import io.micrometer.core.instrument.binder.system.ProcessorMetrics;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import live.socialchat.chat.admin.AdminServerSettings;
+import live.socialchat.chat.trace.TraceSettings;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+@Configuration
+public class MetricsConfig {
+    
+    /**
+     * The registry is also added to the global registry, through which the JSR-356 decoders, instantiated by the
+     * container rather than by Spring, record their meters.
+     */
+    @Bean
+    public PrometheusMeterRegistry meterRegistry() {
+        
+        final PrometheusMeterRegistry meterRegistry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        
+        new JvmMemoryMetrics().bindTo(meterRegistry);
+        new JvmGcMetrics().bindTo(meterRegistry);
+        new JvmThreadMetrics().bindTo(meterRegistry);
+        new ProcessorMetrics().bindTo(meterRegistry);
+        
+        Metrics.addRegistry(meterRegistry);
+        
+        return meterRegistry;
+    }
+    
+    @Bean
+    public AdminServerSettings adminServerSettings(final Environment environment) {
+        return AdminServerSettings.builder()
+            .enabled(environment.getProperty("admin.server.enabled", Boolean.class, true))
+            .address(environment.getProperty("admin.server.address", "127.0.0.1"))
+            .port(environment.getProperty("admin.server.port", Integer.class, 9091))
+            .build();
+    }
+    
+    @Bean
+    public TraceSettings traceSettings(final Environment environment) {
+        return TraceSettings.builder()
+            .enabled(environment.getProperty("chat.trace.enabled", Boolean.class, true))
+            .sampleRate(Math.max(1, environment.getProperty("chat.trace.sample-rate", Integer.class, 100)))
+            .ringSize(Math.max(1, environment.getProperty("chat.trace.ring-size", Integer.class, 256)))
+            .build();
+    }
+    
+}
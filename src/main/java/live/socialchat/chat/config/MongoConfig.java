@@ -6,17 +6,24 @@ import com.mongodb.MongoCredential;
 import com.mongodb.reactivestreams.client.MongoClient;
 import com.mongodb.reactivestreams.client.MongoClients;
 import com.mongodb.reactivestreams.client.MongoDatabase;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.mongodb.MongoMetricsConnectionPoolListener;
+import live.socialchat.chat.message.storage.ChatMessageCodec;
+import live.socialchat.chat.message.storage.MessageStorageSettings;
 import org.bson.codecs.configuration.CodecRegistry;
 import org.bson.codecs.pojo.PojoCodecProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 import org.springframework.core.env.Environment;
 
+import static org.bson.codecs.configuration.CodecRegistries.fromCodecs;
 import static org.bson.codecs.configuration.CodecRegistries.fromProviders;
 import static org.bson.codecs.configuration.CodecRegistries.fromRegistries;
 
 @Configuration
+@Profile("!inmemory")
 public class MongoConfig {
     
     private static final String CHAT_MONGO_SERVER = "CHAT_MONGO_SERVER";
@@ -36,7 +43,7 @@ public class MongoConfig {
     }
     
     @Bean
-    public MongoClient mongoClient(CodecRegistry codecRegistry) {
+    public MongoClient mongoClient(CodecRegistry codecRegistry, MeterRegistry meterRegistry) {
         
         final String server = getEnvOrLocalProperty(CHAT_MONGO_SERVER, "mongo.server");
         final String username = getEnvOrLocalProperty(CHAT_MONGO_USERNAME, "mongo.username");
@@ -53,6 +60,8 @@ public class MongoConfig {
             .credential(credential)
             .codecRegistry(codecRegistry)
             .applyConnectionString(new ConnectionString(connectionString))
+            .applyToConnectionPoolSettings(pool -> pool
+                .addConnectionPoolListener(new MongoMetricsConnectionPoolListener(meterRegistry)))
             .build();
         
         return MongoClients.create(mongoClientSettings);
@@ -65,11 +74,16 @@ public class MongoConfig {
             : environment.getProperty(propertyName);
     }
     
+    /**
+     * Chat messages go through their own codec, which writes the configured storage format and reads any of them,
+     * rather than through the automatic POJO codec.
+     */
     @Bean
-    public CodecRegistry codecRegistry() {
+    public CodecRegistry codecRegistry(final MessageStorageSettings messageStorageSettings) {
         return
-            fromRegistries(MongoClientSettings.getDefaultCodecRegistry(),
+            fromRegistries(fromCodecs(new ChatMessageCodec(messageStorageSettings.getFormat())),
+                MongoClientSettings.getDefaultCodecRegistry(),
                 fromProviders(PojoCodecProvider.builder().automatic(true).build()));
     }
-
+    
 }
@@ -0,0 +1,21 @@
+package live.socialchat.chat.conversation;
+
+import java.util.Collection;
+import java.util.List;
+import live.socialchat.chat.message.message.ConversationSummary;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface ConversationRepository {
+    
+    /**
+     * The user's direct conversations and the given groups, most recent first.
+     */
+    Flux<ConversationSummary> findSummaries(String userId, Collection<String> groupIds);
+    
+    /**
+     * Applies the coalesced updates, upserting their summaries.
+     */
+    Mono<Void> saveAll(List<SummaryUpdate> updates);
+    
+}
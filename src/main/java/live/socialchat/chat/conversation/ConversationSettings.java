@@ -0,0 +1,22 @@
+package live.socialchat.chat.conversation;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Conversation summaries, read from the {@code chat.conversation.*} properties:
+ * <ul>
+ *     <li>flushInterval: milliseconds the updates of the summaries are coalesced in memory before being written</li>
+ *     <li>batchSize: summaries written per bulk write</li>
+ * </ul>
+ */
+@Getter
+@Builder
+@ToString
+public class ConversationSettings {
+    
+    private final long flushInterval;
+    private final int batchSize;
+    
+}
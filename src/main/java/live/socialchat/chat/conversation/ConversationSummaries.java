@@ -0,0 +1,146 @@
+package live.socialchat.chat.conversation;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+import live.socialchat.chat.message.message.ChatMessage;
+import live.socialchat.chat.message.message.ChatMessage.DestinationType;
+import live.socialchat.chat.message.message.ConversationSummary;
+import live.socialchat.chat.scheduler.BackgroundTasks;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+/**
+ * Keeps the inbox of each user materialized, so that it loads with one read instead of a history query per
+ * conversation. Every chat message updates the summaries of its conversation in memory, where the updates to the same
+ * summary are coalesced, and every {@code flushInterval} they're written with batched upserts. A busy conversation
+ * costs one write per flush rather than one per message, and a group message updates the group's summary and the
+ * sender's read marker only, whatever the number of members.
+ * <p>
+ * Summaries are only as fresh as the last flush. Updates are counted in {@code chat.conversation.updates} when
+ * recorded and when written, and a failed flush drops its updates, logging the failure.
+ */
+@Component
+public class ConversationSummaries {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConversationSummaries.class);
+    private static final long FLUSH_TIMEOUT_MILLIS = 30_000;
+    
+    private final ConversationRepository conversationRepository;
+    private final ConversationSettings settings;
+    private final Map<String, SummaryUpdate> pending = new ConcurrentHashMap<>();
+    private final Counter recorded;
+    private final Counter written;
+    
+    public ConversationSummaries(final ConversationRepository conversationRepository,
+                                 final ConversationSettings settings,
+                                 final BackgroundTasks backgroundTasks,
+                                 final MeterRegistry meterRegistry) {
+    
+        this.conversationRepository = conversationRepository;
+        this.settings = settings;
+        this.recorded = meterRegistry.counter("chat.conversation.updates", "stage", "recorded");
+        this.written = meterRegistry.counter("chat.conversation.updates", "stage", "written");
+        meterRegistry.gauge("chat.conversation.pending", pending, Map::size);
+    
+        backgroundTasks.schedule("conversation summaries flush", () -> flush(FLUSH_TIMEOUT_MILLIS), settings.getFlushInterval());
+        LOGGER.info("Materializing conversation summaries with {}", settings);
+    }
+    
+    /**
+     * Counts the message as unread by the recipient of a direct message, or by the members of a group, but the
+     * sender. A message without destination type belongs to no conversation, and is skipped.
+     */
+    public void record(final ChatMessage chatMessage) {
+    
+        final String senderId = chatMessage.getFrom();
+        final String destinationId = chatMessage.getDestinationId();
+    
+        if (chatMessage.getDestinationType() == null) {
+            LOGGER.error("Can't summarize message {} without destination type", chatMessage.getId());
+            return;
+        }
+    
+        if (chatMessage.getDestinationType() != DestinationType.USER) {
+            update(null, destinationId, chatMessage.getDestinationType(), summary -> summary.add(chatMessage, 1));
+            update(senderId, destinationId, chatMessage.getDestinationType(), summary -> summary.add(null, 1));
+            return;
+        }
+    
+        update(senderId, destinationId, DestinationType.USER, summary -> summary.add(chatMessage, 0));
+    
+        if (!senderId.equals(destinationId)) {
+            update(destinationId, senderId, DestinationType.USER, summary -> summary.add(chatMessage, 1));
+        }
+    }
+    
+    /**
+     * Marks the conversation read up to the given message, which resets its unread count only if it's the last one, or
+     * to its end when it's null.
+     */
+    public void markRead(final String userId,
+                         final DestinationType destinationType,
+                         final String conversationId,
+                         final ObjectId messageId) {
+        update(userId, conversationId, destinationType, summary -> summary.markRead(messageId));
+    }
+    
+    public Flux<ConversationSummary> findSummaries(final String userId, final Collection<String> groupIds) {
+        return conversationRepository.findSummaries(userId, groupIds);
+    }
+    
+    /**
+     * Writes the pending updates, waiting up to the timeout for each batch. Read markers go last, as moving them to the
+     * message count of their group reads the count written by the others.
+     */
+    public void flush(final long timeoutMillis) {
+    
+        final List<SummaryUpdate> updates = new ArrayList<>();
+    
+        for (String id : pending.keySet()) {
+    
+            final SummaryUpdate update = pending.remove(id);
+    
+            if (update != null) {
+                updates.add(update);
+            }
+        }
+    
+        updates.sort(Comparator.comparing(SummaryUpdate::isMember));
+        
+        for (int from = 0; from < updates.size(); from += settings.getBatchSize()) {
+    
+            final List<SummaryUpdate> batch = updates.subList(from, Math.min(from + settings.getBatchSize(), updates.size()));
+    
+            try {
+                conversationRepository.saveAll(batch).block(Duration.ofMillis(timeoutMillis));
+                written.increment(batch.size());
+            } catch (Exception e) {
+                LOGGER.error("Failed to write {} conversation summaries. Reason {}", batch.size(), e.getMessage());
+            }
+        }
+    }
+    
+    private void update(final String ownerId,
+                        final String conversationId,
+                        final DestinationType destinationType,
+                        final UnaryOperator<SummaryUpdate> change) {
+    
+        pending.compute(SummaryUpdate.id(ownerId, conversationId), (id, update) ->
+            change.apply((update != null) ? update : new SummaryUpdate(ownerId, conversationId, destinationType)));
+    
+        recorded.increment();
+    }
+    
+}
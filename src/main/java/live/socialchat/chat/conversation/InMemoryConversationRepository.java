@@ -0,0 +1,119 @@
+package live.socialchat.chat.conversation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import live.socialchat.chat.message.message.ChatMessage;
+import live.socialchat.chat.message.message.ChatMessage.DestinationType;
+import live.socialchat.chat.message.message.ConversationSummary;
+import org.bson.types.ObjectId;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Conversation summaries kept in memory, with the same direct, shared and member summaries as with MongoDB.
+ */
+@Repository
+@Profile("inmemory")
+public class InMemoryConversationRepository implements ConversationRepository {
+    
+    private final Map<String, Summary> summaries = new ConcurrentHashMap<>();
+    
+    @Override
+    public Flux<ConversationSummary> findSummaries(final String userId, final Collection<String> groupIds) {
+    
+        final List<ConversationSummary> conversationSummaries = new ArrayList<>();
+    
+        for (String groupId : groupIds) {
+    
+            final Summary group = summaries.get(SummaryUpdate.id(null, groupId));
+    
+            if (group != null) {
+                final Summary member = summaries.get(SummaryUpdate.id(userId, groupId));
+                conversationSummaries.add(group.toConversationSummary(Math.max(group.count - ((member != null) ? member.count : 0), 0)));
+            }
+        }
+    
+        summaries.values().stream()
+            .filter(summary -> userId.equals(summary.ownerId) && summary.destinationType == DestinationType.USER)
+            .forEach(summary -> conversationSummaries.add(summary.toConversationSummary(summary.count)));
+    
+        conversationSummaries.sort(Comparator.comparing(
+            (ConversationSummary summary) -> summary.getLastMessage() != null ? summary.getLastMessage().getObjectId() : null,
+            Comparator.nullsLast(Comparator.reverseOrder())));
+    
+        return Flux.fromIterable(conversationSummaries);
+    }
+    
+    /**
+     * Applies the updates in order, which puts the read markers after the group counts they read.
+     */
+    @Override
+    public Mono<Void> saveAll(final List<SummaryUpdate> updates) {
+        return Mono.fromRunnable(() -> updates.forEach(update -> summaries
+            .computeIfAbsent(update.id(), id -> new Summary(update.getOwnerId(), update.getConversationId(), update.getDestinationType()))
+            .apply(update)));
+    }
+    
+    private Summary group(final String groupId) {
+        return summaries.get(SummaryUpdate.id(null, groupId));
+    }
+    
+    /**
+     * A summary whose count is the unread count when direct, the message count when shared and the messages read when
+     * a member's. A read applies if it reaches the last message before the update, or the group's last message.
+     */
+    private final class Summary {
+    
+        private final String ownerId;
+        private final String conversationId;
+        private final DestinationType destinationType;
+    
+        private ChatMessage lastMessage;
+        private long count;
+    
+        private Summary(final String ownerId, final String conversationId, final DestinationType destinationType) {
+            this.ownerId = ownerId;
+            this.conversationId = conversationId;
+            this.destinationType = destinationType;
+        }
+    
+        synchronized void apply(final SummaryUpdate update) {
+    
+            final ChatMessage message = update.getLastMessage();
+    
+            if (update.isMember()) {
+                final Summary group = group(conversationId);
+                count = (group != null && update.isReadUpTo(group.lastMessageId()))
+                    ? group.count
+                    : count + update.getDelta();
+            } else {
+                count = (update.isReadUpTo(lastMessageId()) ? 0 : count) + update.getDelta();
+            }
+    
+            if (message != null && (lastMessage == null || message.getObjectId().compareTo(lastMessage.getObjectId()) > 0)) {
+                lastMessage = message;
+            }
+        }
+    
+        synchronized ObjectId lastMessageId() {
+            return (lastMessage != null) ? lastMessage.getObjectId() : null;
+        }
+    
+        synchronized ConversationSummary toConversationSummary(final long unreadCount) {
+            return ConversationSummary.builder()
+                .conversationId(conversationId)
+                .destinationType(destinationType)
+                .lastMessage(lastMessage)
+                .unreadCount(unreadCount)
+                .build();
+        }
+    
+    }
+    
+}
@@ -0,0 +1,253 @@
+package live.socialchat.chat.conversation;
+
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import com.mongodb.reactivestreams.client.MongoDatabase;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import live.socialchat.chat.message.message.ChatMessage;
+import live.socialchat.chat.message.message.ChatMessage.DestinationType;
+import live.socialchat.chat.message.message.ConversationSummary;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
+
+/**
+ * Conversation summaries stored one per document, in {@code chat_conversation}:
+ * <ul>
+ *     <li>direct, with id {@code <owner>:<user>}: {@code u} owner, {@code c} the other user, {@code k} destination
+ *     type, {@code l} last message and {@code n} unread count</li>
+ *     <li>shared, with the group id: {@code c}, {@code k}, {@code l} and {@code s} message count</li>
+ *     <li>member, with id {@code <owner>:<group>}: {@code u}, {@code c}, {@code k} and {@code r} messages read</li>
+ * </ul>
+ * Updates are pipeline upserts, so that the last message is only replaced by a later one whichever node writes first.
+ * The last message is stored in the format of the chat messages and literal values are wrapped in {@code $literal},
+ * so that message content is never read as an expression. A read up to a given message only resets the unread count,
+ * or moves the read marker, if that message is at least the last one stored.
+ */
+@Repository
+@Profile("!inmemory")
+public class MongoConversationRepository implements ConversationRepository {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(MongoConversationRepository.class);
+    private static final String CONVERSATION_COLLECTION = "chat_conversation";
+    private static final String ID = "_id";
+    private static final String OWNER = "u";
+    private static final String CONVERSATION = "c";
+    private static final String DESTINATION_TYPE = "k";
+    private static final String LAST_MESSAGE = "l";
+    private static final String UNREAD = "n";
+    private static final String MESSAGES = "s";
+    private static final String READ = "r";
+    private static final UpdateOptions UPSERT = new UpdateOptions().upsert(true);
+    private static final BulkWriteOptions UNORDERED = new BulkWriteOptions().ordered(false);
+    
+    private final MongoCollection<BsonDocument> mongoCollection;
+    private final Codec<ChatMessage> chatMessageCodec;
+    
+    public MongoConversationRepository(final MongoDatabase mongoDatabase) {
+        this.mongoCollection = mongoDatabase.getCollection(CONVERSATION_COLLECTION, BsonDocument.class);
+        this.chatMessageCodec = mongoDatabase.getCodecRegistry().get(ChatMessage.class);
+        createIndexes();
+    }
+    
+    /**
+     * Reads the user's direct summaries and read markers in one query, and the groups in another.
+     */
+    @Override
+    public Flux<ConversationSummary> findSummaries(final String userId, final Collection<String> groupIds) {
+    
+        final Mono<List<BsonDocument>> owned = Flux.from(mongoCollection.find(eq(OWNER, userId))).collectList();
+        final Mono<List<BsonDocument>> groups = groupIds.isEmpty()
+            ? Mono.just(Collections.emptyList())
+            : Flux.from(mongoCollection.find(in(ID, groupIds))).collectList();
+    
+        return Mono.zip(owned, groups)
+            .flatMapIterable(documents -> summaries(documents.getT1(), documents.getT2()));
+    }
+    
+    /**
+     * Writes the direct and shared summaries in one bulk write, then moves the read markers of the groups read to
+     * their message count in another, unless the group has messages after the one read.
+     */
+    @Override
+    public Mono<Void> saveAll(final List<SummaryUpdate> updates) {
+    
+        final List<WriteModel<BsonDocument>> writes = updates.stream()
+            .filter(update -> !update.isMember() || !update.isRead())
+            .map(update -> (WriteModel<BsonDocument>) new UpdateOneModel<BsonDocument>(eq(ID, update.id()), pipeline(update, null), UPSERT))
+            .collect(Collectors.toList());
+    
+        final List<SummaryUpdate> reads = updates.stream()
+            .filter(update -> update.isMember() && update.isRead())
+            .collect(Collectors.toList());
+    
+        return bulkWrite(writes)
+            .then(Mono.defer(() -> groups(reads)))
+            .flatMap(groups -> bulkWrite(reads.stream()
+                .map(update -> (WriteModel<BsonDocument>) new UpdateOneModel<BsonDocument>(eq(ID, update.id()),
+                    pipeline(update, readCount(update, groups.get(update.getConversationId()))), UPSERT))
+                .collect(Collectors.toList())));
+    }
+    
+    private Mono<Void> bulkWrite(final List<WriteModel<BsonDocument>> writes) {
+    
+        if (writes.isEmpty()) {
+            return Mono.empty();
+        }
+    
+        return Mono.from(mongoCollection.bulkWrite(writes, UNORDERED)).then();
+    }
+    
+    private Mono<Map<String, BsonDocument>> groups(final List<SummaryUpdate> reads) {
+    
+        if (reads.isEmpty()) {
+            return Mono.just(Collections.emptyMap());
+        }
+    
+        final List<String> groupIds = reads.stream()
+            .map(SummaryUpdate::getConversationId)
+            .distinct()
+            .collect(Collectors.toList());
+    
+        return Flux.from(mongoCollection.find(in(ID, groupIds)))
+            .collectMap(document -> document.getString(ID).getValue());
+    }
+    
+    /**
+     * The message count of the group to move the read marker to, or null when the read doesn't reach its last message.
+     */
+    private static Long readCount(final SummaryUpdate update, final BsonDocument group) {
+    
+        if (group == null) {
+            return 0L;
+        }
+    
+        final BsonValue lastMessageId = group.containsKey(LAST_MESSAGE) ? group.getDocument(LAST_MESSAGE).get(ID) : null;
+    
+        return update.isReadUpTo((lastMessageId != null && lastMessageId.isObjectId()) ? lastMessageId.asObjectId().getValue() : null)
+            ? longValue(group, MESSAGES)
+            : null;
+    }
+    
+    /**
+     * The update of a summary, setting the read marker to the given message count when it's not null. A read up to a
+     * given message is compared with the last message stored before the update.
+     */
+    private static List<Bson> pipeline(final SummaryUpdate update, final Long readCount) {
+    
+        final Document fields = new Document();
+    
+        if (!update.isShared()) {
+            fields.append(OWNER, literal(update.getOwnerId()));
+        }
+        fields.append(CONVERSATION, literal(update.getConversationId()));
+        fields.append(DESTINATION_TYPE, literal(update.getDestinationType().name()));
+    
+        if (update.getLastMessage() != null) {
+            fields.append(LAST_MESSAGE, new Document("$cond", Arrays.asList(
+                new Document("$gt", Arrays.asList(update.getLastMessage().getObjectId(), "$" + LAST_MESSAGE + "." + ID)),
+                literal(update.getLastMessage()),
+                "$" + LAST_MESSAGE)));
+        }
+    
+        if (readCount != null) {
+            fields.append(READ, literal(readCount));
+        } else {
+            final String counter = update.isShared() ? MESSAGES : update.isMember() ? READ : UNREAD;
+            final Document current = new Document("$ifNull", Arrays.asList("$" + counter, 0L));
+            if (!update.isRead() || update.isMember()) {
+                fields.append(counter, new Document("$add", Arrays.asList(current, update.getDelta())));
+            } else if (update.getReadUpTo() == null) {
+                fields.append(counter, literal(update.getDelta()));
+            } else {
+                fields.append(counter, new Document("$add", Arrays.asList(new Document("$cond", Arrays.asList(
+                    new Document("$gte", Arrays.asList(update.getReadUpTo(), "$" + LAST_MESSAGE + "." + ID)),
+                    0L,
+                    current)), update.getDelta())));
+            }
+        }
+    
+        return Collections.singletonList(new Document("$set", fields));
+    }
+    
+    private List<ConversationSummary> summaries(final List<BsonDocument> owned, final List<BsonDocument> groups) {
+    
+        final List<ConversationSummary> summaries = new ArrayList<>();
+        final Map<String, Long> readCounts = new HashMap<>();
+    
+        for (BsonDocument document : owned) {
+            if (DestinationType.USER.name().equals(document.getString(DESTINATION_TYPE).getValue())) {
+                summaries.add(summary(document, longValue(document, UNREAD)));
+            } else {
+                readCounts.put(document.getString(CONVERSATION).getValue(), longValue(document, READ));
+            }
+        }
+    
+        for (BsonDocument document : groups) {
+            final long unread = longValue(document, MESSAGES) - readCounts.getOrDefault(document.getString(CONVERSATION).getValue(), 0L);
+            summaries.add(summary(document, Math.max(unread, 0)));
+        }
+    
+        summaries.sort(Comparator.comparing(
+            (ConversationSummary summary) -> summary.getLastMessage() != null ? summary.getLastMessage().getObjectId() : null,
+            Comparator.nullsLast(Comparator.reverseOrder())));
+    
+        return summaries;
+    }
+    
+    private ConversationSummary summary(final BsonDocument document, final long unreadCount) {
+        return ConversationSummary.builder()
+            .conversationId(document.getString(CONVERSATION).getValue())
+            .destinationType(DestinationType.valueOf(document.getString(DESTINATION_TYPE).getValue()))
+            .lastMessage(document.containsKey(LAST_MESSAGE)
+                ? chatMessageCodec.decode(new BsonDocumentReader(document.getDocument(LAST_MESSAGE)), DecoderContext.builder().build())
+                : null)
+            .unreadCount(unreadCount)
+            .build();
+    }
+    
+    private void createIndexes() {
+        Mono.from(mongoCollection.createIndex(Indexes.ascending(OWNER)))
+            .subscribe(
+                index -> LOGGER.info("Created index {}", index),
+                error -> LOGGER.error("Failed to create conversation owner index. Reason {}", error.getMessage())
+            );
+    }
+    
+    private static Document literal(final Object value) {
+        return new Document("$literal", value);
+    }
+    
+    private static long longValue(final BsonDocument document, final String key) {
+    
+        final BsonValue value = document.get(key);
+    
+        return (value != null && value.isNumber()) ? value.asNumber().longValue() : 0L;
+    }
+    
+}
@@ -0,0 +1,121 @@
+package live.socialchat.chat.conversation;
+
+import live.socialchat.chat.message.message.ChatMessage;
+import live.socialchat.chat.message.message.ChatMessage.DestinationType;
+import org.bson.types.ObjectId;
+
+/**
+ * The changes to a summary document coalesced since the last flush. There are three kinds of summaries:
+ * <ul>
+ *     <li>direct: a user's side of a conversation with another user, whose {@code delta} is added to the unread
+ *     count</li>
+ *     <li>shared: a group conversation, without owner, whose {@code delta} is added to its message count</li>
+ *     <li>member: a user's read marker in a group, whose {@code delta} is added to the messages the user has read</li>
+ * </ul>
+ * When the owner read the conversation, the unread count is reset, or the read marker moved to the message count of
+ * the group, before the later {@code delta} applies. A read up to a given message only applies if that's the last
+ * message of the conversation when written, and a read up to an earlier message than one recorded since is dropped.
+ */
+public final class SummaryUpdate {
+    
+    private final String ownerId;
+    private final String conversationId;
+    private final DestinationType destinationType;
+    
+    private ChatMessage lastMessage;
+    private long delta;
+    private boolean read;
+    private ObjectId readUpTo;
+    
+    SummaryUpdate(final String ownerId, final String conversationId, final DestinationType destinationType) {
+        this.ownerId = ownerId;
+        this.conversationId = conversationId;
+        this.destinationType = destinationType;
+    }
+    
+    static String id(final String ownerId, final String conversationId) {
+        return (ownerId != null) ? ownerId + ":" + conversationId : conversationId;
+    }
+    
+    String id() {
+        return id(ownerId, conversationId);
+    }
+    
+    String getOwnerId() {
+        return ownerId;
+    }
+    
+    String getConversationId() {
+        return conversationId;
+    }
+    
+    DestinationType getDestinationType() {
+        return destinationType;
+    }
+    
+    ChatMessage getLastMessage() {
+        return lastMessage;
+    }
+    
+    long getDelta() {
+        return delta;
+    }
+    
+    boolean isRead() {
+        return read;
+    }
+    
+    /**
+     * Whether the owner read the conversation as far as the given last message, which is any when it's null.
+     */
+    boolean isReadUpTo(final ObjectId lastMessageId) {
+        return read && (readUpTo == null || lastMessageId == null || readUpTo.compareTo(lastMessageId) >= 0);
+    }
+    
+    ObjectId getReadUpTo() {
+        return readUpTo;
+    }
+    
+    boolean isShared() {
+        return ownerId == null;
+    }
+    
+    boolean isMember() {
+        return ownerId != null && destinationType != DestinationType.USER;
+    }
+    
+    /**
+     * Keeps the message if it's the latest one and adds to the delta.
+     */
+    SummaryUpdate add(final ChatMessage chatMessage, final int increment) {
+        if (chatMessage != null && (lastMessage == null || chatMessage.getObjectId().compareTo(lastMessage.getObjectId()) > 0)) {
+            lastMessage = chatMessage;
+        }
+        delta += increment;
+        return this;
+    }
+    
+    /**
+     * Marks the conversation read up to the given message, or to its end when it's null. The delta of a read marker is
+     * kept, in case the read doesn't apply, as the message count it moves to already has the messages counted.
+     */
+    SummaryUpdate markRead(final ObjectId messageId) {
+    
+        if (messageId != null && lastMessage != null && messageId.compareTo(lastMessage.getObjectId()) < 0) {
+            return this;
+        }
+    
+        if (messageId == null || (read && readUpTo == null)) {
+            readUpTo = null;
+        } else if (readUpTo == null || messageId.compareTo(readUpTo) > 0) {
+            readUpTo = messageId;
+        }
+    
+        read = true;
+        if (!isMember()) {
+            delta = 0;
+        }
+        return this;
+    }
+    
+}
@@ -0,0 +1,63 @@
+package live.socialchat.chat.group;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import live.socialchat.chat.contact.Contact.ContactType;
+import live.socialchat.chat.group.model.Group;
+import live.socialchat.chat.message.message.ChatMessage.DestinationType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Groups kept in memory, starting with {@code inmemory.seed.groups} groups with ids {@code group0}, {@code group1}...
+ * As with MongoDB, every user sees every group.
+ */
+@Repository
+@Profile("inmemory")
+public class InMemoryGroupRepository implements GroupRepository {
+    
+    private final Map<String, Group> groups = new ConcurrentHashMap<>();
+    
+    public InMemoryGroupRepository(@Value("${inmemory.seed.groups:10}") final int seedGroups) {
+        for (int i = 0; i < seedGroups; i++) {
+            final Group group = Group.builder()
+                .id("group" + i)
+                .name("Group " + i)
+                .description("Group " + i)
+                .contactType(ContactType.GROUP)
+                .build();
+            groups.put(group.getId(), group);
+        }
+    }
+    
+    @Override
+    public Mono<Group> create(final Group group) {
+        
+        final Group newGroup = Group.builder()
+            .id(UUID.randomUUID().toString())
+            .name(group.getName())
+            .avatar(group.getAvatar())
+            .build();
+        
+        groups.put(newGroup.getId(), newGroup);
+        
+        return Mono.just(newGroup);
+    }
+    
+    @Override
+    public Flux<Group> findGroups(final String userId) {
+        return Flux.fromIterable(groups.values());
+    }
+    
+    @Override
+    public Mono<DestinationType> findDestinationType(final String groupId) {
+        return groups.containsKey(groupId)
+            ? Mono.just(DestinationType.GROUP)
+            : Mono.empty();
+    }
+    
+}
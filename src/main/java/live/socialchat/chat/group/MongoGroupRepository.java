@@ -10,6 +10,7 @@ import org.bson.conversions.Bson;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -18,6 +19,7 @@ import static com.mongodb.client.model.Projections.fields;
 import static com.mongodb.client.model.Projections.include;
 
 @Repository
+@Profile("!inmemory")
 public class MongoGroupRepository implements GroupRepository {
     
     private static final Logger LOGGER = LoggerFactory.getLogger(MongoGroupRepository.class);
@@ -0,0 +1,77 @@
+package live.socialchat.chat.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Marker;
+
+/**
+ * Rate limits the logs marked with {@link LogMarkers#HOT_PATH} to {@code maxPerSecond} per call site, a call site
+ * being identified by its message pattern. Logs over the limit are denied before their event is created, and counted
+ * on {@code logging.suppressed}. Warnings and errors are never limited.
+ */
+public class HotPathSamplingFilter extends TurboFilter {
+    
+    private static final Counter SUPPRESSED = Counter.builder("logging.suppressed")
+        .description("Hot path logs suppressed by the per call site rate limit")
+        .register(Metrics.globalRegistry);
+    
+    private final Map<String, CallSite> callSites = new ConcurrentHashMap<>();
+    private int maxPerSecond = 10;
+    
+    public void setMaxPerSecond(final int maxPerSecond) {
+        this.maxPerSecond = maxPerSecond;
+    }
+    
+    @Override
+    public FilterReply decide(final Marker marker,
+                              final Logger logger,
+                              final Level level,
+                              final String format,
+                              final Object[] params,
+                              final Throwable throwable) {
+        
+        if (marker == null || format == null || level.isGreaterOrEqual(Level.WARN) || !marker.contains(LogMarkers.HOT_PATH)) {
+            return FilterReply.NEUTRAL;
+        }
+        
+        CallSite callSite = callSites.get(format);
+        
+        if (callSite == null) {
+            callSite = callSites.computeIfAbsent(format, key -> new CallSite());
+        }
+        
+        if (callSite.tryAcquire(System.currentTimeMillis() / 1000, maxPerSecond)) {
+            return FilterReply.NEUTRAL;
+        }
+        
+        SUPPRESSED.increment();
+        return FilterReply.DENY;
+    }
+    
+    private static class CallSite {
+        
+        private final AtomicLong second = new AtomicLong();
+        private final AtomicInteger count = new AtomicInteger();
+        
+        boolean tryAcquire(final long currentSecond, final int maxPerSecond) {
+            
+            final long lastSecond = second.get();
+            
+            if (lastSecond != currentSecond && second.compareAndSet(lastSecond, currentSecond)) {
+                count.set(0);
+            }
+            
+            return count.incrementAndGet() <= maxPerSecond;
+        }
+        
+    }
+    
+}
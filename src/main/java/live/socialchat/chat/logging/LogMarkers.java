@@ -0,0 +1,17 @@
+package live.socialchat.chat.logging;
+
+import org.slf4j.Marker;
+import org.slf4j.MarkerFactory;
+
+public final class LogMarkers {
+    
+    /**
+     * Marks logs written for every message, which {@link HotPathSamplingFilter} rate limits per call site.
+     */
+    public static final Marker HOT_PATH = MarkerFactory.getMarker("HOT_PATH");
+    
+    private LogMarkers() {
+    
+    }
+    
+}
@@ -3,13 +3,18 @@ package live.socialchat.chat.message;
 import live.socialchat.chat.contact.Contact;
 import live.socialchat.chat.message.message.ChatHistoryRequest;
 import live.socialchat.chat.message.message.ChatMessage;
+import live.socialchat.chat.message.message.ReceiptRequest;
+import live.socialchat.chat.message.message.SyncRequest;
 import live.socialchat.chat.session.session.ChatSession;
+import live.socialchat.chat.trace.MessageTrace;
 
 public interface ChatMessageService {
-
-    void handleChatMessage(ChatSession chatSession, ChatMessage chatMessage);
+    
+    void handleChatMessage(ChatSession chatSession, ChatMessage chatMessage, MessageTrace messageTrace);
     void handleContactsMessage(ChatSession chatSession);
     void handleNewContact(Contact contact, ChatSession chatSession);
     void handleChatHistory(ChatSession chatSession, ChatHistoryRequest chatHistoryRequest);
+    void handleSync(ChatSession chatSession, SyncRequest syncRequest);
+    void handleReceipt(ChatSession chatSession, ReceiptRequest receiptRequest);
     
 }
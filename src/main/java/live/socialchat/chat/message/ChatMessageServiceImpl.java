@@ -2,83 +2,129 @@ package live.socialchat.chat.message;
 
 import live.socialchat.chat.broadcast.BroadcasterService;
 import live.socialchat.chat.contact.Contact;
+import live.socialchat.chat.conversation.ConversationSummaries;
 import live.socialchat.chat.group.GroupRepository;
 import live.socialchat.chat.group.model.Group;
+import live.socialchat.chat.logging.LogMarkers;
 import live.socialchat.chat.message.message.ChatHistoryRequest;
 import live.socialchat.chat.message.message.ChatHistoryResponse;
 import live.socialchat.chat.message.message.ChatMessage;
+import live.socialchat.chat.message.message.ChatMessage.DestinationType;
 import live.socialchat.chat.message.message.MessageType;
+import live.socialchat.chat.message.message.ReceiptRequest;
+import live.socialchat.chat.message.message.ReceiptRequest.Status;
 import live.socialchat.chat.message.message.ResponseMessage;
+import live.socialchat.chat.message.message.SyncRequest;
+import live.socialchat.chat.message.message.SyncResponse;
+import live.socialchat.chat.receipt.Receipts;
+import live.socialchat.chat.scheduler.ChatSchedulers;
 import live.socialchat.chat.session.session.ChatSession;
+import live.socialchat.chat.trace.MessageTrace;
 import live.socialchat.chat.user.UserRepository;
 import live.socialchat.chat.user.model.User;
-import java.time.OffsetDateTime;
 import java.util.Collections;
-import java.util.concurrent.ExecutorService;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
 import org.bson.types.ObjectId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
-import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Schedulers;
 
 @Service
 public class ChatMessageServiceImpl implements ChatMessageService {
     
     private static final Logger LOGGER = LoggerFactory.getLogger(ChatMessageServiceImpl.class);
-
-    private final ExecutorService executorService;
+    
+    private final ChatSchedulers chatSchedulers;
     private final UserRepository userRepository;
     private final GroupRepository groupRepository;
     private final MessageRepository messageRepository;
     private final BroadcasterService broadcasterService;
+    private final ConversationSummaries conversationSummaries;
+    private final Receipts receipts;
+    private final int syncBatchSize;
+    private final int syncMaxMessages;
     
-    public ChatMessageServiceImpl(final ExecutorService executorService,
+    public ChatMessageServiceImpl(final ChatSchedulers chatSchedulers,
                                   final UserRepository userRepository,
                                   final GroupRepository groupRepository,
                                   final MessageRepository messageRepository,
-                                  final BroadcasterService broadcasterService) {
+                                  final BroadcasterService broadcasterService,
+                                  final ConversationSummaries conversationSummaries,
+                                  final Receipts receipts,
+                                  @Value("${chat.sync.batch-size:100}") final int syncBatchSize,
+                                  @Value("${chat.sync.max-messages:1000}") final int syncMaxMessages) {
         
-        this.executorService = executorService;
+        this.chatSchedulers = chatSchedulers;
         this.userRepository = userRepository;
         this.groupRepository = groupRepository;
         this.messageRepository = messageRepository;
         this.broadcasterService = broadcasterService;
+        this.conversationSummaries = conversationSummaries;
+        this.receipts = receipts;
+        this.syncBatchSize = syncBatchSize;
+        this.syncMaxMessages = syncMaxMessages;
     }
     
+    /**
+     * Hands the message straight to the ingest executor, without a reactive pipeline, as this runs for every message
+     * received.
+     */
     @Override
     public void handleChatMessage(final ChatSession chatSession,
-                                  final ChatMessage receivedMessage) {
+                                  final ChatMessage receivedMessage,
+                                  final MessageTrace messageTrace) {
     
-        Mono
-            .fromRunnable(() -> {
+        try {
+            chatSchedulers.ingestExecutor().execute(() -> ingestChatMessage(chatSession, receivedMessage, messageTrace));
+        } catch (RejectedExecutionException e) {
+            LOGGER.error("Failed to handle chat message. Reason {}", e.getMessage());
+        }
     
-                LOGGER.info("handling chat message");
-                
-                final String userId = chatSession.getUserAuthenticationDetails().getUserId();
-    
-                final ChatMessage chatMessage = ChatMessage.builder()
-                    .objectId(new ObjectId())
-                    .from(userId)
-                    .date(OffsetDateTime.now().toString())
-                    .destinationId(receivedMessage.getDestinationId())
-                    .destinationType(receivedMessage.getDestinationType())
-                    .content(receivedMessage.getContent())
-                    .mimeType(receivedMessage.getMimeType())
-                    .build();
+    }
+    
+    private void ingestChatMessage(final ChatSession chatSession,
+                                   final ChatMessage receivedMessage,
+                                   final MessageTrace messageTrace) {
+    
+        try {
+    
+            LOGGER.info(LogMarkers.HOT_PATH, "handling chat message");
+            
+            final String userId = chatSession.getUserAuthenticationDetails().getUserId();
+    
+            final ChatMessage chatMessage = ChatMessage.builder()
+                .objectId(new ObjectId())
+                .from(userId)
+                .date(MessageDates.now())
+                .destinationId(receivedMessage.getDestinationId())
+                .destinationType(receivedMessage.getDestinationType())
+                .content(receivedMessage.getContent())
+                .mimeType(receivedMessage.getMimeType())
+                .build();
+    
+            messageTrace.setMessageId(chatMessage.getObjectId());
+            
+            ResponseMessage<ChatMessage> responseMessage = new ResponseMessage<>(MessageType.USER_MESSAGE, chatMessage, messageTrace);
+            
+            messageRepository.insert(chatMessage, messageTrace);
+            conversationSummaries.record(chatMessage);
+            broadcasterService.broadcastChatMessage(chatSession, responseMessage);
+    
+        } catch (RuntimeException e) {
+            LOGGER.error("Failed to handle chat message. Reason {}", e.getMessage());
+        }
     
-                ResponseMessage<ChatMessage> responseMessage = new ResponseMessage<>(MessageType.USER_MESSAGE, chatMessage);
-                
-                messageRepository.insert(chatMessage);
-                broadcasterService.broadcastChatMessage(chatSession, responseMessage);
-                
-            })
-            .publishOn(Schedulers.fromExecutorService(executorService))
-            .subscribe();
-
     }
     
+    /**
+     * Sends the contacts, followed by the summaries of the user's conversations with them, which the inbox is built
+     * from.
+     */
     @Override
     public void handleContactsMessage(final ChatSession chatSession) {
     
@@ -89,7 +135,7 @@ public class ChatMessageServiceImpl implements ChatMessageService {
         Flux.concat(userContacts, groupContacts)
             .collectList()
             .subscribe(contacts -> {
-
+    
                 ResponseMessage<Object> responseMessage = ResponseMessage
                     .builder()
                     .type(MessageType.CONTACTS_LIST)
@@ -98,8 +144,31 @@ public class ChatMessageServiceImpl implements ChatMessageService {
     
                 broadcasterService.broadcastToSession(chatSession, responseMessage);
                 
+                sendConversations(chatSession, userId, contacts.stream()
+                    .filter(contact -> contact instanceof Group)
+                    .map(contact -> ((Group) contact).getId())
+                    .collect(Collectors.toList()));
+                
             });
-
+    
+    }
+    
+    private void sendConversations(final ChatSession chatSession, final String userId, final List<String> groupIds) {
+        
+        conversationSummaries.findSummaries(userId, groupIds)
+            .collectList()
+            .subscribe(summaries -> {
+                
+                final ResponseMessage<Object> responseMessage = ResponseMessage
+                    .builder()
+                    .type(MessageType.CONVERSATIONS)
+                    .payload(summaries)
+                    .build();
+                
+                broadcasterService.broadcastToSession(chatSession, responseMessage);
+                
+            }, error -> LOGGER.error("Failed to read conversations of user {}. Reason {}", userId, error.getMessage()));
+        
     }
     
     @Override
@@ -123,6 +192,14 @@ public class ChatMessageServiceImpl implements ChatMessageService {
         
         userRepository.findDestinationType(chatHistoryRequest.getDestinationId())
             .switchIfEmpty(groupRepository.findDestinationType(chatHistoryRequest.getDestinationId()))
+            .doOnNext(destinationType -> {
+                if (isFirstPage(chatHistoryRequest)) {
+                    conversationSummaries.markRead(senderId, destinationType, chatHistoryRequest.getDestinationId(), null);
+                    if (destinationType == DestinationType.USER) {
+                        sendReceipt(chatSession, chatHistoryRequest.getDestinationId(), senderId);
+                    }
+                }
+            })
             .flatMapMany(destinationType -> messageRepository.findMessages(senderId, destinationType, chatHistoryRequest))
             .collectList()
             .subscribe(chatHistory -> {
@@ -142,4 +219,129 @@ public class ChatMessageServiceImpl implements ChatMessageService {
         
     }
     
+    /**
+     * Reading the last message of a conversation resets its unread count, as opening it does.
+     */
+    @Override
+    public void handleReceipt(final ChatSession chatSession, final ReceiptRequest receiptRequest) {
+        
+        final String userId = chatSession.getUserAuthenticationDetails().getUserId();
+        
+        receipts.acknowledge(userId, receiptRequest);
+        
+        if (receiptRequest.getStatus() == Status.READ) {
+            conversationSummaries.markRead(userId, receiptRequest.getDestinationType(), receiptRequest.getConversationId(),
+                new ObjectId(receiptRequest.getMessageId().trim()));
+        }
+    }
+    
+    /**
+     * Sends the receipt of the other user of a direct conversation being opened, so that the client knows how far it
+     * was read before live receipts arrive.
+     */
+    private void sendReceipt(final ChatSession chatSession, final String userId, final String conversationId) {
+        
+        receipts.findReceipt(userId, conversationId)
+            .subscribe(receipt -> {
+                
+                final ResponseMessage<Object> responseMessage = ResponseMessage
+                    .builder()
+                    .type(MessageType.RECEIPTS)
+                    .payload(Collections.singletonList(receipt))
+                    .build();
+                
+                broadcasterService.broadcastToSession(chatSession, responseMessage);
+                
+            }, error -> LOGGER.error("Failed to read receipt of user {}. Reason {}", userId, error.getMessage()));
+    }
+    
+    /**
+     * Opening a conversation reads its latest page of history, which marks it read.
+     */
+    private static boolean isFirstPage(final ChatHistoryRequest chatHistoryRequest) {
+        return chatHistoryRequest.getLastMessageId() == null || chatHistoryRequest.getLastMessageId().trim().isEmpty();
+    }
+    
+    /**
+     * Streams the messages addressed to the user or their groups since the last one seen, from a single query, in
+     * batches of {@code chat.sync.batch-size}. One message past {@code chat.sync.max-messages} is read to tell the
+     * client whether to sync again.
+     */
+    @Override
+    public void handleSync(final ChatSession chatSession, final SyncRequest syncRequest) {
+        
+        final String userId = chatSession.getUserAuthenticationDetails().getUserId();
+        final ObjectId lastMessageId = new ObjectId(syncRequest.getLastMessageId().trim());
+        final SyncReply syncReply = new SyncReply(chatSession);
+        
+        groupRepository.findGroups(userId)
+            .map(Group::getId)
+            .collect(Collectors.toCollection(HashSet::new))
+            .flatMapMany(destinationIds -> {
+                destinationIds.add(userId);
+                return messageRepository.findMessagesSince(destinationIds, lastMessageId, syncMaxMessages + 1);
+            })
+            .buffer(syncBatchSize)
+            .subscribe(
+                syncReply::batch,
+                error -> {
+                    LOGGER.error("Failed to sync messages of user {}. Reason {}", userId, error.getMessage());
+                    syncReply.fail();
+                },
+                syncReply::complete
+            );
+        
+    }
+    
+    /**
+     * Sends each batch once the next one is read, so that the final batch can be marked as the last. A reply that fails
+     * partway still ends with the batch read, marked as having more, so that the client syncs again from the last
+     * message it received rather than waiting for a last batch that never comes.
+     */
+    private final class SyncReply {
+        
+        private final ChatSession chatSession;
+        private List<ChatMessage> pending = Collections.emptyList();
+        private int read;
+        
+        private SyncReply(final ChatSession chatSession) {
+            this.chatSession = chatSession;
+        }
+        
+        void batch(final List<ChatMessage> batch) {
+            if (!pending.isEmpty()) {
+                send(pending, false, false);
+            }
+            pending = batch;
+            read += batch.size();
+        }
+        
+        void complete() {
+            
+            final boolean hasMore = read > syncMaxMessages;
+            
+            send(hasMore ? pending.subList(0, pending.size() - 1) : pending, true, hasMore);
+        }
+        
+        void fail() {
+            send(pending, true, true);
+        }
+        
+        private void send(final List<ChatMessage> messages, final boolean last, final boolean hasMore) {
+            
+            final ResponseMessage<Object> responseMessage = ResponseMessage
+                .builder()
+                .type(MessageType.SYNC)
+                .payload(SyncResponse.builder()
+                    .messages(messages)
+                    .last(last)
+                    .hasMore(hasMore)
+                    .build())
+                .build();
+            
+            broadcasterService.broadcastToSession(chatSession, responseMessage);
+        }
+        
+    }
+    
 }
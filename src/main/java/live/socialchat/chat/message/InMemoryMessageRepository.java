@@ -0,0 +1,138 @@
+package live.socialchat.chat.message;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import live.socialchat.chat.logging.LogMarkers;
+import live.socialchat.chat.message.message.ChatHistoryRequest;
+import live.socialchat.chat.message.message.ChatMessage;
+import live.socialchat.chat.message.message.ChatMessage.DestinationType;
+import live.socialchat.chat.trace.MessageTrace;
+import live.socialchat.chat.trace.TraceStage;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+/**
+ * Messages kept in memory, per conversation, ordered by id. Chat history pages are read backwards from the last
+ * message id seen, as the {@code _id} index is with MongoDB. Only the latest {@code maxMessagesPerConversation} of
+ * each conversation are kept, so that long load tests don't run out of memory.
+ */
+@Repository
+@Profile("inmemory")
+public class InMemoryMessageRepository implements MessageRepository {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(InMemoryMessageRepository.class);
+    
+    private final Map<String, Conversation> conversations = new ConcurrentHashMap<>();
+    private final Integer messagesLimit;
+    private final int maxMessagesPerConversation;
+    
+    public InMemoryMessageRepository(@Value("${chat.history.messages.limit}") final Integer messagesLimit,
+                                     @Value("${inmemory.messages.max-per-conversation:10000}") final int maxMessagesPerConversation) {
+        this.messagesLimit = messagesLimit;
+        this.maxMessagesPerConversation = maxMessagesPerConversation;
+    }
+    
+    @Override
+    public void insert(final ChatMessage chatMessage, final MessageTrace messageTrace) {
+        
+        messageTrace.mark(TraceStage.PERSIST_ENQUEUED);
+        
+        conversations
+            .computeIfAbsent(
+                conversationId(chatMessage.getFrom(), chatMessage.getDestinationType(), chatMessage.getDestinationId()),
+                conversationId -> new Conversation())
+            .add(chatMessage, maxMessagesPerConversation);
+        
+        messageTrace.mark(TraceStage.PERSIST_ACKED);
+        LOGGER.info(LogMarkers.HOT_PATH, "Inserted message {}", chatMessage.getObjectId());
+    }
+    
+    @Override
+    public Flux<ChatMessage> findMessages(final String senderId,
+                                          final DestinationType destinationType,
+                                          final ChatHistoryRequest chatHistoryRequest) {
+        
+        final Conversation conversation =
+            conversations.get(conversationId(senderId, destinationType, chatHistoryRequest.getDestinationId()));
+        
+        if (conversation == null) {
+            return Flux.empty();
+        }
+        
+        final String lastMessageId = chatHistoryRequest.getLastMessageId();
+        
+        final NavigableMap<ObjectId, ChatMessage> messages = (lastMessageId != null && ObjectId.isValid(lastMessageId.trim()))
+            ? conversation.messages.headMap(new ObjectId(lastMessageId.trim()), false)
+            : conversation.messages;
+        
+        return Flux.fromIterable(messages.descendingMap().values())
+            .take(messagesLimit);
+    }
+    
+    /**
+     * Merges the messages of every conversation after the given one, as the destination index does with MongoDB.
+     */
+    @Override
+    public Flux<ChatMessage> findMessagesSince(final Collection<String> destinationIds,
+                                               final ObjectId lastMessageId,
+                                               final int limit) {
+        
+        return Flux.fromIterable(conversations.values())
+            .flatMapIterable(conversation -> conversation.messages.tailMap(lastMessageId, false).values())
+            .filter(chatMessage -> destinationIds.contains(chatMessage.getDestinationId()))
+            .sort(Comparator.comparing(ChatMessage::getObjectId))
+            .take(limit);
+    }
+    
+    /**
+     * Inserts are applied synchronously, so there's never any in flight.
+     */
+    @Override
+    public boolean flush(final long timeoutMillis) {
+        return true;
+    }
+    
+    /**
+     * Both directions of a direct conversation share its id, while group conversations are identified by the group.
+     */
+    private static String conversationId(final String senderId,
+                                         final DestinationType destinationType,
+                                         final String destinationId) {
+        
+        if (destinationType != DestinationType.USER) {
+            return destinationType + ":" + destinationId;
+        }
+        
+        return (senderId.compareTo(destinationId) <= 0)
+            ? senderId + ":" + destinationId
+            : destinationId + ":" + senderId;
+    }
+    
+    private static class Conversation {
+        
+        private final ConcurrentSkipListMap<ObjectId, ChatMessage> messages = new ConcurrentSkipListMap<>();
+        private final AtomicInteger size = new AtomicInteger();
+        
+        void add(final ChatMessage chatMessage, final int maxMessages) {
+            
+            if (messages.put(chatMessage.getObjectId(), chatMessage) == null && size.incrementAndGet() > maxMessages) {
+                if (messages.pollFirstEntry() != null) {
+                    size.decrementAndGet();
+                }
+            }
+            
+        }
+        
+    }
+    
+}
@@ -0,0 +1,62 @@
+package live.socialchat.chat.message;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import org.bson.types.ObjectId;
+
+/**
+ * Dates of the chat messages, as the ISO-8601 offset date time stored in {@code ChatMessage.date}. The string is
+ * formatted once per millisecond and shared by every message received within it, instead of formatting a new
+ * {@link OffsetDateTime} per message.
+ */
+public final class MessageDates {
+    
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+    
+    private static volatile Tick last = new Tick(Long.MIN_VALUE, null);
+    
+    private MessageDates() {
+    }
+    
+    public static String now() {
+    
+        final long millis = System.currentTimeMillis();
+        Tick tick = last;
+    
+        if (tick.millis != millis) {
+            tick = new Tick(millis, format(millis));
+            last = tick;
+        }
+    
+        return tick.date;
+    }
+    
+    public static String format(final long epochMillis) {
+        return OffsetDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZONE).toString();
+    }
+    
+    /**
+     * Epoch millis of a stored date, or the creation time of the message id when the date is missing or malformed.
+     */
+    public static long toEpochMillis(final String date, final ObjectId objectId) {
+        try {
+            return OffsetDateTime.parse(date).toInstant().toEpochMilli();
+        } catch (RuntimeException e) {
+            return objectId.getDate().getTime();
+        }
+    }
+    
+    private static final class Tick {
+    
+        private final long millis;
+        private final String date;
+    
+        private Tick(final long millis, final String date) {
+            this.millis = millis;
+            this.date = date;
+        }
+    
+    }
+    
+}
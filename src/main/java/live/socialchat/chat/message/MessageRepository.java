@@ -1,13 +1,29 @@
 package live.socialchat.chat.message;
 
+import java.util.Collection;
 import live.socialchat.chat.message.message.ChatHistoryRequest;
 import live.socialchat.chat.message.message.ChatMessage;
 import live.socialchat.chat.message.message.ChatMessage.DestinationType;
+import live.socialchat.chat.trace.MessageTrace;
+import org.bson.types.ObjectId;
 import reactor.core.publisher.Flux;
 
 public interface MessageRepository {
     
-    void insert(ChatMessage chatMessage);
+    /**
+     * Inserts the message asynchronously, marking the persistence stages on its trace.
+     */
+    void insert(ChatMessage chatMessage, MessageTrace messageTrace);
     Flux<ChatMessage> findMessages(String senderId, DestinationType destinationType, ChatHistoryRequest chatHistoryRequest);
     
+    /**
+     * Messages to any of the destinations after the given one, oldest first, up to the limit.
+     */
+    Flux<ChatMessage> findMessagesSince(Collection<String> destinationIds, ObjectId lastMessageId, int limit);
+    
+    /**
+     * Waits for the inserts in flight to complete, returning false if they didn't within the timeout.
+     */
+    boolean flush(long timeoutMillis) throws InterruptedException;
+    
 }
@@ -1,71 +1,127 @@
 package live.socialchat.chat.message;
 
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Indexes;
 import com.mongodb.reactivestreams.client.MongoCollection;
 import com.mongodb.reactivestreams.client.MongoDatabase;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import live.socialchat.chat.logging.LogMarkers;
 import live.socialchat.chat.message.message.ChatHistoryRequest;
 import live.socialchat.chat.message.message.ChatMessage;
 import live.socialchat.chat.message.message.ChatMessage.DestinationType;
-import java.util.function.BiFunction;
-import java.util.function.Function;
+import live.socialchat.chat.message.storage.MessageFormat;
+import live.socialchat.chat.message.storage.MessageMigrator;
+import live.socialchat.chat.scheduler.ChatSchedulers;
+import live.socialchat.chat.trace.MessageTrace;
+import live.socialchat.chat.trace.TraceStage;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
 import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import static com.mongodb.client.model.Filters.and;
 import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.gt;
+import static com.mongodb.client.model.Filters.in;
 import static com.mongodb.client.model.Filters.lt;
 import static com.mongodb.client.model.Filters.or;
 
 @Repository
+@Profile("!inmemory")
 public class MongoMessageRepository implements MessageRepository {
     
     private static final Logger LOGGER = LoggerFactory.getLogger(MongoMessageRepository.class);
     private static final String CHAT_MESSAGE_COLLECTION = "chat_message_object_id";
     private static final String MESSAGE_ID = "_id";
-    private static final String SENDER_ID = "from";
-    private static final String DESTINATION_ID = "destinationId";
-    
-    private static final BiFunction<String, String, Bson> CONTACT_FILTER_FUNCTION = (senderId, destinationId) ->
-        or(
-            and(eq(SENDER_ID, senderId), eq(DESTINATION_ID, destinationId)),
-            and(eq(SENDER_ID, destinationId), eq(DESTINATION_ID, senderId))
-        );
-    
-    private static final Function<String, Bson> GROUP_FILTER_FUNCTION = (destinationId) ->
-        eq(DESTINATION_ID, destinationId);
     
     private final MongoCollection<ChatMessage> mongoCollection;
     private final Integer messagesLimit;
+    private final ChatSchedulers chatSchedulers;
+    private final MessageMigrator messageMigrator;
+    private final PendingInserts pendingInserts = new PendingInserts();
+    private final Timer insertTimer;
+    private final Timer failedInsertTimer;
     
     @Autowired
     public MongoMessageRepository(MongoDatabase mongoDatabase,
-                                  @Value("${chat.history.messages.limit}") Integer messagesLimit) {
+                                  @Value("${chat.history.messages.limit}") Integer messagesLimit,
+                                  ChatSchedulers chatSchedulers,
+                                  MessageMigrator messageMigrator,
+                                  MeterRegistry meterRegistry) {
         this.mongoCollection = mongoDatabase.getCollection(CHAT_MESSAGE_COLLECTION, ChatMessage.class);
         this.messagesLimit = messagesLimit;
+        this.chatSchedulers = chatSchedulers;
+        this.messageMigrator = messageMigrator;
+        this.insertTimer = insertTimer(meterRegistry, "success");
+        this.failedInsertTimer = insertTimer(meterRegistry, "error");
+        meterRegistry.gauge("chat.message.insert.pending", pendingInserts, PendingInserts::size);
+        Gauge.builder("chat.message.insert.oldest", pendingInserts, inserts -> inserts.oldestAge(System.nanoTime()) / 1e6)
+            .description("Milliseconds the oldest message insert still in flight has been waiting")
+            .register(meterRegistry);
+        createIndexes();
     }
     
+    /**
+     * Inserts the message asynchronously. Its latency is timed from this call, including the wait for a persistence
+     * thread, and it counts as pending from then on.
+     */
     @Override
-    public void insert(final ChatMessage chatMessage) {
+    public void insert(final ChatMessage chatMessage, final MessageTrace messageTrace) {
+        final long start = System.nanoTime();
+        messageTrace.mark(TraceStage.PERSIST_ENQUEUED);
+        final PendingInserts.Insert pendingInsert = pendingInserts.start(start);
         Mono.from(mongoCollection.insertOne(chatMessage))
-            .doOnSuccess(message -> LOGGER.info("Inserted message {}", message.getInsertedId()))
-            .doOnError(error -> LOGGER.info("Error Inserting message. Reason {}", error.getMessage()))
+            .subscribeOn(chatSchedulers.persistence())
+            .doOnSuccess(message -> {
+                messageTrace.mark(TraceStage.PERSIST_ACKED);
+                insertTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                LOGGER.info(LogMarkers.HOT_PATH, "Inserted message {}", message.getInsertedId());
+            })
+            .doOnError(error -> {
+                failedInsertTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                LOGGER.info("Error Inserting message. Reason {}", error.getMessage());
+            })
+            .doFinally(signal -> pendingInserts.complete(pendingInsert))
             .subscribe();
     }
     
+    @Override
+    public boolean flush(final long timeoutMillis) throws InterruptedException {
+        
+        final long deadline = System.currentTimeMillis() + timeoutMillis;
+        
+        while (pendingInserts.size() > 0) {
+            if (System.currentTimeMillis() >= deadline) {
+                LOGGER.error("{} message inserts didn't complete in {}ms", pendingInserts.size(), timeoutMillis);
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        
+        return true;
+    }
+    
     @Override
     public Flux<ChatMessage> findMessages(final String senderId,
                                           final DestinationType destinationType,
                                           final ChatHistoryRequest chatHistoryRequest) {
     
-        final Bson senderAndDestinationFilter = (DestinationType.USER == destinationType)
-            ? CONTACT_FILTER_FUNCTION.apply(senderId, chatHistoryRequest.getDestinationId())
-            : GROUP_FILTER_FUNCTION.apply(chatHistoryRequest.getDestinationId());
+        final Bson senderAndDestinationFilter = messageMigrator.isComplete()
+            ? senderAndDestinationFilter(MessageFormat.V2, senderId, destinationType, chatHistoryRequest.getDestinationId())
+            : or(
+                senderAndDestinationFilter(MessageFormat.V1, senderId, destinationType, chatHistoryRequest.getDestinationId()),
+                senderAndDestinationFilter(MessageFormat.V2, senderId, destinationType, chatHistoryRequest.getDestinationId())
+            );
     
         final Bson messagesFilter = (chatHistoryRequest.getLastMessageId() != null && !chatHistoryRequest.getLastMessageId().trim().isEmpty())
             ? and(lt(MESSAGE_ID, chatHistoryRequest.getLastMessageId()), senderAndDestinationFilter)
@@ -79,4 +135,61 @@ public class MongoMessageRepository implements MessageRepository {
             );
     }
     
-}
+    @Override
+    public Flux<ChatMessage> findMessagesSince(final Collection<String> destinationIds,
+                                               final ObjectId lastMessageId,
+                                               final int limit) {
+        
+        final Bson destinationFilter = messageMigrator.isComplete()
+            ? in(MessageFormat.V2.destinationIdKey(), destinationIds)
+            : or(in(MessageFormat.V1.destinationIdKey(), destinationIds), in(MessageFormat.V2.destinationIdKey(), destinationIds));
+        
+        return Flux.from(
+                mongoCollection
+                    .find(and(destinationFilter, gt(MESSAGE_ID, lastMessageId)))
+                    .sort(Filters.eq(MESSAGE_ID, 1))
+                    .limit(limit)
+            );
+    }
+    
+    /**
+     * Indexes the destination and id keys of each format, which serve both the history of a conversation and the
+     * messages since a given one, in id order. The V1 index is only used until the documents are migrated.
+     */
+    private void createIndexes() {
+        for (MessageFormat format : MessageFormat.values()) {
+            Mono.from(mongoCollection.createIndex(Indexes.ascending(format.destinationIdKey(), MESSAGE_ID)))
+                .subscribe(
+                    index -> LOGGER.info("Created index {}", index),
+                    error -> LOGGER.error("Failed to create {} index. Reason {}", format, error.getMessage())
+                );
+        }
+    }
+    
+    /**
+     * Messages between the sender and a user, either way, or to a group, with the keys of the given format.
+     */
+    private static Bson senderAndDestinationFilter(final MessageFormat format,
+                                                   final String senderId,
+                                                   final DestinationType destinationType,
+                                                   final String destinationId) {
+        
+        if (DestinationType.USER != destinationType) {
+            return eq(format.destinationIdKey(), destinationId);
+        }
+        
+        return or(
+            and(eq(format.fromKey(), senderId), eq(format.destinationIdKey(), destinationId)),
+            and(eq(format.fromKey(), destinationId), eq(format.destinationIdKey(), senderId))
+        );
+    }
+    
+    private static Timer insertTimer(final MeterRegistry meterRegistry, final String outcome) {
+        return Timer.builder("chat.message.insert")
+            .description("Time taken to persist chat messages")
+            .tag("outcome", outcome)
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+    }
+    
+}
\ No newline at end of file
@@ -0,0 +1,76 @@
+package live.socialchat.chat.message;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The message inserts in flight, in the order they started, so that the wait of the oldest one is known even when
+ * none completes. Inserts complete in any order: completed ones are marked, and dropped once they reach the head of
+ * the queue by whichever completing thread isn't beaten to it by another.
+ */
+final class PendingInserts {
+    
+    private final Queue<Insert> inserts = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicBoolean pruning = new AtomicBoolean();
+    
+    Insert start(final long startedAt) {
+    
+        final Insert insert = new Insert(startedAt);
+    
+        size.incrementAndGet();
+        inserts.offer(insert);
+    
+        return insert;
+    }
+    
+    void complete(final Insert insert) {
+    
+        insert.completed = true;
+        size.decrementAndGet();
+    
+        if (pruning.compareAndSet(false, true)) {
+            try {
+                Insert head;
+                while ((head = inserts.peek()) != null && head.completed) {
+                    inserts.poll();
+                }
+            } finally {
+                pruning.set(false);
+            }
+        }
+    }
+    
+    int size() {
+        return size.get();
+    }
+    
+    /**
+     * Nanoseconds the oldest insert still in flight has been waiting, or 0 when there's none.
+     */
+    long oldestAge(final long now) {
+    
+        for (Insert insert : inserts) {
+            if (!insert.completed) {
+                return now - insert.startedAt;
+            }
+        }
+    
+        return 0;
+    }
+    
+    static final class Insert {
+    
+        private final long startedAt;
+    
+        private volatile boolean completed;
+    
+        private Insert(final long startedAt) {
+            this.startedAt = startedAt;
+        }
+    
+    }
+    
+}
@@ -0,0 +1,19 @@
+package live.socialchat.chat.message.message;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Sent once a connection is registered, with the token the client resumes the session with after reconnecting.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+@AllArgsConstructor
+public class ConnectedMessage {
+    
+    private final String resumeToken;
+    
+}
@@ -0,0 +1,26 @@
+package live.socialchat.chat.message.message;
+
+import live.socialchat.chat.message.message.ChatMessage.DestinationType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * A conversation of the user's inbox: the other user or the group, its last message and how many messages the user
+ * hasn't read since last opening it.
+ */
+@Getter
+@ToString
+@Builder
+@EqualsAndHashCode
+@AllArgsConstructor
+public class ConversationSummary {
+    
+    private final String conversationId;
+    private final DestinationType destinationType;
+    private final ChatMessage lastMessage;
+    private final long unreadCount;
+    
+}
@@ -1,7 +1,13 @@
 package live.socialchat.chat.message.message;
 
+import live.socialchat.chat.trace.MessageTrace;
+
 public interface Message {
     
     MessageType getType();
     
+    default MessageTrace getTrace() {
+        return MessageTrace.NONE;
+    }
+    
 }
@@ -9,5 +9,12 @@ public enum MessageType {
     CONTACTS_LIST,
     CHAT_HISTORY,
     NEW_CONTACT_REGISTERED,
+    RECONNECT,
+    RATE_LIMITED,
+    SYNC,
+    RESUME,
+    CONVERSATIONS,
+    RECEIPT,
+    RECEIPTS,
     USER_MESSAGE
 }
@@ -0,0 +1,19 @@
+package live.socialchat.chat.message.message;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Sent instead of handling a request which exceeded its rate limit, naming the type of the rejected request.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+@AllArgsConstructor
+public class RateLimitedMessage {
+    
+    private final MessageType requestType;
+    
+}
@@ -0,0 +1,25 @@
+package live.socialchat.chat.message.message;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * The last messages of a conversation delivered to and read by a user, sent to the other participants. The
+ * conversation is given as the recipients see it: the user, for a direct conversation, or the group.
+ */
+@Getter
+@ToString
+@Builder
+@EqualsAndHashCode
+@AllArgsConstructor
+public class Receipt {
+    
+    private final String conversationId;
+    private final String userId;
+    private final String deliveredMessageId;
+    private final String readMessageId;
+    
+}
@@ -0,0 +1,29 @@
+package live.socialchat.chat.message.message;
+
+import live.socialchat.chat.message.message.ChatMessage.DestinationType;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Acknowledges every message of a conversation up to {@code messageId} as delivered to, or read by, the user. The
+ * conversation is the other user or the group, as in {@link ConversationSummary}.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+@AllArgsConstructor
+public class ReceiptRequest {
+    
+    private final DestinationType destinationType;
+    private final String conversationId;
+    private final String messageId;
+    private final Status status;
+    
+    public enum Status {
+        DELIVERED,
+        READ
+    }
+    
+}
@@ -0,0 +1,22 @@
+package live.socialchat.chat.message.message;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Sent when the server is going away: clients should reconnect after {@code delayMillis}, which is picked at random
+ * for each connection so that they don't all reconnect at once.
+ */
+@Getter
+@ToString
+@Builder
+@EqualsAndHashCode
+@AllArgsConstructor
+public class ReconnectMessage {
+    
+    private final long delayMillis;
+    
+}
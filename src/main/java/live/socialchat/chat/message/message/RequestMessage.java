@@ -1,18 +1,33 @@
 package live.socialchat.chat.message.message;
 
-import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.ToString;
 
 @Getter
-@Builder
 @ToString
-@AllArgsConstructor
 public class RequestMessage<T> implements Message {
     
     private final Integer seqId;
     private final MessageType type;
     private final T payload;
     
+    /**
+     * Monotonic timestamps of the request being received and decoded, set by the decoders for tracing.
+     */
+    private long receivedAt;
+    private long decodedAt;
+    
+    @Builder
+    public RequestMessage(final Integer seqId, final MessageType type, final T payload) {
+        this.seqId = seqId;
+        this.type = type;
+        this.payload = payload;
+    }
+    
+    public void decoded(final long receivedAt, final long decodedAt) {
+        this.receivedAt = receivedAt;
+        this.decodedAt = decodedAt;
+    }
+    
 }
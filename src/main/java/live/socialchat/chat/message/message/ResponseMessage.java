@@ -1,17 +1,34 @@
 package live.socialchat.chat.message.message;
 
-import lombok.AllArgsConstructor;
+import live.socialchat.chat.trace.MessageTrace;
 import lombok.Builder;
 import lombok.Getter;
+import lombok.Setter;
 import lombok.ToString;
 
 @Getter
-@Builder
-@ToString
-@AllArgsConstructor
+@ToString(exclude = "trace")
 public class ResponseMessage<T> implements Message {
-
+    
     private final MessageType type;
     private final T payload;
+    private final MessageTrace trace;
+    
+    /**
+     * Position of the message in the replay buffers of its recipients, or 0 when it isn't replayable.
+     */
+    @Setter
+    private long seq;
+    
+    public ResponseMessage(final MessageType type, final T payload) {
+        this(type, payload, null);
+    }
+    
+    @Builder
+    public ResponseMessage(final MessageType type, final T payload, final MessageTrace trace) {
+        this.type = type;
+        this.payload = payload;
+        this.trace = (trace != null) ? trace : MessageTrace.NONE;
+    }
     
-}
\ No newline at end of file
+}
@@ -0,0 +1,21 @@
+package live.socialchat.chat.message.message;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Asks for the messages missed since the last one received, the one with {@code lastSeq}, on the connection which was
+ * given {@code resumeToken}.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+@AllArgsConstructor
+public class ResumeRequest {
+    
+    private final String resumeToken;
+    private final long lastSeq;
+    
+}
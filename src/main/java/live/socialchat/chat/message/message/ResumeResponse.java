@@ -0,0 +1,22 @@
+package live.socialchat.chat.message.message;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Sent once the missed messages of a {@link ResumeRequest} were queued, with how many there were. When the session
+ * couldn't be resumed, because the token is unknown or messages since {@code lastSeq} were already evicted, nothing
+ * is replayed and the client fetches the chat history instead.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+@AllArgsConstructor
+public class ResumeResponse {
+    
+    private final boolean resumed;
+    private final int replayed;
+    
+}
@@ -0,0 +1,19 @@
+package live.socialchat.chat.message.message;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Asks for every message addressed to the user or their groups after the last one the client has seen.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+@AllArgsConstructor
+public class SyncRequest {
+    
+    private final String lastMessageId;
+    
+}
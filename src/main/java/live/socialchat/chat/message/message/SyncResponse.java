@@ -0,0 +1,26 @@
+package live.socialchat.chat.message.message;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * A batch of the messages answering a {@link SyncRequest}, oldest first. The reply ends with the batch marked
+ * {@code last}, which is empty when there was nothing to sync. When it's also marked {@code hasMore} the reply was cut
+ * at its maximum size, or failed partway, and the client syncs again from the last message received.
+ */
+@Getter
+@ToString
+@Builder
+@EqualsAndHashCode
+@AllArgsConstructor
+public class SyncResponse {
+    
+    private final List<ChatMessage> messages;
+    private final boolean last;
+    private final boolean hasMore;
+    
+}
@@ -0,0 +1,204 @@
+package live.socialchat.chat.message.storage;
+
+import java.util.EnumMap;
+import java.util.Map;
+import live.socialchat.chat.message.MessageDates;
+import live.socialchat.chat.message.message.ChatMessage;
+import live.socialchat.chat.message.message.ChatMessage.DestinationType;
+import live.socialchat.chat.message.message.ChatMessage.MimeType;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+
+/**
+ * Codec of the chat message documents, replacing the POJO codec for {@link ChatMessage}. Messages are written in the
+ * configured {@link MessageFormat}, and documents of either format are read, so that nodes keep serving history while
+ * the {@link MessageMigrator} rewrites the old ones.
+ * <p>
+ * In {@link MessageFormat#V2} the destination type and mime type are stored as their index in
+ * {@link #DESTINATION_TYPES} and {@link #MIME_TYPES}, which must only ever be appended to, and the mime type is left
+ * out when it's {@link MimeType#TEXT}.
+ */
+public class ChatMessageCodec implements Codec<ChatMessage> {
+    
+    public static final String ID = "_id";
+    public static final String VERSION = "v";
+    
+    static final String FROM = "from";
+    static final String FROM_V2 = "f";
+    static final String DESTINATION_ID = "destinationId";
+    static final String DESTINATION_ID_V2 = "d";
+    
+    private static final String DESTINATION_TYPE = "destinationType";
+    private static final String CONTENT = "content";
+    private static final String MIME_TYPE = "mimeType";
+    private static final String DATE = "date";
+    
+    private static final String DESTINATION_TYPE_CODE = "k";
+    private static final String CONTENT_V2 = "c";
+    private static final String MIME_TYPE_CODE = "m";
+    private static final String TIMESTAMP = "t";
+    private static final int V2 = 2;
+    
+    private static final DestinationType[] DESTINATION_TYPES = {
+        DestinationType.USER, DestinationType.GROUP, DestinationType.ALL_USERS_GROUP
+    };
+    private static final MimeType[] MIME_TYPES = {
+        MimeType.TEXT
+    };
+    private static final Map<DestinationType, Integer> DESTINATION_TYPE_CODES = codes(DestinationType.class, DESTINATION_TYPES);
+    private static final Map<MimeType, Integer> MIME_TYPE_CODES = codes(MimeType.class, MIME_TYPES);
+    
+    private final MessageFormat format;
+    
+    public ChatMessageCodec(final MessageFormat format) {
+        this.format = format;
+    }
+    
+    @Override
+    public void encode(final BsonWriter writer, final ChatMessage chatMessage, final EncoderContext encoderContext) {
+        if (format == MessageFormat.V2) {
+            encodeV2(writer, chatMessage);
+        } else {
+            encodeV1(writer, chatMessage);
+        }
+    }
+    
+    @Override
+    public ChatMessage decode(final BsonReader reader, final DecoderContext decoderContext) {
+    
+        ObjectId objectId = null;
+        String from = null;
+        DestinationType destinationType = null;
+        String destinationId = null;
+        String content = null;
+        MimeType mimeType = null;
+        String date = null;
+        boolean v2 = false;
+    
+        reader.readStartDocument();
+    
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+    
+            final String name = reader.readName();
+    
+            if (reader.getCurrentBsonType() == BsonType.NULL) {
+                reader.readNull();
+                continue;
+            }
+    
+            switch (name) {
+                case ID:
+                    objectId = reader.readObjectId();
+                    break;
+                case VERSION:
+                    v2 = reader.readInt32() == V2;
+                    break;
+                case FROM:
+                case FROM_V2:
+                    from = reader.readString();
+                    break;
+                case DESTINATION_ID:
+                case DESTINATION_ID_V2:
+                    destinationId = reader.readString();
+                    break;
+                case DESTINATION_TYPE:
+                    destinationType = DestinationType.valueOf(reader.readString());
+                    break;
+                case DESTINATION_TYPE_CODE:
+                    destinationType = DESTINATION_TYPES[reader.readInt32()];
+                    break;
+                case CONTENT:
+                case CONTENT_V2:
+                    content = reader.readString();
+                    break;
+                case MIME_TYPE:
+                    mimeType = MimeType.valueOf(reader.readString());
+                    break;
+                case MIME_TYPE_CODE:
+                    mimeType = MIME_TYPES[reader.readInt32()];
+                    break;
+                case DATE:
+                    date = reader.readString();
+                    break;
+                case TIMESTAMP:
+                    date = MessageDates.format(reader.readDateTime());
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+    
+        reader.readEndDocument();
+    
+        if (v2 && mimeType == null) {
+            mimeType = MimeType.TEXT;
+        }
+    
+        return new ChatMessage(objectId, from, destinationType, destinationId, content, mimeType, date);
+    }
+    
+    @Override
+    public Class<ChatMessage> getEncoderClass() {
+        return ChatMessage.class;
+    }
+    
+    private void encodeV2(final BsonWriter writer, final ChatMessage chatMessage) {
+    
+        final ObjectId objectId = (chatMessage.getObjectId() != null) ? chatMessage.getObjectId() : new ObjectId();
+    
+        writer.writeStartDocument();
+        writer.writeObjectId(ID, objectId);
+        writer.writeInt32(VERSION, V2);
+        writeString(writer, FROM_V2, chatMessage.getFrom());
+        if (chatMessage.getDestinationType() != null) {
+            writer.writeInt32(DESTINATION_TYPE_CODE, DESTINATION_TYPE_CODES.get(chatMessage.getDestinationType()));
+        }
+        writeString(writer, DESTINATION_ID_V2, chatMessage.getDestinationId());
+        writeString(writer, CONTENT_V2, chatMessage.getContent());
+        if (chatMessage.getMimeType() != null && chatMessage.getMimeType() != MimeType.TEXT) {
+            writer.writeInt32(MIME_TYPE_CODE, MIME_TYPE_CODES.get(chatMessage.getMimeType()));
+        }
+        writer.writeDateTime(TIMESTAMP, MessageDates.toEpochMillis(chatMessage.getDate(), objectId));
+        writer.writeEndDocument();
+    }
+    
+    private void encodeV1(final BsonWriter writer, final ChatMessage chatMessage) {
+    
+        writer.writeStartDocument();
+        writer.writeObjectId(ID, (chatMessage.getObjectId() != null) ? chatMessage.getObjectId() : new ObjectId());
+        writeString(writer, FROM, chatMessage.getFrom());
+        if (chatMessage.getDestinationType() != null) {
+            writer.writeString(DESTINATION_TYPE, chatMessage.getDestinationType().name());
+        }
+        writeString(writer, DESTINATION_ID, chatMessage.getDestinationId());
+        writeString(writer, CONTENT, chatMessage.getContent());
+        if (chatMessage.getMimeType() != null) {
+            writer.writeString(MIME_TYPE, chatMessage.getMimeType().name());
+        }
+        writeString(writer, DATE, chatMessage.getDate());
+        writer.writeEndDocument();
+    }
+    
+    private static void writeString(final BsonWriter writer, final String name, final String value) {
+        if (value != null) {
+            writer.writeString(name, value);
+        }
+    }
+    
+    private static <E extends Enum<E>> Map<E, Integer> codes(final Class<E> type, final E[] values) {
+    
+        final Map<E, Integer> codes = new EnumMap<>(type);
+    
+        for (int code = 0; code < values.length; code++) {
+            codes.put(values[code], code);
+        }
+    
+        return codes;
+    }
+    
+}
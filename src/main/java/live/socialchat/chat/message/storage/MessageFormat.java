@@ -0,0 +1,29 @@
+package live.socialchat.chat.message.storage;
+
+/**
+ * Layouts of the chat message documents. {@link #V1} is the original one written by the POJO codec: full field
+ * names, enum names and the date as an ISO-8601 string. {@link #V2} uses single letter keys, enum codes and the date as
+ * a BSON date time, and is marked with {@code v: 2}.
+ */
+public enum MessageFormat {
+    
+    V1(ChatMessageCodec.FROM, ChatMessageCodec.DESTINATION_ID),
+    V2(ChatMessageCodec.FROM_V2, ChatMessageCodec.DESTINATION_ID_V2);
+    
+    private final String fromKey;
+    private final String destinationIdKey;
+    
+    MessageFormat(final String fromKey, final String destinationIdKey) {
+        this.fromKey = fromKey;
+        this.destinationIdKey = destinationIdKey;
+    }
+    
+    public String fromKey() {
+        return fromKey;
+    }
+    
+    public String destinationIdKey() {
+        return destinationIdKey;
+    }
+    
+}
@@ -0,0 +1,122 @@
+package live.socialchat.chat.message.storage;
+
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import com.mongodb.reactivestreams.client.MongoDatabase;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import live.socialchat.chat.message.message.ChatMessage;
+import live.socialchat.chat.scheduler.BackgroundTasks;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.exists;
+
+/**
+ * Rewrites the {@link MessageFormat#V1} chat message documents as {@link MessageFormat#V2} in the background, a batch
+ * every {@code migrationInterval}, while both formats keep being read. Each document is replaced only if it's still
+ * unmarked, so that a message rewritten in the meantime isn't overwritten. V1 documents are found through an index on
+ * the version key. While nodes writing V1 may still be running, as during a rolling upgrade, the migrator keeps looking
+ * for V1 documents after none is left, every {@code migrationIdleInterval} once a batch comes back empty. Once the V1
+ * writers are retired and no V1 document is left, it stops and history queries filter on the V2 keys alone. Rewritten
+ * documents are counted in {@code chat.message.migrated}.
+ */
+@Component
+@Profile("!inmemory")
+public class MessageMigrator {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(MessageMigrator.class);
+    private static final String CHAT_MESSAGE_COLLECTION = "chat_message_object_id";
+    private static final Bson V1_DOCUMENTS = exists(ChatMessageCodec.VERSION, false);
+    
+    private final MongoCollection<ChatMessage> mongoCollection;
+    private final MessageStorageSettings settings;
+    private final Counter migrated;
+    
+    private volatile boolean complete;
+    private long idleUntil = System.nanoTime();
+    
+    public MessageMigrator(final MongoDatabase mongoDatabase,
+                           final MessageStorageSettings settings,
+                           final BackgroundTasks backgroundTasks,
+                           final MeterRegistry meterRegistry) {
+    
+        this.mongoCollection = mongoDatabase.getCollection(CHAT_MESSAGE_COLLECTION, ChatMessage.class);
+        this.settings = settings;
+        this.migrated = meterRegistry.counter("chat.message.migrated");
+    
+        if (settings.getFormat() == MessageFormat.V2 && settings.isMigrationEnabled()) {
+            createIndex();
+            backgroundTasks.schedule("message migration", this::batch, settings.getMigrationInterval());
+            LOGGER.info("Migrating chat messages with {}", settings);
+        }
+    
+    }
+    
+    /**
+     * Whether every document is known to be in {@link MessageFormat#V2}, and no V1 document can be written anymore.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+    
+    /**
+     * Indexes the version key, so that the V1 documents, which don't have it, are found without scanning the
+     * collection.
+     */
+    private void createIndex() {
+        Mono.from(mongoCollection.createIndex(Indexes.ascending(ChatMessageCodec.VERSION)))
+            .subscribe(
+                index -> LOGGER.info("Created index {}", index),
+                error -> LOGGER.error("Failed to create message version index. Reason {}", error.getMessage())
+            );
+    }
+    
+    private void batch() {
+        try {
+    
+            if (complete || System.nanoTime() - idleUntil < 0) {
+                return;
+            }
+    
+            final List<WriteModel<ChatMessage>> replacements = Flux.from(mongoCollection
+                    .find(V1_DOCUMENTS)
+                    .limit(settings.getMigrationBatchSize()))
+                .map(chatMessage -> (WriteModel<ChatMessage>) new ReplaceOneModel<>(
+                    and(eq(ChatMessageCodec.ID, chatMessage.getObjectId()), V1_DOCUMENTS), chatMessage))
+                .collect(Collectors.toList())
+                .block();
+    
+            if (replacements == null || replacements.isEmpty()) {
+                if (settings.isV1WritersRetired()) {
+                    complete = true;
+                    LOGGER.info("Chat messages migrated to {}", MessageFormat.V2);
+                } else {
+                    idleUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(settings.getMigrationIdleInterval());
+                }
+                return;
+            }
+    
+            Mono.from(mongoCollection.bulkWrite(replacements, new BulkWriteOptions().ordered(false)))
+                .doOnNext(result -> migrated.increment(result.getModifiedCount()))
+                .block();
+    
+        } catch (Exception e) {
+            LOGGER.error("Failed to migrate chat messages. Reason {}", e.getMessage());
+        }
+    }
+    
+}
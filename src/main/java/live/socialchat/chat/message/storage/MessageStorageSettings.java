@@ -0,0 +1,32 @@
+package live.socialchat.chat.message.storage;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Storage of the chat messages, read from the {@code chat.message.storage.*} properties:
+ * <ul>
+ *     <li>format: {@link MessageFormat} of the documents written. Both formats are always read</li>
+ *     <li>migrationEnabled: whether {@link MessageFormat#V1} documents are rewritten in the background when writing
+ *     {@link MessageFormat#V2}</li>
+ *     <li>migrationBatchSize: documents rewritten per batch</li>
+ *     <li>migrationInterval: milliseconds between batches, keeping the migration from competing with live traffic</li>
+ *     <li>migrationIdleInterval: milliseconds between looks for V1 documents once a batch found none</li>
+ *     <li>v1WritersRetired: whether every node writes {@link MessageFormat#V2}, so that the migration completes once no
+ *     V1 document is left</li>
+ * </ul>
+ */
+@Getter
+@Builder
+@ToString
+public class MessageStorageSettings {
+    
+    private final MessageFormat format;
+    private final boolean migrationEnabled;
+    private final int migrationBatchSize;
+    private final long migrationInterval;
+    private final long migrationIdleInterval;
+    private final boolean v1WritersRetired;
+    
+}
@@ -0,0 +1,62 @@
+package live.socialchat.chat.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import live.socialchat.chat.message.message.MessageType;
+
+/**
+ * Meters tagged by {@link MessageType}, registered upfront for every type so that recording on the message path is
+ * an enum-indexed lookup rather than a registry lookup building tags.
+ */
+public final class MessageTypeMeters {
+    
+    private static final String TYPE_TAG = "type";
+    
+    private MessageTypeMeters() {
+    
+    }
+    
+    public static Map<MessageType, Timer> timers(final MeterRegistry meterRegistry,
+                                                 final String name,
+                                                 final String description) {
+        
+        final Map<MessageType, Timer> timers = new EnumMap<>(MessageType.class);
+        
+        for (MessageType messageType : MessageType.values()) {
+            timers.put(messageType, Timer.builder(name)
+                .description(description)
+                .tag(TYPE_TAG, messageType.name())
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+        }
+        
+        return Collections.unmodifiableMap(timers);
+    }
+    
+    /**
+     * Summaries published with the given buckets, rather than the percentile histogram, whose default range is meant
+     * for durations.
+     */
+    public static Map<MessageType, DistributionSummary> summaries(final MeterRegistry meterRegistry,
+                                                                  final String name,
+                                                                  final String description,
+                                                                  final double... serviceLevelObjectives) {
+        
+        final Map<MessageType, DistributionSummary> summaries = new EnumMap<>(MessageType.class);
+        
+        for (MessageType messageType : MessageType.values()) {
+            summaries.put(messageType, DistributionSummary.builder(name)
+                .description(description)
+                .tag(TYPE_TAG, messageType.name())
+                .serviceLevelObjectives(serviceLevelObjectives)
+                .register(meterRegistry));
+        }
+        
+        return Collections.unmodifiableMap(summaries);
+    }
+    
+}
@@ -0,0 +1,26 @@
+package live.socialchat.chat.overload;
+
+import live.socialchat.chat.admin.AdminResponses;
+import live.socialchat.chat.admin.AdminRoutes;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.server.HttpServerRoutes;
+
+/**
+ * Reports the overload level of the node and the signals it was derived from at {@code GET /overload}.
+ */
+@Component
+public class OverloadAdminRoutes implements AdminRoutes {
+    
+    private final OverloadController overloadController;
+    
+    public OverloadAdminRoutes(final OverloadController overloadController) {
+        this.overloadController = overloadController;
+    }
+    
+    @Override
+    public void register(final HttpServerRoutes routes) {
+        routes.get("/overload", (request, response) -> AdminResponses.json(response, Mono.fromCallable(overloadController::status)));
+    }
+    
+}
@@ -0,0 +1,367 @@
+package live.socialchat.chat.overload;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import live.socialchat.chat.message.message.MessageType;
+import live.socialchat.chat.scheduler.BackgroundTasks;
+import live.socialchat.chat.scheduler.ChatSchedulers;
+import live.socialchat.chat.server.ServerMessageService;
+import live.socialchat.chat.session.session.ChatSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Sheds load progressively as the node falls behind, rather than accepting work until it falls over. Every
+ * {@code chat.overload.interval} it reads three signals and moves to the highest {@link OverloadLevel} any of them
+ * crosses:
+ * <ul>
+ *     <li>queue depth: tasks waiting on the deepest scheduler</li>
+ *     <li>lag: time a probe task waits to run on the ingest scheduler, which every request goes through whichever
+ *     transport receives it</li>
+ *     <li>persistence latency: mean time of the message inserts completed since the last reading, or the wait of the
+ *     oldest insert in flight when none completed</li>
+ * </ul>
+ * Levels are raised as soon as a threshold is crossed but only lowered once the signals stay below them for
+ * {@code chat.overload.recovery}, so the node doesn't flap. Deferred requests are resumed in batches once it's back
+ * to normal. The level, the signals and every decision are exported as {@code chat.overload.*} metrics.
+ */
+@Component
+public class OverloadController {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(OverloadController.class);
+    private static final String INSERT_TIMER = "chat.message.insert";
+    private static final String OLDEST_INSERT = "chat.message.insert.oldest";
+    
+    private final OverloadSettings settings;
+    private final ChatSchedulers chatSchedulers;
+    private final ServerMessageService serverMessageService;
+    private final MeterRegistry meterRegistry;
+    private final BlockingQueue<DeferredRequest> deferredRequests;
+    private final Counter rejectedConnections;
+    private final Counter deferred;
+    private final Counter resumed;
+    private final Counter expired;
+    private final Counter rejectedRequests;
+    private final Map<OverloadLevel, Counter> transitions = new LinkedHashMap<>();
+    
+    private volatile OverloadLevel level = OverloadLevel.NORMAL;
+    private volatile int queueDepth;
+    private volatile long lagNanos;
+    private volatile long persistenceLatencyNanos;
+    private volatile long probeSubmittedAt;
+    private long belowLevelSince;
+    private long insertCount;
+    private double insertTotalNanos;
+    
+    public OverloadController(final OverloadSettings settings,
+                              final ChatSchedulers chatSchedulers,
+                              final ServerMessageService serverMessageService,
+                              final BackgroundTasks backgroundTasks,
+                              final MeterRegistry meterRegistry) {
+        
+        this.settings = settings;
+        this.chatSchedulers = chatSchedulers;
+        this.serverMessageService = serverMessageService;
+        this.meterRegistry = meterRegistry;
+        this.deferredRequests = new ArrayBlockingQueue<>(settings.getDeferredCapacity());
+        this.rejectedConnections = decisions(meterRegistry, "connection_rejected");
+        this.deferred = decisions(meterRegistry, "request_deferred");
+        this.resumed = decisions(meterRegistry, "deferred_resumed");
+        this.expired = decisions(meterRegistry, "deferred_expired");
+        this.rejectedRequests = decisions(meterRegistry, "deferred_rejected");
+        
+        for (OverloadLevel overloadLevel : OverloadLevel.values()) {
+            transitions.put(overloadLevel, Counter.builder("chat.overload.transitions")
+                .description("Changes of the overload level, by the level entered")
+                .tag("level", overloadLevel.name())
+                .register(meterRegistry));
+        }
+        
+        Gauge.builder("chat.overload.level", this, controller -> controller.level.ordinal())
+            .description("Overload level: 0 normal, 1 deferring, 2 rejecting")
+            .register(meterRegistry);
+        Gauge.builder("chat.overload.queue.depth", this, controller -> controller.queueDepth)
+            .description("Tasks waiting on the deepest scheduler at the last reading")
+            .register(meterRegistry);
+        Gauge.builder("chat.overload.lag", this, controller -> controller.lagNanos / 1e6)
+            .description("Milliseconds the last probe waited to run on the ingest scheduler")
+            .register(meterRegistry);
+        Gauge.builder("chat.overload.persistence.latency", this, controller -> controller.persistenceLatencyNanos / 1e6)
+            .description("Mean milliseconds taken by the message inserts at the last reading")
+            .register(meterRegistry);
+        Gauge.builder("chat.overload.deferred", deferredRequests, BlockingQueue::size)
+            .description("Requests deferred until the node recovers")
+            .register(meterRegistry);
+        
+        if (settings.isEnabled()) {
+            backgroundTasks.schedule("overload controller", this::tick, settings.getInterval());
+            LOGGER.info("Overload controller enabled with {}", settings);
+        }
+        
+    }
+    
+    public OverloadLevel getLevel() {
+        return level;
+    }
+    
+    public long getRetryAfter() {
+        return settings.getRetryAfter();
+    }
+    
+    /**
+     * Whether a new connection should be accepted, counting the rejection when it shouldn't.
+     */
+    public boolean acceptConnection() {
+        
+        if (level == OverloadLevel.REJECTING) {
+            rejectedConnections.increment();
+            return false;
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Takes over a request while shedding load, if its type is deferrable: it's queued to be handled once the node
+     * recovers, or answered as rate limited when the queue is full. Returns false when the request should be handled
+     * right away.
+     */
+    public boolean defer(final ChatSession chatSession, final MessageType messageType, final Runnable handler) {
+        
+        if (!isDeferring(messageType)) {
+            return false;
+        }
+        
+        if (deferredRequests.offer(new DeferredRequest(chatSession, messageType, handler, System.nanoTime()))) {
+            deferred.increment();
+        } else {
+            rejectedRequests.increment();
+            serverMessageService.handleRateLimited(chatSession, messageType);
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Whether requests of the type are being deferred, letting callers skip creating the handler otherwise.
+     */
+    public boolean isDeferring(final MessageType messageType) {
+        return level != OverloadLevel.NORMAL && settings.getDeferredTypes().contains(messageType);
+    }
+    
+    public Map<String, Object> status() {
+        
+        final Map<String, Object> status = new LinkedHashMap<>();
+        
+        status.put("enabled", settings.isEnabled());
+        status.put("level", level);
+        status.put("queueDepth", queueDepth);
+        status.put("lagMillis", TimeUnit.NANOSECONDS.toMillis(lagNanos));
+        status.put("persistenceLatencyMillis", TimeUnit.NANOSECONDS.toMillis(persistenceLatencyNanos));
+        status.put("deferred", deferredRequests.size());
+        
+        return status;
+    }
+    
+    /**
+     * Reads the signals and updates the level, every {@code chat.overload.interval}.
+     */
+    void tick() {
+        try {
+            final long now = System.nanoTime();
+            queueDepth = chatSchedulers.backlog();
+            lagNanos = probeLag(now);
+            persistenceLatencyNanos = persistenceLatency();
+            update(now);
+            if (level == OverloadLevel.NORMAL) {
+                resumeDeferred(now);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            LOGGER.error("Failed to read the overload signals. Reason {}", e.getMessage());
+        }
+    }
+    
+    private void update(final long now) {
+        
+        final OverloadLevel target = max(
+            level(queueDepth, settings.getQueueDepthDefer(), settings.getQueueDepthReject()),
+            level(TimeUnit.NANOSECONDS.toMillis(lagNanos), settings.getLagDefer(), settings.getLagReject()),
+            level(TimeUnit.NANOSECONDS.toMillis(persistenceLatencyNanos), settings.getPersistenceLatencyDefer(), settings.getPersistenceLatencyReject())
+        );
+        
+        if (target.compareTo(level) >= 0) {
+            belowLevelSince = 0;
+            if (target != level) {
+                transition(target);
+            }
+        } else if (belowLevelSince == 0) {
+            belowLevelSince = now;
+        } else if (now - belowLevelSince >= TimeUnit.MILLISECONDS.toNanos(settings.getRecovery())) {
+            belowLevelSince = 0;
+            transition(target);
+        }
+        
+    }
+    
+    private void transition(final OverloadLevel target) {
+        LOGGER.warn("Overload level {} -> {}: queue depth {}, lag {}ms, persistence latency {}ms", level, target,
+            queueDepth, TimeUnit.NANOSECONDS.toMillis(lagNanos), TimeUnit.NANOSECONDS.toMillis(persistenceLatencyNanos));
+        level = target;
+        transitions.get(target).increment();
+    }
+    
+    /**
+     * Submits a probe to the ingest scheduler and waits for it, up to the rejection threshold, unless the previous one
+     * is still waiting, in which case its wait so far is the lag. A probe which is rejected, or run on this thread as
+     * the ingest scheduler is saturated and runs its tasks on the caller, counts as lagging past the rejection
+     * threshold.
+     */
+    private long probeLag(final long now) throws InterruptedException, ExecutionException {
+        
+        final long submittedAt = probeSubmittedAt;
+        
+        if (submittedAt != 0) {
+            return now - submittedAt;
+        }
+        
+        final long rejectNanos = TimeUnit.MILLISECONDS.toNanos(settings.getLagReject());
+        final Thread controller = Thread.currentThread();
+        final CompletableFuture<Long> probe = new CompletableFuture<>();
+        
+        probeSubmittedAt = now;
+        
+        try {
+            chatSchedulers.ingest().schedule(() -> {
+                probeSubmittedAt = 0;
+                probe.complete((Thread.currentThread() == controller) ? rejectNanos : System.nanoTime() - now);
+            });
+            return probe.get(rejectNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            probeSubmittedAt = 0;
+            return rejectNanos;
+        } catch (TimeoutException e) {
+            return System.nanoTime() - now;
+        }
+    }
+    
+    private long persistenceLatency() {
+        
+        final Timer insertTimer = meterRegistry.find(INSERT_TIMER).tag("outcome", "success").timer();
+        
+        if (insertTimer == null) {
+            return 0;
+        }
+        
+        final long count = insertTimer.count();
+        final double totalNanos = insertTimer.totalTime(TimeUnit.NANOSECONDS);
+        final long completed = count - insertCount;
+        final double completedNanos = totalNanos - insertTotalNanos;
+        
+        insertCount = count;
+        insertTotalNanos = totalNanos;
+        
+        if (completed > 0) {
+            return (long) (completedNanos / completed);
+        }
+        
+        final Gauge oldestInsert = meterRegistry.find(OLDEST_INSERT).gauge();
+        
+        return (oldestInsert != null) ? (long) (oldestInsert.value() * 1e6) : 0;
+    }
+    
+    /**
+     * Hands a batch of deferred requests to the ingest scheduler, answering those which waited too long as rate
+     * limited and dropping those whose connection closed.
+     */
+    private void resumeDeferred(final long now) {
+        
+        final long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(settings.getDeferredTimeout());
+        
+        for (int i = 0; i < settings.getDrainBatch(); i++) {
+            
+            final DeferredRequest deferredRequest = deferredRequests.poll();
+            
+            if (deferredRequest == null) {
+                return;
+            }
+            
+            if (!deferredRequest.chatSession.isOpen()) {
+                continue;
+            }
+            
+            if (now - deferredRequest.deferredAt > timeoutNanos) {
+                expired.increment();
+                serverMessageService.handleRateLimited(deferredRequest.chatSession, deferredRequest.messageType);
+            } else {
+                resumed.increment();
+                chatSchedulers.ingest().schedule(deferredRequest.handler);
+            }
+        }
+        
+    }
+    
+    private static OverloadLevel level(final long value, final long deferThreshold, final long rejectThreshold) {
+        
+        if (value >= rejectThreshold) {
+            return OverloadLevel.REJECTING;
+        } else if (value >= deferThreshold) {
+            return OverloadLevel.DEFERRING;
+        }
+        
+        return OverloadLevel.NORMAL;
+    }
+    
+    private static OverloadLevel max(final OverloadLevel... levels) {
+        
+        OverloadLevel max = OverloadLevel.NORMAL;
+        
+        for (OverloadLevel overloadLevel : levels) {
+            if (overloadLevel.compareTo(max) > 0) {
+                max = overloadLevel;
+            }
+        }
+        
+        return max;
+    }
+    
+    private static Counter decisions(final MeterRegistry meterRegistry, final String decision) {
+        return Counter.builder("chat.overload.decisions")
+            .description("Load shedding decisions")
+            .tag("decision", decision)
+            .register(meterRegistry);
+    }
+    
+    private static final class DeferredRequest {
+        
+        private final ChatSession chatSession;
+        private final MessageType messageType;
+        private final Runnable handler;
+        private final long deferredAt;
+        
+        private DeferredRequest(final ChatSession chatSession,
+                                final MessageType messageType,
+                                final Runnable handler,
+                                final long deferredAt) {
+            this.chatSession = chatSession;
+            this.messageType = messageType;
+            this.handler = handler;
+            this.deferredAt = deferredAt;
+        }
+        
+    }
+    
+}
@@ -0,0 +1,16 @@
+package live.socialchat.chat.overload;
+
+/**
+ * How much load the node sheds, each level shedding what the previous ones do:
+ * <ul>
+ *     <li>NORMAL: nothing is shed and the deferred requests are handled</li>
+ *     <li>DEFERRING: the deferrable requests, such as contacts and chat history, are queued until the node recovers,
+ *     while chat messages keep flowing</li>
+ *     <li>REJECTING: new connections are also rejected, asking clients to retry later</li>
+ * </ul>
+ */
+public enum OverloadLevel {
+    NORMAL,
+    DEFERRING,
+    REJECTING
+}
@@ -0,0 +1,47 @@
+package live.socialchat.chat.overload;
+
+import java.util.Set;
+import live.socialchat.chat.message.message.MessageType;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Thresholds of the overload controller, read from the {@code chat.overload.*} properties. Each signal has a
+ * threshold past which requests are deferred and one past which connections are also rejected:
+ * <ul>
+ *     <li>enabled: whether load is shed at all</li>
+ *     <li>interval: milliseconds between readings of the signals</li>
+ *     <li>queueDepthDefer, queueDepthReject: tasks waiting on the deepest scheduler</li>
+ *     <li>lagDefer, lagReject: milliseconds a probe task waits to run on the ingest scheduler</li>
+ *     <li>persistenceLatencyDefer, persistenceLatencyReject: mean milliseconds taken by the message inserts, or the wait
+ *     of the oldest one in flight when none completes</li>
+ *     <li>recovery: milliseconds the signals must stay below a level before it's left</li>
+ *     <li>retryAfter: seconds rejected clients are asked to wait, sent as {@code Retry-After}</li>
+ *     <li>deferredTypes: request types deferred while shedding load</li>
+ *     <li>deferredCapacity: deferred requests kept, past which they're rejected</li>
+ *     <li>deferredTimeout: milliseconds a deferred request is kept before being rejected</li>
+ *     <li>drainBatch: deferred requests resumed per reading once the node recovers</li>
+ * </ul>
+ */
+@Getter
+@Builder
+@ToString
+public class OverloadSettings {
+    
+    private final boolean enabled;
+    private final long interval;
+    private final int queueDepthDefer;
+    private final int queueDepthReject;
+    private final long lagDefer;
+    private final long lagReject;
+    private final long persistenceLatencyDefer;
+    private final long persistenceLatencyReject;
+    private final long recovery;
+    private final long retryAfter;
+    private final Set<MessageType> deferredTypes;
+    private final int deferredCapacity;
+    private final long deferredTimeout;
+    private final int drainBatch;
+    
+}
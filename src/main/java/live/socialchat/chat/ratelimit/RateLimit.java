@@ -0,0 +1,32 @@
+package live.socialchat.chat.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Sustained rate, in requests per second, and burst of a token bucket. A rate of zero leaves requests unlimited.
+ */
+@Getter
+@ToString(exclude = {"emissionIntervalNanos", "toleranceNanos"})
+public class RateLimit {
+    
+    public static final RateLimit UNLIMITED = new RateLimit(0, 0);
+    
+    private final double ratePerSecond;
+    private final int burst;
+    private final long emissionIntervalNanos;
+    private final long toleranceNanos;
+    
+    public RateLimit(final double ratePerSecond, final int burst) {
+        this.ratePerSecond = ratePerSecond;
+        this.burst = Math.max(burst, 1);
+        this.emissionIntervalNanos = (ratePerSecond > 0) ? (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond) : 0;
+        this.toleranceNanos = emissionIntervalNanos * (this.burst - 1);
+    }
+    
+    public boolean isUnlimited() {
+        return emissionIntervalNanos == 0;
+    }
+    
+}
@@ -0,0 +1,34 @@
+package live.socialchat.chat.ratelimit;
+
+import java.util.Map;
+import live.socialchat.chat.message.message.MessageType;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Singular;
+import lombok.ToString;
+
+/**
+ * Limits of the inbound requests, read from the {@code chat.rate-limit.*} properties:
+ * <ul>
+ *     <li>enabled: whether requests are limited at all</li>
+ *     <li>connectionLimits: limit of each request type on every connection</li>
+ *     <li>userLimits: limit of each request type shared by all the connections of a user</li>
+ *     <li>allUsersGroupConnectionLimit, allUsersGroupUserLimit: additional limits of the messages posted to the all
+ *     users group, whose fanout reaches every connection</li>
+ * </ul>
+ * Types without a limit are unlimited.
+ */
+@Getter
+@Builder
+@ToString
+public class RateLimitSettings {
+    
+    private final boolean enabled;
+    @Singular
+    private final Map<MessageType, RateLimit> connectionLimits;
+    @Singular
+    private final Map<MessageType, RateLimit> userLimits;
+    private final RateLimit allUsersGroupConnectionLimit;
+    private final RateLimit allUsersGroupUserLimit;
+    
+}
@@ -0,0 +1,180 @@
+package live.socialchat.chat.ratelimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import live.socialchat.chat.message.message.MessageType;
+import live.socialchat.chat.session.session.ChatSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Limits the requests of each connection, and of each user across their connections, with a token bucket per
+ * {@link MessageType}, plus one for the messages posted to the all users group. The buckets of a connection are
+ * created when it connects and hold on to the buckets of their user, which are dropped along with the user's last
+ * connection, so checking a request is a lock-free map read followed by a compare-and-set per bucket. Rejections are
+ * counted in {@code chat.ratelimit.rejected}, by type and by the scope of the bucket that was empty, for the limited
+ * types only.
+ */
+@Component
+public class RateLimiter {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(RateLimiter.class);
+    private static final int ALL_USERS_GROUP_SLOT = MessageType.values().length;
+    private static final int SLOTS = ALL_USERS_GROUP_SLOT + 1;
+    private static final String ALL_USERS_GROUP = "ALL_USERS_GROUP";
+    
+    private final boolean enabled;
+    private final RateLimit[] connectionLimits = new RateLimit[SLOTS];
+    private final RateLimit[] userLimits = new RateLimit[SLOTS];
+    private final Counter[] connectionRejections = new Counter[SLOTS];
+    private final Counter[] userRejections = new Counter[SLOTS];
+    private final Map<String, ConnectionBuckets> connections = new ConcurrentHashMap<>();
+    private final Map<String, UserBuckets> users = new ConcurrentHashMap<>();
+    
+    public RateLimiter(final RateLimitSettings settings, final MeterRegistry meterRegistry) {
+    
+        this.enabled = settings.isEnabled();
+    
+        for (MessageType messageType : MessageType.values()) {
+            connectionLimits[messageType.ordinal()] = settings.getConnectionLimits().getOrDefault(messageType, RateLimit.UNLIMITED);
+            userLimits[messageType.ordinal()] = settings.getUserLimits().getOrDefault(messageType, RateLimit.UNLIMITED);
+        }
+        
+        connectionLimits[ALL_USERS_GROUP_SLOT] = settings.getAllUsersGroupConnectionLimit();
+        userLimits[ALL_USERS_GROUP_SLOT] = settings.getAllUsersGroupUserLimit();
+        
+        for (int slot = 0; slot < SLOTS; slot++) {
+            final String type = (slot == ALL_USERS_GROUP_SLOT) ? ALL_USERS_GROUP : MessageType.values()[slot].name();
+            if (!connectionLimits[slot].isUnlimited()) {
+                connectionRejections[slot] = rejections(meterRegistry, type, "connection");
+            }
+            if (!userLimits[slot].isUnlimited()) {
+                userRejections[slot] = rejections(meterRegistry, type, "user");
+            }
+        }
+        
+        Gauge.builder("chat.ratelimit.connections", connections, Map::size)
+            .description("Connections being rate limited")
+            .register(meterRegistry);
+        Gauge.builder("chat.ratelimit.users", users, Map::size)
+            .description("Users being rate limited")
+            .register(meterRegistry);
+    
+        LOGGER.info("Rate limiting with {}", settings);
+    }
+    
+    public void connected(final ChatSession chatSession) {
+    
+        if (!enabled) {
+            return;
+        }
+    
+        final long now = System.nanoTime();
+        final UserBuckets userBuckets = users.compute(userId(chatSession),
+            (userId, current) -> (current != null) ? current.retain() : new UserBuckets(now));
+    
+        connections.put(chatSession.getConnectionId(), new ConnectionBuckets(userBuckets, now));
+    }
+    
+    public void disconnected(final ChatSession chatSession) {
+    
+        if (!enabled || connections.remove(chatSession.getConnectionId()) == null) {
+            return;
+        }
+    
+        users.computeIfPresent(userId(chatSession), (userId, current) -> current.release() ? null : current);
+    }
+    
+    /**
+     * Takes a token for the request from the buckets of its connection and user, returning false if either is empty.
+     * Connections that weren't registered aren't limited.
+     */
+    public boolean tryAcquire(final ChatSession chatSession, final MessageType messageType) {
+        return tryAcquire(chatSession, messageType.ordinal());
+    }
+    
+    /**
+     * Takes a token for a message posted to the all users group, on top of the one taken for the message itself.
+     */
+    public boolean tryAcquireAllUsersGroup(final ChatSession chatSession) {
+        return tryAcquire(chatSession, ALL_USERS_GROUP_SLOT);
+    }
+    
+    private boolean tryAcquire(final ChatSession chatSession, final int slot) {
+    
+        if (!enabled) {
+            return true;
+        }
+    
+        final ConnectionBuckets connectionBuckets = connections.get(chatSession.getConnectionId());
+    
+        if (connectionBuckets == null) {
+            return true;
+        }
+    
+        final long now = System.nanoTime();
+    
+        if (!connectionBuckets.tryAcquire(slot, connectionLimits[slot], now)) {
+            connectionRejections[slot].increment();
+            return false;
+        }
+    
+        if (!connectionBuckets.userBuckets.tryAcquire(slot, userLimits[slot], now)) {
+            userRejections[slot].increment();
+            return false;
+        }
+    
+        return true;
+    }
+    
+    private static String userId(final ChatSession chatSession) {
+        return chatSession.getUserAuthenticationDetails().getUserId();
+    }
+    
+    private static Counter rejections(final MeterRegistry meterRegistry, final String type, final String scope) {
+        return Counter.builder("chat.ratelimit.rejected")
+            .description("Requests rejected for exceeding their rate limit")
+            .tag("type", type)
+            .tag("scope", scope)
+            .register(meterRegistry);
+    }
+    
+    private static final class ConnectionBuckets extends TokenBuckets {
+    
+        private final UserBuckets userBuckets;
+    
+        private ConnectionBuckets(final UserBuckets userBuckets, final long nowNanos) {
+            super(SLOTS, nowNanos);
+            this.userBuckets = userBuckets;
+        }
+    
+    }
+    
+    /**
+     * Buckets of a user, along with the number of their connections. The count is only changed within the map's
+     * compute functions, which are atomic for each user.
+     */
+    private static final class UserBuckets extends TokenBuckets {
+    
+        private int connections = 1;
+    
+        private UserBuckets(final long nowNanos) {
+            super(SLOTS, nowNanos);
+        }
+    
+        private UserBuckets retain() {
+            connections++;
+            return this;
+        }
+    
+        private boolean release() {
+            return --connections == 0;
+        }
+    
+    }
+    
+}
@@ -0,0 +1,42 @@
+package live.socialchat.chat.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Token buckets indexed by slot, implemented as the generic cell rate algorithm: each bucket is the single time at
+ * which it would be full again, so taking a token is one compare-and-set, without locks and without a timer
+ * refilling the buckets.
+ */
+class TokenBuckets {
+    
+    private final AtomicLongArray fullAt;
+    
+    TokenBuckets(final int slots, final long nowNanos) {
+        this.fullAt = new AtomicLongArray(slots);
+        for (int slot = 0; slot < slots; slot++) {
+            fullAt.set(slot, nowNanos);
+        }
+    }
+    
+    boolean tryAcquire(final int slot, final RateLimit limit, final long nowNanos) {
+    
+        if (limit.isUnlimited()) {
+            return true;
+        }
+    
+        long current;
+        long next;
+    
+        do {
+            current = fullAt.get(slot);
+            final long start = Math.max(current, nowNanos);
+            if (start - nowNanos > limit.getToleranceNanos()) {
+                return false;
+            }
+            next = start + limit.getEmissionIntervalNanos();
+        } while (!fullAt.compareAndSet(slot, current, next));
+    
+        return true;
+    }
+    
+}
@@ -0,0 +1,52 @@
+package live.socialchat.chat.receipt;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import live.socialchat.chat.message.message.ReceiptRequest.Status;
+import live.socialchat.chat.message.message.Receipt;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+/**
+ * Receipts kept in memory, raised the same way as with MongoDB.
+ */
+@Repository
+@Profile("inmemory")
+public class InMemoryReceiptRepository implements ReceiptRepository {
+    
+    private final Map<String, ReceiptUpdate> receipts = new ConcurrentHashMap<>();
+    
+    /**
+     * Replaces each receipt with a raised copy, as the stored one may be being read.
+     */
+    @Override
+    public Mono<Void> saveAll(final List<ReceiptUpdate> updates) {
+        return Mono.fromRunnable(() -> updates.forEach(update -> receipts.compute(update.id(), (id, receipt) -> {
+    
+            final ReceiptUpdate stored = new ReceiptUpdate(update.getUserId(), update.getConversationId(), update.getDestinationType());
+    
+            if (receipt != null) {
+                raise(stored, receipt);
+            }
+            raise(stored, update);
+    
+            return stored;
+        })));
+    }
+    
+    @Override
+    public Mono<Receipt> findReceipt(final String userId, final String conversationId) {
+        return Mono.justOrEmpty(receipts.get(ReceiptUpdate.id(userId, conversationId)))
+            .map(ReceiptUpdate::toReceipt);
+    }
+    
+    private static void raise(final ReceiptUpdate receipt, final ReceiptUpdate update) {
+        receipt.acknowledge(update.getDeliveredMessageId(), Status.DELIVERED);
+        if (update.getReadMessageId() != null) {
+            receipt.acknowledge(update.getReadMessageId(), Status.READ);
+        }
+    }
+    
+}
@@ -0,0 +1,96 @@
+package live.socialchat.chat.receipt;
+
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import com.mongodb.reactivestreams.client.MongoDatabase;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import live.socialchat.chat.message.message.ChatMessage.DestinationType;
+import live.socialchat.chat.message.message.Receipt;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Updates.combine;
+import static com.mongodb.client.model.Updates.max;
+import static com.mongodb.client.model.Updates.setOnInsert;
+
+/**
+ * Receipts stored one per user and conversation, in {@code chat_receipt}, with id {@code <user>:<conversation>}:
+ * {@code u} user, {@code c} conversation, {@code k} destination type, {@code d} last message delivered and {@code r}
+ * last message read. Both are raised with {@code $max}, so acknowledgements written out of order never move them
+ * back.
+ */
+@Repository
+@Profile("!inmemory")
+public class MongoReceiptRepository implements ReceiptRepository {
+    
+    private static final String RECEIPT_COLLECTION = "chat_receipt";
+    private static final String ID = "_id";
+    private static final String USER = "u";
+    private static final String CONVERSATION = "c";
+    private static final String DESTINATION_TYPE = "k";
+    private static final String DELIVERED = "d";
+    private static final String READ = "r";
+    private static final UpdateOptions UPSERT = new UpdateOptions().upsert(true);
+    private static final BulkWriteOptions UNORDERED = new BulkWriteOptions().ordered(false);
+    
+    private final MongoCollection<Document> mongoCollection;
+    
+    public MongoReceiptRepository(final MongoDatabase mongoDatabase) {
+        this.mongoCollection = mongoDatabase.getCollection(RECEIPT_COLLECTION);
+    }
+    
+    @Override
+    public Mono<Void> saveAll(final List<ReceiptUpdate> updates) {
+    
+        if (updates.isEmpty()) {
+            return Mono.empty();
+        }
+    
+        final List<WriteModel<Document>> writes = updates.stream()
+            .map(update -> (WriteModel<Document>) new UpdateOneModel<Document>(eq(ID, update.id()), update(update), UPSERT))
+            .collect(Collectors.toList());
+    
+        return Mono.from(mongoCollection.bulkWrite(writes, UNORDERED)).then();
+    }
+    
+    @Override
+    public Mono<Receipt> findReceipt(final String userId, final String conversationId) {
+        return Mono.from(mongoCollection.find(eq(ID, ReceiptUpdate.id(userId, conversationId))).first())
+            .map(document -> Receipt.builder()
+                .conversationId(DestinationType.USER.name().equals(document.getString(DESTINATION_TYPE)) ? userId : conversationId)
+                .userId(userId)
+                .deliveredMessageId(hexString(document.getObjectId(DELIVERED)))
+                .readMessageId(hexString(document.getObjectId(READ)))
+                .build());
+    }
+    
+    private static Bson update(final ReceiptUpdate update) {
+    
+        final List<Bson> updates = new ArrayList<>();
+    
+        updates.add(setOnInsert(USER, update.getUserId()));
+        updates.add(setOnInsert(CONVERSATION, update.getConversationId()));
+        updates.add(setOnInsert(DESTINATION_TYPE, update.getDestinationType().name()));
+        updates.add(max(DELIVERED, update.getDeliveredMessageId()));
+        if (update.getReadMessageId() != null) {
+            updates.add(max(READ, update.getReadMessageId()));
+        }
+    
+        return combine(updates);
+    }
+    
+    private static String hexString(final ObjectId objectId) {
+        return (objectId != null) ? objectId.toHexString() : null;
+    }
+    
+}
@@ -0,0 +1,19 @@
+package live.socialchat.chat.receipt;
+
+import java.util.List;
+import live.socialchat.chat.message.message.Receipt;
+import reactor.core.publisher.Mono;
+
+public interface ReceiptRepository {
+    
+    /**
+     * Raises the stored receipts to the acknowledged messages, never lowering them.
+     */
+    Mono<Void> saveAll(List<ReceiptUpdate> updates);
+    
+    /**
+     * The user's receipt of a conversation, as the other participants see it.
+     */
+    Mono<Receipt> findReceipt(String userId, String conversationId);
+    
+}
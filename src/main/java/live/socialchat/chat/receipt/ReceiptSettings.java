@@ -0,0 +1,24 @@
+package live.socialchat.chat.receipt;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Delivery and read receipts, read from the {@code chat.receipt.*} properties:
+ * <ul>
+ *     <li>flushInterval: milliseconds the acknowledgements are coalesced in memory before being written and sent</li>
+ *     <li>batchSize: receipts written per bulk write</li>
+ *     <li>frameSize: receipts sent per {@code RECEIPTS} message</li>
+ * </ul>
+ */
+@Getter
+@Builder
+@ToString
+public class ReceiptSettings {
+    
+    private final long flushInterval;
+    private final int batchSize;
+    private final int frameSize;
+    
+}
@@ -0,0 +1,83 @@
+package live.socialchat.chat.receipt;
+
+import live.socialchat.chat.message.message.ChatMessage.DestinationType;
+import live.socialchat.chat.message.message.Receipt;
+import live.socialchat.chat.message.message.ReceiptRequest.Status;
+import org.bson.types.ObjectId;
+
+/**
+ * The highest messages of a conversation acknowledged by a user since the last flush. Reading a message implies it
+ * was delivered, and acknowledging an older message than the last one changes nothing.
+ */
+public final class ReceiptUpdate {
+    
+    private final String userId;
+    private final String conversationId;
+    private final DestinationType destinationType;
+    
+    private ObjectId deliveredMessageId;
+    private ObjectId readMessageId;
+    
+    ReceiptUpdate(final String userId, final String conversationId, final DestinationType destinationType) {
+        this.userId = userId;
+        this.conversationId = conversationId;
+        this.destinationType = destinationType;
+    }
+    
+    static String id(final String userId, final String conversationId) {
+        return userId + ":" + conversationId;
+    }
+    
+    String id() {
+        return id(userId, conversationId);
+    }
+    
+    String getUserId() {
+        return userId;
+    }
+    
+    String getConversationId() {
+        return conversationId;
+    }
+    
+    DestinationType getDestinationType() {
+        return destinationType;
+    }
+    
+    ObjectId getDeliveredMessageId() {
+        return deliveredMessageId;
+    }
+    
+    ObjectId getReadMessageId() {
+        return readMessageId;
+    }
+    
+    boolean isDirect() {
+        return destinationType == DestinationType.USER;
+    }
+    
+    ReceiptUpdate acknowledge(final ObjectId messageId, final Status status) {
+        deliveredMessageId = max(deliveredMessageId, messageId);
+        if (status == Status.READ) {
+            readMessageId = max(readMessageId, messageId);
+        }
+        return this;
+    }
+    
+    /**
+     * The receipt as the other participants see it, for whom a direct conversation is the user.
+     */
+    Receipt toReceipt() {
+        return Receipt.builder()
+            .conversationId(isDirect() ? userId : conversationId)
+            .userId(userId)
+            .deliveredMessageId((deliveredMessageId != null) ? deliveredMessageId.toHexString() : null)
+            .readMessageId((readMessageId != null) ? readMessageId.toHexString() : null)
+            .build();
+    }
+    
+    private static ObjectId max(final ObjectId current, final ObjectId messageId) {
+        return (current == null || messageId.compareTo(current) > 0) ? messageId : current;
+    }
+    
+}
@@ -0,0 +1,157 @@
+package live.socialchat.chat.receipt;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import live.socialchat.chat.broadcast.BroadcasterService;
+import live.socialchat.chat.message.message.MessageType;
+import live.socialchat.chat.message.message.Receipt;
+import live.socialchat.chat.message.message.ReceiptRequest;
+import live.socialchat.chat.message.message.ResponseMessage;
+import live.socialchat.chat.scheduler.BackgroundTasks;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * Delivery and read receipts, designed for volume. Clients acknowledge the last message of a conversation rather than
+ * each message, and the acknowledgements are coalesced in memory per user and conversation, keeping the highest. Every
+ * {@code flushInterval} they're sent to the other participants and written with batched upserts. Each recipient gets
+ * its receipts in {@code RECEIPTS} messages of up to {@code frameSize}: the other user of a direct conversation, or
+ * every user for groups, as every user sees every group. However many members read a group message, a flush costs one
+ * write per reader and a frame per connection.
+ * <p>
+ * Acknowledgements are counted in {@code chat.receipt.acks}, written receipts in {@code chat.receipt.written} and
+ * frames sent in {@code chat.receipt.frames}. A failed write drops its receipts, logging the failure.
+ */
+@Component
+public class Receipts {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(Receipts.class);
+    private static final long FLUSH_TIMEOUT_MILLIS = 30_000;
+    
+    private final ReceiptRepository receiptRepository;
+    private final BroadcasterService broadcasterService;
+    private final ReceiptSettings settings;
+    private final Map<String, ReceiptUpdate> pending = new ConcurrentHashMap<>();
+    private final Counter acks;
+    private final Counter written;
+    private final Counter frames;
+    
+    public Receipts(final ReceiptRepository receiptRepository,
+                    final BroadcasterService broadcasterService,
+                    final ReceiptSettings settings,
+                    final BackgroundTasks backgroundTasks,
+                    final MeterRegistry meterRegistry) {
+    
+        this.receiptRepository = receiptRepository;
+        this.broadcasterService = broadcasterService;
+        this.settings = settings;
+        this.acks = meterRegistry.counter("chat.receipt.acks");
+        this.written = meterRegistry.counter("chat.receipt.written");
+        this.frames = meterRegistry.counter("chat.receipt.frames");
+        meterRegistry.gauge("chat.receipt.pending", pending, Map::size);
+    
+        backgroundTasks.schedule("receipts flush", () -> flush(FLUSH_TIMEOUT_MILLIS), settings.getFlushInterval());
+        LOGGER.info("Batching receipts with {}", settings);
+    }
+    
+    public void acknowledge(final String userId, final ReceiptRequest receiptRequest) {
+    
+        final ObjectId messageId = new ObjectId(receiptRequest.getMessageId().trim());
+    
+        pending.compute(ReceiptUpdate.id(userId, receiptRequest.getConversationId()), (id, update) ->
+            ((update != null) ? update : new ReceiptUpdate(userId, receiptRequest.getConversationId(), receiptRequest.getDestinationType()))
+                .acknowledge(messageId, receiptRequest.getStatus()));
+    
+        acks.increment();
+    }
+    
+    public Mono<Receipt> findReceipt(final String userId, final String conversationId) {
+        return receiptRepository.findReceipt(userId, conversationId);
+    }
+    
+    /**
+     * Sends the pending receipts and writes them, waiting up to the timeout for each batch.
+     */
+    public void flush(final long timeoutMillis) {
+    
+        final List<ReceiptUpdate> updates = new ArrayList<>();
+    
+        for (String id : pending.keySet()) {
+    
+            final ReceiptUpdate update = pending.remove(id);
+    
+            if (update != null) {
+                updates.add(update);
+            }
+        }
+    
+        if (updates.isEmpty()) {
+            return;
+        }
+    
+        try {
+            send(updates);
+        } catch (Exception e) {
+            LOGGER.error("Failed to send {} receipts. Reason {}", updates.size(), e.getMessage());
+        }
+    
+        for (int from = 0; from < updates.size(); from += settings.getBatchSize()) {
+    
+            final List<ReceiptUpdate> batch = updates.subList(from, Math.min(from + settings.getBatchSize(), updates.size()));
+    
+            try {
+                receiptRepository.saveAll(batch).block(Duration.ofMillis(timeoutMillis));
+                written.increment(batch.size());
+            } catch (Exception e) {
+                LOGGER.error("Failed to write {} receipts. Reason {}", batch.size(), e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Groups the receipts by recipient, the other user of direct conversations and every user for groups.
+     */
+    private void send(final List<ReceiptUpdate> updates) {
+    
+        final Map<String, List<Receipt>> directReceipts = new HashMap<>();
+        final List<Receipt> groupReceipts = new ArrayList<>();
+    
+        for (ReceiptUpdate update : updates) {
+            if (update.isDirect()) {
+                directReceipts.computeIfAbsent(update.getConversationId(), userId -> new ArrayList<>()).add(update.toReceipt());
+            } else {
+                groupReceipts.add(update.toReceipt());
+            }
+        }
+    
+        directReceipts.forEach((userId, receipts) -> forEachFrame(receipts, frame -> broadcasterService.broadcastToUser(userId, frame)));
+        forEachFrame(groupReceipts, broadcasterService::broadcastToAllUsers);
+    }
+    
+    private void forEachFrame(final List<Receipt> receipts,
+                              final Consumer<ResponseMessage<Object>> sender) {
+    
+        for (int from = 0; from < receipts.size(); from += settings.getFrameSize()) {
+    
+            sender.accept(ResponseMessage
+                .builder()
+                .type(MessageType.RECEIPTS)
+                .payload(new ArrayList<>(receipts.subList(from, Math.min(from + settings.getFrameSize(), receipts.size()))))
+                .build());
+    
+            frames.increment();
+        }
+    }
+    
+}
@@ -0,0 +1,149 @@
+package live.socialchat.chat.resume;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongSupplier;
+import live.socialchat.chat.message.message.ChatMessage;
+import live.socialchat.chat.message.message.Message;
+import live.socialchat.chat.message.message.ResponseMessage;
+
+/**
+ * Chat messages recently sent to a user, oldest first, identified by the resume token handed to the user's
+ * connections, or sent to every user, without token. Messages are numbered as they're appended, so that they're held
+ * in sequence order. It remembers the highest sequence number it evicted, so a resume from an older one is known to
+ * have a gap.
+ */
+final class ReplayBuffer {
+    
+    private final String token;
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+    
+    private long evictedSeq;
+    private int connections;
+    private long idleSince;
+    
+    ReplayBuffer(final String token) {
+        this.token = token;
+    }
+    
+    String getToken() {
+        return token;
+    }
+    
+    synchronized void connected() {
+        connections++;
+    }
+    
+    synchronized void disconnected(final long now) {
+        if (connections > 0 && --connections == 0) {
+            idleSince = now;
+        }
+    }
+    
+    synchronized boolean isIdleSince(final long deadline) {
+        return connections == 0 && idleSince - deadline <= 0;
+    }
+    
+    /**
+     * Numbers the message from the sequence, unless it already is, and appends it.
+     */
+    synchronized Entry append(final ResponseMessage<ChatMessage> message,
+                              final LongSupplier sequence,
+                              final long createdAt,
+                              final int size) {
+        
+        if (message.getSeq() == 0) {
+            message.setSeq(sequence.getAsLong());
+        }
+        
+        final Entry entry = new Entry(this, message.getSeq(), createdAt, message, size);
+        
+        entries.addLast(entry);
+        
+        return entry;
+    }
+    
+    /**
+     * Evicts the oldest entries past the limit, returning how many.
+     */
+    synchronized int trim(final int maxEntries) {
+        
+        int evicted = 0;
+        
+        while (entries.size() > maxEntries) {
+            evict(entries.peekFirst());
+            evicted++;
+        }
+        
+        return evicted;
+    }
+    
+    /**
+     * Evicts the entry, returning it, or null if it was already evicted.
+     */
+    synchronized Entry evict(final Entry entry) {
+        
+        if (entry.evicted || !entries.remove(entry)) {
+            return null;
+        }
+        
+        entry.evicted = true;
+        evictedSeq = Math.max(evictedSeq, entry.seq);
+        
+        return entry;
+    }
+    
+    /**
+     * Evicts every entry.
+     */
+    synchronized void clear() {
+        
+        for (Entry entry : entries) {
+            entry.evicted = true;
+        }
+        
+        entries.clear();
+    }
+    
+    /**
+     * Entries after the given sequence number, or null if any of them was already evicted.
+     */
+    synchronized List<Entry> missedSince(final long lastSeq) {
+        
+        if (lastSeq < evictedSeq) {
+            return null;
+        }
+        
+        final List<Entry> missed = new ArrayList<>();
+        
+        for (Entry entry : entries) {
+            if (entry.seq > lastSeq) {
+                missed.add(entry);
+            }
+        }
+        
+        return missed;
+    }
+    
+    static final class Entry {
+        
+        final ReplayBuffer buffer;
+        final long seq;
+        final long createdAt;
+        final Message message;
+        final int size;
+        
+        boolean evicted;
+        
+        Entry(final ReplayBuffer buffer, final long seq, final long createdAt, final Message message, final int size) {
+            this.buffer = buffer;
+            this.seq = seq;
+            this.createdAt = createdAt;
+            this.message = message;
+            this.size = size;
+        }
+        
+    }
+    
+}
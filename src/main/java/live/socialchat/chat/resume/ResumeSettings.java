@@ -0,0 +1,30 @@
+package live.socialchat.chat.resume;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Session resumption, read from the {@code chat.resume.*} properties:
+ * <ul>
+ *     <li>enabled: whether chat messages are buffered for replay at all</li>
+ *     <li>maxAge: milliseconds a message is kept for, and a buffer is kept after the user's last connection
+ *     closed</li>
+ *     <li>maxMessagesPerUser: messages kept per user, and of those sent to every user, evicting the oldest</li>
+ *     <li>maxBytes: estimated size of the messages held across all users, including those evicted from their buffer but
+ *     not yet released, evicting the oldest</li>
+ *     <li>sweepInterval: milliseconds between evictions of the expired messages and buffers</li>
+ * </ul>
+ */
+@Getter
+@Builder
+@ToString
+public class ResumeSettings {
+    
+    private final boolean enabled;
+    private final long maxAge;
+    private final int maxMessagesPerUser;
+    private final long maxBytes;
+    private final long sweepInterval;
+    
+}
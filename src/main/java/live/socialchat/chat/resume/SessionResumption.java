@@ -0,0 +1,267 @@
+package live.socialchat.chat.resume;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import live.socialchat.chat.message.message.ChatMessage;
+import live.socialchat.chat.message.message.Message;
+import live.socialchat.chat.message.message.ResponseMessage;
+import live.socialchat.chat.message.message.ResumeRequest;
+import live.socialchat.chat.resume.ReplayBuffer.Entry;
+import live.socialchat.chat.scheduler.BackgroundTasks;
+import live.socialchat.chat.session.session.ChatSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Lets a client whose socket dropped for a few seconds get the chat messages it missed from memory, instead of
+ * fetching the history of its conversations. Every chat message is numbered with a node-wide {@code seq}, sent in its
+ * envelope, and kept in a {@link ReplayBuffer} per recipient user, along with the connection count of the user.
+ * Messages to every user are kept once, in a node-wide buffer which every user's resumption reads too. A reconnecting
+ * client sends the resume token it got with {@code CONNECTED} and the last {@code seq} it received, and the messages
+ * after it are replayed, unless some were evicted already.
+ * <p>
+ * Messages are evicted, oldest first, past {@code maxMessagesPerUser} for a user or for every user, past
+ * {@code maxBytes} overall or once older than {@code maxAge}. Buffers are dropped {@code maxAge} after the last
+ * connection of their user closed. Sizes are estimated from the content of the messages, and a message counts towards
+ * {@code maxBytes} once, until it leaves the node-wide queue of messages, even once evicted from its buffer, so that
+ * the limit bounds the memory held. Messages are numbered under the lock of the buffer they're appended to only, so
+ * each buffer holds its messages in {@code seq} order. Replayed messages may interleave with live ones, so clients
+ * deduplicate by {@code seq}. Resumptions are counted in {@code chat.resume.requests} by outcome and evictions in
+ * {@code chat.resume.evicted} by reason.
+ */
+@Component
+public class SessionResumption {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(SessionResumption.class);
+    private static final int MESSAGE_OVERHEAD_BYTES = 256;
+    
+    private final ResumeSettings settings;
+    private final Map<String, ReplayBuffer> buffers = new ConcurrentHashMap<>();
+    private final ReplayBuffer allUsers = new ReplayBuffer(null);
+    private final Queue<Entry> entries = new ConcurrentLinkedQueue<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final Counter resumed;
+    private final Counter gaps;
+    private final Counter unknownTokens;
+    private final Counter evictedByAge;
+    private final Counter evictedByUserLimit;
+    private final Counter evictedByMemory;
+    
+    public SessionResumption(final ResumeSettings settings,
+                             final BackgroundTasks backgroundTasks,
+                             final MeterRegistry meterRegistry) {
+    
+        this.settings = settings;
+        this.resumed = meterRegistry.counter("chat.resume.requests", "outcome", "resumed");
+        this.gaps = meterRegistry.counter("chat.resume.requests", "outcome", "gap");
+        this.unknownTokens = meterRegistry.counter("chat.resume.requests", "outcome", "unknown_token");
+        this.evictedByAge = meterRegistry.counter("chat.resume.evicted", "reason", "age");
+        this.evictedByUserLimit = meterRegistry.counter("chat.resume.evicted", "reason", "user_limit");
+        this.evictedByMemory = meterRegistry.counter("chat.resume.evicted", "reason", "memory");
+        meterRegistry.gauge("chat.resume.buffers", buffers, Map::size);
+        meterRegistry.gauge("chat.resume.bytes", bytes);
+    
+        if (settings.isEnabled()) {
+            backgroundTasks.schedule("session resumption sweep", this::sweep, settings.getSweepInterval());
+            LOGGER.info("Buffering messages for session resumption with {}", settings);
+        }
+    
+    }
+    
+    /**
+     * Registers the connection with the buffer of its user, returning the token to resume with, or null when
+     * resumption is disabled.
+     */
+    public String connected(final ChatSession chatSession) {
+    
+        if (!settings.isEnabled()) {
+            return null;
+        }
+    
+        return buffers.compute(userId(chatSession), (userId, buffer) -> {
+            final ReplayBuffer replayBuffer = (buffer != null) ? buffer : new ReplayBuffer(UUID.randomUUID().toString());
+            replayBuffer.connected();
+            return replayBuffer;
+        }).getToken();
+    }
+    
+    public void disconnected(final ChatSession chatSession) {
+    
+        if (!settings.isEnabled()) {
+            return;
+        }
+    
+        buffers.computeIfPresent(userId(chatSession), (userId, buffer) -> {
+            buffer.disconnected(System.nanoTime());
+            return buffer;
+        });
+    }
+    
+    /**
+     * Numbers a chat message sent to a user and keeps it for them.
+     */
+    public void record(final String userId, final ResponseMessage<ChatMessage> message) {
+    
+        if (!settings.isEnabled()) {
+            return;
+        }
+    
+        final ReplayBuffer buffer = buffers.get(userId);
+    
+        if (buffer != null) {
+            append(buffer, message);
+        } else if (message.getSeq() == 0) {
+            message.setSeq(sequence.incrementAndGet());
+        }
+    }
+    
+    /**
+     * Numbers a chat message sent to every user and keeps it once for all of them.
+     */
+    public void recordForAll(final ResponseMessage<ChatMessage> message) {
+    
+        if (!settings.isEnabled()) {
+            return;
+        }
+    
+        append(allUsers, message);
+    }
+    
+    /**
+     * Messages the client missed since the last one it received, or null if the session can't be resumed, in which
+     * case the client falls back to the chat history.
+     */
+    public List<Message> missed(final ChatSession chatSession, final ResumeRequest resumeRequest) {
+    
+        final ReplayBuffer buffer = settings.isEnabled() ? buffers.get(userId(chatSession)) : null;
+    
+        if (buffer == null || !buffer.getToken().equals(resumeRequest.getResumeToken())) {
+            unknownTokens.increment();
+            return null;
+        }
+    
+        final List<Message> missed = missedSince(buffer, resumeRequest.getLastSeq());
+    
+        if (missed == null) {
+            gaps.increment();
+            LOGGER.info("Can't resume session of connection {} from seq {}", chatSession.getConnectionId(), resumeRequest.getLastSeq());
+        } else {
+            resumed.increment();
+            LOGGER.info("Resuming session of connection {} with {} messages", chatSession.getConnectionId(), missed.size());
+        }
+    
+        return missed;
+    }
+    
+    /**
+     * The messages after the given one in the user's buffer and in the buffer of every user, in {@code seq} order, or
+     * null if either evicted some of them.
+     */
+    private List<Message> missedSince(final ReplayBuffer buffer, final long lastSeq) {
+    
+        final List<Entry> missedByUser = buffer.missedSince(lastSeq);
+        final List<Entry> missedByAll = allUsers.missedSince(lastSeq);
+    
+        if (missedByUser == null || missedByAll == null) {
+            return null;
+        }
+    
+        final List<Entry> missed = new ArrayList<>(missedByUser);
+        missed.addAll(missedByAll);
+    
+        return missed.stream()
+            .sorted(Comparator.comparingLong(entry -> entry.seq))
+            .map(entry -> entry.message)
+            .collect(Collectors.toList());
+    }
+    
+    private void append(final ReplayBuffer buffer, final ResponseMessage<ChatMessage> message) {
+    
+        final Entry entry = buffer.append(message, sequence::incrementAndGet, System.nanoTime(), size(message));
+    
+        bytes.addAndGet(entry.size);
+        entries.offer(entry);
+    
+        evictedByUserLimit.increment(buffer.trim(settings.getMaxMessagesPerUser()));
+    
+        while (bytes.get() > settings.getMaxBytes()) {
+    
+            final Entry oldest = entries.poll();
+    
+            if (oldest == null) {
+                break;
+            }
+    
+            if (evict(oldest)) {
+                evictedByMemory.increment();
+            }
+        }
+    }
+    
+    /**
+     * Evicts the messages older than the maximum age, which are at the head of the queue, and drops the buffers of
+     * users gone for as long. The messages of dropped buffers are released as they leave the queue.
+     */
+    private void sweep() {
+        try {
+    
+            final long deadline = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(settings.getMaxAge());
+    
+            Entry oldest;
+            while ((oldest = entries.peek()) != null && oldest.createdAt - deadline <= 0) {
+                if (entries.remove(oldest) && evict(oldest)) {
+                    evictedByAge.increment();
+                }
+            }
+    
+            for (String userId : buffers.keySet()) {
+                buffers.computeIfPresent(userId, (id, buffer) -> {
+                    if (!buffer.isIdleSince(deadline)) {
+                        return buffer;
+                    }
+                    buffer.clear();
+                    return null;
+                });
+            }
+    
+        } catch (Exception e) {
+            LOGGER.error("Failed to sweep replay buffers. Reason {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * Releases an entry taken off the queue, evicting it from its buffer unless it was already, in which case it
+     * returns false.
+     */
+    private boolean evict(final Entry entry) {
+    
+        bytes.addAndGet(-entry.size);
+    
+        return entry.buffer.evict(entry) != null;
+    }
+    
+    private static int size(final ResponseMessage<ChatMessage> message) {
+    
+        final String content = message.getPayload().getContent();
+    
+        return MESSAGE_OVERHEAD_BYTES + ((content != null) ? 2 * content.length() : 0);
+    }
+    
+    private static String userId(final ChatSession chatSession) {
+        return chatSession.getUserAuthenticationDetails().getUserId();
+    }
+    
+}
@@ -0,0 +1,103 @@
+package live.socialchat.chat.scheduler;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs the periodic tasks of the node's components, such as flushes, sweeps and the overload readings, with a fixed
+ * delay on a {@link ThreadPoolTaskScheduler} of one thread per task, so that a slow task never holds up another.
+ * Components add their tasks when they're created and the tasks start once the chat server is started. They're
+ * stopped before the chat server drains, waiting for the running ones, so that none runs against the schedulers the
+ * drain shuts down, and the drain writes whatever they had pending.
+ */
+@Component
+public class BackgroundTasks implements SmartLifecycle {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(BackgroundTasks.class);
+    private static final int AWAIT_TERMINATION_SECONDS = 30;
+    
+    private final List<Task> tasks = new ArrayList<>();
+    
+    private ThreadPoolTaskScheduler scheduler;
+    
+    /**
+     * Runs the task every interval, from one interval after the tasks start.
+     */
+    public synchronized void schedule(final String name, final Runnable runnable, final long intervalMillis) {
+    
+        final Task task = new Task(name, runnable, intervalMillis);
+    
+        tasks.add(task);
+    
+        if (scheduler != null) {
+            schedule(task);
+        }
+    }
+    
+    @Override
+    public synchronized void start() {
+    
+        scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(Math.max(tasks.size(), 1));
+        scheduler.setThreadNamePrefix("background-");
+        scheduler.setDaemon(true);
+        scheduler.setWaitForTasksToCompleteOnShutdown(true);
+        scheduler.setAwaitTerminationSeconds(AWAIT_TERMINATION_SECONDS);
+        scheduler.initialize();
+    
+        tasks.forEach(this::schedule);
+    }
+    
+    @Override
+    public synchronized void stop() {
+        scheduler.shutdown();
+        scheduler = null;
+        LOGGER.info("Stopped {} background tasks", tasks.size());
+    }
+    
+    @Override
+    public synchronized boolean isRunning() {
+        return scheduler != null;
+    }
+    
+    /**
+     * After the chat server's, so that the tasks stop before it drains.
+     */
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE;
+    }
+    
+    private void schedule(final Task task) {
+    
+        if (scheduler.getPoolSize() < tasks.size()) {
+            scheduler.setPoolSize(tasks.size());
+        }
+    
+        scheduler.scheduleWithFixedDelay(task.runnable, Instant.now().plusMillis(task.intervalMillis), Duration.ofMillis(task.intervalMillis));
+    
+        LOGGER.info("Running {} every {}ms", task.name, task.intervalMillis);
+    }
+    
+    private static final class Task {
+    
+        private final String name;
+        private final Runnable runnable;
+        private final long intervalMillis;
+    
+        private Task(final String name, final Runnable runnable, final long intervalMillis) {
+            this.name = name;
+            this.runnable = runnable;
+            this.intervalMillis = intervalMillis;
+        }
+    
+    }
+    
+}
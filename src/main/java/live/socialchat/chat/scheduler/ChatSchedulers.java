@@ -0,0 +1,203 @@
+package live.socialchat.chat.scheduler;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Long-lived schedulers of the message pipeline:
+ * <ul>
+ *     <li>ingest: handling of the messages received from clients</li>
+ *     <li>persistence: writes to the database</li>
+ *     <li>delivery: blocking sends to the WebSocket sessions</li>
+ * </ul>
+ * In {@link ExecutionMode#PLATFORM} mode each one is backed by a fixed pool with a bounded queue and a
+ * {@link RejectionPolicy}, so that overload shows up as rejections and queue depth instead of heap growth. In
+ * {@link ExecutionMode#VIRTUAL} mode ingest and delivery start a virtual thread per task instead, capped at the
+ * queue capacity. Queue wait and execution time are exported through {@link ExecutorServiceMetrics}, tagged with
+ * name {@code chat.scheduler.<name>}.
+ */
+public class ChatSchedulers {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChatSchedulers.class);
+    private static final String METRIC_PREFIX = "chat.scheduler.";
+    
+    private final ExecutionMode executionMode;
+    private final MeterRegistry meterRegistry;
+    private final ExecutorService ingestExecutor;
+    private final ExecutorService persistenceExecutor;
+    private final ExecutorService deliveryExecutor;
+    private final Scheduler ingest;
+    private final Scheduler persistence;
+    private final Scheduler delivery;
+    private final Map<String, ExecutorService> executors = new LinkedHashMap<>();
+    private final Map<String, IntSupplier> backlogs = new LinkedHashMap<>();
+    
+    public ChatSchedulers(final ExecutionMode executionMode,
+                          final SchedulerSettings ingestSettings,
+                          final SchedulerSettings persistenceSettings,
+                          final SchedulerSettings deliverySettings,
+                          final MeterRegistry meterRegistry) {
+        
+        this.executionMode = resolve(executionMode);
+        this.meterRegistry = meterRegistry;
+        
+        this.ingestExecutor = newExecutor(ingestSettings, this.executionMode);
+        this.persistenceExecutor = newExecutor(persistenceSettings, ExecutionMode.PLATFORM);
+        this.deliveryExecutor = newExecutor(deliverySettings, this.executionMode);
+        
+        this.ingest = Schedulers.fromExecutorService(ingestExecutor, ingestSettings.getName());
+        this.persistence = Schedulers.fromExecutorService(persistenceExecutor, persistenceSettings.getName());
+        this.delivery = Schedulers.fromExecutorService(deliveryExecutor, deliverySettings.getName());
+        
+        this.executors.put(ingestSettings.getName(), ingestExecutor);
+        this.executors.put(persistenceSettings.getName(), persistenceExecutor);
+        this.executors.put(deliverySettings.getName(), deliveryExecutor);
+    }
+    
+    public ExecutionMode executionMode() {
+        return executionMode;
+    }
+    
+    public Scheduler ingest() {
+        return ingest;
+    }
+    
+    public Scheduler persistence() {
+        return persistence;
+    }
+    
+    public Scheduler delivery() {
+        return delivery;
+    }
+    
+    public ExecutorService ingestExecutor() {
+        return ingestExecutor;
+    }
+    
+    public ExecutorService deliveryExecutor() {
+        return deliveryExecutor;
+    }
+    
+    /**
+     * Deepest backlog among the schedulers: tasks waiting in the queue of a pool, or in flight on virtual threads.
+     */
+    public int backlog() {
+        
+        int backlog = 0;
+        
+        for (IntSupplier schedulerBacklog : backlogs.values()) {
+            backlog = Math.max(backlog, schedulerBacklog.getAsInt());
+        }
+        
+        return backlog;
+    }
+    
+    /**
+     * Lets each executor run the tasks already queued, in pipeline order, so that the messages being handled still
+     * get persisted and delivered. Returns false if any of them didn't finish within the timeout.
+     */
+    public boolean shutdown(final long timeoutMillis) throws InterruptedException {
+        
+        boolean terminated = true;
+        
+        for (Map.Entry<String, ExecutorService> executor : executors.entrySet()) {
+            executor.getValue().shutdown();
+            if (!executor.getValue().awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                LOGGER.error("Scheduler {} didn't finish its tasks in {}ms", executor.getKey(), timeoutMillis);
+                terminated = false;
+            }
+        }
+        
+        return terminated;
+    }
+    
+    public void dispose() {
+        ingest.dispose();
+        persistence.dispose();
+        delivery.dispose();
+    }
+    
+    /**
+     * Falls back to platform threads when virtual threads were requested on a JDK which doesn't have them.
+     */
+    public static ExecutionMode resolve(final ExecutionMode requested) {
+        
+        if (requested == ExecutionMode.VIRTUAL && !VirtualThreads.isSupported()) {
+            LOGGER.warn("Virtual threads aren't supported by JDK {}. Using platform threads",
+                System.getProperty("java.version"));
+            return ExecutionMode.PLATFORM;
+        }
+        
+        return requested;
+    }
+    
+    private ExecutorService newExecutor(final SchedulerSettings settings, final ExecutionMode mode) {
+        
+        final String name = settings.getName();
+        
+        final ExecutorService executor = (mode == ExecutionMode.VIRTUAL)
+            ? newVirtualThreadExecutor(settings)
+            : newThreadPoolExecutor(settings);
+        
+        LOGGER.info("Created {} scheduler {}", mode, settings);
+        
+        return ExecutorServiceMetrics.monitor(meterRegistry, executor, METRIC_PREFIX + name);
+    }
+    
+    private ExecutorService newThreadPoolExecutor(final SchedulerSettings settings) {
+        
+        final String name = settings.getName();
+        final Counter rejections = meterRegistry.counter(METRIC_PREFIX + "rejected", Tags.of("name", name));
+        final RejectedExecutionHandler policy = settings.getRejectionPolicy().getHandler();
+        
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            settings.getThreads(),
+            settings.getThreads(),
+            0L,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(settings.getQueueCapacity()),
+            new CustomizableThreadFactory(name + "-"),
+            (runnable, pool) -> {
+                rejections.increment();
+                policy.rejectedExecution(runnable, pool);
+            }
+        );
+        
+        backlogs.put(name, () -> executor.getQueue().size());
+        
+        return executor;
+    }
+    
+    private ExecutorService newVirtualThreadExecutor(final SchedulerSettings settings) {
+        
+        final VirtualThreadExecutor executor = new VirtualThreadExecutor(
+            settings.getName(),
+            settings.getQueueCapacity(),
+            settings.getRejectionPolicy(),
+            meterRegistry.counter(METRIC_PREFIX + "rejected", Tags.of("name", settings.getName()))
+        );
+        
+        meterRegistry.gauge(METRIC_PREFIX + "active", Tags.of("name", settings.getName()),
+            executor, VirtualThreadExecutor::getActiveTasks);
+        
+        backlogs.put(settings.getName(), executor::getActiveTasks);
+        
+        return executor;
+    }
+    
+}
@@ -0,0 +1,20 @@
+package live.socialchat.chat.scheduler;
+
+/**
+ * Threads used for the blocking work of the server: Jetty request and WebSocket handling, the handshake
+ * authentication and the blocking sends.
+ */
+public enum ExecutionMode {
+    
+    /**
+     * Bounded pools of platform threads.
+     */
+    PLATFORM,
+    
+    /**
+     * One virtual thread per task. Requires a JDK with virtual threads (21+); falls back to {@link #PLATFORM}
+     * otherwise.
+     */
+    VIRTUAL
+    
+}
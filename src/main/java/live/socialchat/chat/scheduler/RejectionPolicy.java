@@ -0,0 +1,37 @@
+package live.socialchat.chat.scheduler;
+
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * What a {@link ChatSchedulers} scheduler does with a task once its queue is full.
+ */
+public enum RejectionPolicy {
+    
+    /**
+     * Fails the task, which surfaces as an error signal in the reactive pipeline that scheduled it.
+     */
+    ABORT(new ThreadPoolExecutor.AbortPolicy()),
+    
+    /**
+     * Runs the task on the submitting thread, which slows the producer down, e.g. a Jetty thread stops reading from
+     * its socket until the backlog drains.
+     */
+    CALLER_RUNS(new ThreadPoolExecutor.CallerRunsPolicy()),
+    
+    /**
+     * Drops the oldest queued task in favour of the new one.
+     */
+    DISCARD_OLDEST(new ThreadPoolExecutor.DiscardOldestPolicy());
+    
+    private final RejectedExecutionHandler handler;
+    
+    RejectionPolicy(final RejectedExecutionHandler handler) {
+        this.handler = handler;
+    }
+    
+    RejectedExecutionHandler getHandler() {
+        return handler;
+    }
+    
+}
@@ -0,0 +1,17 @@
+package live.socialchat.chat.scheduler;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+@Getter
+@Builder
+@ToString
+public class SchedulerSettings {
+    
+    private final String name;
+    private final int threads;
+    private final int queueCapacity;
+    private final RejectionPolicy rejectionPolicy;
+    
+}
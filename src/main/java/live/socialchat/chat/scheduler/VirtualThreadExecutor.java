@@ -0,0 +1,98 @@
+package live.socialchat.chat.scheduler;
+
+import io.micrometer.core.instrument.Counter;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executor starting one virtual thread per task. The number of tasks in flight is capped by {@code maxTasks}, past
+ * which the {@link RejectionPolicy} applies: {@link RejectionPolicy#CALLER_RUNS} runs the task on the caller and the
+ * other policies reject it.
+ */
+class VirtualThreadExecutor extends AbstractExecutorService {
+    
+    private final ThreadFactory threadFactory;
+    private final RejectionPolicy rejectionPolicy;
+    private final Counter rejections;
+    private final Semaphore permits;
+    private final int maxTasks;
+    private volatile boolean shutdown;
+    
+    VirtualThreadExecutor(final String name,
+                          final int maxTasks,
+                          final RejectionPolicy rejectionPolicy,
+                          final Counter rejections) {
+        this.threadFactory = VirtualThreads.newThreadFactory(name + "-vt-");
+        this.rejectionPolicy = rejectionPolicy;
+        this.rejections = rejections;
+        this.permits = new Semaphore(maxTasks);
+        this.maxTasks = maxTasks;
+    }
+    
+    int getActiveTasks() {
+        return maxTasks - permits.availablePermits();
+    }
+    
+    @Override
+    public void execute(final Runnable task) {
+        
+        if (shutdown) {
+            throw new RejectedExecutionException("Executor is shut down");
+        }
+        
+        if (!permits.tryAcquire()) {
+            rejections.increment();
+            if (rejectionPolicy == RejectionPolicy.CALLER_RUNS) {
+                task.run();
+                return;
+            }
+            throw new RejectedExecutionException("Too many tasks in flight: " + maxTasks);
+        }
+        
+        threadFactory.newThread(() -> {
+            try {
+                task.run();
+            } finally {
+                permits.release();
+            }
+        }).start();
+    }
+    
+    @Override
+    public void shutdown() {
+        shutdown = true;
+    }
+    
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown = true;
+        return Collections.emptyList();
+    }
+    
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+    
+    @Override
+    public boolean isTerminated() {
+        return shutdown && permits.availablePermits() == maxTasks;
+    }
+    
+    @Override
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+        
+        if (permits.tryAcquire(maxTasks, timeout, unit)) {
+            permits.release(maxTasks);
+            return true;
+        }
+        
+        return false;
+    }
+    
+}
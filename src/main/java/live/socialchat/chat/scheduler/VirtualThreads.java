@@ -0,0 +1,52 @@
+package live.socialchat.chat.scheduler;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to virtual threads through reflection, so that the code base keeps compiling for Java 8 and only uses them
+ * when running on a JDK which has them.
+ */
+public final class VirtualThreads {
+    
+    private static final Method OF_VIRTUAL = findOfVirtual();
+    
+    private VirtualThreads() {}
+    
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+    
+    /**
+     * Creates a factory of virtual threads named {@code <prefix><counter>}.
+     */
+    public static ThreadFactory newThreadFactory(final String prefix) {
+        
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("Virtual threads require JDK 21 or newer");
+        }
+        
+        try {
+            final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            final Class<?> ofVirtualClass = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            
+            final Object builder = OF_VIRTUAL.invoke(null);
+            final Object namedBuilder = ofVirtualClass
+                .getMethod("name", String.class, long.class)
+                .invoke(builder, prefix, 0L);
+            
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(namedBuilder);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Failed to create virtual thread factory", e);
+        }
+    }
+    
+    private static Method findOfVirtual() {
+        try {
+            return Thread.class.getMethod("ofVirtual");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+    
+}
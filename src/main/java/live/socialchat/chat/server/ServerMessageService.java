@@ -1,5 +1,7 @@
 package live.socialchat.chat.server;
 
+import live.socialchat.chat.message.message.MessageType;
+import live.socialchat.chat.message.message.ResumeRequest;
 import live.socialchat.chat.session.session.ChatSession;
 
 public interface ServerMessageService {
@@ -7,4 +9,7 @@ public interface ServerMessageService {
     void handleDisconnected(ChatSession chatSession);
     void handlePing(ChatSession chatSession);
     void handleInvalidRequest(ChatSession chatSession);
+    void handleRateLimited(ChatSession chatSession, MessageType requestType);
+    void handleShutdown(ChatSession chatSession, long reconnectDelayMillis);
+    void handleResume(ChatSession chatSession, ResumeRequest resumeRequest);
 }
@@ -1,10 +1,22 @@
 package live.socialchat.chat.server;
 
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 import live.socialchat.chat.broadcast.BroadcasterService;
+import live.socialchat.chat.message.message.ConnectedMessage;
+import live.socialchat.chat.message.message.Message;
 import live.socialchat.chat.message.message.MessageType;
+import live.socialchat.chat.message.message.RateLimitedMessage;
+import live.socialchat.chat.message.message.ReconnectMessage;
 import live.socialchat.chat.message.message.ResponseMessage;
+import live.socialchat.chat.message.message.ResumeRequest;
+import live.socialchat.chat.message.message.ResumeResponse;
+import live.socialchat.chat.resume.SessionResumption;
 import live.socialchat.chat.session.SessionRepository;
 import live.socialchat.chat.session.session.ChatSession;
+import live.socialchat.chat.websocket.codec.EncodedMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,20 +26,28 @@ import org.springframework.stereotype.Service;
 public class ServerMessageServiceImpl implements ServerMessageService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ServerMessageServiceImpl.class);
+    private static final EncodedMessage PONG = EncodedMessage.of(new ResponseMessage<>(MessageType.PONG, null));
     
     private final BroadcasterService broadcasterService;
     private final SessionRepository sessionRepository;
+    private final SessionResumption sessionResumption;
+    private final Map<MessageType, EncodedMessage> rateLimitedMessages = rateLimitedMessages();
     
     @Autowired
     public ServerMessageServiceImpl(final BroadcasterService broadcasterService,
-                                    final SessionRepository sessionRepository) {
+                                    final SessionRepository sessionRepository,
+                                    final SessionResumption sessionResumption) {
         
         this.broadcasterService = broadcasterService;
         this.sessionRepository = sessionRepository;
+        this.sessionResumption = sessionResumption;
     }
 
     @Override
     public void handleConnected(final ChatSession chatSession) {
+        
+        final String resumeToken = sessionResumption.connected(chatSession);
+        
         sessionRepository.createSession(chatSession)
             .subscribe(result -> {
                 if (result) {
@@ -35,21 +55,26 @@ public class ServerMessageServiceImpl implements ServerMessageService {
                 } else {
                     LOGGER.error("Current connection replaced existing connection: {}", chatSession.getConnectionId());
                 }
-                sendServerMessage(chatSession, MessageType.CONNECTED);
+                sendServerMessage(chatSession, MessageType.CONNECTED,
+                    (resumeToken != null) ? new ConnectedMessage(resumeToken) : null);
             });
     }
     
     @Override
     public void handleDisconnected(final ChatSession chatSession) {
+        sessionResumption.disconnected(chatSession);
         sessionRepository.deleteSession(chatSession)
             .subscribe((result) -> {
                 LOGGER.info("Connection {} successfully closed and deleted", chatSession.getConnectionId());
             });
     }
     
+    /**
+     * Answered on the receiving thread with the pre-encoded {@code PONG}, queued straight on the connection.
+     */
     @Override
     public void handlePing(final ChatSession chatSession) {
-        sendServerMessage(chatSession, MessageType.PONG);
+        chatSession.getConnection().send(PONG);
     }
 
     @Override
@@ -57,14 +82,62 @@ public class ServerMessageServiceImpl implements ServerMessageService {
         sendServerMessage(chatSession, MessageType.INVALID_REQUEST);
     }
 
+    /**
+     * Rejections are frequent while a client floods the server, so they're pre-encoded for every request type and
+     * queued straight on the connection rather than broadcast.
+     */
+    @Override
+    public void handleRateLimited(final ChatSession chatSession, final MessageType requestType) {
+        chatSession.getConnection().send(rateLimitedMessages.get(requestType));
+    }
+    
+    @Override
+    public void handleShutdown(final ChatSession chatSession, final long reconnectDelayMillis) {
+        sendServerMessage(chatSession, MessageType.RECONNECT, new ReconnectMessage(reconnectDelayMillis));
+    }
+
+    /**
+     * Queues the missed messages straight on the connection, followed by the outcome, which tells the client to fetch
+     * the chat history when nothing could be replayed.
+     */
+    @Override
+    public void handleResume(final ChatSession chatSession, final ResumeRequest resumeRequest) {
+        
+        final List<Message> missed = sessionResumption.missed(chatSession, resumeRequest);
+        
+        if (missed == null) {
+            sendServerMessage(chatSession, MessageType.RESUME, new ResumeResponse(false, 0));
+            return;
+        }
+        
+        missed.forEach(chatSession.getConnection()::send);
+        sendServerMessage(chatSession, MessageType.RESUME, new ResumeResponse(true, missed.size()));
+    }
+    
     private void sendServerMessage(final ChatSession chatSession, final MessageType messageType) {
+        sendServerMessage(chatSession, messageType, null);
+    }
+    
+    private void sendServerMessage(final ChatSession chatSession, final MessageType messageType, final Object payload) {
         
         final ResponseMessage<Object> responseMessage = ResponseMessage.builder()
             .type(messageType)
+            .payload(payload)
             .build();
         
         broadcasterService.broadcastToSession(chatSession, responseMessage);
         
     }
     
+    private static Map<MessageType, EncodedMessage> rateLimitedMessages() {
+        
+        final Map<MessageType, EncodedMessage> messages = new EnumMap<>(MessageType.class);
+        
+        for (MessageType requestType : MessageType.values()) {
+            messages.put(requestType, EncodedMessage.of(new ResponseMessage<>(MessageType.RATE_LIMITED, new RateLimitedMessage(requestType))));
+        }
+        
+        return Collections.unmodifiableMap(messages);
+    }
+    
 }
@@ -0,0 +1,105 @@
+package live.socialchat.chat.session;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import live.socialchat.chat.session.session.ChatSession;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Sessions of this node kept in memory, with no remote sessions. As the sessions stored by the authentication service,
+ * each expires {@code inmemory.session.ttl} milliseconds after it's created, after which it's no longer active and
+ * so no longer receives broadcasts. Sessions whose connection is closed are evicted as they're come across.
+ */
+@Repository
+@Profile("inmemory")
+public class InMemorySessionRepository implements SessionRepository {
+    
+    private final Map<String, ExpiringSession> chatSessionsMap = new ConcurrentHashMap<>();
+    private final long ttlMillis;
+    private final Counter createdSessions;
+    private final Counter deletedSessions;
+    
+    public InMemorySessionRepository(@Value("${inmemory.session.ttl:86400000}") final long ttlMillis,
+                                     final MeterRegistry meterRegistry) {
+        this.ttlMillis = ttlMillis;
+        this.createdSessions = meterRegistry.counter("chat.sessions.created");
+        this.deletedSessions = meterRegistry.counter("chat.sessions.deleted");
+        meterRegistry.gaugeMapSize("chat.sessions.local", Tags.empty(), chatSessionsMap);
+    }
+    
+    @Override
+    public Mono<Boolean> createSession(final ChatSession chatSession) {
+        
+        final boolean created = chatSessionsMap.put(chatSession.getSessionId(), new ExpiringSession(chatSession, System.currentTimeMillis() + ttlMillis)) == null;
+        
+        if (created) {
+            createdSessions.increment();
+        }
+        
+        return Mono.just(created);
+    }
+    
+    @Override
+    public Mono<Void> deleteSession(final ChatSession chatSession) {
+        if (chatSessionsMap.remove(chatSession.getSessionId()) != null) {
+            deletedSessions.increment();
+        }
+        return Mono.empty();
+    }
+    
+    @Override
+    public Flux<ChatSession> findAllActiveSessions() {
+        return activeSessions();
+    }
+    
+    @Override
+    public Flux<ChatSession> findAllActiveSessionsByUser(final String userId) {
+        return activeSessions()
+            .filter(chatSession -> userId.equals(chatSession.getUserAuthenticationDetails().getUserId()));
+    }
+    
+    @Override
+    public Flux<ChatSession> findAllLocalSessions() {
+        return Flux.fromIterable(chatSessionsMap.values())
+            .map(ExpiringSession::getChatSession);
+    }
+    
+    private Flux<ChatSession> activeSessions() {
+        
+        final long now = System.currentTimeMillis();
+        
+        return Flux.fromIterable(chatSessionsMap.values())
+            .filter(expiringSession -> {
+                if (!expiringSession.chatSession.isOpen()) {
+                    deleteSession(expiringSession.chatSession);
+                    return false;
+                }
+                return expiringSession.expiresAt > now;
+            })
+            .map(ExpiringSession::getChatSession);
+    }
+    
+    private static class ExpiringSession {
+        
+        private final ChatSession chatSession;
+        private final long expiresAt;
+        
+        ExpiringSession(final ChatSession chatSession, final long expiresAt) {
+            this.chatSession = chatSession;
+            this.expiresAt = expiresAt;
+        }
+        
+        ChatSession getChatSession() {
+            return chatSession;
+        }
+        
+    }
+    
+}
@@ -2,15 +2,19 @@ package live.socialchat.chat.session;
 
 import com.mongodb.reactivestreams.client.MongoCollection;
 import com.mongodb.reactivestreams.client.MongoDatabase;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import live.socialchat.chat.session.session.ChatSession;
 import org.bson.conversions.Bson;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -22,8 +26,9 @@ import static com.mongodb.client.model.Projections.fields;
 import static com.mongodb.client.model.Projections.include;
 
 @Repository
+@Profile("!inmemory")
 public class MongoSessionRepository implements SessionRepository {
-
+    
     private static final String SESSIONS_COLLECTION = "user_session";
     private static final String CONNECTION_ID = "connectionId";
     private static final String SERVER_DETAILS = "serverDetails";
@@ -38,30 +43,38 @@ public class MongoSessionRepository implements SessionRepository {
     
     private final MongoCollection<ChatSession> mongoCollection;
     private final Map<String, ChatSession> chatSessionsMap;
+    private final Counter createdSessions;
+    private final Counter deletedSessions;
     
     @Autowired
-    public MongoSessionRepository(final MongoDatabase mongoDatabase) {
+    public MongoSessionRepository(final MongoDatabase mongoDatabase, final MeterRegistry meterRegistry) {
         this.mongoCollection = mongoDatabase.getCollection(SESSIONS_COLLECTION, ChatSession.class);
-        this.chatSessionsMap = new HashMap<>();
+        this.chatSessionsMap = new ConcurrentHashMap<>();
+        this.createdSessions = meterRegistry.counter("chat.sessions.created");
+        this.deletedSessions = meterRegistry.counter("chat.sessions.deleted");
+        meterRegistry.gaugeMapSize("chat.sessions.local", Tags.empty(), chatSessionsMap);
     }
     
     @Override
     public Mono<Boolean> createSession(final ChatSession chatSession) {
-        return Mono.just(
-                chatSessionsMap
-                    .put(chatSession.getSessionId(), chatSession) == null
-            );
+        
+        final boolean created = chatSessionsMap.put(chatSession.getSessionId(), chatSession) == null;
+        
+        if (created) {
+            createdSessions.increment();
+        }
+        
+        return Mono.just(created);
     }
     
     @Override
     public Mono<Void> deleteSession(final ChatSession chatSession) {
-        return Mono.just(
-                chatSessionsMap
-                    .remove(chatSession.getSessionId())
-            )
-            .then();
+        if (chatSessionsMap.remove(chatSession.getSessionId()) != null) {
+            deletedSessions.increment();
+        }
+        return Mono.empty();
     }
-
+    
     @Override
     public Flux<ChatSession> findAllActiveSessions() {
     
@@ -92,7 +105,7 @@ public class MongoSessionRepository implements SessionRepository {
             .stream()
             .filter(chatSession -> userId.equals(chatSession.getUserAuthenticationDetails().getUserId()))
             .collect(Collectors.toList());
-
+    
         final Flux<ChatSession> userRemoteChatSessions =
             findRemoteChatSessions(userActiveSessionsFilter, userLocalChatSessions);
     
@@ -102,6 +115,11 @@ public class MongoSessionRepository implements SessionRepository {
         );
     }
     
+    @Override
+    public Flux<ChatSession> findAllLocalSessions() {
+        return Flux.fromIterable(new ArrayList<>(chatSessionsMap.values()));
+    }
+    
     private Flux<ChatSession> findRemoteChatSessions(final Bson filters, final List<ChatSession> localChatSessions) {
         return Flux.from(
                 mongoCollection.find(filters)
@@ -116,5 +134,5 @@ public class MongoSessionRepository implements SessionRepository {
                 )
             );
     }
-
+    
 }
@@ -9,4 +9,5 @@ public interface SessionRepository {
     Mono<Void> deleteSession(ChatSession chatSession);
     Flux<ChatSession> findAllActiveSessions();
     Flux<ChatSession> findAllActiveSessionsByUser(String userId);
+    Flux<ChatSession> findAllLocalSessions();
 }
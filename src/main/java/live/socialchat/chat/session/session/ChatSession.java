@@ -1,7 +1,7 @@
 package live.socialchat.chat.session.session;
 
 import java.util.Objects;
-import javax.websocket.Session;
+import live.socialchat.chat.websocket.ChatConnection;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
@@ -21,7 +21,7 @@ public class ChatSession {
     private final String id;
     
     @BsonIgnore
-    private final Session webSocketSession;
+    private final ChatConnection connection;
     
     private final String connectionId;
     private final ServerDetails serverDetails;
@@ -36,16 +36,16 @@ public class ChatSession {
         this.connectionId = connectionId;
         this.serverDetails = serverDetails;
         this.userAuthenticationDetails = userAuthenticationDetails;
-        this.webSocketSession = null;
+        this.connection = null;
     }
     
     @BsonIgnore
     public String getSessionId() {
         
-        if (webSocketSession != null) {
+        if (connection != null) {
             return userAuthenticationDetails.getUserId() + "-" +
                 id + "-" +
-                webSocketSession.getId();
+                connection.getId();
         }
         
         throw new IllegalStateException("Session ID could not be built");
@@ -53,13 +53,13 @@ public class ChatSession {
     
     @BsonIgnore
     public boolean isOpen() {
-        return webSocketSession != null &&
-            webSocketSession.isOpen();
+        return connection != null &&
+            connection.isOpen();
     }
     
     @BsonIgnore
     public boolean isLocal() {
-        return webSocketSession != null;
+        return connection != null;
     }
     
     @BsonIgnore
@@ -69,7 +69,7 @@ public class ChatSession {
             .connectionId(connectionId)
             .userAuthenticationDetails(userAuthenticationDetails)
             .serverDetails(serverDetails)
-            .webSocketSession(webSocketSession);
+            .connection(connection);
     }
     
     @Override
@@ -0,0 +1,87 @@
+package live.socialchat.chat.trace;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.bson.types.ObjectId;
+
+/**
+ * Monotonic timestamps of one {@code USER_MESSAGE} through the pipeline. Each stage reached is also recorded on the
+ * stage's histogram of its {@link MessageTracer}, as the time elapsed since the message was received. {@link
+ * TraceStage#SENT} is reached once per recipient, so the trace keeps the first and last sends and how many there
+ * were.
+ */
+public class MessageTrace {
+    
+    /**
+     * Trace of messages not traced, on which marks are ignored.
+     */
+    public static final MessageTrace NONE = new MessageTrace(null, 0, 0);
+    
+    private static final AtomicIntegerFieldUpdater<MessageTrace> RECIPIENTS =
+        AtomicIntegerFieldUpdater.newUpdater(MessageTrace.class, "recipients");
+    
+    private final MessageTracer tracer;
+    private final AtomicLongArray stages = new AtomicLongArray(TraceStage.values().length);
+    
+    private volatile ObjectId messageId;
+    private volatile long lastSentAt;
+    private volatile int recipients;
+    
+    MessageTrace(final MessageTracer tracer, final long receivedAt, final long decodedAt) {
+        this.tracer = tracer;
+        stages.set(TraceStage.RECEIVED.ordinal(), receivedAt);
+        stages.set(TraceStage.DECODED.ordinal(), decodedAt);
+    }
+    
+    public void mark(final TraceStage stage) {
+        
+        if (tracer == null) {
+            return;
+        }
+        
+        final long now = System.nanoTime();
+        
+        if (stage == TraceStage.SENT) {
+            stages.compareAndSet(stage.ordinal(), 0, now);
+            lastSentAt = now;
+            RECIPIENTS.incrementAndGet(this);
+        } else {
+            stages.set(stage.ordinal(), now);
+        }
+        
+        tracer.record(stage, now - receivedAt());
+    }
+    
+    public void setMessageId(final ObjectId messageId) {
+        this.messageId = messageId;
+    }
+    
+    public ObjectId getMessageId() {
+        return messageId;
+    }
+    
+    public int getRecipients() {
+        return recipients;
+    }
+    
+    /**
+     * Nanoseconds from the message being received to the stage, or -1 if it wasn't reached yet.
+     */
+    public long elapsed(final TraceStage stage) {
+        final long reachedAt = stages.get(stage.ordinal());
+        return (reachedAt == 0) ? -1 : reachedAt - receivedAt();
+    }
+    
+    /**
+     * Nanoseconds from the message being received to its last send, or -1 if it wasn't sent yet.
+     */
+    public long elapsedToLastSend() {
+        final long sentAt = lastSentAt;
+        return (sentAt == 0) ? -1 : sentAt - receivedAt();
+    }
+    
+    long receivedAt() {
+        return stages.get(TraceStage.RECEIVED.ordinal());
+    }
+    
+}
@@ -0,0 +1,109 @@
+package live.socialchat.chat.trace;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import live.socialchat.chat.message.message.RequestMessage;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Traces {@code USER_MESSAGE}s through the pipeline. Every trace is aggregated into an HDR histogram per stage of the
+ * microseconds elapsed since the message was received, recorded wait-free, so a tail latency regression shows up on
+ * the first stage it affects. One in {@link TraceSettings#getSampleRate()} traces is also kept whole in a bounded ring,
+ * overwriting the oldest, to be inspected through the admin server.
+ */
+@Component
+public class MessageTracer {
+    
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+    private static final int SIGNIFICANT_DIGITS = 3;
+    
+    private final TraceSettings settings;
+    private final Map<TraceStage, Recorder> recorders = new EnumMap<>(TraceStage.class);
+    private final Map<TraceStage, Histogram> histograms = new EnumMap<>(TraceStage.class);
+    private final AtomicReferenceArray<MessageTrace> sampledTraces;
+    private final AtomicLong tracedMessages = new AtomicLong();
+    
+    public MessageTracer(final TraceSettings settings) {
+        this.settings = settings;
+        this.sampledTraces = new AtomicReferenceArray<>(settings.getRingSize());
+        
+        for (TraceStage stage : TraceStage.values()) {
+            recorders.put(stage, new Recorder(HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS));
+            histograms.put(stage, new Histogram(HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS));
+        }
+    }
+    
+    /**
+     * Starts the trace of a request, from the timestamps taken while it was decoded, or from now if it wasn't.
+     */
+    public MessageTrace start(final RequestMessage<?> requestMessage) {
+        
+        if (!settings.isEnabled()) {
+            return MessageTrace.NONE;
+        }
+        
+        final long now = System.nanoTime();
+        final long receivedAt = (requestMessage.getReceivedAt() != 0) ? requestMessage.getReceivedAt() : now;
+        final long decodedAt = (requestMessage.getDecodedAt() != 0) ? requestMessage.getDecodedAt() : now;
+        
+        final MessageTrace messageTrace = new MessageTrace(this, receivedAt, decodedAt);
+        
+        record(TraceStage.RECEIVED, 0);
+        record(TraceStage.DECODED, decodedAt - receivedAt);
+        
+        final long sequence = tracedMessages.getAndIncrement();
+        
+        if (sequence % settings.getSampleRate() == 0) {
+            final long sample = sequence / settings.getSampleRate();
+            sampledTraces.set((int) (sample % sampledTraces.length()), messageTrace);
+        }
+        
+        return messageTrace;
+    }
+    
+    /**
+     * Histograms of each stage, accumulated since startup.
+     */
+    public synchronized Map<TraceStage, Histogram> stageHistograms() {
+        
+        final Map<TraceStage, Histogram> snapshot = new EnumMap<>(TraceStage.class);
+        
+        histograms.forEach((stage, histogram) -> {
+            histogram.add(recorders.get(stage).getIntervalHistogram());
+            snapshot.put(stage, histogram.copy());
+        });
+        
+        return snapshot;
+    }
+    
+    /**
+     * Sampled traces in the ring, oldest first.
+     */
+    public List<MessageTrace> sampledTraces() {
+        
+        final long samples = (tracedMessages.get() + settings.getSampleRate() - 1) / settings.getSampleRate();
+        final int ringSize = sampledTraces.length();
+        final List<MessageTrace> traces = new ArrayList<>(ringSize);
+        
+        for (long sample = Math.max(0, samples - ringSize); sample < samples; sample++) {
+            final MessageTrace messageTrace = sampledTraces.get((int) (sample % ringSize));
+            if (messageTrace != null) {
+                traces.add(messageTrace);
+            }
+        }
+        
+        return traces;
+    }
+    
+    void record(final TraceStage stage, final long elapsedNanos) {
+        recorders.get(stage).recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(Math.max(0, elapsedNanos)), HIGHEST_TRACKABLE_MICROS));
+    }
+    
+}
@@ -0,0 +1,86 @@
+package live.socialchat.chat.trace;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import live.socialchat.chat.admin.AdminResponses;
+import live.socialchat.chat.admin.AdminRoutes;
+import org.HdrHistogram.Histogram;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.server.HttpServerRoutes;
+
+/**
+ * Dumps the message tracing on {@code /traces}: the percentiles of each stage, followed by the sampled traces, oldest
+ * first. All durations are in microseconds since the message was received, -1 for stages not reached yet.
+ */
+@Component
+public class TraceAdminRoutes implements AdminRoutes {
+    
+    private static final String TRACES_PATH = "/traces";
+    
+    private final MessageTracer messageTracer;
+    
+    public TraceAdminRoutes(final MessageTracer messageTracer) {
+        this.messageTracer = messageTracer;
+    }
+    
+    @Override
+    public void register(final HttpServerRoutes routes) {
+        routes.get(TRACES_PATH, (request, response) -> AdminResponses.json(response, Mono.fromCallable(this::dump)));
+    }
+    
+    private Map<String, Object> dump() {
+        
+        final Map<String, Object> dump = new LinkedHashMap<>();
+        final Map<String, Object> stages = new LinkedHashMap<>();
+        
+        messageTracer.stageHistograms().forEach((stage, histogram) -> stages.put(stage.name(), percentiles(histogram)));
+        
+        dump.put("stages", stages);
+        dump.put("traces", traces(messageTracer.sampledTraces()));
+        
+        return dump;
+    }
+    
+    private Map<String, Object> percentiles(final Histogram histogram) {
+        
+        final Map<String, Object> percentiles = new LinkedHashMap<>();
+        
+        percentiles.put("count", histogram.getTotalCount());
+        percentiles.put("p50", histogram.getValueAtPercentile(50));
+        percentiles.put("p90", histogram.getValueAtPercentile(90));
+        percentiles.put("p99", histogram.getValueAtPercentile(99));
+        percentiles.put("p999", histogram.getValueAtPercentile(99.9));
+        percentiles.put("max", histogram.getMaxValue());
+        
+        return percentiles;
+    }
+    
+    private List<Map<String, Object>> traces(final List<MessageTrace> messageTraces) {
+        return messageTraces.stream()
+            .map(messageTrace -> {
+                
+                final Map<String, Object> trace = new LinkedHashMap<>();
+                
+                trace.put("messageId", (messageTrace.getMessageId() != null) ? messageTrace.getMessageId().toHexString() : null);
+                
+                for (TraceStage stage : TraceStage.values()) {
+                    trace.put(stage.name(), micros(messageTrace.elapsed(stage)));
+                }
+                
+                trace.put("LAST_SENT", micros(messageTrace.elapsedToLastSend()));
+                trace.put("recipients", messageTrace.getRecipients());
+                
+                return trace;
+            })
+            .collect(Collectors.toList());
+    }
+    
+    private static long micros(final long nanos) {
+        return (nanos < 0) ? -1 : TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+    
+}
@@ -0,0 +1,24 @@
+package live.socialchat.chat.trace;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Settings of the message tracing, read from the {@code chat.trace.*} properties:
+ * <ul>
+ *     <li>enabled: whether {@code USER_MESSAGE}s are traced at all</li>
+ *     <li>sampleRate: one in how many traces is kept whole in the ring</li>
+ *     <li>ringSize: how many sampled traces are kept</li>
+ * </ul>
+ */
+@Getter
+@Builder
+@ToString
+public class TraceSettings {
+    
+    private final boolean enabled;
+    private final int sampleRate;
+    private final int ringSize;
+    
+}
@@ -0,0 +1,16 @@
+package live.socialchat.chat.trace;
+
+/**
+ * Stages a {@code USER_MESSAGE} goes through, from the frame being received to the message being sent to each of its
+ * recipients.
+ */
+public enum TraceStage {
+    
+    RECEIVED,
+    DECODED,
+    PERSIST_ENQUEUED,
+    PERSIST_ACKED,
+    FANOUT_STARTED,
+    SENT
+    
+}
@@ -0,0 +1,58 @@
+package live.socialchat.chat.user;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import live.socialchat.chat.contact.Contact.ContactType;
+import live.socialchat.chat.message.message.ChatMessage.DestinationType;
+import live.socialchat.chat.user.model.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Users kept in memory. Users are registered by the authentication service, so {@code inmemory.seed.users} users with
+ * ids {@code user0}, {@code user1}... are created on startup for the clients to log in as.
+ */
+@Repository
+@Profile("inmemory")
+public class InMemoryUserRepository implements UserRepository {
+    
+    private final Map<String, User> users = new ConcurrentHashMap<>();
+    
+    public InMemoryUserRepository(@Value("${inmemory.seed.users:1000}") final int seedUsers) {
+        for (int i = 0; i < seedUsers; i++) {
+            save(User.builder()
+                .id("user" + i)
+                .name("User " + i)
+                .description("Available")
+                .contactType(ContactType.USER)
+                .build());
+        }
+    }
+    
+    /**
+     * Saves the user without its credentials, which are never returned as part of the contacts.
+     */
+    public void save(final User user) {
+        users.put(user.getId(), user.from()
+            .username(null)
+            .password(null)
+            .build());
+    }
+    
+    @Override
+    public Flux<User> findContacts(final String userId) {
+        return Flux.fromIterable(users.values())
+            .filter(user -> !user.getId().equals(userId));
+    }
+    
+    @Override
+    public Mono<DestinationType> findDestinationType(final String userId) {
+        return users.containsKey(userId)
+            ? Mono.just(DestinationType.USER)
+            : Mono.empty();
+    }
+    
+}
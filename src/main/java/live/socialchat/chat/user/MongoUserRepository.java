@@ -7,6 +7,7 @@ import live.socialchat.chat.message.message.ChatMessage.DestinationType;
 import live.socialchat.chat.user.model.User;
 import org.bson.conversions.Bson;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -16,6 +17,7 @@ import static com.mongodb.client.model.Projections.fields;
 import static com.mongodb.client.model.Projections.include;
 
 @Repository
+@Profile("!inmemory")
 public class MongoUserRepository implements UserRepository {
     
     private static final String USER_COLLECTION_NAME = "user";
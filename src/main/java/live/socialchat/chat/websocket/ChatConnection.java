@@ -0,0 +1,51 @@
+package live.socialchat.chat.websocket;
+
+import live.socialchat.chat.message.message.Message;
+import live.socialchat.chat.websocket.codec.WireFormat;
+
+/**
+ * Client connection of a local {@link live.socialchat.chat.session.session.ChatSession}, independent of the
+ * transport serving it. Sends never block: messages are queued and written by the transport.
+ */
+public interface ChatConnection {
+    
+    String GOING_AWAY_REASON = "Server shutting down";
+    
+    String getId();
+    
+    boolean isOpen();
+    
+    WireFormat getWireFormat();
+    
+    /**
+     * Queues the message to be sent, returning false when the connection's outbound buffer is full.
+     */
+    boolean send(Message message);
+    
+    /**
+     * Number of messages waiting to be sent.
+     */
+    int pending();
+    
+    /**
+     * Sends a native WebSocket ping, which clients answer with a pong.
+     */
+    void ping();
+    
+    /**
+     * Time, as of {@link System#nanoTime()}, at which the client last sent a frame, pongs included.
+     */
+    long lastReceivedAt();
+    
+    /**
+     * Closes the connection with a going away status, as the server is shutting down. Callers should wait for the
+     * pending messages to be sent first.
+     */
+    void close();
+    
+    /**
+     * Drops the connection without the closing handshake, for clients which stopped answering.
+     */
+    void abort();
+    
+}
@@ -1,19 +1,17 @@
 package live.socialchat.chat.websocket;
 
+import java.nio.ByteBuffer;
+import javax.websocket.DecodeException;
 import javax.websocket.OnClose;
 import javax.websocket.OnError;
 import javax.websocket.OnMessage;
 import javax.websocket.OnOpen;
+import javax.websocket.PongMessage;
 import javax.websocket.Session;
 import javax.websocket.server.ServerEndpoint;
-import live.socialchat.chat.message.ChatMessageService;
-import live.socialchat.chat.message.message.ChatHistoryRequest;
-import live.socialchat.chat.message.message.ChatMessage;
-import live.socialchat.chat.message.message.MessageType;
 import live.socialchat.chat.message.message.RequestMessage;
-import live.socialchat.chat.server.ServerMessageService;
-import live.socialchat.chat.server.ServerMessageServiceImpl;
 import live.socialchat.chat.session.session.ChatSession;
+import live.socialchat.chat.websocket.decoder.RequestMessageBinaryDecoder;
 import live.socialchat.chat.websocket.decoder.RequestMessageDecoder;
 import live.socialchat.chat.websocket.decoder.ResponseMessageDecoder;
 import live.socialchat.chat.websocket.encoder.RequestMessageEncoder;
@@ -24,8 +22,6 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import static live.socialchat.chat.websocket.encoder.PayloadEncoder.decodePayload;
-
 @Component
 @ServerEndpoint(
     value = "/chat",
@@ -35,81 +31,94 @@ import static live.socialchat.chat.websocket.encoder.PayloadEncoder.decodePayloa
 public class ChatEndpointController {
     
     private static final Logger LOGGER = LoggerFactory.getLogger(ChatEndpointController.class);
+    private static final String CHAT_SESSION = ChatSession.class.getName();
     
-    private final ChatMessageService chatMessageService;
-    private final ServerMessageService serverMessageService;
+    private final ChatProtocolHandler chatProtocolHandler;
+    private final WebSocketMessageSender webSocketMessageSender;
+    private final RequestMessageBinaryDecoder binaryDecoder = new RequestMessageBinaryDecoder();
     
     @Autowired
-    public ChatEndpointController(final ChatMessageService chatMessageService,
-                                  final ServerMessageServiceImpl clientServerMessageController) {
-        this.chatMessageService = chatMessageService;
-        this.serverMessageService = clientServerMessageController;
+    public ChatEndpointController(final ChatProtocolHandler chatProtocolHandler,
+                                  final WebSocketMessageSender webSocketMessageSender) {
+        this.chatProtocolHandler = chatProtocolHandler;
+        this.webSocketMessageSender = webSocketMessageSender;
     }
     
     @OnOpen
     public void onOpen(final Session session) {
-        serverMessageService.handleConnected(buildChatSession(session));
+        chatProtocolHandler.handleConnected(chatSession(session));
     }
 
     @OnMessage
     public void onMessage(final Session session, final RequestMessage<?> requestMessage) {
-        if (validRequestMessage(requestMessage)) {
-            handleMessages(buildChatSession(session), requestMessage, requestMessage.getType());
-        } else {
-            serverMessageService.handleInvalidRequest(buildChatSession(session));
+        webSocketMessageSender.received(session);
+        chatProtocolHandler.handleRequest(chatSession(session), requestMessage);
+    }
+
+    @OnMessage
+    public void onBinaryMessage(final Session session, final ByteBuffer bytes) {
+        webSocketMessageSender.received(session);
+        try {
+            chatProtocolHandler.handleRequest(chatSession(session), binaryDecoder.decode(bytes));
+        } catch (DecodeException e) {
+            LOGGER.error("Failed to decode binary message from connection {}. Reason {}", session.getId(), e.getMessage());
+            chatProtocolHandler.handleInvalidRequest(chatSession(session));
         }
     }
 
+    @OnMessage
+    public void onPong(final Session session, final PongMessage pongMessage) {
+        webSocketMessageSender.received(session);
+    }
+
     @OnClose
     public void onClose(final Session session) {
-        serverMessageService.handleDisconnected(buildChatSession(session));
+        chatProtocolHandler.handleDisconnected(chatSession(session));
     }
     
+    /**
+     * Text frames the container fails to decode end up here, and are answered with an invalid request, as binary ones.
+     */
     @OnError
     public void onError(final Session session, final Throwable throwable) {
-        LOGGER.error("Error occurred during connection {}. Reason {}", session.getId(), throwable.getMessage());
+        if (throwable instanceof DecodeException) {
+            LOGGER.error("Failed to decode message from connection {}. Reason {}", session.getId(), throwable.getMessage());
+            chatProtocolHandler.handleInvalidRequest(chatSession(session));
+        } else {
+            LOGGER.error("Error occurred during connection {}. Reason {}", session.getId(), throwable.getMessage());
+        }
     }
     
-    private void handleMessages(final ChatSession chatSession,
-                                final RequestMessage<?> requestMessage,
-                                final MessageType messageType) {
-
-        switch (messageType) {
-            case USER_MESSAGE:
-                chatMessageService
-                    .handleChatMessage(chatSession, decodePayload(requestMessage.getPayload(), ChatMessage.class));
-                break;
-            case CHAT_HISTORY:
-                chatMessageService
-                    .handleChatHistory(chatSession, decodePayload(requestMessage.getPayload(), ChatHistoryRequest.class));
-                break;
-            case CONTACTS_LIST:
-                chatMessageService
-                    .handleContactsMessage(chatSession);
-                break;
-            case PING:
-                serverMessageService.handlePing(chatSession);
-                break;
-            default:
-                LOGGER.error("Unable to handle message of type {}", messageType.name());
+    /**
+     * Chat session of the JSR-356 session, built on first use and kept in the session's user properties, so that the
+     * messages received don't each build one.
+     */
+    public ChatSession chatSession(final Session session) {
+        
+        final Object chatSession = session.getUserProperties().get(CHAT_SESSION);
+        
+        if (chatSession != null) {
+            return (ChatSession) chatSession;
         }
         
+        final ChatConnection connection = webSocketMessageSender.connection(session);
+        
+        synchronized (session) {
+            return (ChatSession) session.getUserProperties().computeIfAbsent(CHAT_SESSION, key ->
+                buildChatSession(session, connection));
+        }
     }
     
-    public ChatSession buildChatSession(final Session session) {
+    private ChatSession buildChatSession(final Session session, final ChatConnection connection) {
         
         final LoggedInUser userPrincipal = (LoggedInUser) session.getUserPrincipal();
         
         return ChatSession.builder()
             .id(userPrincipal.getSessionId())
             .userAuthenticationDetails(userPrincipal.getUserAuthenticationDetails())
-            .webSocketSession(session)
+            .connection(connection)
             .connectionId(session.getId())
             .build();
     }
-    
-    private boolean validRequestMessage(final RequestMessage<?> requestMessage) {
-        return requestMessage != null && requestMessage.getType() != null;
-    }
 
-}
\ No newline at end of file
+}
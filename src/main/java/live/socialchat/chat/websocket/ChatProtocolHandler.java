@@ -0,0 +1,204 @@
+package live.socialchat.chat.websocket;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import live.socialchat.chat.capture.TrafficCapture;
+import live.socialchat.chat.message.ChatMessageService;
+import live.socialchat.chat.message.message.ChatHistoryRequest;
+import live.socialchat.chat.message.message.ChatMessage;
+import live.socialchat.chat.message.message.ChatMessage.DestinationType;
+import live.socialchat.chat.message.message.MessageType;
+import live.socialchat.chat.message.message.ReceiptRequest;
+import live.socialchat.chat.message.message.RequestMessage;
+import live.socialchat.chat.message.message.ResumeRequest;
+import live.socialchat.chat.message.message.SyncRequest;
+import live.socialchat.chat.metrics.MessageTypeMeters;
+import live.socialchat.chat.overload.OverloadController;
+import live.socialchat.chat.ratelimit.RateLimiter;
+import live.socialchat.chat.server.ServerMessageService;
+import live.socialchat.chat.session.session.ChatSession;
+import live.socialchat.chat.trace.MessageTracer;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import static live.socialchat.chat.websocket.encoder.PayloadEncoder.decodePayload;
+
+/**
+ * The {@code /chat} protocol, shared by every transport: connection lifecycle and the dispatching of decoded requests
+ * to the chat and server services.
+ */
+@Component
+public class ChatProtocolHandler {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChatProtocolHandler.class);
+    
+    private final ChatMessageService chatMessageService;
+    private final ServerMessageService serverMessageService;
+    private final MessageTracer messageTracer;
+    private final TrafficCapture trafficCapture;
+    private final RateLimiter rateLimiter;
+    private final OverloadController overloadController;
+    private final Map<MessageType, Timer> handleTimers;
+    
+    public ChatProtocolHandler(final ChatMessageService chatMessageService,
+                               final ServerMessageService serverMessageService,
+                               final MessageTracer messageTracer,
+                               final TrafficCapture trafficCapture,
+                               final RateLimiter rateLimiter,
+                               final OverloadController overloadController,
+                               final MeterRegistry meterRegistry) {
+        this.chatMessageService = chatMessageService;
+        this.serverMessageService = serverMessageService;
+        this.messageTracer = messageTracer;
+        this.trafficCapture = trafficCapture;
+        this.rateLimiter = rateLimiter;
+        this.overloadController = overloadController;
+        this.handleTimers = MessageTypeMeters.timers(meterRegistry, "chat.message.handle",
+            "Time taken by the receiving thread to handle a request, up to handing it off to the schedulers");
+    }
+    
+    public void handleConnected(final ChatSession chatSession) {
+        trafficCapture.connected(chatSession);
+        rateLimiter.connected(chatSession);
+        serverMessageService.handleConnected(chatSession);
+    }
+    
+    public void handleDisconnected(final ChatSession chatSession) {
+        trafficCapture.disconnected(chatSession);
+        rateLimiter.disconnected(chatSession);
+        serverMessageService.handleDisconnected(chatSession);
+    }
+    
+    public void handleInvalidRequest(final ChatSession chatSession) {
+        serverMessageService.handleInvalidRequest(chatSession);
+    }
+    
+    /**
+     * Requests over their rate limit are answered with a rejection and go no further, and deferrable requests are
+     * left to the {@link OverloadController} while the node sheds load. The deferred handler is only created then.
+     */
+    public void handleRequest(final ChatSession chatSession, final RequestMessage<?> requestMessage) {
+        if (!validRequestMessage(requestMessage)) {
+            serverMessageService.handleInvalidRequest(chatSession);
+        } else {
+            trafficCapture.request(chatSession, requestMessage);
+            if (!rateLimiter.tryAcquire(chatSession, requestMessage.getType())) {
+                serverMessageService.handleRateLimited(chatSession, requestMessage.getType());
+            } else if (!overloadController.isDeferring(requestMessage.getType())
+                || !overloadController.defer(chatSession, requestMessage.getType(), () -> handleValidRequest(chatSession, requestMessage))) {
+                handleValidRequest(chatSession, requestMessage);
+            }
+        }
+    }
+    
+    private void handleValidRequest(final ChatSession chatSession, final RequestMessage<?> requestMessage) {
+        final long start = System.nanoTime();
+        handleMessages(chatSession, requestMessage, requestMessage.getType());
+        handleTimers.get(requestMessage.getType()).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+    
+    private void handleMessages(final ChatSession chatSession,
+                                final RequestMessage<?> requestMessage,
+                                final MessageType messageType) {
+    
+        switch (messageType) {
+            case USER_MESSAGE:
+                handleChatMessage(chatSession, requestMessage);
+                break;
+            case CHAT_HISTORY:
+                chatMessageService
+                    .handleChatHistory(chatSession, decodePayload(requestMessage.getPayload(), ChatHistoryRequest.class));
+                break;
+            case RECEIPT:
+                handleReceipt(chatSession, requestMessage);
+                break;
+            case RESUME:
+                handleResume(chatSession, requestMessage);
+                break;
+            case SYNC:
+                handleSync(chatSession, requestMessage);
+                break;
+            case CONTACTS_LIST:
+                chatMessageService
+                    .handleContactsMessage(chatSession);
+                break;
+            case PING:
+                serverMessageService.handlePing(chatSession);
+                break;
+            default:
+                LOGGER.error("Unable to handle message of type {}", messageType.name());
+        }
+        
+    }
+    
+    /**
+     * Messages need a destination type to be routed. Messages to the all users group reach every connection, so
+     * they're also limited on their own, before being persisted or fanned out.
+     */
+    private void handleChatMessage(final ChatSession chatSession, final RequestMessage<?> requestMessage) {
+        
+        final ChatMessage chatMessage = decodePayload(requestMessage.getPayload(), ChatMessage.class);
+        
+        if (chatMessage == null || chatMessage.getDestinationType() == null) {
+            serverMessageService.handleInvalidRequest(chatSession);
+            return;
+        }
+        
+        if (chatMessage.getDestinationType() == DestinationType.ALL_USERS_GROUP
+            && !rateLimiter.tryAcquireAllUsersGroup(chatSession)) {
+            serverMessageService.handleRateLimited(chatSession, requestMessage.getType());
+            return;
+        }
+        
+        chatMessageService.handleChatMessage(chatSession, chatMessage, messageTracer.start(requestMessage));
+    }
+    
+    /**
+     * Syncing needs the id of the last message seen, otherwise the client asks for the history of each conversation.
+     */
+    private void handleSync(final ChatSession chatSession, final RequestMessage<?> requestMessage) {
+        
+        final SyncRequest syncRequest = decodePayload(requestMessage.getPayload(), SyncRequest.class);
+        
+        if (syncRequest == null || syncRequest.getLastMessageId() == null || !ObjectId.isValid(syncRequest.getLastMessageId().trim())) {
+            serverMessageService.handleInvalidRequest(chatSession);
+            return;
+        }
+        
+        chatMessageService.handleSync(chatSession, syncRequest);
+    }
+    
+    private void handleReceipt(final ChatSession chatSession, final RequestMessage<?> requestMessage) {
+        
+        final ReceiptRequest receiptRequest = decodePayload(requestMessage.getPayload(), ReceiptRequest.class);
+        
+        if (receiptRequest == null || receiptRequest.getDestinationType() == null || receiptRequest.getConversationId() == null
+            || receiptRequest.getStatus() == null || receiptRequest.getMessageId() == null || !ObjectId.isValid(receiptRequest.getMessageId().trim())) {
+            serverMessageService.handleInvalidRequest(chatSession);
+            return;
+        }
+        
+        chatMessageService.handleReceipt(chatSession, receiptRequest);
+    }
+    
+    private void handleResume(final ChatSession chatSession, final RequestMessage<?> requestMessage) {
+        
+        final ResumeRequest resumeRequest = decodePayload(requestMessage.getPayload(), ResumeRequest.class);
+        
+        if (resumeRequest == null || resumeRequest.getResumeToken() == null || resumeRequest.getLastSeq() < 0) {
+            serverMessageService.handleInvalidRequest(chatSession);
+            return;
+        }
+        
+        serverMessageService.handleResume(chatSession, resumeRequest);
+    }
+    
+    private boolean validRequestMessage(final RequestMessage<?> requestMessage) {
+        return requestMessage != null && requestMessage.getType() != null;
+    }
+    
+}
@@ -0,0 +1,17 @@
+package live.socialchat.chat.websocket;
+
+/**
+ * Transport serving the {@code /chat} connections. It's started and drained by {@link ChatServerLifecycle}.
+ */
+public interface ChatServer {
+    
+    void start() throws Exception;
+    
+    /**
+     * Stops accepting connections, leaving the open ones untouched.
+     */
+    void stopAccepting() throws Exception;
+    
+    void stop() throws Exception;
+    
+}
@@ -0,0 +1,171 @@
+package live.socialchat.chat.websocket;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+import live.socialchat.chat.capture.TrafficCapture;
+import live.socialchat.chat.conversation.ConversationSummaries;
+import live.socialchat.chat.message.MessageRepository;
+import live.socialchat.chat.receipt.Receipts;
+import live.socialchat.chat.scheduler.BackgroundTasks;
+import live.socialchat.chat.scheduler.ChatSchedulers;
+import live.socialchat.chat.server.ServerMessageService;
+import live.socialchat.chat.session.SessionRepository;
+import live.socialchat.chat.session.session.ChatSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+/**
+ * Starts the {@link ChatServer} once the context is ready and drains it on shutdown, so that a deploy neither loses
+ * messages nor has every client reconnect at the same moment:
+ * <ol>
+ *     <li>the server stops accepting connections</li>
+ *     <li>every local connection is sent a {@code RECONNECT} message with a random delay, spreading the reconnections
+ *     over the reconnect jitter</li>
+ *     <li>clients are given the drain timeout to leave, after which the remaining connections are closed as going
+ *     away once their outbound queues are flushed</li>
+ *     <li>the schedulers run their queued tasks and the pending message inserts are waited for, and the
+ *     pending conversation summaries and receipts written</li>
+ *     <li>the traffic capture, if any, writes its queued events, down to the disconnections of the closed
+ *     connections, and closes its file</li>
+ *     <li>the server is stopped</li>
+ * </ol>
+ */
+@Component
+public class ChatServerLifecycle implements SmartLifecycle {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChatServerLifecycle.class);
+    private static final long POLL_INTERVAL_MILLIS = 50;
+    
+    private final ChatServer chatServer;
+    private final SessionRepository sessionRepository;
+    private final ServerMessageService serverMessageService;
+    private final MessageRepository messageRepository;
+    private final ConversationSummaries conversationSummaries;
+    private final Receipts receipts;
+    private final ChatSchedulers chatSchedulers;
+    private final TrafficCapture trafficCapture;
+    private final DrainSettings drainSettings;
+    
+    private volatile boolean running;
+    
+    public ChatServerLifecycle(final ChatServer chatServer,
+                               final SessionRepository sessionRepository,
+                               final ServerMessageService serverMessageService,
+                               final MessageRepository messageRepository,
+                               final ConversationSummaries conversationSummaries,
+                               final Receipts receipts,
+                               final ChatSchedulers chatSchedulers,
+                               final TrafficCapture trafficCapture,
+                               final DrainSettings drainSettings) {
+        this.chatServer = chatServer;
+        this.sessionRepository = sessionRepository;
+        this.serverMessageService = serverMessageService;
+        this.messageRepository = messageRepository;
+        this.conversationSummaries = conversationSummaries;
+        this.receipts = receipts;
+        this.chatSchedulers = chatSchedulers;
+        this.trafficCapture = trafficCapture;
+        this.drainSettings = drainSettings;
+    }
+    
+    @Override
+    public void start() {
+        try {
+            chatServer.start();
+            running = true;
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to start chat server", e);
+        }
+    }
+    
+    @Override
+    public void stop() {
+        try {
+            drain();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.error("Drain interrupted");
+        } catch (Exception e) {
+            LOGGER.error("Failed to drain chat server. Reason {}", e.getMessage());
+        } finally {
+            running = false;
+        }
+    }
+    
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+    
+    /**
+     * Before the {@link BackgroundTasks}', so that they stop before the drain.
+     */
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE - 1;
+    }
+    
+    private void drain() throws Exception {
+    
+        LOGGER.info("Draining chat server with {}", drainSettings);
+    
+        chatServer.stopAccepting();
+    
+        final List<ChatSession> chatSessions = localSessions();
+        chatSessions.forEach(chatSession -> serverMessageService.handleShutdown(chatSession, reconnectDelay()));
+        LOGGER.info("Asked {} connections to reconnect", chatSessions.size());
+    
+        if (!await(drainSettings.getDrainTimeout(), List::isEmpty)) {
+    
+            final List<ChatSession> remainingSessions = localSessions();
+    
+            await(drainSettings.getFlushTimeout(), sessions -> remainingSessions.stream()
+                .allMatch(chatSession -> chatSession.getConnection().pending() == 0));
+    
+            remainingSessions.forEach(chatSession -> chatSession.getConnection().close());
+            LOGGER.info("Closed {} connections still open after {}ms", remainingSessions.size(), drainSettings.getDrainTimeout());
+        }
+    
+        chatSchedulers.shutdown(drainSettings.getFlushTimeout());
+        messageRepository.flush(drainSettings.getFlushTimeout());
+        conversationSummaries.flush(drainSettings.getFlushTimeout());
+        receipts.flush(drainSettings.getFlushTimeout());
+        trafficCapture.stop();
+    
+        chatServer.stop();
+    
+        LOGGER.info("Chat server drained");
+    }
+    
+    /**
+     * Polls the local sessions until the condition holds, returning false if it didn't within the timeout.
+     */
+    private boolean await(final long timeoutMillis,
+                          final Predicate<List<ChatSession>> condition) throws InterruptedException {
+    
+        final long deadline = System.currentTimeMillis() + timeoutMillis;
+    
+        while (!condition.test(localSessions())) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            Thread.sleep(POLL_INTERVAL_MILLIS);
+        }
+    
+        return true;
+    }
+    
+    private List<ChatSession> localSessions() {
+        return sessionRepository.findAllLocalSessions()
+            .collectList()
+            .block();
+    }
+    
+    private long reconnectDelay() {
+        return ThreadLocalRandom.current().nextLong(drainSettings.getReconnectJitter() + 1);
+    }
+    
+}
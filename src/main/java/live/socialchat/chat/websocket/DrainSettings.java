@@ -0,0 +1,25 @@
+package live.socialchat.chat.websocket;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Timings of the drain performed on shutdown, read from the {@code chat.shutdown.*} properties:
+ * <ul>
+ *     <li>drainTimeout: how long clients are given to reconnect elsewhere before the remaining connections are
+ *     closed</li>
+ *     <li>reconnectJitter: upper bound of the random delay each client is asked to wait before reconnecting</li>
+ *     <li>flushTimeout: how long each of the outbound queues, schedulers and pending inserts is waited for</li>
+ * </ul>
+ */
+@Getter
+@Builder
+@ToString
+public class DrainSettings {
+    
+    private final long drainTimeout;
+    private final long reconnectJitter;
+    private final long flushTimeout;
+    
+}
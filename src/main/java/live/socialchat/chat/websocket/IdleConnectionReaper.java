@@ -0,0 +1,87 @@
+package live.socialchat.chat.websocket;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import live.socialchat.chat.scheduler.BackgroundTasks;
+import live.socialchat.chat.session.SessionRepository;
+import live.socialchat.chat.session.session.ChatSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the local connections honest with native WebSocket pings. Every {@code pingInterval} the connections which
+ * sent nothing for as long are pinged, and those which sent nothing, not even a pong, for {@code idleTimeout} are
+ * dropped and their session deleted, rather than lingering until a send to them fails. Pings and reaped connections
+ * are counted in {@code chat.connections.pinged} and {@code chat.connections.reaped}.
+ */
+@Component
+public class IdleConnectionReaper {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(IdleConnectionReaper.class);
+    
+    private final SessionRepository sessionRepository;
+    private final KeepAliveSettings settings;
+    private final Counter pinged;
+    private final Counter reaped;
+    
+    public IdleConnectionReaper(final SessionRepository sessionRepository,
+                                final KeepAliveSettings settings,
+                                final BackgroundTasks backgroundTasks,
+                                final MeterRegistry meterRegistry) {
+        
+        this.sessionRepository = sessionRepository;
+        this.settings = settings;
+        this.pinged = meterRegistry.counter("chat.connections.pinged");
+        this.reaped = meterRegistry.counter("chat.connections.reaped");
+        
+        if (settings.isEnabled()) {
+            backgroundTasks.schedule("keep-alive", this::round, settings.getPingInterval());
+            LOGGER.info("Keeping connections alive with {}", settings);
+        }
+        
+    }
+    
+    private void round() {
+        try {
+            
+            final List<ChatSession> chatSessions = sessionRepository.findAllLocalSessions()
+                .collectList()
+                .block();
+            
+            final long now = System.nanoTime();
+            final long pingAfter = TimeUnit.MILLISECONDS.toNanos(settings.getPingInterval());
+            final long reapAfter = TimeUnit.MILLISECONDS.toNanos(settings.getIdleTimeout());
+            
+            for (ChatSession chatSession : chatSessions) {
+                
+                final ChatConnection connection = chatSession.getConnection();
+                final long quietFor = now - connection.lastReceivedAt();
+                
+                if (quietFor >= reapAfter) {
+                    reap(chatSession, quietFor);
+                } else if (quietFor >= pingAfter && connection.isOpen()) {
+                    connection.ping();
+                    pinged.increment();
+                }
+            }
+            
+        } catch (Exception e) {
+            LOGGER.error("Failed to keep connections alive. Reason {}", e.getMessage());
+        }
+    }
+    
+    private void reap(final ChatSession chatSession, final long quietFor) {
+        
+        chatSession.getConnection().abort();
+        reaped.increment();
+        
+        sessionRepository.deleteSession(chatSession)
+            .doOnSuccess(result -> LOGGER.info("Reaped connection {}, quiet for {}ms", chatSession.getConnectionId(),
+                TimeUnit.NANOSECONDS.toMillis(quietFor)))
+            .subscribe();
+    }
+    
+}
@@ -0,0 +1,96 @@
+package live.socialchat.chat.websocket;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import javax.websocket.CloseReason;
+import javax.websocket.CloseReason.CloseCodes;
+import javax.websocket.Session;
+import live.socialchat.chat.message.message.Message;
+import live.socialchat.chat.websocket.codec.WireFormat;
+import org.eclipse.jetty.websocket.common.WebSocketSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link ChatConnection} of a JSR-356 session, sending through its {@link OutboundQueue}.
+ */
+class JsrChatConnection implements ChatConnection {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(JsrChatConnection.class);
+    
+    private final Session session;
+    private final WireFormat wireFormat;
+    private final OutboundQueue outboundQueue;
+    private volatile long lastReceivedAt = System.nanoTime();
+    
+    JsrChatConnection(final Session session, final OutboundQueue outboundQueue) {
+        this.session = session;
+        this.wireFormat = WireFormat.of(session);
+        this.outboundQueue = outboundQueue;
+    }
+    
+    @Override
+    public String getId() {
+        return session.getId();
+    }
+    
+    @Override
+    public boolean isOpen() {
+        return session.isOpen();
+    }
+    
+    @Override
+    public WireFormat getWireFormat() {
+        return wireFormat;
+    }
+    
+    @Override
+    public boolean send(final Message message) {
+        return outboundQueue.offer(message);
+    }
+    
+    @Override
+    public int pending() {
+        return outboundQueue.size();
+    }
+    
+    /**
+     * Pings go out as control frames, which Jetty interleaves with the messages being written by the outbound queue.
+     */
+    @Override
+    public void ping() {
+        try {
+            session.getAsyncRemote().sendPing(ByteBuffer.allocate(0));
+        } catch (IOException e) {
+            LOGGER.error("Failed to ping connection {}. Reason: {}", session.getId(), e.getMessage());
+        }
+    }
+    
+    @Override
+    public long lastReceivedAt() {
+        return lastReceivedAt;
+    }
+    
+    void received() {
+        lastReceivedAt = System.nanoTime();
+    }
+    
+    @Override
+    public void close() {
+        try {
+            session.close(new CloseReason(CloseCodes.GOING_AWAY, GOING_AWAY_REASON));
+        } catch (IOException e) {
+            LOGGER.error("Failed to close connection {}. Reason: {}", session.getId(), e.getMessage());
+        }
+    }
+    
+    @Override
+    public void abort() {
+        if (session instanceof WebSocketSession) {
+            ((WebSocketSession) session).disconnect();
+        } else {
+            close();
+        }
+    }
+    
+}
@@ -0,0 +1,26 @@
+package live.socialchat.chat.websocket;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Native WebSocket keep-alive of the local connections, read from the {@code chat.websocket.keep-alive.*}
+ * properties:
+ * <ul>
+ *     <li>enabled: whether connections are pinged and reaped at all</li>
+ *     <li>pingInterval: milliseconds between rounds, in which connections quiet for as long are pinged</li>
+ *     <li>idleTimeout: milliseconds without any frame from the client, pongs included, after which its connection is
+ *     considered dead and reaped</li>
+ * </ul>
+ */
+@Getter
+@Builder
+@ToString
+public class KeepAliveSettings {
+    
+    private final boolean enabled;
+    private final long pingInterval;
+    private final long idleTimeout;
+    
+}
@@ -0,0 +1,136 @@
+package live.socialchat.chat.websocket;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.websocket.CloseReason;
+import javax.websocket.CloseReason.CloseCodes;
+import javax.websocket.Session;
+import live.socialchat.chat.message.message.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded queue of the messages waiting to be sent to one WebSocket session. Its messages are drained serially on
+ * the delivery executor, so a session never has more than one blocking send in flight while different sessions are
+ * served in parallel. Offers are lock-free and only schedule a drain when none is running.
+ */
+class OutboundQueue implements Runnable {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(OutboundQueue.class);
+    private static final String DELIVERY_REJECTED_REASON = "Delivery rejected";
+    
+    private final Session session;
+    private final Executor executor;
+    private final MessageWriter messageWriter;
+    private final int capacity;
+    private final Queue<Message> messages = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicInteger wip = new AtomicInteger();
+    
+    OutboundQueue(final Session session,
+                  final Executor executor,
+                  final MessageWriter messageWriter,
+                  final int capacity) {
+        this.session = session;
+        this.executor = executor;
+        this.messageWriter = messageWriter;
+        this.capacity = capacity;
+    }
+    
+    /**
+     * Queues the message, returning false when the queue is full.
+     */
+    boolean offer(final Message message) {
+        
+        if (size.incrementAndGet() > capacity) {
+            size.decrementAndGet();
+            return false;
+        }
+        
+        messages.offer(message);
+        
+        if (wip.getAndIncrement() == 0) {
+            schedule();
+        }
+        
+        return true;
+    }
+    
+    int size() {
+        return size.get();
+    }
+    
+    @Override
+    public void run() {
+        
+        int missed = 1;
+        
+        do {
+            Message message;
+            while ((message = messages.poll()) != null) {
+                size.decrementAndGet();
+                write(message);
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+        
+    }
+    
+    private void schedule() {
+        try {
+            executor.execute(this);
+        } catch (RejectedExecutionException e) {
+            LOGGER.error("Delivery to connection {} rejected. Closing it with {} messages waiting", session.getId(), size.get());
+            discard();
+            close();
+        }
+    }
+    
+    /**
+     * Drops the queued messages in place of the drain that couldn't be scheduled, releasing the drain the same way, so
+     * that messages offered meanwhile are dropped too and the next offer schedules a drain again.
+     */
+    private void discard() {
+        
+        int missed = 1;
+        
+        do {
+            while (messages.poll() != null) {
+                size.decrementAndGet();
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+        
+    }
+    
+    /**
+     * Closes the session, whose messages were dropped, so that the client reconnects and catches up.
+     */
+    private void close() {
+        try {
+            session.close(new CloseReason(CloseCodes.TRY_AGAIN_LATER, DELIVERY_REJECTED_REASON));
+        } catch (IOException e) {
+            LOGGER.error("Failed to close connection {}. Reason: {}", session.getId(), e.getMessage());
+        }
+    }
+    
+    private void write(final Message message) {
+        try {
+            if (session.isOpen()) {
+                messageWriter.write(session, message);
+            }
+        } catch (Exception e) {
+            LOGGER.error("Error occurred while sending message to connection {}. Reason: {}", session.getId(), e.getMessage());
+        }
+    }
+    
+    @FunctionalInterface
+    interface MessageWriter {
+        void write(Session session, Message message) throws Exception;
+    }
+    
+}
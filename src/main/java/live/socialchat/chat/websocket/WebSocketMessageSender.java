@@ -0,0 +1,126 @@
+package live.socialchat.chat.websocket;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.websocket.EncodeException;
+import javax.websocket.Session;
+import live.socialchat.chat.message.message.Message;
+import live.socialchat.chat.message.message.ResponseMessage;
+import live.socialchat.chat.scheduler.ChatSchedulers;
+import live.socialchat.chat.trace.TraceStage;
+import live.socialchat.chat.websocket.codec.EncodedMessage;
+import live.socialchat.chat.websocket.codec.WireFormat;
+import live.socialchat.chat.websocket.encoder.ResponseMessageBinaryEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Sends messages to {@link ChatConnection}s, counting the ones dropped because a connection can't keep up. For JSR-356
+ * sessions it also provides the connection, which writes in the wire format negotiated by the session: binary frames
+ * for {@link WireFormat#CBOR} and text frames, through the endpoint encoders, otherwise. Sends are queued on a
+ * per-session {@link OutboundQueue} and performed by the delivery executor, so callers never block on a slow client.
+ */
+@Component
+public class WebSocketMessageSender {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(WebSocketMessageSender.class);
+    private static final String CONNECTION = ChatConnection.class.getName();
+    
+    private final ResponseMessageBinaryEncoder binaryEncoder = new ResponseMessageBinaryEncoder();
+    private final ChatSchedulers chatSchedulers;
+    private final int queueCapacity;
+    private final Counter droppedMessages;
+    private final Timer jsonSendTimer;
+    private final Timer cborSendTimer;
+    
+    public WebSocketMessageSender(final ChatSchedulers chatSchedulers,
+                                  final MeterRegistry meterRegistry,
+                                  @Value("${chat.websocket.outbound.queue-capacity:1000}") final int queueCapacity) {
+        this.chatSchedulers = chatSchedulers;
+        this.queueCapacity = queueCapacity;
+        this.droppedMessages = meterRegistry.counter("websocket.outbound.dropped");
+        this.jsonSendTimer = sendTimer(meterRegistry, WireFormat.JSON);
+        this.cborSendTimer = sendTimer(meterRegistry, WireFormat.CBOR);
+    }
+    
+    public void send(final ChatConnection connection, final Message message) {
+        if (!connection.send(message)) {
+            droppedMessages.increment();
+            LOGGER.error("Outbound queue of connection {} is full. Dropped message of type {}", connection.getId(), message.getType());
+        }
+    }
+    
+    /**
+     * Connection of the JSR-356 session, created on first use and kept in the session's user properties.
+     */
+    public ChatConnection connection(final Session session) {
+        
+        final Map<String, Object> userProperties = session.getUserProperties();
+        final Object connection = userProperties.get(CONNECTION);
+        
+        if (connection != null) {
+            return (ChatConnection) connection;
+        }
+        
+        synchronized (session) {
+            return (ChatConnection) userProperties.computeIfAbsent(CONNECTION, key ->
+                new JsrChatConnection(session,
+                    new OutboundQueue(session, chatSchedulers.deliveryExecutor(), this::write, queueCapacity)));
+        }
+    }
+    
+    /**
+     * Records that a frame was received from the session.
+     */
+    public void received(final Session session) {
+        ((JsrChatConnection) connection(session)).received();
+    }
+    
+    /**
+     * Encodes and writes the message, timing the blocking send and marking the message as sent on its trace.
+     */
+    private void write(final Session session, final Message message) throws IOException, EncodeException {
+        
+        final long start = System.nanoTime();
+        
+        if (message instanceof EncodedMessage) {
+            writeEncoded(session, (EncodedMessage) message);
+            return;
+        }
+        
+        if (message instanceof ResponseMessage && WireFormat.of(session) == WireFormat.CBOR) {
+            session.getBasicRemote().sendBinary(binaryEncoder.encode((ResponseMessage<?>) message));
+            cborSendTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        } else {
+            session.getBasicRemote().sendObject(message);
+            jsonSendTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        
+        message.getTrace().mark(TraceStage.SENT);
+        
+    }
+    
+    private void writeEncoded(final Session session, final EncodedMessage message) throws IOException {
+        if (WireFormat.of(session) == WireFormat.CBOR) {
+            session.getBasicRemote().sendBinary(ByteBuffer.wrap(message.binaryBytes()));
+        } else {
+            session.getBasicRemote().sendText(message.text());
+        }
+    }
+    
+    private static Timer sendTimer(final MeterRegistry meterRegistry, final WireFormat wireFormat) {
+        return Timer.builder("websocket.send")
+            .description("Time taken to encode and write a message to a JSR-356 session")
+            .tag("format", wireFormat.name().toLowerCase())
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+    }
+    
+}
@@ -0,0 +1,75 @@
+package live.socialchat.chat.websocket.codec;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import live.socialchat.chat.message.message.RequestMessage;
+import live.socialchat.chat.message.message.ResponseMessage;
+
+/**
+ * Binary counterpart of {@link JsonCodec} for the {@link WireFormat#CBOR} subprotocol. It encodes exactly the same
+ * message model, so payload trees read here are bound with {@link JsonCodec#decodePayload(Object, Class)}.
+ */
+public final class CborCodec {
+    
+    private static final ObjectMapper CBOR_MAPPER = new ObjectMapper(new CBORFactory());
+    private static final CBORFactory CBOR_FACTORY = (CBORFactory) CBOR_MAPPER.getFactory();
+    
+    private static final int INITIAL_BUFFER_SIZE = 256;
+    private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+    
+    private static final ThreadLocal<ReusableByteArrayOutputStream> BUFFERS = ThreadLocal
+        .withInitial(() -> new ReusableByteArrayOutputStream(INITIAL_BUFFER_SIZE, MAX_RETAINED_BUFFER_SIZE));
+    
+    private CborCodec() {}
+    
+    public static ByteBuffer encode(final ResponseMessage<?> message) throws IOException {
+        
+        final ReusableByteArrayOutputStream buffer = BUFFERS.get().clear();
+        
+        try (JsonGenerator generator = CBOR_FACTORY.createGenerator(buffer)) {
+            MessageEnvelopes.writeResponse(generator, message);
+        }
+        
+        return buffer.toByteBuffer();
+    }
+    
+    public static ByteBuffer encode(final RequestMessage<?> message) throws IOException {
+        
+        final ReusableByteArrayOutputStream buffer = BUFFERS.get().clear();
+        
+        try (JsonGenerator generator = CBOR_FACTORY.createGenerator(buffer)) {
+            MessageEnvelopes.writeRequest(generator, message);
+        }
+        
+        return buffer.toByteBuffer();
+    }
+    
+    public static RequestMessage<JsonNode> decodeRequest(final ByteBuffer bytes) throws IOException {
+        try (JsonParser parser = createParser(bytes)) {
+            return MessageEnvelopes.readRequest(parser);
+        }
+    }
+    
+    public static ResponseMessage<JsonNode> decodeResponse(final ByteBuffer bytes) throws IOException {
+        try (JsonParser parser = createParser(bytes)) {
+            return MessageEnvelopes.readResponse(parser);
+        }
+    }
+    
+    private static JsonParser createParser(final ByteBuffer bytes) throws IOException {
+        
+        if (bytes.hasArray()) {
+            return CBOR_FACTORY.createParser(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+        }
+        
+        final byte[] copy = new byte[bytes.remaining()];
+        bytes.duplicate().get(copy);
+        return CBOR_FACTORY.createParser(copy);
+    }
+    
+}
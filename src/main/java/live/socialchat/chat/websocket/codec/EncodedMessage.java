@@ -0,0 +1,67 @@
+package live.socialchat.chat.websocket.codec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import live.socialchat.chat.message.message.Message;
+import live.socialchat.chat.message.message.MessageType;
+import live.socialchat.chat.message.message.ResponseMessage;
+
+/**
+ * Response encoded upfront in every wire format, for constant messages sent often enough that encoding them on each
+ * send shows up, such as {@code PONG}. Connections write the bytes of their format as they are.
+ */
+public final class EncodedMessage implements Message {
+    
+    private final MessageType type;
+    private final String text;
+    private final byte[] textBytes;
+    private final byte[] binaryBytes;
+    
+    private EncodedMessage(final MessageType type, final String text, final byte[] binaryBytes) {
+        this.type = type;
+        this.text = text;
+        this.textBytes = text.getBytes(StandardCharsets.UTF_8);
+        this.binaryBytes = binaryBytes;
+    }
+    
+    public static EncodedMessage of(final ResponseMessage<?> message) {
+        
+        try {
+            final ByteBuffer binary = CborCodec.encode(message);
+            final byte[] binaryBytes = new byte[binary.remaining()];
+            binary.get(binaryBytes);
+            return new EncodedMessage(message.getType(), JsonCodec.encode(message), binaryBytes);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to encode message of type " + message.getType(), e);
+        }
+        
+    }
+    
+    @Override
+    public MessageType getType() {
+        return type;
+    }
+    
+    /**
+     * The JSON text frame.
+     */
+    public String text() {
+        return text;
+    }
+    
+    /**
+     * The JSON text frame as UTF-8, which callers must not modify.
+     */
+    public byte[] textBytes() {
+        return textBytes;
+    }
+    
+    /**
+     * The CBOR binary frame, which callers must not modify.
+     */
+    public byte[] binaryBytes() {
+        return binaryBytes;
+    }
+    
+}
@@ -0,0 +1,81 @@
+package live.socialchat.chat.websocket.codec;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import live.socialchat.chat.message.message.RequestMessage;
+import live.socialchat.chat.message.message.ResponseMessage;
+
+/**
+ * Single JSON codec used by every WebSocket text encoder and decoder. Envelopes are written and read with Jackson's
+ * streaming API, payloads through the pre-built {@link PayloadWriters}, and the output goes into a per-thread
+ * reusable buffer instead of a fresh one per message.
+ */
+public final class JsonCodec {
+    
+    static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    
+    private static final JsonFactory JSON_FACTORY = OBJECT_MAPPER.getFactory();
+    private static final int INITIAL_BUFFER_SIZE = 512;
+    private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+    
+    private static final ThreadLocal<ReusableStringWriter> BUFFERS = ThreadLocal
+        .withInitial(() -> new ReusableStringWriter(INITIAL_BUFFER_SIZE, MAX_RETAINED_BUFFER_SIZE));
+    
+    private JsonCodec() {}
+    
+    public static String encode(final ResponseMessage<?> message) throws IOException {
+        
+        final ReusableStringWriter buffer = BUFFERS.get().reset();
+        
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(buffer)) {
+            MessageEnvelopes.writeResponse(generator, message);
+        }
+        
+        return buffer.toString();
+    }
+    
+    public static String encode(final RequestMessage<?> message) throws IOException {
+        
+        final ReusableStringWriter buffer = BUFFERS.get().reset();
+        
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(buffer)) {
+            MessageEnvelopes.writeRequest(generator, message);
+        }
+        
+        return buffer.toString();
+    }
+    
+    /**
+     * Decodes a request envelope. The payload is kept as a {@link JsonNode} tree so that it can later be bound to
+     * its concrete type by {@link #decodePayload(Object, Class)} without being serialized again.
+     */
+    public static RequestMessage<JsonNode> decodeRequest(final String json) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            return MessageEnvelopes.readRequest(parser);
+        }
+    }
+    
+    public static ResponseMessage<JsonNode> decodeResponse(final String json) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            return MessageEnvelopes.readResponse(parser);
+        }
+    }
+    
+    public static <T> T decodePayload(final Object payload, final Class<T> type) throws IOException {
+        
+        if (payload == null || type.isInstance(payload)) {
+            return type.cast(payload);
+        }
+        
+        return (payload instanceof JsonNode)
+            ? OBJECT_MAPPER.treeToValue((JsonNode) payload, type)
+            : OBJECT_MAPPER.convertValue(payload, type);
+    }
+    
+}
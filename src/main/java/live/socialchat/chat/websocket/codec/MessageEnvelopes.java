@@ -0,0 +1,136 @@
+package live.socialchat.chat.websocket.codec;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import java.io.IOException;
+import live.socialchat.chat.message.message.MessageType;
+import live.socialchat.chat.message.message.RequestMessage;
+import live.socialchat.chat.message.message.ResponseMessage;
+
+/**
+ * Reads and writes the request and response envelopes through Jackson's streaming API. It is independent of the
+ * data format, so the same code backs the JSON text frames and the CBOR binary frames.
+ */
+final class MessageEnvelopes {
+    
+    private static final String SEQ_ID = "seqId";
+    private static final String SEQ = "seq";
+    private static final String TYPE = "type";
+    private static final String PAYLOAD = "payload";
+    
+    private MessageEnvelopes() {}
+    
+    /**
+     * Writes the type first, so that clients can dispatch a response on the start of its frame.
+     */
+    static void writeResponse(final JsonGenerator generator, final ResponseMessage<?> message) throws IOException {
+        generator.writeStartObject();
+        writeType(generator, message.getType());
+        if (message.getSeq() > 0) {
+            generator.writeNumberField(SEQ, message.getSeq());
+        }
+        writePayload(generator, message.getPayload());
+        generator.writeEndObject();
+    }
+    
+    static void writeRequest(final JsonGenerator generator, final RequestMessage<?> message) throws IOException {
+        generator.writeStartObject();
+        if (message.getSeqId() != null) {
+            generator.writeNumberField(SEQ_ID, message.getSeqId());
+        }
+        writeType(generator, message.getType());
+        writePayload(generator, message.getPayload());
+        generator.writeEndObject();
+    }
+    
+    static RequestMessage<JsonNode> readRequest(final JsonParser parser) throws IOException {
+        
+        Integer seqId = null;
+        MessageType type = null;
+        JsonNode payload = null;
+        
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return null;
+        }
+        
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            
+            final String field = parser.getCurrentName();
+            final JsonToken token = parser.nextToken();
+            
+            if (SEQ_ID.equals(field)) {
+                seqId = (token == JsonToken.VALUE_NULL) ? null : parser.getValueAsInt();
+            } else if (TYPE.equals(field)) {
+                type = readType(parser, token);
+            } else if (PAYLOAD.equals(field)) {
+                payload = parser.readValueAsTree();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        
+        return new RequestMessage<>(seqId, type, payload);
+    }
+    
+    static ResponseMessage<JsonNode> readResponse(final JsonParser parser) throws IOException {
+        
+        long seq = 0;
+        MessageType type = null;
+        JsonNode payload = null;
+        
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return null;
+        }
+        
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            
+            final String field = parser.getCurrentName();
+            final JsonToken token = parser.nextToken();
+            
+            if (SEQ.equals(field)) {
+                seq = (token == JsonToken.VALUE_NULL) ? 0 : parser.getValueAsLong();
+            } else if (TYPE.equals(field)) {
+                type = readType(parser, token);
+            } else if (PAYLOAD.equals(field)) {
+                payload = parser.readValueAsTree();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        
+        final ResponseMessage<JsonNode> message = new ResponseMessage<>(type, payload);
+        message.setSeq(seq);
+        
+        return message;
+    }
+    
+    private static void writeType(final JsonGenerator generator, final MessageType type) throws IOException {
+        if (type != null) {
+            generator.writeStringField(TYPE, type.name());
+        }
+    }
+    
+    private static void writePayload(final JsonGenerator generator, final Object payload) throws IOException {
+        if (payload != null) {
+            generator.writeFieldName(PAYLOAD);
+            PayloadWriters.writeValue(generator, payload);
+        }
+    }
+    
+    private static MessageType readType(final JsonParser parser, final JsonToken token) throws IOException {
+        
+        if (token != JsonToken.VALUE_STRING) {
+            parser.skipChildren();
+            return null;
+        }
+        
+        try {
+            return MessageType.valueOf(parser.getText());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+    
+}
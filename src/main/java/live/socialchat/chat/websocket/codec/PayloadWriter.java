@@ -0,0 +1,14 @@
+package live.socialchat.chat.websocket.codec;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import java.io.IOException;
+
+/**
+ * Pre-built serializer which writes a payload straight into a {@link JsonGenerator}, without reflection.
+ */
+@FunctionalInterface
+public interface PayloadWriter<T> {
+    
+    void write(JsonGenerator generator, T value) throws IOException;
+    
+}
@@ -0,0 +1,206 @@
+package live.socialchat.chat.websocket.codec;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import live.socialchat.chat.group.model.Group;
+import live.socialchat.chat.message.message.ChatHistoryResponse;
+import live.socialchat.chat.message.message.ChatMessage;
+import live.socialchat.chat.message.message.ConnectedMessage;
+import live.socialchat.chat.message.message.ConversationSummary;
+import live.socialchat.chat.message.message.ErrorMessage;
+import live.socialchat.chat.message.message.RateLimitedMessage;
+import live.socialchat.chat.message.message.Receipt;
+import live.socialchat.chat.message.message.ReconnectMessage;
+import live.socialchat.chat.message.message.ResumeResponse;
+import live.socialchat.chat.message.message.SyncResponse;
+import live.socialchat.chat.user.model.User;
+
+/**
+ * Registry of the pre-built {@link PayloadWriter}s for the payloads sent on the hot path. Null fields are omitted,
+ * as the previous Gson encoders did, and sensitive fields such as the user password are never written.
+ */
+final class PayloadWriters {
+    
+    static final PayloadWriter<ChatMessage> CHAT_MESSAGE = (generator, message) -> {
+        generator.writeStartObject();
+        if (message.getObjectId() != null) {
+            generator.writeStringField("id", message.getObjectId().toHexString());
+        }
+        writeStringField(generator, "from", message.getFrom());
+        writeEnumField(generator, "destinationType", message.getDestinationType());
+        writeStringField(generator, "destinationId", message.getDestinationId());
+        writeStringField(generator, "content", message.getContent());
+        writeEnumField(generator, "mimeType", message.getMimeType());
+        writeStringField(generator, "date", message.getDate());
+        generator.writeEndObject();
+    };
+    
+    static final PayloadWriter<ChatHistoryResponse> CHAT_HISTORY_RESPONSE = (generator, response) -> {
+        generator.writeStartObject();
+        writeStringField(generator, "destinationId", response.getDestinationId());
+        if (response.getChatHistory() != null) {
+            generator.writeArrayFieldStart("chatHistory");
+            for (ChatMessage chatMessage : response.getChatHistory()) {
+                CHAT_MESSAGE.write(generator, chatMessage);
+            }
+            generator.writeEndArray();
+        }
+        generator.writeEndObject();
+    };
+    
+    static final PayloadWriter<SyncResponse> SYNC_RESPONSE = (generator, response) -> {
+        generator.writeStartObject();
+        if (response.getMessages() != null) {
+            generator.writeArrayFieldStart("messages");
+            for (ChatMessage chatMessage : response.getMessages()) {
+                CHAT_MESSAGE.write(generator, chatMessage);
+            }
+            generator.writeEndArray();
+        }
+        generator.writeBooleanField("last", response.isLast());
+        generator.writeBooleanField("hasMore", response.isHasMore());
+        generator.writeEndObject();
+    };
+    
+    static final PayloadWriter<ConversationSummary> CONVERSATION_SUMMARY = (generator, summary) -> {
+        generator.writeStartObject();
+        writeStringField(generator, "conversationId", summary.getConversationId());
+        writeEnumField(generator, "destinationType", summary.getDestinationType());
+        if (summary.getLastMessage() != null) {
+            generator.writeFieldName("lastMessage");
+            CHAT_MESSAGE.write(generator, summary.getLastMessage());
+        }
+        generator.writeNumberField("unreadCount", summary.getUnreadCount());
+        generator.writeEndObject();
+    };
+    
+    static final PayloadWriter<Receipt> RECEIPT = (generator, receipt) -> {
+        generator.writeStartObject();
+        writeStringField(generator, "conversationId", receipt.getConversationId());
+        writeStringField(generator, "userId", receipt.getUserId());
+        writeStringField(generator, "deliveredMessageId", receipt.getDeliveredMessageId());
+        writeStringField(generator, "readMessageId", receipt.getReadMessageId());
+        generator.writeEndObject();
+    };
+    
+    static final PayloadWriter<User> USER = (generator, user) -> {
+        generator.writeStartObject();
+        writeStringField(generator, "id", user.getId());
+        writeStringField(generator, "username", user.getUsername());
+        writeStringField(generator, "name", user.getName());
+        writeStringField(generator, "avatar", user.getAvatar());
+        writeStringField(generator, "description", user.getDescription());
+        writeEnumField(generator, "contactType", user.getContactType());
+        writeStringField(generator, "createdDate", user.getCreatedDate());
+        generator.writeEndObject();
+    };
+    
+    static final PayloadWriter<Group> GROUP = (generator, group) -> {
+        generator.writeStartObject();
+        writeStringField(generator, "id", group.getId());
+        writeStringField(generator, "name", group.getName());
+        writeStringField(generator, "avatar", group.getAvatar());
+        writeStringField(generator, "description", group.getDescription());
+        writeEnumField(generator, "contactType", group.getContactType());
+        generator.writeEndObject();
+    };
+    
+    static final PayloadWriter<ErrorMessage> ERROR_MESSAGE = (generator, errorMessage) -> {
+        generator.writeStartObject();
+        writeStringField(generator, "message", errorMessage.getMessage());
+        writeEnumField(generator, "status", errorMessage.getStatus());
+        generator.writeEndObject();
+    };
+    
+    static final PayloadWriter<ReconnectMessage> RECONNECT_MESSAGE = (generator, reconnectMessage) -> {
+        generator.writeStartObject();
+        generator.writeNumberField("delayMillis", reconnectMessage.getDelayMillis());
+        generator.writeEndObject();
+    };
+    
+    static final PayloadWriter<RateLimitedMessage> RATE_LIMITED_MESSAGE = (generator, rateLimitedMessage) -> {
+        generator.writeStartObject();
+        writeEnumField(generator, "requestType", rateLimitedMessage.getRequestType());
+        generator.writeEndObject();
+    };
+    
+    static final PayloadWriter<ConnectedMessage> CONNECTED_MESSAGE = (generator, connectedMessage) -> {
+        generator.writeStartObject();
+        writeStringField(generator, "resumeToken", connectedMessage.getResumeToken());
+        generator.writeEndObject();
+    };
+    
+    static final PayloadWriter<ResumeResponse> RESUME_RESPONSE = (generator, resumeResponse) -> {
+        generator.writeStartObject();
+        generator.writeBooleanField("resumed", resumeResponse.isResumed());
+        generator.writeNumberField("replayed", resumeResponse.getReplayed());
+        generator.writeEndObject();
+    };
+    
+    private static final Map<Class<?>, PayloadWriter<?>> WRITERS = new HashMap<>();
+    
+    static {
+        WRITERS.put(ChatMessage.class, CHAT_MESSAGE);
+        WRITERS.put(ChatHistoryResponse.class, CHAT_HISTORY_RESPONSE);
+        WRITERS.put(SyncResponse.class, SYNC_RESPONSE);
+        WRITERS.put(ConversationSummary.class, CONVERSATION_SUMMARY);
+        WRITERS.put(Receipt.class, RECEIPT);
+        WRITERS.put(User.class, USER);
+        WRITERS.put(Group.class, GROUP);
+        WRITERS.put(ErrorMessage.class, ERROR_MESSAGE);
+        WRITERS.put(ReconnectMessage.class, RECONNECT_MESSAGE);
+        WRITERS.put(RateLimitedMessage.class, RATE_LIMITED_MESSAGE);
+        WRITERS.put(ConnectedMessage.class, CONNECTED_MESSAGE);
+        WRITERS.put(ResumeResponse.class, RESUME_RESPONSE);
+    }
+    
+    private PayloadWriters() {}
+    
+    /**
+     * Writes any payload. Registered types and collections of them use the pre-built writers, anything else falls
+     * back to the shared {@link com.fasterxml.jackson.databind.ObjectMapper}, which caches its serializers per type.
+     */
+    @SuppressWarnings("unchecked")
+    static void writeValue(final JsonGenerator generator, final Object value) throws IOException {
+        
+        if (value == null) {
+            generator.writeNull();
+            return;
+        }
+        
+        final PayloadWriter<Object> writer = (PayloadWriter<Object>) WRITERS.get(value.getClass());
+        
+        if (writer != null) {
+            writer.write(generator, value);
+        } else if (value instanceof Collection) {
+            generator.writeStartArray();
+            for (Object element : (Collection<?>) value) {
+                writeValue(generator, element);
+            }
+            generator.writeEndArray();
+        } else {
+            JsonCodec.OBJECT_MAPPER.writeValue(generator, value);
+        }
+        
+    }
+    
+    private static void writeStringField(final JsonGenerator generator,
+                                         final String name,
+                                         final String value) throws IOException {
+        if (value != null) {
+            generator.writeStringField(name, value);
+        }
+    }
+    
+    private static void writeEnumField(final JsonGenerator generator,
+                                       final String name,
+                                       final Enum<?> value) throws IOException {
+        if (value != null) {
+            generator.writeStringField(name, value.name());
+        }
+    }
+    
+}
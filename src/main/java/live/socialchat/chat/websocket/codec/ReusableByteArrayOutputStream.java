@@ -0,0 +1,36 @@
+package live.socialchat.chat.websocket.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link ByteArrayOutputStream} reused between encodings of the same thread. Buffers which grew beyond
+ * {@code maxRetainedCapacity} are released on reset.
+ */
+class ReusableByteArrayOutputStream extends ByteArrayOutputStream {
+    
+    private final int initialCapacity;
+    private final int maxRetainedCapacity;
+    
+    ReusableByteArrayOutputStream(final int initialCapacity, final int maxRetainedCapacity) {
+        super(initialCapacity);
+        this.initialCapacity = initialCapacity;
+        this.maxRetainedCapacity = maxRetainedCapacity;
+    }
+    
+    ReusableByteArrayOutputStream clear() {
+        if (buf.length > maxRetainedCapacity) {
+            buf = new byte[initialCapacity];
+        }
+        reset();
+        return this;
+    }
+    
+    /**
+     * Copies the written bytes out, as the frame may still be in flight when the buffer is reused.
+     */
+    ByteBuffer toByteBuffer() {
+        return ByteBuffer.wrap(toByteArray());
+    }
+    
+}
@@ -0,0 +1,57 @@
+package live.socialchat.chat.websocket.codec;
+
+import java.io.Writer;
+
+/**
+ * Unsynchronized {@link Writer} backed by a {@link StringBuilder} which is reused between encodings of the same
+ * thread. Buffers which grew beyond {@code maxRetainedCapacity} are released on reset so that a single large
+ * payload doesn't pin memory forever.
+ */
+class ReusableStringWriter extends Writer {
+    
+    private final int initialCapacity;
+    private final int maxRetainedCapacity;
+    private StringBuilder buffer;
+    
+    ReusableStringWriter(final int initialCapacity, final int maxRetainedCapacity) {
+        this.initialCapacity = initialCapacity;
+        this.maxRetainedCapacity = maxRetainedCapacity;
+        this.buffer = new StringBuilder(initialCapacity);
+    }
+    
+    ReusableStringWriter reset() {
+        if (buffer.capacity() > maxRetainedCapacity) {
+            buffer = new StringBuilder(initialCapacity);
+        } else {
+            buffer.setLength(0);
+        }
+        return this;
+    }
+    
+    @Override
+    public void write(final int c) {
+        buffer.append((char) c);
+    }
+    
+    @Override
+    public void write(final char[] chars, final int offset, final int length) {
+        buffer.append(chars, offset, length);
+    }
+    
+    @Override
+    public void write(final String string, final int offset, final int length) {
+        buffer.append(string, offset, offset + length);
+    }
+    
+    @Override
+    public void flush() {}
+    
+    @Override
+    public void close() {}
+    
+    @Override
+    public String toString() {
+        return buffer.toString();
+    }
+    
+}
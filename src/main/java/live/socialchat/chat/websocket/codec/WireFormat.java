@@ -0,0 +1,43 @@
+package live.socialchat.chat.websocket.codec;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.websocket.Session;
+
+/**
+ * Wire formats offered on {@code /chat}, negotiated through the {@code Sec-WebSocket-Protocol} header. Clients which
+ * don't request a subprotocol keep getting JSON text frames.
+ */
+public enum WireFormat {
+    
+    CBOR("socialchat.cbor.v1"),
+    JSON("socialchat.json.v1");
+    
+    private final String subprotocol;
+    
+    WireFormat(final String subprotocol) {
+        this.subprotocol = subprotocol;
+    }
+    
+    public String getSubprotocol() {
+        return subprotocol;
+    }
+    
+    public static List<String> subprotocols() {
+        return Arrays.stream(values())
+            .map(WireFormat::getSubprotocol)
+            .collect(Collectors.toList());
+    }
+    
+    public static WireFormat of(final Session session) {
+        return of(session.getNegotiatedSubprotocol());
+    }
+    
+    public static WireFormat of(final String negotiatedSubprotocol) {
+        return CBOR.subprotocol.equals(negotiatedSubprotocol)
+            ? CBOR
+            : JSON;
+    }
+    
+}
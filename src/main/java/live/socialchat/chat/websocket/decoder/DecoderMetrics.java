@@ -0,0 +1,37 @@
+package live.socialchat.chat.websocket.decoder;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Meters of the request decoders. The decoders are instantiated by the WebSocket container, so their meters are
+ * registered on the global registry, which the application registry is added to.
+ */
+final class DecoderMetrics {
+    
+    static final Timer JSON_DECODE = decodeTimer("json");
+    static final Timer CBOR_DECODE = decodeTimer("cbor");
+    static final Counter JSON_DECODE_ERRORS = decodeErrors("json");
+    static final Counter CBOR_DECODE_ERRORS = decodeErrors("cbor");
+    
+    private DecoderMetrics() {
+    
+    }
+    
+    private static Timer decodeTimer(final String format) {
+        return Timer.builder("chat.message.decode")
+            .description("Time taken to decode inbound request messages")
+            .tag("format", format)
+            .publishPercentileHistogram()
+            .register(Metrics.globalRegistry);
+    }
+    
+    private static Counter decodeErrors(final String format) {
+        return Counter.builder("chat.message.decode.errors")
+            .description("Inbound request messages that failed to decode")
+            .tag("format", format)
+            .register(Metrics.globalRegistry);
+    }
+    
+}
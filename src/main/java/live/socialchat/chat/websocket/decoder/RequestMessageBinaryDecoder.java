@@ -0,0 +1,46 @@
+package live.socialchat.chat.websocket.decoder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import live.socialchat.chat.message.message.RequestMessage;
+import live.socialchat.chat.websocket.codec.CborCodec;
+import javax.websocket.DecodeException;
+import javax.websocket.Decoder;
+import javax.websocket.EndpointConfig;
+
+public class RequestMessageBinaryDecoder implements Decoder.Binary<RequestMessage> {
+    
+    @Override
+    public RequestMessage decode(ByteBuffer bytes) throws DecodeException {
+        final long start = System.nanoTime();
+        try {
+            final RequestMessage requestMessage = CborCodec.decodeRequest(bytes);
+            final long end = System.nanoTime();
+            if (requestMessage != null) {
+                requestMessage.decoded(start, end);
+            }
+            DecoderMetrics.CBOR_DECODE.record(end - start, TimeUnit.NANOSECONDS);
+            return requestMessage;
+        } catch (IOException e) {
+            DecoderMetrics.CBOR_DECODE_ERRORS.increment();
+            throw new DecodeException(bytes, "Failed to decode binary request message", e);
+        }
+    }
+    
+    @Override
+    public boolean willDecode(ByteBuffer bytes) {
+        return (bytes != null && bytes.hasRemaining());
+    }
+    
+    @Override
+    public void init(EndpointConfig endpointConfig) {
+        // Custom initialization logic
+    }
+    
+    @Override
+    public void destroy() {
+        // Close resources
+    }
+    
+}
@@ -1,29 +1,42 @@
 package live.socialchat.chat.websocket.decoder;
 
-import com.google.gson.Gson;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 import live.socialchat.chat.message.message.RequestMessage;
+import live.socialchat.chat.websocket.codec.JsonCodec;
+import javax.websocket.DecodeException;
 import javax.websocket.Decoder;
 import javax.websocket.EndpointConfig;
 
 public class RequestMessageDecoder implements Decoder.Text<RequestMessage> {
-
-    private static final Gson GSON = new Gson();
-
+    
     @Override
-    public RequestMessage decode(String json) {
-        return GSON.fromJson(json, RequestMessage.class);
+    public RequestMessage decode(String json) throws DecodeException {
+        final long start = System.nanoTime();
+        try {
+            final RequestMessage requestMessage = JsonCodec.decodeRequest(json);
+            final long end = System.nanoTime();
+            if (requestMessage != null) {
+                requestMessage.decoded(start, end);
+            }
+            DecoderMetrics.JSON_DECODE.record(end - start, TimeUnit.NANOSECONDS);
+            return requestMessage;
+        } catch (IOException e) {
+            DecoderMetrics.JSON_DECODE_ERRORS.increment();
+            throw new DecodeException(json, "Failed to decode request message", e);
+        }
     }
-
+    
     @Override
     public boolean willDecode(String json) {
         return (json != null);
     }
-
+    
     @Override
     public void init(EndpointConfig endpointConfig) {
         // Custom initialization logic
     }
-
+    
     @Override
     public void destroy() {
         // Close resources
@@ -1,17 +1,21 @@
 package live.socialchat.chat.websocket.decoder;
 
-import com.google.gson.Gson;
+import java.io.IOException;
 import live.socialchat.chat.message.message.ResponseMessage;
+import live.socialchat.chat.websocket.codec.JsonCodec;
+import javax.websocket.DecodeException;
 import javax.websocket.Decoder;
 import javax.websocket.EndpointConfig;
 
 public class ResponseMessageDecoder implements Decoder.Text<ResponseMessage> {
 
-    private static final Gson GSON = new Gson();
-
     @Override
-    public ResponseMessage decode(String json) {
-        return GSON.fromJson(json, ResponseMessage.class);
+    public ResponseMessage decode(String json) throws DecodeException {
+        try {
+            return JsonCodec.decodeResponse(json);
+        } catch (IOException e) {
+            throw new DecodeException(json, "Failed to decode response message", e);
+        }
     }
 
     @Override
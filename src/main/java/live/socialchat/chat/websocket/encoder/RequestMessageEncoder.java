@@ -1,17 +1,21 @@
 package live.socialchat.chat.websocket.encoder;
 
-import com.google.gson.Gson;
+import java.io.IOException;
 import live.socialchat.chat.message.message.RequestMessage;
+import live.socialchat.chat.websocket.codec.JsonCodec;
+import javax.websocket.EncodeException;
 import javax.websocket.Encoder;
 import javax.websocket.EndpointConfig;
 
 public class RequestMessageEncoder implements Encoder.Text<RequestMessage> {
 
-    private static final Gson GSON = new Gson();
-
     @Override
-    public String encode(RequestMessage message) {
-        return GSON.toJson(message);
+    public String encode(RequestMessage message) throws EncodeException {
+        try {
+            return JsonCodec.encode(message);
+        } catch (IOException e) {
+            throw new EncodeException(message, "Failed to encode request message", e);
+        }
     }
 
     @Override
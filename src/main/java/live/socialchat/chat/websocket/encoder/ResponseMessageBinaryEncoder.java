@@ -0,0 +1,32 @@
+package live.socialchat.chat.websocket.encoder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import live.socialchat.chat.message.message.ResponseMessage;
+import live.socialchat.chat.websocket.codec.CborCodec;
+import javax.websocket.EncodeException;
+import javax.websocket.Encoder;
+import javax.websocket.EndpointConfig;
+
+public class ResponseMessageBinaryEncoder implements Encoder.Binary<ResponseMessage> {
+
+    @Override
+    public ByteBuffer encode(ResponseMessage message) throws EncodeException {
+        try {
+            return CborCodec.encode(message);
+        } catch (IOException e) {
+            throw new EncodeException(message, "Failed to encode binary response message", e);
+        }
+    }
+
+    @Override
+    public void init(EndpointConfig endpointConfig) {
+        // Custom initialization logic
+    }
+
+    @Override
+    public void destroy() {
+        // Close resources
+    }
+    
+}
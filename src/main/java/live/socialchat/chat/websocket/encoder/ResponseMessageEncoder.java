@@ -1,17 +1,21 @@
 package live.socialchat.chat.websocket.encoder;
 
-import com.google.gson.Gson;
+import java.io.IOException;
 import live.socialchat.chat.message.message.ResponseMessage;
+import live.socialchat.chat.websocket.codec.JsonCodec;
+import javax.websocket.EncodeException;
 import javax.websocket.Encoder;
 import javax.websocket.EndpointConfig;
 
 public class ResponseMessageEncoder implements Encoder.Text<ResponseMessage> {
 
-    private static final Gson GSON = new Gson();
-
     @Override
-    public String encode(ResponseMessage message) {
-        return GSON.toJson(message);
+    public String encode(ResponseMessage message) throws EncodeException {
+        try {
+            return JsonCodec.encode(message);
+        } catch (IOException e) {
+            throw new EncodeException(message, "Failed to encode response message", e);
+        }
     }
 
     @Override
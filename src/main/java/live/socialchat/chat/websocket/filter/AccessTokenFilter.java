@@ -18,6 +18,8 @@ import javax.servlet.http.HttpServletRequestWrapper;
 import javax.servlet.http.HttpServletResponse;
 import live.socialchat.chat.core.ValidateTokenServerResponse;
 import live.socialchat.chat.exception.ResponseStatus;
+import live.socialchat.chat.logging.LogMarkers;
+import live.socialchat.chat.overload.OverloadController;
 import live.socialchat.chat.session.session.UserAuthenticationDetails;
 import lombok.Builder;
 import lombok.EqualsAndHashCode;
@@ -40,18 +42,22 @@ import reactor.core.publisher.Mono;
 @WebFilter("/chat/*")
 public class AccessTokenFilter implements Filter {
     
+    public static final String B_COOKIE = "b";
+    
     private static final Logger LOGGER = LoggerFactory.getLogger(AccessTokenFilter.class);
     private static final String TOKEN_NOT_PRESENT_ERROR = "Access token must be provided";
     private static final String TOKEN_EXPIRED_ERROR = "Access token provided is expired";
     private static final String TOKEN_INVALID_ERROR = "Access token provided is invalid";
     private static final String SERVER_ERROR = "A server error occuried";
+    private static final String OVERLOADED_ERROR = "Server overloaded, retry later";
     private static final String AUTH_SEVER_URL = "social.chat.auth.service.url";
-    private static final String B_COOKIE = "b";
     
     private final Environment environment;
+    private final OverloadController overloadController;
     
-    public AccessTokenFilter(final Environment environment) {
+    public AccessTokenFilter(final Environment environment, final OverloadController overloadController) {
         this.environment = environment;
+        this.overloadController = overloadController;
     }
     
     @Override
@@ -63,15 +69,16 @@ public class AccessTokenFilter implements Filter {
         final HttpServletResponse response = (HttpServletResponse) servletResponse;
         final Optional<String> bTokenOpt = getBToken(request);
     
-        if (bTokenOpt.isPresent()) {
+        if (!overloadController.acceptConnection()) {
+            handleOverloaded(response);
+        } else if (bTokenOpt.isPresent()) {
     
             try {
     
-                final String token = bTokenOpt.get();
-                final ValidateTokenServerResponse tokenResponse = validateToken(token).block();
+                final LoggedInUser loggedInUser = authenticate(bTokenOpt.get()).block();
     
-                if (tokenResponse != null && ResponseStatus.SUCCESS.equals(tokenResponse.getStatus())) {
-                    handleSuccess(servletResponse, filterChain, request, token, tokenResponse);
+                if (loggedInUser != null) {
+                    handleSuccess(servletResponse, filterChain, request, loggedInUser);
                 } else {
                     handleServerError(response);
                 }
@@ -92,23 +99,31 @@ public class AccessTokenFilter implements Filter {
     @Override
     public void destroy() {}
     
+    /**
+     * Validates the access token against the auth service. Completes empty when the token isn't accepted and with a
+     * {@link WebClientResponseException} when the auth service rejects it.
+     */
+    public Mono<LoggedInUser> authenticate(final String token) {
+        return validateToken(token)
+            .filter(tokenResponse -> ResponseStatus.SUCCESS.equals(tokenResponse.getStatus()))
+            .map(tokenResponse -> LoggedInUser.builder()
+                .sessionId(tokenResponse.getSessionId())
+                .userAuthenticationDetails(
+                    UserAuthenticationDetails.builder()
+                        .token(token)
+                        .userId(tokenResponse.getUserId())
+                        .build()
+                )
+                .build());
+    }
+    
     private void handleSuccess(ServletResponse servletResponse, FilterChain filterChain,
-                               HttpServletRequest request, String token,
-                               ValidateTokenServerResponse tokenResponse) throws IOException, ServletException {
-        
-        final LoggedInUser loggedInUser = LoggedInUser.builder()
-            .sessionId(tokenResponse.getSessionId())
-            .userAuthenticationDetails(
-                UserAuthenticationDetails.builder()
-                    .token(token)
-                    .userId(tokenResponse.getUserId())
-                    .build()
-            )
-            .build();
+                               HttpServletRequest request,
+                               LoggedInUser loggedInUser) throws IOException, ServletException {
         
         filterChain.doFilter(new AuthenticatedRequest(request, loggedInUser), servletResponse);
     
-        LOGGER.info("Connection accepted from session {}", tokenResponse.getSessionId());
+        LOGGER.info("Connection accepted from session {}", loggedInUser.getSessionId());
     }
     
     private void handleError(final HttpServletResponse response,
@@ -131,6 +146,16 @@ public class AccessTokenFilter implements Filter {
         LOGGER.error("Connection rejected due to token not present. Status 401");
     }
     
+    /**
+     * Rejected before the token is validated, so that an overloaded node spends nothing on the handshake. Rejections are
+     * counted by the {@link OverloadController}, and logged at info so that the hot path sampling keeps them in check.
+     */
+    private void handleOverloaded(HttpServletResponse response) throws IOException {
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(overloadController.getRetryAfter()));
+        response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, OVERLOADED_ERROR);
+        LOGGER.info(LogMarkers.HOT_PATH, "Connection rejected due to overload. Status 503");
+    }
+    
     private void handleServerError(HttpServletResponse response) throws IOException {
         response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, SERVER_ERROR);
         LOGGER.error("Connection rejected due to server error. Status 500");
@@ -0,0 +1,21 @@
+package live.socialchat.chat.websocket.jetty;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Settings of the permessage-deflate extension, read from the {@code jetty.server.websocket.compression.*}
+ * properties.
+ */
+@Getter
+@Builder
+@ToString
+public class CompressionSettings {
+    
+    private final boolean enabled;
+    private final int minSize;
+    private final boolean serverContextTakeover;
+    private final boolean clientContextTakeover;
+    
+}
@@ -1,11 +1,18 @@
 package live.socialchat.chat.websocket.jetty;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jetty.JettyConnectionMetrics;
 import java.util.EnumSet;
 import javax.servlet.DispatcherType;
 import javax.websocket.server.ServerEndpointConfig;
 import javax.websocket.server.ServerEndpointConfig.Builder;
+import live.socialchat.chat.scheduler.ChatSchedulers;
+import live.socialchat.chat.scheduler.ExecutionMode;
 import live.socialchat.chat.websocket.ChatEndpointController;
+import live.socialchat.chat.websocket.ChatServer;
+import live.socialchat.chat.websocket.codec.WireFormat;
 import live.socialchat.chat.websocket.filter.AccessTokenFilter;
+import org.eclipse.jetty.server.ConnectionFactory;
 import org.eclipse.jetty.server.Connector;
 import org.eclipse.jetty.server.HttpConfiguration;
 import org.eclipse.jetty.server.HttpConnectionFactory;
@@ -17,37 +24,67 @@ import org.eclipse.jetty.servlet.FilterHolder;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlets.CrossOriginFilter;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+import org.eclipse.jetty.websocket.api.extensions.ExtensionFactory;
+import org.eclipse.jetty.websocket.jsr356.server.ServerContainer;
 import org.eclipse.jetty.websocket.jsr356.server.deploy.WebSocketServerContainerInitializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 @Component
-public class JettyEmbeddedWebSocketServer {
+@ConditionalOnProperty(name = "chat.transport", havingValue = "jetty", matchIfMissing = true)
+public class JettyEmbeddedWebSocketServer implements ChatServer {
     
-    private static final String SERVER_SSL_ENABLED = "jetty.server.ssl.enabled";
-    private static final String SERVER_CERTIFICATE_PATH = "jetty.server.ssl.certificate";
-    private static final String SERVER_CERTIFICATE_PASSWORD = "jetty.server.ssl.password";
+    private static final Logger LOGGER = LoggerFactory.getLogger(JettyEmbeddedWebSocketServer.class);
     private static final String SERVER_SSL_PROTOCOL = "http/1.1";
-    private static final String PORT_ENV = "PORT";
-    private static final int DEFAULT_SERVER_PORT = 8080;
+    private static final String PERMESSAGE_DEFLATE = "permessage-deflate";
+    private static final String DEFLATE_FRAME = "deflate-frame";
+    private static final String WEBKIT_DEFLATE_FRAME = "x-webkit-deflate-frame";
     
     private final ServerEndpointConfigurator serverEndpointConfigurator;
     private final AccessTokenFilter accessTokenFilter;
+    private final JettyServerSettings settings;
+    private final CompressionSettings compressionSettings;
+    private final MeterRegistry meterRegistry;
+    private final ChatSchedulers chatSchedulers;
+    
+    private Server server;
+    private ServerConnector connector;
     
     public JettyEmbeddedWebSocketServer(final ServerEndpointConfigurator serverEndpointConfigurator,
-                                        final AccessTokenFilter accessTokenFilter) {
+                                        final AccessTokenFilter accessTokenFilter,
+                                        final JettyServerSettings settings,
+                                        final CompressionSettings compressionSettings,
+                                        final MeterRegistry meterRegistry,
+                                        final ChatSchedulers chatSchedulers) {
         this.serverEndpointConfigurator = serverEndpointConfigurator;
         this.accessTokenFilter = accessTokenFilter;
-        start();
+        this.settings = settings;
+        this.compressionSettings = compressionSettings;
+        this.meterRegistry = meterRegistry;
+        this.chatSchedulers = chatSchedulers;
     }
     
-    private void start() {
+    @Override
+    public void start() throws Exception {
     
-        Server server = new Server();
+        LOGGER.info("Starting Jetty with {}", settings);
+        
+        ThreadPool threadPool = threadPool();
+        server = new Server(threadPool);
     
-        ServerConnector connector = (sslEnabled())
+        connector = (settings.isSslEnabled())
             ? sslServerConnector(server)
             : httpServerConnector(server);
         
+        connector.setPort(settings.getPort());
+        connector.setAcceptQueueSize(settings.getAcceptQueueSize());
+        connector.setIdleTimeout(settings.getIdleTimeout());
+        connector.addBean(new JettyConnectionMetrics(meterRegistry));
+        
         server.setConnectors(new Connector[]{connector});
         
         ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
@@ -62,34 +99,106 @@ public class JettyEmbeddedWebSocketServer {
     
         context.addFilter(new FilterHolder(accessTokenFilter),"/*", EnumSet.of(DispatcherType.REQUEST));
         
-        try {
-            
-            WebSocketServerContainerInitializer.configure(context,
-                (servletContext, wsContainer) -> {
+        WebSocketServerContainerInitializer.configure(context,
+            (servletContext, wsContainer) -> {
 
-                    wsContainer.setDefaultMaxTextMessageBufferSize(65535);
-                    
-                    ServerEndpointConfig serverEndpointConfig = Builder
-                        .create(ChatEndpointController.class, "/chat")
-                        .configurator(serverEndpointConfigurator)
-                        .build();
-                    
-                    wsContainer.addEndpoint(serverEndpointConfig);
-                });
-    
-            server.start();
-            server.join();
-            
-        } catch (Throwable t) {
-            t.printStackTrace(System.err);
+                wsContainer.setDefaultMaxTextMessageBufferSize(settings.getMaxTextMessageBufferSize());
+                wsContainer.setDefaultMaxBinaryMessageBufferSize(settings.getMaxBinaryMessageBufferSize());
+                wsContainer.setDefaultMaxSessionIdleTimeout(settings.getSessionIdleTimeout());
+                wsContainer.setAsyncSendTimeout(settings.getAsyncSendTimeout());
+                configureCompression(wsContainer);
+                
+                ServerEndpointConfig serverEndpointConfig = Builder
+                    .create(ChatEndpointController.class, "/chat")
+                    .configurator(serverEndpointConfigurator)
+                    .subprotocols(WireFormat.subprotocols())
+                    .build();
+                
+                wsContainer.addEndpoint(serverEndpointConfig);
+            });
+    
+        server.start();
+        
+        JettyServerMetrics.bindThreadPool(threadPool, meterRegistry);
+        JettyServerMetrics.bindSelectors(connector, meterRegistry);
+        
+        startAwaitThread();
+        
+    }
+    
+    /**
+     * Closes the server socket. Open connections are kept until they're closed or the server stops.
+     */
+    @Override
+    public void stopAccepting() {
+        connector.close();
+        LOGGER.info("Jetty stopped accepting connections on port {}", settings.getPort());
+    }
+    
+    @Override
+    public void stop() throws Exception {
+        server.stop();
+    }
+    
+    /**
+     * Keeps the JVM alive while Jetty runs, as its threads may all be daemons, such as virtual threads.
+     */
+    private void startAwaitThread() {
+        
+        final Thread awaitThread = new Thread(() -> {
+            try {
+                server.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "jetty-await");
+        
+        awaitThread.setDaemon(false);
+        awaitThread.start();
+    }
+    
+    /**
+     * Leaves permessage-deflate as the only compression extension, applying the configured size threshold and
+     * context takeover, or removes compression altogether when disabled.
+     */
+    private void configureCompression(final ServerContainer wsContainer) {
+        
+        final ExtensionFactory extensionFactory = wsContainer.getWebSocketServerFactory().getExtensionFactory();
+        
+        extensionFactory.unregister(DEFLATE_FRAME);
+        extensionFactory.unregister(WEBKIT_DEFLATE_FRAME);
+        extensionFactory.unregister(PERMESSAGE_DEFLATE);
+        
+        if (compressionSettings.isEnabled()) {
+            ThresholdPerMessageDeflateExtension.configure(compressionSettings, meterRegistry);
+            extensionFactory.register(PERMESSAGE_DEFLATE, ThresholdPerMessageDeflateExtension.class);
+        }
+        
+    }
+    
+    private ThreadPool threadPool() {
+        
+        if (chatSchedulers.executionMode() == ExecutionMode.VIRTUAL) {
+            return new VirtualThreadPool(
+                settings.getMaxThreads(),
+                settings.getMinThreads(),
+                settings.getThreadIdleTimeout()
+            );
         }
         
+        QueuedThreadPool threadPool = new QueuedThreadPool(
+            settings.getMaxThreads(),
+            settings.getMinThreads(),
+            settings.getThreadIdleTimeout()
+        );
+        threadPool.setReservedThreads(settings.getReservedThreads());
+        threadPool.setName("jetty");
+        
+        return threadPool;
     }
     
     private ServerConnector httpServerConnector(final Server server) {
-        ServerConnector connector = new ServerConnector(server);
-        connector.setPort(getServerPort());
-        return connector;
+        return new ServerConnector(server, settings.getAcceptors(), settings.getSelectors());
     }
     
     private ServerConnector sslServerConnector(final Server server) {
@@ -100,33 +209,22 @@ public class JettyEmbeddedWebSocketServer {
         SslContextFactory sslContextFactory = new SslContextFactory();
         
         sslContextFactory.setKeyStorePath(JettyEmbeddedWebSocketServer.class
-            .getClassLoader().getResource(SERVER_CERTIFICATE_PATH).toExternalForm());
+            .getClassLoader().getResource(settings.getSslCertificate()).toExternalForm());
     
-        final String password = System.getProperty(SERVER_CERTIFICATE_PASSWORD);
+        final String password = settings.getSslPassword();
     
         sslContextFactory.setKeyStorePassword(password);
         sslContextFactory.setKeyManagerPassword(password);
     
-        ServerConnector sslConnector = new ServerConnector(
+        return new ServerConnector(
             server,
-            new SslConnectionFactory(sslContextFactory, SERVER_SSL_PROTOCOL),
-            new HttpConnectionFactory(https)
+            settings.getAcceptors(),
+            settings.getSelectors(),
+            new ConnectionFactory[]{
+                new SslConnectionFactory(sslContextFactory, SERVER_SSL_PROTOCOL),
+                new HttpConnectionFactory(https)
+            }
         );
-    
-        sslConnector.setPort(getServerPort());
-        
-        return sslConnector;
-    }
-    
-    private boolean sslEnabled() {
-        return Boolean.parseBoolean(System.getProperty(SERVER_SSL_ENABLED, "false"));
-    }
-    
-    private int getServerPort() {
-        String portEnv = System.getenv(PORT_ENV);
-        return (portEnv != null && !portEnv.isEmpty())
-            ? Integer.parseInt(portEnv)
-            : DEFAULT_SERVER_PORT;
     }
     
 }
\ No newline at end of file
@@ -0,0 +1,58 @@
+package live.socialchat.chat.websocket.jetty;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jetty.JettyServerThreadPoolMetrics;
+import org.eclipse.jetty.io.ManagedSelector;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+/**
+ * Runtime load of the Jetty server: thread pool size, busy threads and utilization, tasks in flight on virtual
+ * threads, and the number of connections registered on each selector. Connection counts and bytes come from the
+ * {@code JettyConnectionMetrics} bean added to the connector.
+ */
+final class JettyServerMetrics {
+    
+    private JettyServerMetrics() {}
+    
+    static void bindThreadPool(final ThreadPool threadPool, final MeterRegistry meterRegistry) {
+        
+        new JettyServerThreadPoolMetrics(threadPool, Tags.empty()).bindTo(meterRegistry);
+        
+        if (threadPool instanceof QueuedThreadPool) {
+            final QueuedThreadPool queuedThreadPool = (QueuedThreadPool) threadPool;
+            Gauge.builder("jetty.threads.utilization", queuedThreadPool, JettyServerMetrics::utilization)
+                .description("Busy threads over the maximum size of the pool")
+                .register(meterRegistry);
+        }
+        
+        if (threadPool instanceof VirtualThreadPool) {
+            Gauge.builder("jetty.threads.virtual", (VirtualThreadPool) threadPool, VirtualThreadPool::getVirtualThreads)
+                .description("Tasks in flight on virtual threads")
+                .register(meterRegistry);
+        }
+    }
+    
+    /**
+     * Binds one gauge per selector. Selectors only exist once the connector is started.
+     */
+    static void bindSelectors(final ServerConnector connector, final MeterRegistry meterRegistry) {
+        
+        int id = 0;
+        
+        for (ManagedSelector selector : connector.getSelectorManager().getBeans(ManagedSelector.class)) {
+            Gauge.builder("jetty.selector.keys", selector, ManagedSelector::size)
+                .description("Connections registered on the selector")
+                .tags(Tags.of("selector", String.valueOf(id++)))
+                .register(meterRegistry);
+        }
+    }
+    
+    private static double utilization(final QueuedThreadPool threadPool) {
+        return (double) threadPool.getBusyThreads() / threadPool.getMaxThreads();
+    }
+    
+}
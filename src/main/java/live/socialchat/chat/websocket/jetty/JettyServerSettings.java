@@ -0,0 +1,37 @@
+package live.socialchat.chat.websocket.jetty;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Tuning of the embedded Jetty server, read from the {@code jetty.server.*} properties. Negative values for
+ * acceptors, selectors and reserved threads let Jetty size them from the number of cores.
+ */
+@Getter
+@Builder
+@ToString(exclude = "sslPassword")
+public class JettyServerSettings {
+    
+    private final int port;
+    
+    private final boolean sslEnabled;
+    private final String sslCertificate;
+    private final String sslPassword;
+    
+    private final int acceptors;
+    private final int selectors;
+    private final int acceptQueueSize;
+    private final long idleTimeout;
+    
+    private final int minThreads;
+    private final int maxThreads;
+    private final int threadIdleTimeout;
+    private final int reservedThreads;
+    
+    private final int maxTextMessageBufferSize;
+    private final int maxBinaryMessageBufferSize;
+    private final long sessionIdleTimeout;
+    private final long asyncSendTimeout;
+    
+}
@@ -1,5 +1,6 @@
 package live.socialchat.chat.websocket.jetty;
 
+import java.util.List;
 import java.util.Map;
 import javax.websocket.server.ServerEndpointConfig;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -20,4 +21,16 @@ public class ServerEndpointConfigurator extends ServerEndpointConfig.Configurato
         return (T) webSocketEndpointsMap.get(clazz);
     }
     
+    /**
+     * Picks the first subprotocol requested by the client that the server supports, honouring the client's order
+     * of preference. Clients not requesting any get no subprotocol and are served JSON text frames.
+     */
+    @Override
+    public String getNegotiatedSubprotocol(List<String> supported, List<String> requested) {
+        return requested.stream()
+            .filter(supported::contains)
+            .findFirst()
+            .orElse("");
+    }
+    
 }
\ No newline at end of file
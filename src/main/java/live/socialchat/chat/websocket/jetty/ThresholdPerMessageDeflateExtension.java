@@ -0,0 +1,125 @@
+package live.socialchat.chat.websocket.jetty;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jetty.websocket.api.BatchMode;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.eclipse.jetty.websocket.api.extensions.ExtensionConfig;
+import org.eclipse.jetty.websocket.api.extensions.Frame;
+import org.eclipse.jetty.websocket.common.OpCode;
+import org.eclipse.jetty.websocket.common.extensions.compress.PerMessageDeflateExtension;
+
+/**
+ * permessage-deflate extension which only compresses messages of at least {@link CompressionSettings#getMinSize()}
+ * bytes. RFC 7692 lets the sender leave any message uncompressed, so small frames such as PONGs skip the deflater
+ * and go out as they are, with RSV1 unset.
+ * <p>
+ * Skipped frames bypass the compression queue. That is safe because data frames are sent through the blocking
+ * remote by each session's outbound queue, one message at a time, so there is never a queued compressed frame for
+ * the skipped one to overtake.
+ * <p>
+ * Jetty instantiates extensions reflectively for every connection, which is why the settings and meters are held
+ * statically and installed once through {@link #configure(CompressionSettings, MeterRegistry)}.
+ */
+public class ThresholdPerMessageDeflateExtension extends PerMessageDeflateExtension {
+    
+    private static final String SERVER_NO_CONTEXT_TAKEOVER = "server_no_context_takeover";
+    private static final String CLIENT_NO_CONTEXT_TAKEOVER = "client_no_context_takeover";
+    
+    private static volatile CompressionSettings settings = CompressionSettings.builder()
+        .enabled(true)
+        .minSize(0)
+        .serverContextTakeover(true)
+        .clientContextTakeover(true)
+        .build();
+    
+    private static volatile Metrics metrics;
+    
+    public static void configure(final CompressionSettings compressionSettings, final MeterRegistry meterRegistry) {
+        settings = compressionSettings;
+        metrics = new Metrics(meterRegistry);
+    }
+    
+    @Override
+    public void setConfig(final ExtensionConfig config) {
+        
+        final ExtensionConfig serverConfig = new ExtensionConfig(config);
+        
+        if (!settings.isServerContextTakeover()) {
+            serverConfig.setParameter(SERVER_NO_CONTEXT_TAKEOVER);
+        }
+        if (!settings.isClientContextTakeover()) {
+            serverConfig.setParameter(CLIENT_NO_CONTEXT_TAKEOVER);
+        }
+        
+        super.setConfig(serverConfig);
+    }
+    
+    @Override
+    public void outgoingFrame(final Frame frame, final WriteCallback callback, final BatchMode batchMode) {
+        
+        final Metrics currentMetrics = metrics;
+        
+        if (isBelowThreshold(frame)) {
+            if (currentMetrics != null) {
+                currentMetrics.skipped.increment();
+            }
+            getNextOutgoing().outgoingFrame(frame, callback, batchMode);
+            return;
+        }
+        
+        if (currentMetrics == null || !frame.getType().isData()) {
+            super.outgoingFrame(frame, callback, batchMode);
+            return;
+        }
+        
+        final long start = System.nanoTime();
+        currentMetrics.uncompressedBytes.increment(frame.getPayloadLength());
+        super.outgoingFrame(frame, callback, batchMode);
+        currentMetrics.compressionTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+    
+    @Override
+    protected void nextOutgoingFrame(final Frame frame, final WriteCallback callback, final BatchMode batchMode) {
+        
+        final Metrics currentMetrics = metrics;
+        
+        if (currentMetrics != null && frame.getType().isData()) {
+            currentMetrics.compressedBytes.increment(frame.getPayloadLength());
+        }
+        
+        super.nextOutgoingFrame(frame, callback, batchMode);
+    }
+    
+    private boolean isBelowThreshold(final Frame frame) {
+        return frame.getType().isData() &&
+            frame.isFin() &&
+            frame.getOpCode() != OpCode.CONTINUATION &&
+            frame.getPayloadLength() < settings.getMinSize();
+    }
+    
+    private static class Metrics {
+        
+        private final Counter uncompressedBytes;
+        private final Counter compressedBytes;
+        private final Counter skipped;
+        private final Timer compressionTime;
+        
+        Metrics(final MeterRegistry meterRegistry) {
+            this.uncompressedBytes = meterRegistry.counter("websocket.compression.bytes.in");
+            this.compressedBytes = meterRegistry.counter("websocket.compression.bytes.out");
+            this.skipped = meterRegistry.counter("websocket.compression.skipped");
+            this.compressionTime = meterRegistry.timer("websocket.compression.time");
+            meterRegistry.gauge("websocket.compression.ratio", this, Metrics::ratio);
+        }
+        
+        private double ratio() {
+            final double in = uncompressedBytes.count();
+            return (in > 0) ? compressedBytes.count() / in : 1.0;
+        }
+        
+    }
+    
+}
@@ -0,0 +1,72 @@
+package live.socialchat.chat.websocket.jetty;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import live.socialchat.chat.scheduler.VirtualThreads;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+/**
+ * Jetty {@link ThreadPool} keeping the acceptors and selectors on its pool of platform threads, as they run for the
+ * life of the server and would pin a carrier thread on every blocking accept or select, and running every other task
+ * on a new virtual thread: request filters such as the handshake authentication, and the WebSocket reads and message
+ * dispatch. It reserves no thread, so that selectors hand blocking tasks to the pool rather than running them
+ * themselves while a reserved thread takes over selecting.
+ */
+public class VirtualThreadPool extends QueuedThreadPool {
+    
+    private static final String[] PLATFORM_TASKS = {
+        "org.eclipse.jetty.server.AbstractConnector$Acceptor",
+        "org.eclipse.jetty.io.ManagedSelector",
+        "org.eclipse.jetty.util.thread.strategy."
+    };
+    
+    private final ThreadFactory threadFactory = VirtualThreads.newThreadFactory("jetty-vt-");
+    private final AtomicInteger virtualThreads = new AtomicInteger();
+    
+    public VirtualThreadPool(final int maxThreads, final int minThreads, final int idleTimeout) {
+        super(maxThreads, minThreads, idleTimeout);
+        setReservedThreads(0);
+        setName("jetty");
+    }
+    
+    @Override
+    public void execute(final Runnable task) {
+    
+        if (isPlatformTask(task)) {
+            super.execute(task);
+            return;
+        }
+    
+        virtualThreads.incrementAndGet();
+    
+        threadFactory.newThread(() -> {
+            try {
+                task.run();
+            } finally {
+                virtualThreads.decrementAndGet();
+            }
+        }).start();
+    }
+    
+    /**
+     * Tasks running on virtual threads, not counted in the threads of the pool.
+     */
+    public int getVirtualThreads() {
+        return virtualThreads.get();
+    }
+    
+    private static boolean isPlatformTask(final Runnable task) {
+    
+        final String name = task.getClass().getName();
+    
+        for (String platformTask : PLATFORM_TASKS) {
+            if (name.startsWith(platformTask)) {
+                return true;
+            }
+        }
+    
+        return false;
+    }
+    
+}
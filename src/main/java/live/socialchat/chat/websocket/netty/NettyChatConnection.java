@@ -0,0 +1,172 @@
+package live.socialchat.chat.websocket.netty;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.PingWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import live.socialchat.chat.message.message.Message;
+import live.socialchat.chat.message.message.RequestMessage;
+import live.socialchat.chat.message.message.ResponseMessage;
+import live.socialchat.chat.trace.TraceStage;
+import live.socialchat.chat.websocket.ChatConnection;
+import live.socialchat.chat.websocket.codec.CborCodec;
+import live.socialchat.chat.websocket.codec.EncodedMessage;
+import live.socialchat.chat.websocket.codec.JsonCodec;
+import live.socialchat.chat.websocket.codec.WireFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.core.publisher.Sinks.EmitResult;
+import reactor.util.concurrent.Queues;
+
+/**
+ * {@link ChatConnection} of a Reactor Netty WebSocket. Messages are buffered on a bounded sink which the connection's
+ * outbound consumes as the channel becomes writable, so a slow client fills its own buffer, and then has messages
+ * dropped, without holding any thread.
+ */
+class NettyChatConnection implements ChatConnection {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(NettyChatConnection.class);
+    
+    private final Channel channel;
+    private final String id;
+    private final WireFormat wireFormat;
+    private final Sinks.Many<Message> messages;
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile boolean open = true;
+    private volatile boolean goingAway;
+    private volatile long lastReceivedAt = System.nanoTime();
+    
+    NettyChatConnection(final Channel channel, final WireFormat wireFormat, final int bufferSize) {
+        this.channel = channel;
+        this.id = channel.id().asShortText();
+        this.wireFormat = wireFormat;
+        this.messages = Sinks.many().unicast().onBackpressureBuffer(Queues.<Message>get(bufferSize).get());
+    }
+    
+    @Override
+    public String getId() {
+        return id;
+    }
+    
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+    
+    @Override
+    public WireFormat getWireFormat() {
+        return wireFormat;
+    }
+    
+    /**
+     * Emissions are serialized with a lock, as the sink only accepts one producer at a time and messages are sent from
+     * any thread. The lock is only held while the message is put in the buffer.
+     */
+    @Override
+    public boolean send(final Message message) {
+        
+        final EmitResult result;
+        
+        synchronized (messages) {
+            result = messages.tryEmitNext(message);
+        }
+        
+        if (result.isSuccess()) {
+            pending.incrementAndGet();
+        }
+        
+        // messages sent after the connection closed are discarded, like the ones left in its buffer
+        return result != EmitResult.FAIL_OVERFLOW;
+    }
+    
+    @Override
+    public int pending() {
+        return pending.get();
+    }
+    
+    /**
+     * Frames to be written to the client, encoded in the connection's wire format as they're requested. Messages are
+     * marked as sent on their trace once handed to the channel, as the write of each frame isn't awaited.
+     */
+    Flux<WebSocketFrame> frames() {
+        return messages.asFlux()
+            .handle((message, sink) -> {
+                pending.decrementAndGet();
+                try {
+                    sink.next(frame(message));
+                    message.getTrace().mark(TraceStage.SENT);
+                } catch (IOException e) {
+                    LOGGER.error("Failed to encode message of type {} to connection {}. Reason: {}", message.getType(), id, e.getMessage());
+                }
+            });
+    }
+    
+    /**
+     * Pings are written straight to the channel, whose event loop orders them between the frames of the outbound.
+     */
+    @Override
+    public void ping() {
+        channel.writeAndFlush(new PingWebSocketFrame());
+    }
+    
+    @Override
+    public long lastReceivedAt() {
+        return lastReceivedAt;
+    }
+    
+    void received() {
+        lastReceivedAt = System.nanoTime();
+    }
+    
+    /**
+     * Completes the frames once the queued messages are written, after which the connection is closed as going away.
+     */
+    @Override
+    public void close() {
+        goingAway = true;
+        complete();
+    }
+    
+    @Override
+    public void abort() {
+        complete();
+        channel.close();
+    }
+    
+    boolean isGoingAway() {
+        return goingAway;
+    }
+    
+    void complete() {
+        open = false;
+        synchronized (messages) {
+            messages.tryEmitComplete();
+        }
+    }
+    
+    private WebSocketFrame frame(final Message message) throws IOException {
+        
+        if (message instanceof EncodedMessage) {
+            final EncodedMessage encodedMessage = (EncodedMessage) message;
+            return (wireFormat == WireFormat.CBOR)
+                ? new BinaryWebSocketFrame(Unpooled.wrappedBuffer(encodedMessage.binaryBytes()))
+                : new TextWebSocketFrame(Unpooled.wrappedBuffer(encodedMessage.textBytes()));
+        }
+        
+        if (message instanceof ResponseMessage) {
+            final ResponseMessage<?> responseMessage = (ResponseMessage<?>) message;
+            return (wireFormat == WireFormat.CBOR)
+                ? new BinaryWebSocketFrame(Unpooled.wrappedBuffer(CborCodec.encode(responseMessage)))
+                : new TextWebSocketFrame(JsonCodec.encode(responseMessage));
+        }
+        
+        return new TextWebSocketFrame(JsonCodec.encode((RequestMessage<?>) message));
+    }
+    
+}
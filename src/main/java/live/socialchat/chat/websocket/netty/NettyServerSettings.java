@@ -0,0 +1,24 @@
+package live.socialchat.chat.websocket.netty;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Settings of the Reactor Netty transport. TLS is configured through the same {@code jetty.server.ssl.*} properties
+ * as the Jetty transport, so switching transports doesn't change how the server is exposed.
+ */
+@Getter
+@Builder
+@ToString(exclude = "sslPassword")
+public class NettyServerSettings {
+    
+    private final int port;
+    private final boolean sslEnabled;
+    private final String sslCertificate;
+    private final String sslPassword;
+    private final int maxFramePayloadLength;
+    private final boolean compressionEnabled;
+    private final int outboundBufferSize;
+    
+}
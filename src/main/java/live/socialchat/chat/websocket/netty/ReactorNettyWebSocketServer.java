@@ -0,0 +1,299 @@
+package live.socialchat.chat.websocket.netty;
+
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoop;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.cookie.Cookie;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketCloseStatus;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.ssl.SslContextBuilder;
+import java.io.InputStream;
+import java.security.KeyStore;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.net.ssl.KeyManagerFactory;
+import javax.websocket.DecodeException;
+import live.socialchat.chat.logging.LogMarkers;
+import live.socialchat.chat.overload.OverloadController;
+import live.socialchat.chat.session.session.ChatSession;
+import live.socialchat.chat.websocket.ChatConnection;
+import live.socialchat.chat.websocket.ChatProtocolHandler;
+import live.socialchat.chat.websocket.ChatServer;
+import live.socialchat.chat.websocket.codec.WireFormat;
+import live.socialchat.chat.websocket.decoder.RequestMessageBinaryDecoder;
+import live.socialchat.chat.websocket.decoder.RequestMessageDecoder;
+import live.socialchat.chat.websocket.filter.AccessTokenFilter;
+import live.socialchat.chat.websocket.filter.AccessTokenFilter.LoggedInUser;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+import reactor.netty.http.server.WebsocketServerSpec;
+import reactor.netty.http.websocket.WebsocketInbound;
+import reactor.netty.http.websocket.WebsocketOutbound;
+
+/**
+ * Serves {@code /chat} on Reactor Netty, as an alternative to the Jetty JSR-356 container, selected with
+ * {@code chat.transport=netty}. It speaks the same protocol through {@link ChatProtocolHandler}: the handshake is
+ * authenticated with the same access token, the same subprotocols are negotiated and frames are decoded with the same
+ * codecs. Nothing blocks along the way: the token is validated asynchronously, inbound frames are read on demand and
+ * outbound messages are written as the channel becomes writable.
+ */
+@Component
+@ConditionalOnProperty(name = "chat.transport", havingValue = "netty")
+public class ReactorNettyWebSocketServer implements ChatServer {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReactorNettyWebSocketServer.class);
+    private static final String CHAT_PATH = "/chat";
+    
+    private final RequestMessageDecoder textDecoder = new RequestMessageDecoder();
+    private final RequestMessageBinaryDecoder binaryDecoder = new RequestMessageBinaryDecoder();
+    private final ChatProtocolHandler chatProtocolHandler;
+    private final AccessTokenFilter accessTokenFilter;
+    private final NettyServerSettings settings;
+    private final OverloadController overloadController;
+    
+    private DisposableServer server;
+    
+    public ReactorNettyWebSocketServer(final ChatProtocolHandler chatProtocolHandler,
+                                       final AccessTokenFilter accessTokenFilter,
+                                       final NettyServerSettings settings,
+                                       final OverloadController overloadController) {
+        this.chatProtocolHandler = chatProtocolHandler;
+        this.accessTokenFilter = accessTokenFilter;
+        this.settings = settings;
+        this.overloadController = overloadController;
+    }
+    
+    @Override
+    public void start() throws Exception {
+    
+        LOGGER.info("Starting Reactor Netty with {}", settings);
+    
+        HttpServer httpServer = HttpServer.create()
+            .port(settings.getPort())
+            .route(routes -> routes.get(CHAT_PATH, this::handshake));
+    
+        if (settings.isSslEnabled()) {
+            final SslContextBuilder sslContextBuilder = sslContextBuilder();
+            httpServer = httpServer.secure(sslContextSpec -> sslContextSpec.sslContext(sslContextBuilder));
+        }
+    
+        server = httpServer.bindNow();
+    
+        LOGGER.info("Reactor Netty listening on port {}", server.port());
+    
+        startAwaitThread();
+    
+    }
+    
+    /**
+     * Closes the server channel. The channels of the open connections are kept until they're closed.
+     */
+    @Override
+    public void stopAccepting() {
+        server.disposeNow();
+        LOGGER.info("Reactor Netty stopped accepting connections on port {}", settings.getPort());
+    }
+    
+    @Override
+    public void stop() {
+        server.disposeNow();
+    }
+    
+    /**
+     * Keeps the JVM alive while the server runs, as the Netty event loop threads are daemons.
+     */
+    private void startAwaitThread() {
+        
+        final Thread awaitThread = new Thread(() -> server.onDispose().block(), "netty-await");
+        
+        awaitThread.setDaemon(false);
+        awaitThread.start();
+    }
+    
+    /**
+     * The token is validated on a WebClient thread, so the upgrade is moved back to the event loop of the channel.
+     * Upgrading from another thread races with the channel's reads, and a frame sent right after the handshake could
+     * reach the HTTP request, already complete, and be dropped.
+     */
+    private Publisher<Void> handshake(final HttpServerRequest request, final HttpServerResponse response) {
+    
+        if (!overloadController.acceptConnection()) {
+            LOGGER.info(LogMarkers.HOT_PATH, "Connection rejected due to overload. Status 503");
+            return response.status(HttpResponseStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaderNames.RETRY_AFTER, String.valueOf(overloadController.getRetryAfter()))
+                .send();
+        }
+    
+        final Optional<String> bTokenOpt = getBToken(request);
+    
+        if (!bTokenOpt.isPresent()) {
+            LOGGER.error("Connection rejected due to token not present. Status 401");
+            return response.status(HttpResponseStatus.UNAUTHORIZED).send();
+        }
+    
+        final WebsocketServerSpec websocketServerSpec = websocketServerSpec(request);
+        final AtomicReference<EventLoop> eventLoop = new AtomicReference<>();
+        request.withConnection(connection -> eventLoop.set(connection.channel().eventLoop()));
+    
+        return accessTokenFilter.authenticate(bTokenOpt.get())
+            .publishOn(Schedulers.fromExecutor(eventLoop.get()))
+            .flatMap(loggedInUser -> {
+                LOGGER.info("Connection accepted from session {}", loggedInUser.getSessionId());
+                return response
+                    .sendWebsocket((in, out) -> handle(loggedInUser, in, out), websocketServerSpec)
+                    .thenReturn(loggedInUser);
+            })
+            .switchIfEmpty(Mono.defer(() -> reject(response, HttpResponseStatus.INTERNAL_SERVER_ERROR)))
+            .onErrorResume(WebClientResponseException.class, e -> reject(response, rejectionStatus(e.getRawStatusCode())))
+            .then();
+    }
+    
+    private Publisher<Void> handle(final LoggedInUser loggedInUser,
+                                   final WebsocketInbound in,
+                                   final WebsocketOutbound out) {
+    
+        final AtomicReference<Channel> channel = new AtomicReference<>();
+        in.withConnection(connection -> channel.set(connection.channel()));
+    
+        final NettyChatConnection connection = new NettyChatConnection(
+            channel.get(),
+            WireFormat.of(in.selectedSubprotocol()),
+            settings.getOutboundBufferSize()
+        );
+    
+        final ChatSession chatSession = ChatSession.builder()
+            .id(loggedInUser.getSessionId())
+            .userAuthenticationDetails(loggedInUser.getUserAuthenticationDetails())
+            .connection(connection)
+            .connectionId(connection.getId())
+            .build();
+    
+        chatProtocolHandler.handleConnected(chatSession);
+    
+        final Mono<Void> inbound = in.aggregateFrames(settings.getMaxFramePayloadLength())
+            .receiveFrames()
+            .doOnNext(frame -> {
+                connection.received();
+                handleFrame(chatSession, frame);
+            })
+            .then()
+            .doFinally(signal -> connection.complete());
+    
+        final Mono<Void> outbound = out.sendObject(connection.frames())
+            .then()
+            .then(Mono.defer(() -> connection.isGoingAway()
+                ? out.sendClose(WebSocketCloseStatus.ENDPOINT_UNAVAILABLE.code(), ChatConnection.GOING_AWAY_REASON)
+                : Mono.empty()));
+    
+        return Mono.when(inbound, outbound)
+            .doOnError(error -> LOGGER.error("Error occurred during connection {}. Reason {}", connection.getId(), error.getMessage()))
+            .doFinally(signal -> {
+                connection.complete();
+                chatProtocolHandler.handleDisconnected(chatSession);
+            });
+    }
+    
+    /**
+     * Undecodable frames, text or binary, are answered with an invalid request, as on Jetty.
+     */
+    private void handleFrame(final ChatSession chatSession, final WebSocketFrame frame) {
+    
+        try {
+            if (frame instanceof TextWebSocketFrame) {
+                chatProtocolHandler.handleRequest(chatSession, textDecoder.decode(((TextWebSocketFrame) frame).text()));
+            } else if (frame instanceof BinaryWebSocketFrame) {
+                chatProtocolHandler.handleRequest(chatSession, binaryDecoder.decode(frame.content().nioBuffer()));
+            }
+        } catch (DecodeException e) {
+            LOGGER.error("Failed to decode message from connection {}. Reason {}", chatSession.getConnectionId(), e.getMessage());
+            chatProtocolHandler.handleInvalidRequest(chatSession);
+        } catch (Exception e) {
+            LOGGER.error("Error occurred during connection {}. Reason {}", chatSession.getConnectionId(), e.getMessage());
+        }
+    
+    }
+    
+    /**
+     * Reactor Netty only runs the handler of a connection when a subprotocol was selected, if any is offered. The
+     * subprotocols are therefore only offered to clients requesting one of them, so clients not requesting any are
+     * still served JSON text frames, as on Jetty.
+     */
+    private WebsocketServerSpec websocketServerSpec(final HttpServerRequest request) {
+        
+        final WebsocketServerSpec.Builder builder = WebsocketServerSpec.builder()
+            .maxFramePayloadLength(settings.getMaxFramePayloadLength())
+            .compress(settings.isCompressionEnabled());
+        
+        final String requestedSubprotocols = request.requestHeaders().get(HttpHeaderNames.SEC_WEBSOCKET_PROTOCOL);
+        
+        if (requestedSubprotocols != null && Arrays.stream(requestedSubprotocols.split(","))
+            .map(String::trim)
+            .anyMatch(WireFormat.subprotocols()::contains)) {
+            builder.protocols(String.join(",", WireFormat.subprotocols()));
+        }
+        
+        return builder.build();
+    }
+    
+    private <T> Mono<T> reject(final HttpServerResponse response, final HttpResponseStatus status) {
+        LOGGER.error("Connection rejected. Status {}", status.code());
+        return response.status(status).send().then(Mono.empty());
+    }
+    
+    private HttpResponseStatus rejectionStatus(final int authServiceStatus) {
+    
+        if (authServiceStatus == 403) {
+            return HttpResponseStatus.FORBIDDEN;
+        } else if (authServiceStatus == 401) {
+            return HttpResponseStatus.UNAUTHORIZED;
+        }
+    
+        return HttpResponseStatus.INTERNAL_SERVER_ERROR;
+    }
+    
+    private Optional<String> getBToken(final HttpServerRequest request) {
+    
+        final Set<Cookie> cookies = request.cookies().get(AccessTokenFilter.B_COOKIE);
+    
+        if (cookies != null) {
+            return cookies.stream()
+                .filter(cookie -> cookie.value() != null)
+                .map(cookie -> cookie.value().trim())
+                .findFirst();
+        }
+    
+        return Optional.empty();
+    }
+    
+    private SslContextBuilder sslContextBuilder() throws Exception {
+    
+        final char[] password = settings.getSslPassword().toCharArray();
+        final KeyStore keyStore = KeyStore.getInstance("PKCS12");
+    
+        try (InputStream certificate = ReactorNettyWebSocketServer.class
+            .getClassLoader().getResourceAsStream(settings.getSslCertificate())) {
+            keyStore.load(certificate, password);
+        }
+    
+        final KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, password);
+    
+        return SslContextBuilder.forServer(keyManagerFactory);
+    }
+    
+}
@@ -0,0 +1,121 @@
+package live.socialchat.chat.overload;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.EnumSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import live.socialchat.chat.message.message.MessageType;
+import live.socialchat.chat.scheduler.BackgroundTasks;
+import live.socialchat.chat.scheduler.ChatSchedulers;
+import live.socialchat.chat.scheduler.ExecutionMode;
+import live.socialchat.chat.scheduler.RejectionPolicy;
+import live.socialchat.chat.scheduler.SchedulerSettings;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Drives the readings of the controller by hand, with the insert metrics the message repository would export and an
+ * ingest scheduler of one thread which runs its tasks on the caller once its queue is full. The controller's task is
+ * never started, and levels are left as soon as the signals drop.
+ */
+class OverloadControllerTest {
+    
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong oldestInsertMillis = new AtomicLong();
+    private final Timer insertTimer = Timer.builder("chat.message.insert").tag("outcome", "success").register(meterRegistry);
+    private final ChatSchedulers chatSchedulers = new ChatSchedulers(ExecutionMode.PLATFORM,
+        scheduler("ingest", RejectionPolicy.CALLER_RUNS), scheduler("persistence", RejectionPolicy.CALLER_RUNS),
+        scheduler("delivery", RejectionPolicy.ABORT), meterRegistry);
+    private final OverloadController overloadController = new OverloadController(OverloadSettings.builder()
+        .enabled(true)
+        .interval(250)
+        .queueDepthDefer(1_000)
+        .queueDepthReject(5_000)
+        .lagDefer(100)
+        .lagReject(200)
+        .persistenceLatencyDefer(250)
+        .persistenceLatencyReject(1_000)
+        .recovery(0)
+        .retryAfter(10)
+        .deferredTypes(EnumSet.of(MessageType.CHAT_HISTORY))
+        .deferredCapacity(10)
+        .deferredTimeout(10_000)
+        .drainBatch(10)
+        .build(), chatSchedulers, null, new BackgroundTasks(), meterRegistry);
+    
+    {
+        Gauge.builder("chat.message.insert.oldest", oldestInsertMillis, AtomicLong::get).register(meterRegistry);
+    }
+    
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        chatSchedulers.shutdown(1_000);
+        chatSchedulers.dispose();
+    }
+    
+    @Test
+    void rejectsOnlyWhileAnInsertIsSlow() {
+    
+        overloadController.tick();
+        assertEquals(OverloadLevel.NORMAL, overloadController.getLevel());
+    
+        oldestInsertMillis.set(50);
+        overloadController.tick();
+        assertEquals(OverloadLevel.NORMAL, overloadController.getLevel());
+    
+        oldestInsertMillis.set(1_500);
+        overloadController.tick();
+        assertEquals(OverloadLevel.REJECTING, overloadController.getLevel());
+        assertFalse(overloadController.acceptConnection());
+    
+        oldestInsertMillis.set(0);
+        insertTimer.record(1_500, TimeUnit.MILLISECONDS);
+        overloadController.tick();
+        assertEquals(OverloadLevel.REJECTING, overloadController.getLevel());
+    
+        overloadController.tick();
+        overloadController.tick();
+        assertEquals(OverloadLevel.NORMAL, overloadController.getLevel());
+    }
+    
+    @Test
+    void rejectsWhenTheProbeRunsOnTheCaller() throws InterruptedException {
+    
+        final CountDownLatch busy = new CountDownLatch(1);
+    
+        chatSchedulers.ingest().schedule(() -> await(busy));
+        chatSchedulers.ingest().schedule(() -> await(busy));
+    
+        try {
+            overloadController.tick();
+            assertEquals(OverloadLevel.REJECTING, overloadController.getLevel());
+        } finally {
+            busy.countDown();
+        }
+    }
+    
+    private static SchedulerSettings scheduler(final String name, final RejectionPolicy rejectionPolicy) {
+        return SchedulerSettings.builder()
+            .name(name)
+            .threads(1)
+            .queueCapacity(1)
+            .rejectionPolicy(rejectionPolicy)
+            .build();
+    }
+    
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+}
@@ -0,0 +1,176 @@
+package live.socialchat.chat.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.sun.net.httpserver.HttpServer;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Supplier;
+import live.socialchat.chat.message.message.MessageType;
+import live.socialchat.chat.message.message.RequestMessage;
+import live.socialchat.chat.message.message.ResponseMessage;
+import live.socialchat.chat.websocket.codec.CborCodec;
+import live.socialchat.chat.websocket.codec.JsonCodec;
+import live.socialchat.chat.websocket.codec.WireFormat;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.client.WebsocketClientSpec;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Sends the same valid and malformed frames to a transport, each on a new connection, and checks how they're
+ * answered. It's run against every transport by its subclasses, so that they keep speaking the same protocol. The
+ * access token is validated by a stub of the auth service, which accepts any token for {@code user1}. Each context is
+ * closed after its tests, freeing the port for the next transport.
+ */
+@ActiveProfiles("inmemory")
+@DirtiesContext
+abstract class ChatProtocolTest {
+    
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+    private static final String AUTH_RESPONSE = "{\"userId\":\"user1\",\"sessionId\":\"session1\",\"status\":\"SUCCESS\"}";
+    private static final HttpServer AUTH_SERVICE = startAuthService();
+    private static final int PORT = freePort();
+    
+    @DynamicPropertySource
+    static void properties(final DynamicPropertyRegistry registry) {
+        registry.add("social.chat.auth.service.url", () -> "http://127.0.0.1:" + AUTH_SERVICE.getAddress().getPort());
+        registry.add("PORT", () -> PORT);
+        registry.add("admin.server.enabled", () -> false);
+        registry.add("inmemory.seed.users", () -> 10);
+        registry.add("chat.shutdown.drain-timeout", () -> 1000);
+    }
+    
+    @Test
+    void answersJsonPing() {
+        assertEquals(MessageType.PONG, exchange(WireFormat.JSON, () -> new TextWebSocketFrame("{\"type\":\"PING\"}")));
+    }
+    
+    @Test
+    void answersCborPing() {
+        assertEquals(MessageType.PONG, exchange(WireFormat.CBOR, () -> cborFrame(new RequestMessage<>(null, MessageType.PING, null))));
+    }
+    
+    @Test
+    void answersMalformedJsonWithInvalidRequest() {
+        assertEquals(MessageType.INVALID_REQUEST, exchange(WireFormat.JSON, () -> new TextWebSocketFrame("{\"type\":")));
+    }
+    
+    @Test
+    void answersMalformedCborWithInvalidRequest() {
+        assertEquals(MessageType.INVALID_REQUEST, exchange(WireFormat.CBOR, () -> new BinaryWebSocketFrame(Unpooled.wrappedBuffer(new byte[] {0x1c}))));
+    }
+    
+    @Test
+    void answersUnknownTypeWithInvalidRequest() {
+        assertEquals(MessageType.INVALID_REQUEST, exchange(WireFormat.JSON, () -> new TextWebSocketFrame("{\"type\":\"UNKNOWN\"}")));
+    }
+    
+    @Test
+    void answersJsonOtherThanAnObjectWithInvalidRequest() {
+        for (String json : new String[] {"[]", "\"x\"", "null"}) {
+            assertEquals(MessageType.INVALID_REQUEST, exchange(WireFormat.JSON, () -> new TextWebSocketFrame(json)));
+        }
+    }
+    
+    @Test
+    void answersCborOtherThanAMapWithInvalidRequest() {
+        assertEquals(MessageType.INVALID_REQUEST, exchange(WireFormat.CBOR, () -> new BinaryWebSocketFrame(Unpooled.wrappedBuffer(new byte[] {(byte) 0x80}))));
+    }
+    
+    @Test
+    void answersChatMessageWithoutDestinationWithInvalidRequest() {
+        for (String json : new String[] {"{\"type\":\"USER_MESSAGE\"}", "{\"type\":\"USER_MESSAGE\",\"payload\":{\"destinationId\":\"user2\",\"content\":\"hi\"}}"}) {
+            assertEquals(MessageType.INVALID_REQUEST, exchange(WireFormat.JSON, () -> new TextWebSocketFrame(json)));
+        }
+    }
+    
+    /**
+     * Sends the frame on a new connection, negotiating the wire format, and returns the type of the first response
+     * to it, skipping the messages sent to every new connection.
+     */
+    private MessageType exchange(final WireFormat wireFormat, final Supplier<WebSocketFrame> frame) {
+    
+        final List<MessageType> types = HttpClient.create()
+            .headers(headers -> headers.add(HttpHeaderNames.COOKIE, "b=token"))
+            .websocket(WebsocketClientSpec.builder().protocols(wireFormat.getSubprotocol()).build())
+            .uri("ws://127.0.0.1:" + PORT + "/chat")
+            .handle((in, out) -> out.sendObject(Mono.fromSupplier(frame)).then()
+                .thenMany(in.aggregateFrames()
+                    .receiveFrames()
+                    .map(ChatProtocolTest::decode)
+                    .map(ResponseMessage::getType)
+                    .filter(type -> type != MessageType.CONNECTED)
+                    .take(1)))
+            .collectList()
+            .block(TIMEOUT);
+    
+        assertEquals(1, types.size());
+    
+        return types.get(0);
+    }
+    
+    private static ResponseMessage<JsonNode> decode(final WebSocketFrame frame) {
+        try {
+            return (frame instanceof TextWebSocketFrame)
+                ? JsonCodec.decodeResponse(((TextWebSocketFrame) frame).text())
+                : CborCodec.decodeResponse(frame.content().nioBuffer());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private static WebSocketFrame cborFrame(final RequestMessage<?> requestMessage) {
+        try {
+            return new BinaryWebSocketFrame(Unpooled.wrappedBuffer(CborCodec.encode(requestMessage)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private static HttpServer startAuthService() {
+        try {
+    
+            final HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    
+            server.createContext("/v1/auth/token/valid", exchange -> {
+                final byte[] body = AUTH_RESPONSE.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream output = exchange.getResponseBody()) {
+                    output.write(body);
+                }
+            });
+            server.start();
+    
+            return server;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private static int freePort() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+}
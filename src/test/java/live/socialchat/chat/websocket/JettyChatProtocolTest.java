@@ -0,0 +1,7 @@
+package live.socialchat.chat.websocket;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+@SpringBootTest(properties = "chat.transport=jetty")
+class JettyChatProtocolTest extends ChatProtocolTest {
+}